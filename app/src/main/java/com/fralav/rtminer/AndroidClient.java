@@ -0,0 +1,58 @@
+package com.fralav.rtminer;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.fralav.rtminer.client.Client;
+import com.fralav.rtminer.client.Platform;
+
+/**
+ * La classe mantiene l'unica istanza del {@link Client} utilizzata dall'app (design pattern
+ * {@code singleton}), che consegna i risultati delle operazioni all'interno dell'{@code UI Thread} e
+ * registra i messaggi nel log di Android.
+ */
+public final class AndroidClient {
+
+    /**
+     * Unica istanza del client alla quale le activity possono fare riferimento.
+     */
+    private static final Client instance = new Client(new AndroidPlatform());
+
+    private AndroidClient() {}
+
+    /**
+     * Restituisce l'unica istanza del client.
+     * @return {@code instance}, unica istanza del client
+     */
+    public static Client getInstance() {
+        return instance;
+    }
+
+    /**
+     * La classe collega il client all'{@code UI Thread} e al log di Android.
+     */
+    private static class AndroidPlatform implements Platform {
+
+        /**
+         * Handler associato all'{@code UI Thread}, utilizzato per restituire i risultati delle
+         * operazioni alle activity.
+         */
+        private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+        @Override
+        public void post(Runnable action) {
+            mainHandler.post(action);
+        }
+
+        @Override
+        public void logError(String message) {
+            Log.e("Client", message);
+        }
+
+        @Override
+        public void logInfo(String message) {
+            Log.i("Client", message);
+        }
+    }
+}
@@ -2,9 +2,11 @@ package com.fralav.rtminer;
 
 import android.app.AlertDialog;
 import android.app.Dialog;
+import android.content.Intent;
 import android.os.Bundle;
 import android.view.LayoutInflater;
 import android.view.View;
+import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -17,7 +19,9 @@ import java.util.Objects;
 /**
  * La classe contiene un solo metodo che viene richiamato quando l'utente chiede di visualizzare la
  * schermata contente le informazioni sull'autore del progetto, il quale ha il compito di creare
- * un {@link AlertDialog} contenente il layout di riferiemento alla schermata <i>Dettagli</i>.
+ * un {@link AlertDialog} contenente il layout di riferiemento alla schermata <i>Dettagli</i>. La
+ * schermata mostra anche la diagnostica del client, ovvero i tempi delle operazioni e i contatori
+ * della connessione, che l'utente può esportare come testo per allegarla a una segnalazione.
  */
 public class DetailsDialog extends AppCompatDialogFragment {
 
@@ -30,6 +34,29 @@ public class DetailsDialog extends AppCompatDialogFragment {
         builder.setView(view);
         builder.setCancelable(true);
         builder.setNegativeButton(R.string.negative_button, (dialogInterface, i) -> dialogInterface.dismiss());
+
+        String diagnostics = AndroidClient.getInstance().getDiagnostics();
+        TextView text = view.findViewById(R.id.details_diagnostics);
+        if (AndroidClient.getInstance().getOperationStats().getTasks().isEmpty()) {
+            text.setText(R.string.details_diagnostics_empty);
+        } else {
+            text.setText(diagnostics);
+        }
+        builder.setNeutralButton(R.string.details_export_button, (dialogInterface, i) -> export(diagnostics));
         return builder.create();
     }
+
+    /**
+     * Condivide la diagnostica come testo semplice, lasciando all'utente la scelta dell'app con la
+     * quale inviarla o salvarla.
+     * @param diagnostics Diagnostica del client.
+     */
+    private void export(String diagnostics) {
+        Intent intent = new Intent(Intent.ACTION_SEND);
+        intent.setType("text/plain");
+        intent.putExtra(Intent.EXTRA_SUBJECT, getString(R.string.details_export_title));
+        intent.putExtra(Intent.EXTRA_TEXT, diagnostics);
+        Objects.requireNonNull(getActivity()).startActivity(
+                Intent.createChooser(intent, getString(R.string.details_export_title)));
+    }
 }
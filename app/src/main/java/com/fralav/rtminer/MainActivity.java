@@ -13,10 +13,11 @@ import android.widget.Toast;
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
 
-import com.fralav.rtminer.client.Client;
 import com.fralav.rtminer.utils.ConnectionUtils;
 import com.fralav.rtminer.utils.ThemeUtils;
 
+import java.io.File;
+
 /**
  * La classe rappresenta l'activity principale, ovvero la prima activity che l'utente riesce a vedere
  * appena lancia l'app.
@@ -39,6 +40,7 @@ public class MainActivity extends AppCompatActivity {
         setTheme(ThemeUtils.defaultTheme());
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
+        AndroidClient.getInstance().setCacheDirectory(new File(getFilesDir(), "trees"));
 
         progressBar = findViewById(R.id.main_progressBar);
         buttonDb = findViewById(R.id.main_button_db);
@@ -52,13 +54,14 @@ public class MainActivity extends AppCompatActivity {
 
     /**
      * Il metodo si attiva quando viene ripresa l'activity. Rende la {@code ProgressBar} invisibile
-     * e disconnette il socket nel caso sia ancora connesso.
+     * e azzera la sessione sul server nel caso il client sia ancora connesso, mantenendo la
+     * connessione pronta per la prossima scelta dell'utente.
      */
     @Override
     protected void onPostResume() {
         progressBar.setVisibility(View.INVISIBLE);
-        if (Client.getInstance().isConnected()) {
-            Client.getInstance().disconnect();
+        if (AndroidClient.getInstance().isConnected()) {
+            AndroidClient.getInstance().resetSession();
         }
         super.onPostResume();
     }
@@ -75,10 +78,12 @@ public class MainActivity extends AppCompatActivity {
     }
 
     /**
-     * Si attiva quando viene premuto il tasto indietro, ha il compito di chiudere l'app.
+     * Si attiva quando viene premuto il tasto indietro, ha il compito di chiudere la connessione con
+     * il server e di chiudere l'app.
      */
     @Override
     public void onBackPressed() {
+        AndroidClient.getInstance().disconnect();
         finishAffinity();
         finish();
     }
@@ -0,0 +1,251 @@
+package com.fralav.rtminer;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.CheckedTextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.fralav.rtminer.client.Callback;
+import com.fralav.rtminer.client.NamePage;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * La classe mostra in una {@link RecyclerView} una lista di nomi, come le tabelle del database o i
+ * file dell'archivio, della quale vengono scaricate solo le pagine visibili: la lista conosce il
+ * numero complessivo di nomi e, quando deve mostrare un nome non ancora scaricato, ne richiede la
+ * pagina. L'utente può selezionare un nome toccandolo e filtrare la lista per sottostringa.
+ */
+public class NamePickerAdapter extends RecyclerView.Adapter<NamePickerAdapter.Holder> {
+
+    /**
+     * Numero di nomi di ogni pagina.
+     */
+    static final int PAGE_SIZE = 50;
+
+    /**
+     * Scarica le pagine della lista.
+     */
+    private PageLoader loader;
+
+    /**
+     * Riceve le pagine scaricate, per aggiornare il resto dell'interfaccia.
+     */
+    private final Callback<NamePage> listener;
+
+    /**
+     * Handler associato all'{@code UI Thread}, utilizzato per richiedere le pagine al di fuori del
+     * calcolo del layout della {@link RecyclerView}.
+     */
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Pagine scaricate, indicizzate per numero di pagina.
+     */
+    private final Map<Integer, List<String>> pages = new HashMap<>();
+
+    /**
+     * Pagine richieste e non ancora ricevute.
+     */
+    private final Set<Integer> pending = new HashSet<>();
+
+    /**
+     * Sottostringa che i nomi devono contenere.
+     */
+    private String filter = "";
+
+    /**
+     * Numero complessivo di nomi che soddisfano il filtro.
+     */
+    private int total;
+
+    /**
+     * Viene incrementato ogni volta che la lista cambia, in modo da scartare le pagine ricevute in
+     * risposta a richieste precedenti.
+     */
+    private int generation;
+
+    /**
+     * Nome selezionato dall'utente, {@code null} se nessun nome è selezionato.
+     */
+    private String selected;
+
+    /**
+     * Inizializza gli attributi d'istanza con quelli passati in input.
+     * @param listener Riceve ogni pagina scaricata, {@code null} se si è verificato un errore.
+     */
+    public NamePickerAdapter(Callback<NamePage> listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Mostra la lista di nomi scaricata tramite {@code loader}, a partire dalla prima pagina.
+     * @param loader Scarica le pagine della lista.
+     */
+    public void setLoader(PageLoader loader) {
+        this.loader = loader;
+        reset();
+    }
+
+    /**
+     * Filtra la lista, mostrando solo i nomi che contengono la sottostringa specificata.
+     * @param filter Sottostringa da cercare, vuota per mostrare tutti i nomi.
+     */
+    public void setFilter(String filter) {
+        if (!filter.equals(this.filter)) {
+            this.filter = filter;
+            reset();
+        }
+    }
+
+    /**
+     * Restituisce la sottostringa che i nomi devono contenere.
+     * @return {@code filter}
+     */
+    public String getFilter() {
+        return filter;
+    }
+
+    /**
+     * Restituisce il nome selezionato dall'utente.
+     * @return {@code selected}, {@code null} se nessun nome è selezionato.
+     */
+    public String getSelected() {
+        return selected;
+    }
+
+    /**
+     * Scarta le pagine scaricate e la selezione, e richiede la prima pagina della lista.
+     */
+    private void reset() {
+        generation++;
+        pages.clear();
+        pending.clear();
+        total = 0;
+        selected = null;
+        notifyDataSetChanged();
+        requestPage(0);
+    }
+
+    /**
+     * Richiede una pagina della lista, se non è già stata richiesta. La richiesta avviene dopo il
+     * calcolo del layout, poiché la pagina potrebbe essere restituita subito.
+     * @param page Numero della pagina.
+     */
+    private void requestPage(int page) {
+        if (loader == null || !pending.add(page)) {
+            return;
+        }
+        int requested = generation;
+        PageLoader current = loader;
+        String text = filter;
+        handler.post(() -> current.load(text, page * PAGE_SIZE, PAGE_SIZE, result -> {
+            if (requested != generation) {
+                return;
+            }
+            if (result == null) {
+                pending.remove(page);
+                listener.onResult(null);
+                return;
+            }
+            pages.put(page, result.getNames());
+            if (result.getTotal() != total) {
+                total = result.getTotal();
+                notifyDataSetChanged();
+            } else {
+                notifyItemRangeChanged(page * PAGE_SIZE, result.getNames().size());
+            }
+            listener.onResult(result);
+        }));
+    }
+
+    @NonNull
+    @Override
+    public Holder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.name_item_layout, parent, false);
+        return new Holder((CheckedTextView) view);
+    }
+
+    /**
+     * Mostra il nome nella posizione specificata oppure, se la sua pagina non è ancora stata
+     * scaricata, un segnaposto, richiedendo la pagina.
+     * @param holder Elemento della lista.
+     * @param position Posizione del nome nella lista filtrata.
+     */
+    @Override
+    public void onBindViewHolder(@NonNull Holder holder, int position) {
+        int page = position / PAGE_SIZE;
+        List<String> names = pages.get(page);
+        int index = position % PAGE_SIZE;
+        holder.name = names != null && index < names.size() ? names.get(index) : null;
+        if (holder.name == null) {
+            holder.text.setText(R.string.name_loading);
+            holder.text.setChecked(false);
+            requestPage(page);
+        } else {
+            holder.text.setText(holder.name);
+            holder.text.setChecked(holder.name.equals(selected));
+        }
+    }
+
+    @Override
+    public int getItemCount() {
+        return total;
+    }
+
+    /**
+     * L'interfaccia scarica una pagina della lista di nomi.
+     */
+    public interface PageLoader {
+
+        /**
+         * Scarica una pagina della lista, filtrata per sottostringa.
+         * @param filter Sottostringa che i nomi devono contenere.
+         * @param offset Posizione del primo nome della pagina nella lista filtrata.
+         * @param limit Numero massimo di nomi della pagina.
+         * @param callback Riceve la pagina, {@code null} se si è verificato un errore.
+         */
+        void load(String filter, int offset, int limit, Callback<NamePage> callback);
+    }
+
+    /**
+     * La classe rappresenta un elemento della lista, che seleziona il proprio nome quando viene
+     * toccato.
+     */
+    class Holder extends RecyclerView.ViewHolder {
+
+        /**
+         * Vista che mostra il nome.
+         */
+        final CheckedTextView text;
+
+        /**
+         * Nome mostrato, {@code null} se la sua pagina non è ancora stata scaricata.
+         */
+        String name;
+
+        /**
+         * Inizializza gli attributi d'istanza con quelli passati in input.
+         * @param text Vista che mostra il nome.
+         */
+        Holder(CheckedTextView text) {
+            super(text);
+            this.text = text;
+            text.setOnClickListener(view -> {
+                if (name != null) {
+                    selected = name;
+                    notifyDataSetChanged();
+                }
+            });
+        }
+    }
+}
@@ -12,7 +12,8 @@ import android.widget.TextView;
 
 import androidx.appcompat.app.AppCompatActivity;
 
-import com.fralav.rtminer.client.Client;
+import com.fralav.rtminer.client.LocalPrediction;
+import com.fralav.rtminer.client.PredictionStep;
 import com.fralav.rtminer.utils.ConnectionUtils;
 import com.fralav.rtminer.utils.ThemeUtils;
 
@@ -22,13 +23,24 @@ import com.fralav.rtminer.utils.ThemeUtils;
  */
 public class PredictActivity extends AppCompatActivity {
 
+    private TextView predictText;
+    private Spinner predictSpinner;
+    private Button predictButtonOk;
+
+    /**
+     * Fase di predizione eseguita sul dispositivo, {@code null} se il server non permette di
+     * scaricare l'albero e la predizione avviene quindi tramite il dialogo con il server.
+     */
+    private LocalPrediction localPrediction;
+
     /**
      * Viene caricato il layout corrispondete alla classe {@code predict}, impostando il tema scelto
      * dall'utente. Mostra il tasto indietro sulla action bar, eventualmente clickabile per poter
      * tornare alla {@link TablesActivity}, inizializza la {@link TextView} che deve contenere le
      * istruzioni di predizione, lo {@link Spinner} che deve contenere le possibili scelte e il
      * {@link Button} che permette all'utente di effettuare la scelta. Inoltre viene avviata la fase
-     * di predizione, dove avviene un dialogo tra il server e il client.
+     * di predizione: l'albero viene scaricato per intero dal server e percorso sul dispositivo,
+     * oppure, se il server non lo permette, avviene un dialogo asincrono tra il server e il client.
      */
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -40,34 +52,50 @@ public class PredictActivity extends AppCompatActivity {
             getSupportActionBar().setDisplayHomeAsUpEnabled(true);
         }
 
-        TextView predictText = findViewById(R.id.predict_paragraph);
-        Spinner predictSpinner = findViewById(R.id.predict_spinner);
-        Button predictButtonOk = findViewById(R.id.predict_button_ok);
+        predictText = findViewById(R.id.predict_paragraph);
+        predictSpinner = findViewById(R.id.predict_spinner);
+        predictButtonOk = findViewById(R.id.predict_button_ok);
 
-        Client.getInstance().startPredictionMode();
-        predictTree(predictText, predictSpinner);
+        predictButtonOk.setEnabled(false);
+        AndroidClient.getInstance().getTreeStructure(tree -> {
+            if (isFinishing()) {
+                return;
+            }
+            if (tree != null) {
+                localPrediction = new LocalPrediction(tree);
+                showStep(localPrediction.start());
+            } else {
+                AndroidClient.getInstance().startPredictionMode(this::showStep);
+            }
+        });
 
         predictButtonOk.setOnClickListener(view -> {
-            Client.getInstance().writeObjectToSocket(Integer.parseInt(predictSpinner.getSelectedItem().toString()));
-            predictTree(predictText, predictSpinner);
+            Object selected = predictSpinner.getSelectedItem();
+            if (selected != null) {
+                predictButtonOk.setEnabled(false);
+                int child = Integer.parseInt(selected.toString());
+                if (localPrediction != null) {
+                    showStep(localPrediction.answer(child));
+                } else {
+                    AndroidClient.getInstance().answerPrediction(child, this::showStep);
+                }
+            }
         });
     }
 
     /**
-     * Il metodo si attiva quando viene premuto il tasto indietro. Disconnette il socket se è connesso
-     * e lo riconnette. Inoltre, in caso di assenza di connessione, mostra un {@link AlertDialog} che
+     * Il metodo si attiva quando viene premuto il tasto indietro. Azzera la sessione sul server
+     * mantenendo, quando possibile, la connessione aperta per la schermata precedente. Se la
+     * predizione è avvenuta sul dispositivo, ritorna sempre alla schermata precedente, che mostra gli
+     * alberi salvati quando il server non è raggiungibile. Altrimenti, in
+     * caso di assenza di connessione, mostra un {@link AlertDialog} che
      * avvisa l'utente della caduta della connessione. Se c'è connessione, invece ritorna alla schermata
      * precedente.
      */
     @Override
     public void onBackPressed() {
-        if (Client.getInstance().isConnected()) {
-            Client.getInstance().disconnect();
-        }
-        if (!Client.getInstance().isConnected()) {
-            Client.getInstance().connect();
-        }
-        if (!ConnectionUtils.absentConnection(this)) {
+        AndroidClient.getInstance().resetSession();
+        if (localPrediction != null || !ConnectionUtils.absentConnection(this)) {
             Bundle bundle = new Bundle();
             bundle.putInt(TablesActivity.TYPE, TablesActivity.ID);
             TablesActivity.openTablesActivity(PredictActivity.this, bundle);
@@ -98,34 +126,34 @@ public class PredictActivity extends AppCompatActivity {
     }
 
     /**
-     * Fase di predizione vera e propria. Inizializza le variabili di supporto alla computazione della
-     * predizione. Riceve una stringa dal server: se è uguale a {@code QUERY}, allora bisogna selezionare
-     * un figlio del nodo corrente tramite lo spinner, che viene aggiornato a ogni iterazione, premendo
-     * il tasto {@code OK} a fine scelta. Se invece la stringa ricevuta inzialmente è uguale a
-     * {@code OK}, vuol dire che il server ha raggiunto un nodo foglia e quindi viene mostrato un
-     * {@link AlertDialog} che mostra il valore di predizione. Il metoodo si ripete finché non viene raggiunto
-     * un nodo foglia.
-     * @param predictText TextView da aggiornare
-     * @param predictSpinner Spinner da aggiornare
+     * Fase di predizione vera e propria. Mostra il passo ricevuto dal server o calcolato sul
+     * dispositivo: se contiene una domanda,
+     * allora bisogna selezionare un figlio del nodo corrente tramite lo spinner, che viene aggiornato
+     * a ogni iterazione, premendo il tasto {@code OK} a fine scelta. Se invece il server ha raggiunto
+     * un nodo foglia, viene mostrato un {@link AlertDialog} che mostra il valore di predizione. Il
+     * metodo si ripete, a ogni risposta del server, finché non viene raggiunto un nodo foglia.
+     * @param step Passo della fase di predizione, {@code null} se la comunicazione con il server non è
+     *             andata a buon fine.
      */
-    private void predictTree(TextView predictText, Spinner predictSpinner) {
-        ArrayAdapter<Integer> adapter = new ArrayAdapter<>(PredictActivity.this, R.layout.spinner_color_layout);
-        String answer = Client.getInstance().readObjectFromSocket().toString();
-        if (answer.equals("QUERY")) {
-            answer = Client.getInstance().readObjectFromSocket().toString();
-            predictText.setText(answer);
-            int numberOfChildren = Integer.parseInt(Client.getInstance().readObjectFromSocket().toString());
-            adapter.clear();
-            for (int i = 0; i< numberOfChildren; i++) {
+    private void showStep(PredictionStep step) {
+        if (isFinishing()) {
+            return;
+        }
+        if (step == null) {
+            ConnectionUtils.lostConnection(this);
+        } else if (!step.isLeaf()) {
+            ArrayAdapter<Integer> adapter = new ArrayAdapter<>(PredictActivity.this, R.layout.spinner_color_layout);
+            predictText.setText(step.getQuestion());
+            for (int i = 0; i < step.getChildren(); i++) {
                 adapter.add(i);
             }
             adapter.setDropDownViewResource(R.layout.spinner_dropdown_layout);
             predictSpinner.setAdapter(adapter);
-        } else if (answer.equals("OK")) {
-            answer = Client.getInstance().readObjectFromSocket().toString();
+            predictButtonOk.setEnabled(true);
+        } else {
             android.app.AlertDialog.Builder builder = ThemeUtils.getBuilder(PredictActivity.this);
             builder.setTitle(R.string.predict_dialog_title);
-            builder.setMessage(answer);
+            builder.setMessage(step.getPrediction());
             builder.setNegativeButton(R.string.negative_button, (dialogInterface, i) -> onBackPressed());
             builder.setPositiveButton(R.string.repeat_button, (dialogInterface, i) -> PredictActivity.openPredictActivity(PredictActivity.this));
             builder.setCancelable(false);
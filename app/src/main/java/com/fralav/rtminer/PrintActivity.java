@@ -5,24 +5,63 @@ import android.content.Context;
 import android.content.Intent;
 import android.os.Bundle;
 import android.view.MenuItem;
-import android.widget.TextView;
+import android.widget.Button;
+import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
-import com.fralav.rtminer.client.Client;
+import com.fralav.rtminer.client.PrintListener;
+import com.fralav.rtminer.client.TreePrintout;
 import com.fralav.rtminer.utils.ConnectionUtils;
 import com.fralav.rtminer.utils.ThemeUtils;
 
+import java.util.List;
+
 /**
  * La classe rappresenta l'activity di stampa, ovvero il contesto che viene mostrato quando
  * l'utente sceglie di avviare la stampa dell'albero.
  */
 public class PrintActivity extends AppCompatActivity {
 
+    /**
+     * Stampa dell'albero in corso, interrotta quando l'utente lascia l'activity o passa
+     * all'esplorazione dell'albero.
+     */
+    private TreePrintout printout;
+
+    /**
+     * {@code true} quando la stampa dell'albero è stata ricevuta per intero.
+     */
+    private boolean printComplete;
+
+    /**
+     * Lista che mostra la stampa o l'esplorazione dell'albero.
+     */
+    private RecyclerView list;
+
+    /**
+     * Righe della stampa dell'albero.
+     */
+    private PrintLinesAdapter printAdapter;
+
+    /**
+     * Nodi dell'albero mostrati nell'esplorazione, scaricati solo quando l'utente li espande.
+     */
+    private TreeBrowserAdapter browserAdapter;
+
+    /**
+     * Pulsante che alterna la stampa e l'esplorazione dell'albero.
+     */
+    private Button toggle;
+
     /**
      * Viene creata la UI con il layout corrispondente e con il tema precedentemente scelto dall'utente.
-     * Inizializza il {@link TextView} che deve contenere la stampa dell'albero e lo popola con la
-     * string richiesta dal server.
+     * Inizializza la {@link RecyclerView} che deve contenere la stampa dell'albero e la popola con le
+     * righe richieste al server man mano che queste vengono ricevute, in modo che le prime righe siano
+     * visibili prima che arrivi l'intero albero. Il pulsante sopra la lista permette di passare
+     * all'esplorazione dell'albero, che scarica solo i rami espansi dall'utente.
      */
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -34,25 +73,94 @@ public class PrintActivity extends AppCompatActivity {
             getSupportActionBar().setDisplayHomeAsUpEnabled(true);
         }
 
-        TextView paragraph = findViewById(R.id.results_paragraph);
-        String text = Client.getInstance().printTree();
-        paragraph.setText(text);
+        list = findViewById(R.id.results_list);
+        list.setLayoutManager(new LinearLayoutManager(this));
+        browserAdapter = new TreeBrowserAdapter(AndroidClient.getInstance()::getSubtree, subtree -> {
+            if (!isFinishing() && subtree == null) {
+                ConnectionUtils.lostConnection(this);
+            }
+        });
+        toggle = findViewById(R.id.print_toggle);
+        toggle.setOnClickListener(view -> {
+            if (list.getAdapter() == browserAdapter) {
+                showPrintout();
+            } else {
+                showBrowser();
+            }
+        });
+        showPrintout();
+    }
+
+    /**
+     * Mostra la stampa dell'albero, richiedendola al server se non è già stata ricevuta per intero.
+     */
+    private void showPrintout() {
+        toggle.setText(R.string.print_show_browser);
+        if (printComplete) {
+            list.setAdapter(printAdapter);
+            return;
+        }
+        PrintLinesAdapter adapter = new PrintLinesAdapter();
+        printAdapter = adapter;
+        list.setAdapter(adapter);
+        printout = AndroidClient.getInstance().printTreeStream(new PrintListener() {
+            @Override
+            public void onLines(int firstLine, List<String> lines) {
+                if (!isFinishing()) {
+                    adapter.addLines(lines);
+                }
+            }
+
+            @Override
+            public void onComplete(boolean success) {
+                if (adapter != printAdapter || isFinishing()) {
+                    return;
+                }
+                printComplete = success;
+                if (!success && !printout.isCancelled()) {
+                    ConnectionUtils.lostConnection(PrintActivity.this);
+                }
+            }
+        });
+    }
+
+    /**
+     * Mostra l'esplorazione dell'albero, interrompendo la stampa se ancora in corso, e richiede al
+     * server i primi livelli dell'albero. Se il server non permette di esplorare l'albero, viene
+     * mostrata di nuovo la stampa.
+     */
+    private void showBrowser() {
+        printout.cancel();
+        toggle.setText(R.string.print_show_flat);
+        list.setAdapter(browserAdapter);
+        if (browserAdapter.hasRoot()) {
+            return;
+        }
+        AndroidClient.getInstance().getSubtree(new int[0], root -> {
+            if (isFinishing() || list.getAdapter() != browserAdapter) {
+                return;
+            }
+            if (root == null) {
+                Toast.makeText(this, R.string.browse_unavailable, Toast.LENGTH_LONG).show();
+                showPrintout();
+            } else {
+                browserAdapter.setRoot(root);
+            }
+        });
     }
 
     /**
-     * Il metodo si attiva quando viene premuto il tasto indietro. Disconnette il socket se è connesso
-     * e lo riconnette. Inoltre, in caso di assenza di connessione, mostra un {@link AlertDialog} che
+     * Il metodo si attiva quando viene premuto il tasto indietro. Interrompe la stampa, se ancora in
+     * corso, e azzera la sessione sul server
+     * mantenendo, quando possibile, la connessione aperta per la schermata precedente. Inoltre, in
+     * caso di assenza di connessione, mostra un {@link AlertDialog} che
      * avvisa l'utente della caduta della connessione. Se c'è connessione, invece ritorna alla schermata
      * precedente.
      */
     @Override
     public void onBackPressed() {
-        if (Client.getInstance().isConnected()) {
-            Client.getInstance().disconnect();
-        }
-        if (!Client.getInstance().isConnected()) {
-            Client.getInstance().connect();
-        }
+        printout.cancel();
+        AndroidClient.getInstance().resetSession();
         if (!ConnectionUtils.absentConnection(this)) {
             Bundle bundle = new Bundle();
             bundle.putInt(TablesActivity.TYPE, TablesActivity.ID);
@@ -0,0 +1,72 @@
+package com.fralav.rtminer;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * La classe mostra in una {@link RecyclerView} le righe della rappresentazione testuale dell'albero,
+ * una per elemento, in modo che vengano disposte solo le righe visibili anche per gli alberi molto
+ * grandi. Le righe vengono aggiunte man mano che arrivano dal server.
+ */
+public class PrintLinesAdapter extends RecyclerView.Adapter<PrintLinesAdapter.Holder> {
+
+    /**
+     * Righe ricevute.
+     */
+    private final List<String> lines = new ArrayList<>();
+
+    /**
+     * Aggiunge le righe ricevute in fondo alla lista.
+     * @param chunk Righe da aggiungere.
+     */
+    public void addLines(List<String> chunk) {
+        int start = lines.size();
+        lines.addAll(chunk);
+        notifyItemRangeInserted(start, chunk.size());
+    }
+
+    @NonNull
+    @Override
+    public Holder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.print_line_layout, parent, false);
+        return new Holder((TextView) view);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull Holder holder, int position) {
+        holder.text.setText(lines.get(position));
+    }
+
+    @Override
+    public int getItemCount() {
+        return lines.size();
+    }
+
+    /**
+     * La classe rappresenta un elemento della lista, che mostra una riga.
+     */
+    static class Holder extends RecyclerView.ViewHolder {
+
+        /**
+         * Vista che mostra la riga.
+         */
+        final TextView text;
+
+        /**
+         * Inizializza gli attributi d'istanza con quelli passati in input.
+         * @param text Vista che mostra la riga.
+         */
+        Holder(TextView text) {
+            super(text);
+            this.text = text;
+        }
+    }
+}
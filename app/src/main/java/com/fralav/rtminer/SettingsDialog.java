@@ -14,43 +14,45 @@ import androidx.appcompat.app.AppCompatDelegate;
 import androidx.appcompat.app.AppCompatDialogFragment;
 import androidx.appcompat.widget.SwitchCompat;
 
-import com.fralav.rtminer.client.Client;
+import com.fralav.rtminer.client.protocol.ServerEndpoint;
 import com.fralav.rtminer.utils.ThemeUtils;
 
-import java.util.Locale;
+import java.util.List;
 import java.util.Objects;
 
 /**
  * La classe contiene un solo metodo pubblico utile a costruire un {@link AlertDialog} contenente
  * le impostazioni dell'app (di connessione e ti tema).Viene istanziata quando l'utente clicca sul
- * tasto "Impostazioni" nel menu tree-dots. All'interno dell'{@link AlertDialog} vi sono due
- * {@link EditText} che dovranno contenere rispettivamente l'indirizzo IP del server e la porta.
- * Inoltre è presente uno switch che seleziona o deseleziona la modalità notte.
+ * tasto "Impostazioni" nel menu tree-dots. All'interno dell'{@link AlertDialog} vi è un
+ * {@link EditText} che dovrà contenere i server, tutti equivalenti, ai quali connettersi, uno per
+ * riga nella forma {@code indirizzo IP:porta}: il client sceglie il più veloce e, se questo non
+ * risponde, passa automaticamente a un altro. Inoltre è presente uno switch che seleziona o
+ * deseleziona la modalità notte.
  */
 public class SettingsDialog extends AppCompatDialogFragment {
 
     /**
-     * Deve contenere l'indirizzo IP del server.
+     * Porta dei server per i quali l'utente non la indica.
      */
-    private EditText ip;
+    private static final int DEFAULT_PORT = 8080;
 
     /**
-     * Deve contenere la porta alla quale il server è in ascolto.
+     * Deve contenere i server, uno per riga, nella forma {@code indirizzo IP:porta}.
      */
-    private EditText port;
+    private EditText servers;
 
     /**
      * Variabile che diventa {@code True} se l'utente ha inserito in maniera corretta l'IP e la porta
-     * del server.
+     * di tutti i server.
      */
     public static boolean ENABLED = false;
 
     /**
      * Il metodo costruisce un {@link AlertDialog} contenente le impostazioni dell'app. In primo luogo
-     * costruisce due {@link EditText} che devono contenere IP e PORTA del server. Inoltre è presente uno
-     * switch che servirà a selezionare o deselezionare la night mode. Se l'utente inserisce nei campi
-     * IP e porta valori validi, allora gli {@link EditText} vengono popolati, altrimenti il software
-     * invita l'utente, tramite notifiche {@link Toast}, ad inserire validi valori di Ip e porta.
+     * costruisce un {@link EditText} che deve contenere IP e PORTA dei server, uno per riga. Inoltre è
+     * presente uno switch che servirà a selezionare o deselezionare la night mode. Se l'utente
+     * inserisce server validi, allora questi vengono passati al client, altrimenti il software invita
+     * l'utente, tramite notifiche {@link Toast}, ad inserire validi valori di Ip e porta.
      * @param savedInstanceState
      * @return Dialog creato
      */
@@ -64,65 +66,71 @@ public class SettingsDialog extends AppCompatDialogFragment {
         builder.setCancelable(true);
         builder.setTitle(R.string.settings_dialog_title);
         builder.setPositiveButton(R.string.positive_button, (dialogInterface, i) -> {
-            if (!checkIp() && !checkPort()) {
-                Toast.makeText(getContext(), R.string.settings_ipAndPort_wrong, Toast.LENGTH_SHORT).show();
-                ENABLED = false;
-            } else if (checkPort() && !checkIp()) {
-                Toast.makeText(getContext(), R.string.settings_ip_wrong, Toast.LENGTH_SHORT).show();
-                ENABLED = false;
-            } else if (!checkPort() && checkIp()) {
-                Toast.makeText(getContext(), R.string.settings_port_wrong, Toast.LENGTH_SHORT).show();
+            List<ServerEndpoint> list = checkServers();
+            if (list == null) {
+                Toast.makeText(getContext(), R.string.settings_servers_wrong, Toast.LENGTH_SHORT).show();
                 ENABLED = false;
             } else {
-                Client.getInstance().setIp(ip.getText().toString());
-                Client.getInstance().setPort(Integer.parseInt(port.getText().toString()));
+                AndroidClient.getInstance().setServers(list);
                 ENABLED = true;
                 dialogInterface.dismiss();
             }
         });
         builder.setNegativeButton(R.string.negative_button, (dialogInterface, i) -> dialogInterface.dismiss());
 
-        ip = view.findViewById(R.id.settings_insertIP);
-        port = view.findViewById(R.id.settings_insertPort);
+        servers = view.findViewById(R.id.settings_insertServers);
 
         SwitchCompat darkSwitch = view.findViewById(R.id.settings_switch);
         darkSwitch.setChecked(AppCompatDelegate.getDefaultNightMode() == AppCompatDelegate.MODE_NIGHT_YES);
         ThemeUtils.listen(getContext(), darkSwitch);
 
-        String instanceIp = Client.getInstance().getIp();
-        int instancePort = Client.getInstance().getPort();
-
-        if (instanceIp != null && !instanceIp.equals("")) {
-            ip.setText(instanceIp);
-        }
-
-        if (instancePort != 0) {
-            port.setText(String.format(Locale.getDefault(), "%d", instancePort));
+        StringBuilder instanceServers = new StringBuilder();
+        for (ServerEndpoint server : AndroidClient.getInstance().getServers()) {
+            if (instanceServers.length() > 0) {
+                instanceServers.append('\n');
+            }
+            instanceServers.append(server.getAddress());
         }
+        servers.setText(instanceServers);
 
         return builder.create();
     }
 
+    /**
+     * Metodo di supporto che legge i server inseriti dall'utente e ne verifica la validità.
+     * @return Server inseriti, {@code null} se l'elenco è vuoto o almeno un server non è valido.
+     */
+    private List<ServerEndpoint> checkServers() {
+        List<ServerEndpoint> list;
+        try {
+            list = ServerEndpoint.parseList(servers.getText().toString(), DEFAULT_PORT);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        for (ServerEndpoint server : list) {
+            if (!checkIp(server.getHost()) || !checkPort(server.getPort())) {
+                return null;
+            }
+        }
+        return list;
+    }
+
     /**
      * Metodo di supporto che serve a calcolare la validità della porta del server
+     * @param port Porta del server.
      * @return {@code True} se la porta è in formato valido, {@code False} altrimenti.
      */
-    private boolean checkPort() {
-       String sPort = port.getText().toString();
-        if (sPort.equals("")) {
-            return false;
-        } else {
-            int iPort = Integer.parseInt(sPort);
-            return 1024 <= iPort && iPort <= 65535;
-        }
+    private boolean checkPort(int port) {
+        return 1024 <= port && port <= 65535;
     }
 
     /**
      * Metodo di supporto che serve a calcolare la validità dell'IP del server.
+     * @param ip Indirizzo IP del server.
      * @return {@code True} se l'indirizzo IP è in formato valido, {@code False} altrimenti.
      */
-    private boolean checkIp() {
+    private boolean checkIp(String ip) {
         String PATTERN = "^((0|1\\d?\\d?|2[0-4]?\\d?|25[0-5]?|[3-9]\\d?)\\.){3}(0|1\\d?\\d?|2[0-4]?\\d?|25[0-5]?|[3-9]\\d?)$";
-        return ip.getText().toString().matches(PATTERN);
+        return ip.matches(PATTERN);
     }
 }
\ No newline at end of file
@@ -3,23 +3,31 @@ package com.fralav.rtminer;
 import android.content.Context;
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.view.MenuItem;
 import android.view.View;
-import android.widget.ArrayAdapter;
 import android.widget.Button;
+import android.widget.EditText;
 import android.widget.ProgressBar;
-import android.widget.Spinner;
 import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
+import com.fralav.rtminer.client.Callback;
 import com.fralav.rtminer.client.Client;
+import com.fralav.rtminer.client.NamePage;
+import com.fralav.rtminer.client.tree.TreeCache;
 import com.fralav.rtminer.utils.ConnectionUtils;
 import com.fralav.rtminer.utils.ThemeUtils;
 
-import java.util.LinkedList;
+import java.util.List;
 
 /**
  * La classe rappresenta l'activity {@code tables}, ovvero il contesto che viene mostrato quando
@@ -29,11 +37,38 @@ import java.util.LinkedList;
 public class TablesActivity extends AppCompatActivity {
 
     public static int ID = 0;
-    private Spinner spinner;
+    private EditText search;
     private Button buttonTablePrint;
     private Button buttonTablePredict;
     private ProgressBar progressBar;
 
+    /**
+     * Lista delle tabelle o dei file, della quale vengono scaricate solo le pagine visibili.
+     */
+    private NamePickerAdapter picker;
+
+    /**
+     * Tempo, in millisecondi, che deve trascorrere dall'ultima modifica del testo di ricerca prima di
+     * filtrare la lista, in modo da non richiedere una pagina per ogni carattere digitato.
+     */
+    private static final long SEARCH_DELAY = 300;
+
+    /**
+     * Handler associato all'{@code UI Thread}, utilizzato per ritardare il filtro della lista.
+     */
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Applica alla lista il testo di ricerca corrente.
+     */
+    private final Runnable applyFilter = () -> picker.setFilter(search.getText().toString().trim());
+
+    /**
+     * {@code true} se il server non è raggiungibile e la lista mostra gli alberi salvati sul
+     * dispositivo, che possono essere utilizzati solo per la fase di predizione.
+     */
+    private boolean offline;
+
     public static final String TYPE = "type";
     public static final int FROM_DB = 1;
     public static final int FROM_FILE = 2;
@@ -41,12 +76,14 @@ public class TablesActivity extends AppCompatActivity {
     /**
      * Crea la UI relativa alla scelta della tabella, se da file o da database, secondo la scelta
      * effettuata dall'utente nella schermata precedente. Imposta il tema scelto dall'utente tra Day
-     * Mode o Dark Mode, inizializza gli elementi {@link Button} e {@link Spinner} presenti nell'interfaccia.
+     * Mode o Dark Mode, inizializza gli elementi {@link Button}, {@link EditText} e {@link RecyclerView}
+     * presenti nell'interfaccia.
      * Il metodo viene chiamato appena viene istanziata la classe e, nel caso in cui ci fossero problemi
      * di connessione, il software mostra un {@link AlertDialog} dove comunica all'utente il problema
-     * di connessione riscontrato. Infine preleva dal database i nomi delle tabelle e li mostra
-     * all'interno dello spinner, oppure, se l'utente ha scelto di voler prelevare un albero precedentemente
-     * serializzato, mostra nello spinner i file relativi.
+     * di connessione riscontrato. Infine mostra nella lista i nomi delle tabelle del database oppure,
+     * se l'utente ha scelto di voler prelevare un albero precedentemente serializzato, i file relativi.
+     * La lista chiede al server solo le pagine visibili, filtrate in base al testo di ricerca. Se il
+     * server non è raggiungibile, la lista mostra gli alberi salvati sul dispositivo, quando presenti.
      */
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -78,7 +115,8 @@ public class TablesActivity extends AppCompatActivity {
 
         buttonTablePrint = findViewById(R.id.table_button_print);
         buttonTablePredict = findViewById(R.id.table_button_predict);
-        spinner = findViewById(R.id.table_spinner);
+        search = findViewById(R.id.table_search);
+        RecyclerView list = findViewById(R.id.table_list);
         progressBar = findViewById(R.id.tables_progressBar);
 
         progressBar.setVisibility(View.INVISIBLE);
@@ -86,39 +124,96 @@ public class TablesActivity extends AppCompatActivity {
         setButtonTablePrint();
         setButtonTablePredict();
 
-        ArrayAdapter<CharSequence> adapter = new ArrayAdapter<>(this, R.layout.spinner_color_layout);
+        picker = new NamePickerAdapter(this::showPage);
+        list.setLayoutManager(new LinearLayoutManager(this));
+        list.setAdapter(picker);
+        search.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence text, int start, int count, int after) {}
+
+            @Override
+            public void onTextChanged(CharSequence text, int start, int before, int count) {}
+
+            @Override
+            public void afterTextChanged(Editable text) {
+                handler.removeCallbacks(applyFilter);
+                handler.postDelayed(applyFilter, SEARCH_DELAY);
+            }
+        });
 
+        progressBar.setVisibility(View.VISIBLE);
         if (ConnectionUtils.absentConnection(this)) {
-            Toast.makeText(this, R.string.connection_not_found, Toast.LENGTH_LONG).show();
-            MainActivity.openMainActivity(this);
+            showCachedTrees(() -> {
+                Toast.makeText(this, R.string.connection_not_found, Toast.LENGTH_LONG).show();
+                MainActivity.openMainActivity(this);
+            });
+            return;
         }
 
-        if (!Client.getInstance().isConnected()) {
-            Client.getInstance().connect();
+        AndroidClient.getInstance().connect(connected -> {
+            if (isFinishing()) {
+                return;
+            }
+            if (!Boolean.TRUE.equals(connected)) {
+                showCachedTrees(() -> ConnectionUtils.serverUnreachable(this));
+            } else if (ID == FROM_DB) {
+                picker.setLoader(AndroidClient.getInstance()::getTablesPage);
+            } else if (ID == FROM_FILE) {
+                picker.setLoader(AndroidClient.getInstance()::getFilesPage);
+            }
+        });
+    }
+
+    /**
+     * Viene richiamato ogni volta che la lista riceve una pagina di nomi. Se la comunicazione con il
+     * server non è andata a buon fine, oppure se il server comunica che non ci sono elementi da
+     * mostrare, viene mostrato il messaggio di errore corrispondente.
+     * @param page Pagina ricevuta, {@code null} se la comunicazione non è andata a buon fine.
+     */
+    private void showPage(NamePage page) {
+        if (isFinishing()) {
+            return;
+        }
+        progressBar.setVisibility(View.INVISIBLE);
+        if (page == null) {
+            ConnectionUtils.lostConnection(this);
+        } else if (page.getTotal() == 0 && picker.getFilter().isEmpty() && !offline) {
+            ConnectionUtils.errorMessage(this, ID == FROM_DB ? R.string.error_notables : R.string.error_nofiles);
         }
+    }
 
-        if (Client.getInstance().isConnected()) {
-            if (ID == FROM_DB) {
-                LinkedList<String> tables = Client.getInstance().getTablesFromDb();
-                if (tables.contains(Client.NO_TABLES_FOUND)) {
-                    ConnectionUtils.errorMessage(this, R.string.error_notables);
-                } else {
-                    adapter.addAll(tables);
-                }
+    /**
+     * Popola la lista con gli alberi salvati sul dispositivo, quando il server non è raggiungibile,
+     * in modo che l'utente possa comunque avviare la fase di predizione. La stampa dell'albero
+     * richiede il server e viene quindi disabilitata. Se non è stato salvato alcun albero, viene
+     * eseguito {@code fallback}.
+     * @param fallback Azione da eseguire se non è stato salvato alcun albero.
+     */
+    private void showCachedTrees(Runnable fallback) {
+        AndroidClient.getInstance().getCachedTrees(cacheSource(), (List<String> names) -> {
+            if (isFinishing()) {
+                return;
             }
-            else if (ID == FROM_FILE) {
-                LinkedList<String> files = Client.getInstance().getFilesFromArchive();
-                if (files.contains(Client.NO_FILES_FOUND)) {
-                    ConnectionUtils.errorMessage(this, R.string.error_nofiles);
-                } else {
-                    adapter.addAll(files);
-                }
+            progressBar.setVisibility(View.INVISIBLE);
+            if (names.isEmpty()) {
+                fallback.run();
+                return;
             }
-        } else {
-            ConnectionUtils.serverUnreachable(this);
-        }
-        adapter.setDropDownViewResource(R.layout.spinner_dropdown_layout);
-        spinner.setAdapter(adapter);
+            offline = true;
+            buttonTablePrint.setEnabled(false);
+            picker.setLoader((filter, offset, limit, callback) ->
+                    callback.onResult(NamePage.filter(names, filter, offset, limit)));
+            Toast.makeText(this, R.string.offline_mode, Toast.LENGTH_LONG).show();
+        });
+    }
+
+    /**
+     * Restituisce l'origine degli alberi salvati sul dispositivo corrispondente alla scelta
+     * dell'utente.
+     * @return {@link TreeCache#FROM_DB} o {@link TreeCache#FROM_FILE}.
+     */
+    private int cacheSource() {
+        return ID == FROM_DB ? TreeCache.FROM_DB : TreeCache.FROM_FILE;
     }
 
     /**
@@ -137,95 +232,95 @@ public class TablesActivity extends AppCompatActivity {
     }
 
     /**
-     * Il metodo si attiva quando viene premuto il tasto relativo alla stampa dell'albero. Se la
-     * connessione è assente, viene mostrato un messaggio a video. Verifica che non ci siano problemi
-     * al server nel momento in cui esso preleva l'albero, e se non ci sono problemi, apre la {@link PrintActivity}.
+     * Il metodo si attiva quando viene premuto il tasto relativo alla stampa dell'albero e, tramite
+     * il metodo {@code loadTree(Runnable onLoaded)}, apre la {@link PrintActivity}.
      */
     private void setButtonTablePrint() {
-        buttonTablePrint.setOnClickListener(view -> {
-            progressBar.setVisibility(View.VISIBLE);
-            if (ConnectionUtils.absentConnection(this)) {
-                ConnectionUtils.lostConnection(TablesActivity.this);
-            } else {
-                String result;
-                switch (ID) {
-                    case FROM_DB:
-                        result = Client.getInstance().learnTreeFromDb(spinner.getSelectedItem().toString());
-                        switch (result) {
-                            case Client.DATA_ERROR:
-                                ConnectionUtils.errorMessage(TablesActivity.this, R.string.error_dataerror);
-                                break;
-                            case Client.TABLE_NOT_FOUND:
-                                ConnectionUtils.errorMessage(TablesActivity.this, R.string.error_tablenotfound);
-                                break;
-                            case Client.OK:
-                                PrintActivity.openPrintActivity(TablesActivity.this);
-                                break;
-                            default:
-                                break;
-                        }
-                        break;
-
-                    case FROM_FILE:
-                        result = Client.getInstance().getTreeFromFile(spinner.getSelectedItem().toString());
-                        if (result.equals(Client.FILE_NOT_FOUND)) {
-                            ConnectionUtils.errorMessage(TablesActivity.this, R.string.error_filenotfound);
-                        } else if (result.equals(Client.OK)) {
-                            PrintActivity.openPrintActivity(TablesActivity.this);
-                        }
-                        break;
-
-                    default:
-                        break;
-                }
-            }
-        });
+        buttonTablePrint.setOnClickListener(view -> loadTree(() -> PrintActivity.openPrintActivity(TablesActivity.this)));
     }
 
     /**
-     * Il metodo si attiva quando viene premuto il tasto relativo alla predizione dell'albero. Se la
-     * connessione è assente, viene mostrato un messaggio a video. Verifica che non ci siano problemi
-     * al server nel momento in cui esso preleva l'albero, e se non ci sono problemi, apre la {@link PredictActivity}.
+     * Il metodo si attiva quando viene premuto il tasto relativo alla predizione dell'albero e, tramite
+     * il metodo {@code loadTree(Runnable onLoaded)}, apre la {@link PredictActivity}.
      */
     private void setButtonTablePredict() {
-        buttonTablePredict.setOnClickListener(view -> {
-            progressBar.setVisibility(View.VISIBLE);
-            if (ConnectionUtils.absentConnection(this)) {
-                ConnectionUtils.lostConnection(TablesActivity.this);
-            } else {
-                String result;
-                switch (ID) {
-                    case FROM_DB:
-                        result = Client.getInstance().learnTreeFromDb(spinner.getSelectedItem().toString());
-                        switch (result) {
-                            case Client.DATA_ERROR:
-                                ConnectionUtils.errorMessage(TablesActivity.this, R.string.error_dataerror);
-                                break;
-                            case Client.TABLE_NOT_FOUND:
-                                ConnectionUtils.errorMessage(TablesActivity.this, R.string.error_tablenotfound);
-                                break;
-                            case Client.OK:
-                                PredictActivity.openPredictActivity(TablesActivity.this);
-                                break;
-                            default:
-                                break;
-                        }
-                        break;
-
-                    case FROM_FILE:
-                        result = Client.getInstance().getTreeFromFile(spinner.getSelectedItem().toString());
-                        if (result.equals(Client.FILE_NOT_FOUND)) {
-                            ConnectionUtils.errorMessage(TablesActivity.this, R.string.error_filenotfound);
-                        } else if (result.equals(Client.OK)) {
-                            PredictActivity.openPredictActivity(TablesActivity.this);
-                        }
-                        break;
-
-                    default:
-                        break;
+        buttonTablePredict.setOnClickListener(view -> loadTree(() -> PredictActivity.openPredictActivity(TablesActivity.this)));
+    }
+
+    /**
+     * Chiede al server di apprendere l'albero dalla tabella selezionata oppure di prelevarlo dal file
+     * selezionato. Se la connessione è assente, viene mostrato un messaggio a video. Verifica che non
+     * ci siano problemi al server nel momento in cui esso preleva l'albero, e se non ci sono problemi,
+     * esegue {@code onLoaded}. Durante l'attesa della risposta i tasti vengono disabilitati.
+     * @param onLoaded Azione da eseguire quando il server ha caricato l'albero.
+     */
+    private void loadTree(Runnable onLoaded) {
+        String selected = picker.getSelected();
+        if (selected == null) {
+            return;
+        }
+        progressBar.setVisibility(View.VISIBLE);
+        if (offline) {
+            setButtonsEnabled(false);
+            AndroidClient.getInstance().openCachedTree(cacheSource(), selected, opened -> {
+                if (isFinishing()) {
+                    return;
+                }
+                progressBar.setVisibility(View.INVISIBLE);
+                buttonTablePredict.setEnabled(true);
+                if (opened) {
+                    onLoaded.run();
+                } else {
+                    ConnectionUtils.errorMessage(TablesActivity.this, R.string.error_filenotfound);
                 }
+            });
+            return;
+        }
+        if (ConnectionUtils.absentConnection(this)) {
+            ConnectionUtils.lostConnection(TablesActivity.this);
+            return;
+        }
+        setButtonsEnabled(false);
+        Callback<String> callback = result -> {
+            if (isFinishing()) {
+                return;
             }
-        });
+            setButtonsEnabled(true);
+            if (result == null) {
+                ConnectionUtils.lostConnection(TablesActivity.this);
+                return;
+            }
+            switch (result) {
+                case Client.DATA_ERROR:
+                    ConnectionUtils.errorMessage(TablesActivity.this, R.string.error_dataerror);
+                    break;
+                case Client.TABLE_NOT_FOUND:
+                    ConnectionUtils.errorMessage(TablesActivity.this, R.string.error_tablenotfound);
+                    break;
+                case Client.FILE_NOT_FOUND:
+                    ConnectionUtils.errorMessage(TablesActivity.this, R.string.error_filenotfound);
+                    break;
+                case Client.OK:
+                    onLoaded.run();
+                    break;
+                default:
+                    break;
+            }
+        };
+        if (ID == FROM_DB) {
+            AndroidClient.getInstance().learnTreeFromDb(selected, callback);
+        } else if (ID == FROM_FILE) {
+            AndroidClient.getInstance().getTreeFromFile(selected, callback);
+        }
+    }
+
+    /**
+     * Abilita o disabilita i tasti di stampa e di predizione.
+     * @param enabled {@code true} per abilitare i tasti, {@code false} per disabilitarli.
+     */
+    private void setButtonsEnabled(boolean enabled) {
+        buttonTablePrint.setEnabled(enabled);
+        buttonTablePredict.setEnabled(enabled);
     }
 
     /**
@@ -253,4 +348,14 @@ public class TablesActivity extends AppCompatActivity {
     protected void onPostResume() {
         super.onPostResume();
     }
+
+    /**
+     * Il metodo si attiva quando l'activity viene distrutta. Annulla il filtro della lista ancora in
+     * attesa, in modo che non venga applicato a un adapter non più visualizzato.
+     */
+    @Override
+    protected void onDestroy() {
+        handler.removeCallbacks(applyFilter);
+        super.onDestroy();
+    }
 }
@@ -0,0 +1,250 @@
+package com.fralav.rtminer;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.fralav.rtminer.client.Callback;
+import com.fralav.rtminer.client.TreeBranch;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * La classe mostra in una {@link RecyclerView} l'albero come una lista di nodi espandibili, rientrati
+ * in base alla loro profondità. Toccando un nodo di split, i suoi figli vengono mostrati o nascosti:
+ * se non sono ancora stati scaricati, il sottoalbero del nodo viene richiesto solo in quel momento,
+ * in modo che esplorare un ramo non richieda di scaricare l'intero albero.
+ */
+public class TreeBrowserAdapter extends RecyclerView.Adapter<TreeBrowserAdapter.Holder> {
+
+    /**
+     * Scarica i sottoalberi dei nodi espansi.
+     */
+    private final SubtreeLoader loader;
+
+    /**
+     * Riceve i sottoalberi scaricati, {@code null} se si è verificato un errore.
+     */
+    private final Callback<TreeBranch> listener;
+
+    /**
+     * Nodi mostrati, nell'ordine della visita in preordine dei rami espansi.
+     */
+    private final List<Row> rows = new ArrayList<>();
+
+    /**
+     * Inizializza gli attributi d'istanza con quelli passati in input.
+     * @param loader Scarica i sottoalberi dei nodi espansi.
+     * @param listener Riceve ogni sottoalbero scaricato, {@code null} se si è verificato un errore.
+     */
+    public TreeBrowserAdapter(SubtreeLoader loader, Callback<TreeBranch> listener) {
+        this.loader = loader;
+        this.listener = listener;
+    }
+
+    /**
+     * Mostra l'albero a partire dalla radice specificata, espandendola.
+     * @param root Radice dell'albero, con i figli già scaricati.
+     */
+    public void setRoot(TreeBranch root) {
+        rows.clear();
+        rows.add(new Row(root));
+        notifyDataSetChanged();
+        expand(0);
+    }
+
+    /**
+     * Restituisce {@code true} se è già stata mostrata la radice dell'albero.
+     * @return {@code true} se la lista non è vuota.
+     */
+    public boolean hasRoot() {
+        return !rows.isEmpty();
+    }
+
+    /**
+     * Mostra o nasconde i figli del nodo nella posizione specificata.
+     * @param position Posizione del nodo nella lista.
+     */
+    private void toggle(int position) {
+        Row row = rows.get(position);
+        if (row.node.isLeaf() || row.loading) {
+            return;
+        }
+        if (row.expanded) {
+            collapse(position);
+        } else if (row.node.getChildren() != null) {
+            expand(position);
+        } else {
+            row.loading = true;
+            notifyItemChanged(position);
+            loader.load(row.node.getPath(), subtree -> {
+                row.loading = false;
+                if (subtree != null) {
+                    row.node = subtree.withBranch(row.node.getBranch());
+                }
+                int current = rows.indexOf(row);
+                if (current >= 0) {
+                    notifyItemChanged(current);
+                    if (subtree != null) {
+                        expand(current);
+                    }
+                }
+                listener.onResult(subtree);
+            });
+        }
+    }
+
+    /**
+     * Mostra i figli già scaricati del nodo nella posizione specificata, subito dopo il nodo.
+     * @param position Posizione del nodo nella lista.
+     */
+    private void expand(int position) {
+        Row row = rows.get(position);
+        List<TreeBranch> children = row.node.getChildren();
+        if (children == null || children.isEmpty()) {
+            return;
+        }
+        row.expanded = true;
+        List<Row> inserted = new ArrayList<>(children.size());
+        for (TreeBranch child : children) {
+            inserted.add(new Row(child));
+        }
+        rows.addAll(position + 1, inserted);
+        notifyItemChanged(position);
+        notifyItemRangeInserted(position + 1, inserted.size());
+    }
+
+    /**
+     * Nasconde tutti i discendenti del nodo nella posizione specificata.
+     * @param position Posizione del nodo nella lista.
+     */
+    private void collapse(int position) {
+        Row row = rows.get(position);
+        row.expanded = false;
+        int depth = row.node.getDepth();
+        int end = position + 1;
+        while (end < rows.size() && rows.get(end).node.getDepth() > depth) {
+            end++;
+        }
+        rows.subList(position + 1, end).clear();
+        notifyItemChanged(position);
+        notifyItemRangeRemoved(position + 1, end - position - 1);
+    }
+
+    @NonNull
+    @Override
+    public Holder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.print_line_layout, parent, false);
+        return new Holder((TextView) view);
+    }
+
+    /**
+     * Mostra il nodo nella posizione specificata, rientrato in base alla sua profondità e preceduto
+     * da un simbolo che indica se i suoi figli sono mostrati.
+     * @param holder Elemento della lista.
+     * @param position Posizione del nodo nella lista.
+     */
+    @Override
+    public void onBindViewHolder(@NonNull Holder holder, int position) {
+        Row row = rows.get(position);
+        TreeBranch node = row.node;
+        StringBuilder text = new StringBuilder();
+        text.append(node.isLeaf() ? "•  " : row.expanded ? "▾  " : "▸  ");
+        if (!node.getBranch().isEmpty()) {
+            text.append(node.getBranch()).append(": ");
+        }
+        text.append(node.getLabel());
+        if (row.loading) {
+            text.append("  ").append(holder.text.getContext().getString(R.string.name_loading));
+        }
+        holder.text.setText(text);
+        int indent = holder.text.getResources().getDimensionPixelSize(R.dimen.tree_indent);
+        holder.text.setPadding(holder.padding + node.getDepth() * indent, holder.text.getPaddingTop(),
+                holder.text.getPaddingRight(), holder.text.getPaddingBottom());
+    }
+
+    @Override
+    public int getItemCount() {
+        return rows.size();
+    }
+
+    /**
+     * L'interfaccia scarica il sottoalbero di un nodo.
+     */
+    public interface SubtreeLoader {
+
+        /**
+         * Scarica il sottoalbero che ha come radice il nodo specificato.
+         * @param path Percorso del nodo a partire dalla radice.
+         * @param callback Riceve il sottoalbero, {@code null} se si è verificato un errore.
+         */
+        void load(int[] path, Callback<TreeBranch> callback);
+    }
+
+    /**
+     * La classe rappresenta un nodo mostrato nella lista.
+     */
+    private static class Row {
+
+        /**
+         * Nodo mostrato, sostituito dal suo sottoalbero quando questo viene scaricato.
+         */
+        TreeBranch node;
+
+        /**
+         * {@code true} se i figli del nodo sono mostrati.
+         */
+        boolean expanded;
+
+        /**
+         * {@code true} mentre il sottoalbero del nodo viene scaricato.
+         */
+        boolean loading;
+
+        /**
+         * Inizializza gli attributi d'istanza con quelli passati in input.
+         * @param node Nodo mostrato.
+         */
+        Row(TreeBranch node) {
+            this.node = node;
+        }
+    }
+
+    /**
+     * La classe rappresenta un elemento della lista, che mostra o nasconde i figli del proprio nodo
+     * quando viene toccato.
+     */
+    class Holder extends RecyclerView.ViewHolder {
+
+        /**
+         * Vista che mostra il nodo.
+         */
+        final TextView text;
+
+        /**
+         * Margine sinistro del layout, al quale si aggiunge il rientro del nodo.
+         */
+        final int padding;
+
+        /**
+         * Inizializza gli attributi d'istanza con quelli passati in input.
+         * @param text Vista che mostra il nodo.
+         */
+        Holder(TextView text) {
+            super(text);
+            this.text = text;
+            this.padding = text.getPaddingLeft();
+            text.setOnClickListener(view -> {
+                int position = getAdapterPosition();
+                if (position != RecyclerView.NO_POSITION) {
+                    toggle(position);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.fralav.rtminer.client.protocol;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.LinkedList;
+
+/**
+ * La classe simula, sull'interfaccia di loopback, un server che supporta il protocollo a frame:
+ * concorda con il client la versione del protocollo, senza compressione, e il codec proposto dal
+ * client, poi risponde a ogni richiesta con la stessa lista di nomi, come farebbe il task
+ * {@link Protocol#TASK_GET_TABLES_FROM_DB}. Serve a misurare il tempo di andata e ritorno delle
+ * richieste senza dipendere dal server reale. Ogni connessione viene servita da un thread dedicato.
+ */
+class EchoServer implements Closeable {
+
+    /**
+     * Socket che accetta le connessioni.
+     */
+    private final ServerSocket server;
+
+    /**
+     * Lista di nomi restituita a ogni richiesta.
+     */
+    private final LinkedList<String> names = new LinkedList<>();
+
+    /**
+     * Crea il socket su una porta libera dell'interfaccia di loopback e avvia il thread che accetta le
+     * connessioni.
+     * @param listSize Numero di nomi restituiti a ogni richiesta.
+     * @throws IOException Se non è possibile creare il socket.
+     */
+    EchoServer(int listSize) throws IOException {
+        for (int i = 0; i < listSize; i++) {
+            names.add("tabella_" + i);
+        }
+        server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::accept, "EchoServer-Accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Restituisce la porta sulla quale il server è in ascolto.
+     * @return Porta del server.
+     */
+    int getPort() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * Corpo del thread che accetta le connessioni, finché il socket non viene chiuso.
+     */
+    private void accept() {
+        while (!server.isClosed()) {
+            try {
+                Socket socket = server.accept();
+                Thread worker = new Thread(() -> serve(socket), "EchoServer-Worker");
+                worker.setDaemon(true);
+                worker.start();
+            } catch (IOException ignored) {
+                // Il socket è stato chiuso.
+            }
+        }
+    }
+
+    /**
+     * Concorda il protocollo con il client e risponde alle sue richieste, finché la connessione non
+     * viene chiusa.
+     * @param socket Socket connesso al client.
+     */
+    private void serve(Socket socket) {
+        try (Socket client = socket) {
+            client.setTcpNoDelay(true);
+            CountingOutputStream output = new CountingOutputStream(client.getOutputStream());
+            CountingInputStream input = new CountingInputStream(client.getInputStream());
+            ObjectOutputStream out = new ObjectOutputStream(output);
+            out.flush();
+            ObjectInputStream in = new ObjectInputStream(input);
+            in.readObject();
+            out.writeObject(Protocol.PROTOCOL_VERSION);
+            out.flush();
+            int version = (Integer) in.readObject();
+            out.writeObject(version);
+            out.flush();
+            if (version >= Protocol.PROTOCOL_COMPRESSION) {
+                in.readObject();
+                out.writeObject(-1);
+                out.flush();
+            }
+            int codec = Protocol.CODEC_JAVA;
+            if (version >= Protocol.PROTOCOL_CODEC) {
+                codec = (Integer) in.readObject();
+                out.writeObject(codec);
+                out.flush();
+            }
+            FrameCodec frames = codec == Protocol.CODEC_BINARY
+                    ? new BinaryFrameCodec(input, output, new CodecStats(), null)
+                    : new ObjectFrameCodec(in, out, input, output, new CodecStats(),
+                    new StreamGovernor(StreamGovernor.DEFAULT_MAX_MESSAGES, StreamGovernor.DEFAULT_MAX_BYTES));
+            while (true) {
+                Frame request = frames.read();
+                frames.write(new Frame(request.getId(), Frame.RESPONSE, request.getTask(), names));
+            }
+        } catch (IOException | ClassNotFoundException | RuntimeException ignored) {
+            // Il client ha chiuso la connessione.
+        }
+    }
+
+    /**
+     * Chiude il socket, e quindi il server. Le connessioni già stabilite terminano quando il client le
+     * chiude.
+     * @throws IOException Se si verifica un errore durante la chiusura.
+     */
+    @Override
+    public void close() throws IOException {
+        server.close();
+    }
+}
@@ -0,0 +1,119 @@
+package com.fralav.rtminer.client.protocol;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * La classe collega uno stream di output a uno stream di input in memoria, in modo da misurare i
+ * codec senza alcun accesso alla rete. I byte scritti vengono letti nello stesso ordine; quando
+ * sono stati letti tutti, il buffer viene riutilizzato dall'inizio. Non è sincronizzata: la
+ * scrittura e la lettura devono avvenire nello stesso thread, e ogni lettura deve trovare già
+ * scritti i byte che richiede.
+ */
+class MemoryPipe {
+
+    /**
+     * Byte scritti e non ancora letti, dalla posizione {@code head} alla posizione {@code tail}.
+     */
+    private byte[] buffer = new byte[64 * 1024];
+
+    /**
+     * Posizione del prossimo byte da leggere.
+     */
+    private int head;
+
+    /**
+     * Posizione del prossimo byte da scrivere.
+     */
+    private int tail;
+
+    /**
+     * Stream che scrive nel buffer.
+     */
+    private final OutputStream output = new OutputStream() {
+        @Override
+        public void write(int b) {
+            ensureCapacity(1);
+            buffer[tail++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            ensureCapacity(len);
+            System.arraycopy(b, off, buffer, tail, len);
+            tail += len;
+        }
+    };
+
+    /**
+     * Stream che legge dal buffer.
+     */
+    private final InputStream input = new InputStream() {
+        @Override
+        public int read() {
+            if (head == tail) {
+                return -1;
+            }
+            int b = buffer[head++] & 0xFF;
+            rewind();
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (head == tail) {
+                return -1;
+            }
+            int n = Math.min(len, tail - head);
+            System.arraycopy(buffer, head, b, off, n);
+            head += n;
+            rewind();
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return tail - head;
+        }
+    };
+
+    /**
+     * Restituisce lo stream che scrive nel buffer.
+     * @return {@code output}
+     */
+    OutputStream getOutputStream() {
+        return output;
+    }
+
+    /**
+     * Restituisce lo stream che legge dal buffer.
+     * @return {@code input}
+     */
+    InputStream getInputStream() {
+        return input;
+    }
+
+    /**
+     * Ingrandisce il buffer, se necessario, in modo che possa contenere altri {@code length} byte.
+     * @param length Numero di byte da scrivere.
+     */
+    private void ensureCapacity(int length) {
+        if (tail + length > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(tail + length, buffer.length * 2));
+        }
+    }
+
+    /**
+     * Riporta le posizioni all'inizio del buffer quando tutti i byte scritti sono stati letti.
+     */
+    private void rewind() {
+        if (head == tail) {
+            head = 0;
+            tail = 0;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.fralav.rtminer.client.protocol;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Il benchmark misura il tempo di andata e ritorno di una richiesta tra il client e un
+ * {@link EchoServer} sull'interfaccia di loopback, per ogni combinazione di codec e di trasporto:
+ * {@link #call()} attende ogni risposta prima di inviare la richiesta successiva, come fanno le
+ * schermate dell'app, mentre {@link #pipelined()} invia più richieste senza attendere, come la
+ * predizione a blocchi, e ne riporta il tempo medio.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RoundTripBenchmark {
+
+    /**
+     * Numero di richieste inviate senza attendere le risposte da {@link #pipelined()}.
+     */
+    private static final int PIPELINE = 64;
+
+    /**
+     * Tempo massimo di attesa di una risposta, in secondi.
+     */
+    private static final long TIMEOUT = 10;
+
+    /**
+     * Codec proposto al server: {@code java} oppure {@code binary}.
+     */
+    @Param({"java", "binary"})
+    public String codec;
+
+    /**
+     * Trasporto della connessione: {@code socket} oppure {@code nio}.
+     */
+    @Param({"socket", "nio"})
+    public String transport;
+
+    /**
+     * Numero di nomi della lista restituita dal server.
+     */
+    @Param({"20"})
+    public int listSize;
+
+    /**
+     * Server con il quale comunica il client.
+     */
+    private EchoServer server;
+
+    /**
+     * Connessione con il server.
+     */
+    private Connection connection;
+
+    /**
+     * Avvia il server e stabilisce la connessione.
+     * @throws IOException Se non è possibile connettersi al server.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        server = new EchoServer(listSize);
+        ConnectionOptions options = new ConnectionOptions(5000);
+        options.setCodec("binary".equals(codec) ? Protocol.CODEC_BINARY : Protocol.CODEC_JAVA);
+        options.setNioTransport("nio".equals(transport));
+        connection = Connection.open("127.0.0.1", server.getPort(), options, true);
+    }
+
+    /**
+     * Chiude la connessione e il server.
+     * @throws IOException Se si verifica un errore durante la chiusura.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        connection.close();
+        server.close();
+    }
+
+    /**
+     * Invia una richiesta e ne attende la risposta.
+     * @return Risposta del server.
+     * @throws Exception Se la richiesta non riceve risposta.
+     */
+    @Benchmark
+    public Frame call() throws Exception {
+        Replies replies = new Replies(1);
+        connection.call(Protocol.TASK_GET_TABLES_FROM_DB, new Object[0], replies);
+        return replies.await();
+    }
+
+    /**
+     * Invia {@link #PIPELINE} richieste senza attendere le risposte, poi le attende tutte.
+     * @return Ultima risposta ricevuta.
+     * @throws Exception Se una richiesta non riceve risposta.
+     */
+    @Benchmark
+    @OperationsPerInvocation(PIPELINE)
+    public Frame pipelined() throws Exception {
+        Replies replies = new Replies(PIPELINE);
+        for (int i = 0; i < PIPELINE; i++) {
+            connection.call(Protocol.TASK_GET_TABLES_FROM_DB, new Object[0], replies);
+        }
+        return replies.await();
+    }
+
+    /**
+     * La classe attende un numero prefissato di risposte.
+     */
+    private static class Replies implements ResponseHandler {
+
+        /**
+         * Viene decrementato a ogni risposta.
+         */
+        private final CountDownLatch latch;
+
+        /**
+         * Ultima risposta ricevuta.
+         */
+        private volatile Frame last;
+
+        /**
+         * Primo errore ricevuto, {@code null} se non si sono verificati errori.
+         */
+        private volatile IOException error;
+
+        /**
+         * Inizializza gli attributi d'istanza con quelli passati in input.
+         * @param count Numero di risposte da attendere.
+         */
+        Replies(int count) {
+            latch = new CountDownLatch(count);
+        }
+
+        @Override
+        public void onResponse(Frame response) {
+            last = response;
+            latch.countDown();
+        }
+
+        @Override
+        public void onError(IOException e) {
+            error = e;
+            latch.countDown();
+        }
+
+        /**
+         * Attende tutte le risposte.
+         * @return Ultima risposta ricevuta.
+         * @throws IOException Se si è verificato un errore o le risposte non arrivano in tempo.
+         * @throws InterruptedException Se il thread viene interrotto durante l'attesa.
+         */
+        Frame await() throws IOException, InterruptedException {
+            if (!latch.await(TIMEOUT, TimeUnit.SECONDS)) {
+                throw new IOException("Risposte non ricevute entro " + TIMEOUT + " secondi");
+            }
+            if (error != null) {
+                throw error;
+            }
+            return last;
+        }
+    }
+}
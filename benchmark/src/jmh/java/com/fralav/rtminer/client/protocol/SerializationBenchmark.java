@@ -0,0 +1,202 @@
+package com.fralav.rtminer.client.protocol;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Il benchmark misura il tempo di scrittura e rilettura dei messaggi che il client scambia con il
+ * server: gli ID dei task ({@link Integer}), i nomi delle tabelle e dei file ({@link String}) e le
+ * loro liste ({@link LinkedList}). Ogni messaggio attraversa uno stream in memoria:
+ * <ul>
+ *     <li>{@link #newStreams()}: con stream nuovi, come il primo messaggio di una connessione, che
+ *     comprende l'intestazione dello stream e le descrizioni delle classi;</li>
+ *     <li>{@link #legacyStream()}: con gli stessi stream per tutta la misura, come il protocollo
+ *     originale, azzerati ogni {@link StreamGovernor#DEFAULT_MAX_MESSAGES} messaggi;</li>
+ *     <li>{@link #objectCodec()} e {@link #binaryCodec()}: come frame di risposta dei due codec del
+ *     protocollo a frame.</li>
+ * </ul>
+ * I messaggi vengono scelti a rotazione da un insieme di messaggi diversi, in modo che la
+ * serializzazione Java non li sostituisca con un riferimento a un oggetto già scritto, tranne per gli
+ * ID dei task che, come nel client, sono sempre gli stessi oggetti.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SerializationBenchmark {
+
+    /**
+     * Numero di messaggi diversi scritti a rotazione.
+     */
+    private static final int MESSAGES = 1024;
+
+    /**
+     * Numero di nomi delle liste.
+     */
+    private static final int LIST_SIZE = 100;
+
+    /**
+     * Tipo di messaggio: {@code integer}, {@code string} oppure {@code list}.
+     */
+    @Param({"integer", "string", "list"})
+    public String message;
+
+    /**
+     * Messaggi scritti a rotazione.
+     */
+    private Object[] messages;
+
+    /**
+     * Posizione del prossimo messaggio da scrivere.
+     */
+    private int next;
+
+    /**
+     * Stream di output del protocollo originale.
+     */
+    private ObjectOutputStream legacyOut;
+
+    /**
+     * Stream di input del protocollo originale.
+     */
+    private ObjectInputStream legacyIn;
+
+    /**
+     * Messaggi scritti dall'ultimo azzeramento di {@code legacyOut}.
+     */
+    private int legacyWritten;
+
+    /**
+     * Codec a oggetti, che scrive e legge sullo stesso stream in memoria.
+     */
+    private FrameCodec objectCodec;
+
+    /**
+     * Codec binario, che scrive e legge sullo stesso stream in memoria.
+     */
+    private FrameCodec binaryCodec;
+
+    /**
+     * Prepara i messaggi e gli stream.
+     * @throws IOException Se non è possibile creare gli stream.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        messages = new Object[MESSAGES];
+        for (int i = 0; i < MESSAGES; i++) {
+            switch (message) {
+                case "integer":
+                    messages[i] = Protocol.TASK_GET_TABLES_FROM_DB + i % Protocol.TASK_PREDICT_ANSWER;
+                    break;
+                case "string":
+                    messages[i] = "tabella_" + i;
+                    break;
+                case "list":
+                    LinkedList<String> names = new LinkedList<>();
+                    for (int j = 0; j < LIST_SIZE; j++) {
+                        names.add("tabella_" + i + "_" + j);
+                    }
+                    messages[i] = names;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Messaggio sconosciuto: " + message);
+            }
+        }
+
+        MemoryPipe legacy = new MemoryPipe();
+        legacyOut = new ObjectOutputStream(legacy.getOutputStream());
+        legacyOut.flush();
+        legacyIn = new ObjectInputStream(legacy.getInputStream());
+
+        MemoryPipe object = new MemoryPipe();
+        CountingOutputStream output = new CountingOutputStream(object.getOutputStream());
+        CountingInputStream input = new CountingInputStream(object.getInputStream());
+        ObjectOutputStream out = new ObjectOutputStream(output);
+        out.flush();
+        ObjectInputStream in = new ObjectInputStream(input);
+        objectCodec = new ObjectFrameCodec(in, out, input, output, new CodecStats(),
+                new StreamGovernor(StreamGovernor.DEFAULT_MAX_MESSAGES, StreamGovernor.DEFAULT_MAX_BYTES));
+
+        MemoryPipe binary = new MemoryPipe();
+        binaryCodec = new BinaryFrameCodec(binary.getInputStream(), binary.getOutputStream(),
+                new CodecStats(), null);
+    }
+
+    /**
+     * Restituisce il prossimo messaggio da scrivere.
+     * @return Messaggio.
+     */
+    private Object nextMessage() {
+        Object value = messages[next];
+        next = (next + 1) % MESSAGES;
+        return value;
+    }
+
+    /**
+     * Scrive e rilegge il messaggio con stream nuovi.
+     * @return Messaggio riletto.
+     * @throws Exception Se la serializzazione non riesce.
+     */
+    @Benchmark
+    public Object newStreams() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(nextMessage());
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            return in.readObject();
+        }
+    }
+
+    /**
+     * Scrive e rilegge il messaggio con gli stream del protocollo originale.
+     * @return Messaggio riletto.
+     * @throws Exception Se la serializzazione non riesce.
+     */
+    @Benchmark
+    public Object legacyStream() throws Exception {
+        legacyOut.writeObject(nextMessage());
+        if (++legacyWritten == StreamGovernor.DEFAULT_MAX_MESSAGES) {
+            legacyOut.reset();
+            legacyWritten = 0;
+        }
+        legacyOut.flush();
+        return legacyIn.readObject();
+    }
+
+    /**
+     * Scrive e rilegge il messaggio come frame di risposta del codec a oggetti.
+     * @return Frame riletto.
+     * @throws IOException Se la serializzazione non riesce.
+     */
+    @Benchmark
+    public Frame objectCodec() throws IOException {
+        objectCodec.write(new Frame(next, Frame.RESPONSE, Protocol.TASK_GET_TABLES_FROM_DB, nextMessage()));
+        return objectCodec.read();
+    }
+
+    /**
+     * Scrive e rilegge il messaggio come frame di risposta del codec binario.
+     * @return Frame riletto.
+     * @throws IOException Se la codifica non riesce.
+     */
+    @Benchmark
+    public Frame binaryCodec() throws IOException {
+        binaryCodec.write(new Frame(next, Frame.RESPONSE, Protocol.TASK_GET_TABLES_FROM_DB, nextMessage()));
+        return binaryCodec.read();
+    }
+}
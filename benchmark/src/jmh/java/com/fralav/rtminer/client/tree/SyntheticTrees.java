@@ -0,0 +1,140 @@
+package com.fralav.rtminer.client.tree;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * La classe costruisce alberi completi di forma prefissata e le righe con le quali interrogarli. Il
+ * nodo di ogni livello esegue lo split sull'attributo con lo stesso indice: se i figli sono due lo
+ * split è continuo, altrimenti è discreto, con i valori {@code v0}, {@code v1}, ... Le soglie, i
+ * valori di predizione e le righe sono casuali, ma dipendono solo dal seme.
+ */
+final class SyntheticTrees {
+
+    /**
+     * La classe non deve essere istanziata.
+     */
+    private SyntheticTrees() {
+    }
+
+    /**
+     * Costruisce un albero completo.
+     * @param fanOut Numero di figli di ogni nodo di split, almeno {@code 2}.
+     * @param depth Numero di livelli di split, ovvero numero di attributi.
+     * @param seed Seme dei valori casuali.
+     * @return Albero con {@code (fanOut^(depth+1)-1)/(fanOut-1)} nodi.
+     */
+    static FlatTree complete(int fanOut, int depth, long seed) {
+        List<String> attributes = new ArrayList<>();
+        for (int i = 0; i < depth; i++) {
+            attributes.add("a" + i);
+        }
+        Preorder preorder = new Preorder(fanOut, depth, new Random(seed));
+        preorder.visit(0);
+        return FlatTree.fromPreorder(attributes, toInts(preorder.childCount),
+                toInts(preorder.splitAttribute), toDoubles(preorder.threshold), preorder.splitValues,
+                toDoubles(preorder.prediction), preorder.questions);
+    }
+
+    /**
+     * Costruisce le righe con le quali interrogare un albero costruito da {@link #complete}, una
+     * dopo l'altra nello stesso array. I valori degli attributi discreti sono già codificati tramite
+     * {@link FlatTree#encode(int, String)}.
+     * @param tree Albero da interrogare.
+     * @param fanOut Numero di figli di ogni nodo di split dell'albero.
+     * @param rows Numero di righe.
+     * @param seed Seme dei valori casuali.
+     * @return Valori delle righe.
+     */
+    static double[] rows(FlatTree tree, int fanOut, int rows, long seed) {
+        Random random = new Random(seed);
+        int columns = tree.getAttributes().size();
+        double[] values = new double[rows * columns];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = fanOut == 2
+                    ? random.nextDouble()
+                    : tree.encode(i % columns, "v" + random.nextInt(fanOut));
+        }
+        return values;
+    }
+
+    /**
+     * Converte una lista di interi in un array.
+     * @param list Lista di interi.
+     * @return Array con gli stessi valori.
+     */
+    private static int[] toInts(List<Integer> list) {
+        int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+
+    /**
+     * Converte una lista di numeri reali in un array.
+     * @param list Lista di numeri reali.
+     * @return Array con gli stessi valori.
+     */
+    private static double[] toDoubles(List<Double> list) {
+        double[] array = new double[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+
+    /**
+     * La classe raccoglie la visita in preordine dell'albero, nel formato richiesto da
+     * {@link FlatTree#fromPreorder}.
+     */
+    private static class Preorder {
+        private final int fanOut;
+        private final int depth;
+        private final Random random;
+        private final List<Integer> childCount = new ArrayList<>();
+        private final List<Integer> splitAttribute = new ArrayList<>();
+        private final List<Double> threshold = new ArrayList<>();
+        private final List<Double> prediction = new ArrayList<>();
+        private final List<String> splitValues = new ArrayList<>();
+        private final List<String> questions = new ArrayList<>();
+
+        /**
+         * Inizializza gli attributi d'istanza con quelli passati in input.
+         * @param fanOut Numero di figli di ogni nodo di split.
+         * @param depth Numero di livelli di split.
+         * @param random Generatore dei valori casuali.
+         */
+        Preorder(int fanOut, int depth, Random random) {
+            this.fanOut = fanOut;
+            this.depth = depth;
+            this.random = random;
+        }
+
+        /**
+         * Aggiunge alla visita il nodo del livello specificato e il suo sottoalbero.
+         * @param level Livello del nodo, {@code 0} per la radice.
+         */
+        void visit(int level) {
+            if (level == depth) {
+                childCount.add(0);
+                splitAttribute.add(-1);
+                threshold.add(Double.NaN);
+                prediction.add(random.nextDouble() * 100);
+                return;
+            }
+            childCount.add(fanOut);
+            splitAttribute.add(level);
+            threshold.add(fanOut == 2 ? random.nextDouble() : Double.NaN);
+            prediction.add(Double.NaN);
+            questions.add("a" + level + "?");
+            for (int i = 0; fanOut != 2 && i < fanOut; i++) {
+                splitValues.add("v" + i);
+            }
+            for (int i = 0; i < fanOut; i++) {
+                visit(level + 1);
+            }
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.fralav.rtminer.client.tree;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Il benchmark misura il tempo di predizione di una riga con le diverse rappresentazioni locali
+ * dell'albero, su alberi completi di forma diversa: la visita dei nodi di {@link FlatTree} e di
+ * {@link MappedTree}, la catena di predicati di {@link CompiledTree} e la valutazione per colonne di
+ * {@link ColumnarScorer}. Ogni invocazione valuta {@link #ROWS} righe e il tempo riportato è quello
+ * medio di una riga. Il valutatore per colonne viene confrontato anche con {@link BatchScorer} su un
+ * solo thread, che valuta le stesse righe per righe con lo stesso array delle predizioni.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(TreeBenchmark.ROWS)
+public class TreeBenchmark {
+
+    /**
+     * Numero di righe valutate a ogni invocazione.
+     */
+    static final int ROWS = 4096;
+
+    /**
+     * Forma dell'albero, nel formato {@code figli x livelli}: gli split continui hanno due figli,
+     * quelli discreti di più. Tutti gli alberi hanno al più circa 130.000 nodi.
+     */
+    @Param({"2x8", "2x16", "4x8", "8x5", "16x4"})
+    public String shape;
+
+    /**
+     * Albero scaricato dal server.
+     */
+    private FlatTree flat;
+
+    /**
+     * Albero compilato in una catena di predicati.
+     */
+    private CompiledTree compiled;
+
+    /**
+     * Albero letto dal file mappato in memoria.
+     */
+    private MappedTree mapped;
+
+    /**
+     * Valutatore per colonne.
+     */
+    private ColumnarScorer columnar;
+
+    /**
+     * Valutatore per righe, su un solo thread.
+     */
+    private BatchScorer batch;
+
+    /**
+     * File nel quale viene salvato l'albero mappato.
+     */
+    private File file;
+
+    /**
+     * Righe da valutare, una dopo l'altra.
+     */
+    private double[] rows;
+
+    /**
+     * Righe da valutare, come tabella per righe.
+     */
+    private RowTable table;
+
+    /**
+     * Righe da valutare, per colonne.
+     */
+    private ColumnTable columns;
+
+    /**
+     * Numero di attributi di ogni riga.
+     */
+    private int width;
+
+    /**
+     * Predizioni dei valutatori per colonne e per righe.
+     */
+    private double[] predictions;
+
+    /**
+     * Costruisce l'albero, le sue rappresentazioni e le righe.
+     * @throws IOException Se non è possibile salvare l'albero mappato.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        String[] parts = shape.split("x");
+        int fanOut = Integer.parseInt(parts[0]);
+        int depth = Integer.parseInt(parts[1]);
+        flat = SyntheticTrees.complete(fanOut, depth, 42);
+        compiled = CompiledTree.compile(flat);
+        columnar = new ColumnarScorer(flat);
+        batch = new BatchScorer(1);
+        file = File.createTempFile("rtminer", ".rtmt");
+        MappedTree.write(flat, file, false);
+        mapped = MappedTree.open(file);
+        width = depth;
+        rows = SyntheticTrees.rows(flat, fanOut, ROWS, 7);
+        table = new RowTable(width, ROWS, rows);
+        columns = ColumnTable.fromRows(table);
+        predictions = new double[ROWS];
+    }
+
+    /**
+     * Arresta il valutatore per righe ed elimina il file dell'albero mappato. Su alcuni sistemi il
+     * file resta in uso finché la mappatura non viene raccolta dal garbage collector, quindi viene
+     * eliminato al più tardi all'uscita.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        batch.close();
+        if (!file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+
+    /**
+     * Valuta le righe visitando i nodi di {@link FlatTree}.
+     * @return Somma delle predizioni.
+     */
+    @Benchmark
+    public double flatTree() {
+        double sum = 0;
+        for (int i = 0; i < ROWS; i++) {
+            sum += flat.predict(rows, i * width);
+        }
+        return sum;
+    }
+
+    /**
+     * Valuta le righe visitando i nodi di {@link MappedTree}.
+     * @return Somma delle predizioni.
+     */
+    @Benchmark
+    public double mappedTree() {
+        double sum = 0;
+        for (int i = 0; i < ROWS; i++) {
+            sum += mapped.predict(rows, i * width);
+        }
+        return sum;
+    }
+
+    /**
+     * Valuta le righe con la catena di predicati di {@link CompiledTree}.
+     * @return Somma delle predizioni.
+     */
+    @Benchmark
+    public double compiledTree() {
+        double sum = 0;
+        for (int i = 0; i < ROWS; i++) {
+            sum += compiled.predict(rows, i * width);
+        }
+        return sum;
+    }
+
+    /**
+     * Valuta le righe per colonne con {@link ColumnarScorer}.
+     * @return Predizioni.
+     */
+    @Benchmark
+    public double[] columnarScorer() {
+        columnar.score(columns, predictions);
+        return predictions;
+    }
+
+    /**
+     * Valuta le righe una alla volta con {@link BatchScorer}, su un solo thread.
+     * @return Predizioni.
+     * @throws InterruptedException Se il thread viene interrotto.
+     */
+    @Benchmark
+    public double[] batchScorer() throws InterruptedException {
+        return batch.score(flat, table, predictions).getPredictions();
+    }
+}
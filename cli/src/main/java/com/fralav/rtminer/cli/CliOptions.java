@@ -0,0 +1,312 @@
+package com.fralav.rtminer.cli;
+
+import com.fralav.rtminer.client.protocol.Protocol;
+import com.fralav.rtminer.client.protocol.ServerEndpoint;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * La classe raccoglie le opzioni della riga di comando: i server da contattare, le opzioni delle
+ * connessioni e i comandi da eseguire. Le opzioni vengono lette dagli argomenti nella forma
+ * {@code --nome valore}; i comandi vengono letti da uno script, indicato come ultimo argomento, da
+ * una o più opzioni {@code --exec} oppure, in loro assenza, dallo standard input.
+ */
+public class CliOptions {
+
+    /**
+     * Indirizzo IP del server.
+     */
+    private String host = "127.0.0.1";
+
+    /**
+     * Porta del server.
+     */
+    private int port = 8080;
+
+    /**
+     * Server equivalenti specificati con {@code --servers}, nella forma {@code indirizzo:porta}
+     * separati da virgole; {@code null} per utilizzare solo {@code host} e {@code port}.
+     */
+    private String servers;
+
+    /**
+     * Cartella nella quale salvare gli alberi scaricati, {@code null} per non salvarli.
+     */
+    private File cacheDirectory;
+
+    /**
+     * Codec proposto al server.
+     */
+    private int codec = Protocol.CODEC_BINARY;
+
+    /**
+     * {@code true} se la connessione utilizza il trasporto NIO.
+     */
+    private boolean nio;
+
+    /**
+     * Soglia di compressione proposta al server, negativa per non comprimere; {@code null} per il
+     * valore predefinito del client.
+     */
+    private Integer compressionThreshold;
+
+    /**
+     * Tempo massimo di attesa di una risposta, in millisecondi.
+     */
+    private long timeoutMillis = 60000;
+
+    /**
+     * {@code true} se la prima riga dei file CSV contiene i nomi degli attributi.
+     */
+    private boolean header;
+
+    /**
+     * {@code true} se lo script prosegue anche dopo un comando fallito.
+     */
+    private boolean keepGoing;
+
+    /**
+     * {@code true} se gli esempi vengono predetti sul computer con l'albero compilato anziché
+     * visitandone i nodi.
+     */
+    private boolean compiled;
+
+    /**
+     * {@code true} se vengono scritti anche i messaggi informativi del client.
+     */
+    private boolean verbose;
+
+    /**
+     * Comandi specificati con {@code --exec}.
+     */
+    private final List<String> commands = new ArrayList<>();
+
+    /**
+     * Script dal quale leggere i comandi, {@code null} se i comandi sono specificati con
+     * {@code --exec} o vengono letti dallo standard input.
+     */
+    private File script;
+
+    /**
+     * Legge le opzioni dagli argomenti della riga di comando.
+     * @param args Argomenti, nella forma {@code --nome valore}, seguiti facoltativamente dallo script.
+     * @return Opzioni lette.
+     * @throws IllegalArgumentException Se un'opzione non esiste o ha un valore non valido.
+     */
+    public static CliOptions parse(String[] args) {
+        CliOptions options = new CliOptions();
+        for (int i = 0; i < args.length; i++) {
+            String name = args[i];
+            switch (name) {
+                case "--nio":
+                    options.nio = true;
+                    continue;
+                case "--header":
+                    options.header = true;
+                    continue;
+                case "--keep-going":
+                    options.keepGoing = true;
+                    continue;
+                case "--compiled":
+                    options.compiled = true;
+                    continue;
+                case "--verbose":
+                    options.verbose = true;
+                    continue;
+                default:
+                    break;
+            }
+            if (!name.startsWith("--")) {
+                if (i != args.length - 1 || options.script != null) {
+                    throw new IllegalArgumentException("Lo script deve essere l'ultimo argomento: " + name);
+                }
+                options.script = new File(name);
+                continue;
+            }
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Valore mancante per " + name);
+            }
+            String value = args[++i];
+            try {
+                switch (name) {
+                    case "--host":
+                        options.host = value;
+                        break;
+                    case "--port":
+                        options.port = Integer.parseInt(value);
+                        if (options.port < 1 || options.port > 65535) {
+                            throw new IllegalArgumentException("Valore non valido per " + name + ": " + value);
+                        }
+                        break;
+                    case "--servers":
+                        options.servers = value;
+                        break;
+                    case "--cache":
+                        options.cacheDirectory = new File(value);
+                        break;
+                    case "--codec":
+                        options.codec = parseCodec(value);
+                        break;
+                    case "--compression":
+                        options.compressionThreshold = Integer.parseInt(value);
+                        break;
+                    case "--timeout":
+                        options.timeoutMillis = Long.parseLong(value);
+                        if (options.timeoutMillis < 1) {
+                            throw new IllegalArgumentException("Valore non valido per " + name + ": " + value);
+                        }
+                        break;
+                    case "--exec":
+                        options.commands.add(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Opzione sconosciuta: " + name);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Valore non valido per " + name + ": " + value);
+            }
+        }
+        if (options.servers != null) {
+            ServerEndpoint.parseList(options.servers, options.port);
+        }
+        if (options.script != null && !options.commands.isEmpty()) {
+            throw new IllegalArgumentException("Specificare uno script oppure --exec, non entrambi");
+        }
+        return options;
+    }
+
+    /**
+     * Restituisce i server ai quali connettersi: quelli specificati con {@code --servers}, per i
+     * quali la porta predefinita è {@code port}, oppure il solo server {@code host:port}.
+     * @return Server, nell'ordine indicato.
+     */
+    public List<ServerEndpoint> getServers() {
+        return servers != null ? ServerEndpoint.parseList(servers, port)
+                : Collections.singletonList(new ServerEndpoint(host, port));
+    }
+
+    /**
+     * Restituisce l'indirizzo IP del server.
+     * @return {@code host}
+     */
+    public String getHost() {
+        return host;
+    }
+
+    /**
+     * Restituisce la porta del server.
+     * @return {@code port}
+     */
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * Restituisce la cartella nella quale salvare gli alberi scaricati.
+     * @return {@code cacheDirectory}, {@code null} per non salvarli.
+     */
+    public File getCacheDirectory() {
+        return cacheDirectory;
+    }
+
+    /**
+     * Restituisce il codec proposto al server.
+     * @return {@code codec}
+     */
+    public int getCodec() {
+        return codec;
+    }
+
+    /**
+     * Restituisce {@code true} se la connessione utilizza il trasporto NIO.
+     * @return {@code nio}
+     */
+    public boolean isNio() {
+        return nio;
+    }
+
+    /**
+     * Restituisce la soglia di compressione proposta al server.
+     * @return {@code compressionThreshold}, {@code null} per il valore predefinito del client.
+     */
+    public Integer getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    /**
+     * Restituisce il tempo massimo di attesa di una risposta, in millisecondi.
+     * @return {@code timeoutMillis}
+     */
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    /**
+     * Restituisce {@code true} se la prima riga dei file CSV contiene i nomi degli attributi.
+     * @return {@code header}
+     */
+    public boolean hasHeader() {
+        return header;
+    }
+
+    /**
+     * Restituisce {@code true} se lo script prosegue anche dopo un comando fallito.
+     * @return {@code keepGoing}
+     */
+    public boolean isKeepGoing() {
+        return keepGoing;
+    }
+
+    /**
+     * Restituisce {@code true} se gli esempi vengono predetti con l'albero compilato.
+     * @return {@code compiled}
+     */
+    public boolean isCompiled() {
+        return compiled;
+    }
+
+    /**
+     * Restituisce {@code true} se vengono scritti anche i messaggi informativi del client.
+     * @return {@code verbose}
+     */
+    public boolean isVerbose() {
+        return verbose;
+    }
+
+    /**
+     * Restituisce i comandi specificati con {@code --exec}.
+     * @return {@code commands}
+     */
+    public List<String> getCommands() {
+        return Collections.unmodifiableList(commands);
+    }
+
+    /**
+     * Restituisce lo script dal quale leggere i comandi.
+     * @return {@code script}, {@code null} se i comandi sono specificati con {@code --exec} o vengono
+     * letti dallo standard input.
+     */
+    public File getScript() {
+        return script;
+    }
+
+    /**
+     * Legge il nome del codec.
+     * @param value {@code java} oppure {@code binary}.
+     * @return Costante {@code CODEC_*} di {@link Protocol}.
+     * @throws IllegalArgumentException Se il codec non esiste.
+     */
+    private static int parseCodec(String value) {
+        switch (value) {
+            case "java":
+                return Protocol.CODEC_JAVA;
+            case "binary":
+                return Protocol.CODEC_BINARY;
+            default:
+                throw new IllegalArgumentException("Codec sconosciuto: " + value);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.fralav.rtminer.cli;
+
+import com.fralav.rtminer.client.Platform;
+
+import java.io.PrintStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * La classe collega il client alla riga di comando: i risultati delle operazioni vengono consegnati
+ * in un unico thread, che sostituisce l'{@code UI Thread} di Android, e i messaggi vengono scritti
+ * sullo standard error.
+ */
+class ConsolePlatform implements Platform {
+
+    /**
+     * Thread nel quale vengono consegnati i risultati, uno alla volta e nell'ordine in cui sono stati
+     * accodati.
+     */
+    private final ExecutorService mainExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "RTMiner-Main");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Stream sul quale scrivere i messaggi.
+     */
+    private final PrintStream log;
+
+    /**
+     * {@code true} se vengono scritti anche i messaggi informativi.
+     */
+    private final boolean verbose;
+
+    /**
+     * Inizializza gli attributi d'istanza con quelli passati in input.
+     * @param log Stream sul quale scrivere i messaggi.
+     * @param verbose {@code true} per scrivere anche i messaggi informativi.
+     */
+    ConsolePlatform(PrintStream log, boolean verbose) {
+        this.log = log;
+        this.verbose = verbose;
+    }
+
+    @Override
+    public void post(Runnable action) {
+        mainExecutor.execute(action);
+    }
+
+    @Override
+    public void logError(String message) {
+        log.println("Client: " + message);
+    }
+
+    @Override
+    public void logInfo(String message) {
+        if (verbose) {
+            log.println("Client: " + message);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.fralav.rtminer.cli;
+
+import com.fralav.rtminer.client.Client;
+import com.fralav.rtminer.client.protocol.Protocol;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * La classe avvia il client dalla riga di comando, senza Android, ed esegue i comandi descritti in
+ * {@link ScriptRunner}: in questo modo gli alberi possono essere aggiornati e gli esempi predetti
+ * da script pianificati, e il codice del client può essere analizzato con gli strumenti di una JVM
+ * qualsiasi. Ad esempio, il comando
+ * {@code gradlew :cli:run --args="--host 10.0.0.5 --cache alberi --exec 'learn vendite' --exec structure"}
+ * apprende l'albero della tabella {@code vendite} e lo salva nella cartella {@code alberi}. Con
+ * {@code --servers 10.0.0.5:8080,10.0.0.6:8080} il client si connette al più veloce dei server
+ * indicati e passa a un altro se quello corrente si interrompe.
+ * <p>
+ * Il processo termina con codice {@code 0} se tutti i comandi sono stati eseguiti, {@code 1} se
+ * almeno un comando è fallito e {@code 2} se le opzioni o lo script non sono validi.
+ */
+public class RTMinerCli {
+
+    /**
+     * Esegue i comandi con le opzioni specificate dalla riga di comando.
+     * @param args Opzioni e script, descritti da {@link CliOptions#parse(String[])}.
+     * @throws InterruptedException Se il thread viene interrotto.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        CliOptions options;
+        try {
+            options = CliOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+            return;
+        }
+        ConsolePlatform platform = new ConsolePlatform(System.err, options.isVerbose());
+        Client client = new Client(platform);
+        client.setServers(options.getServers());
+        client.setBinaryCodec(options.getCodec() == Protocol.CODEC_BINARY);
+        client.setNioTransport(options.isNio());
+        if (options.getCompressionThreshold() != null) {
+            client.setCompressionThreshold(options.getCompressionThreshold());
+        }
+        if (options.getCacheDirectory() != null) {
+            client.setCacheDirectory(options.getCacheDirectory());
+        }
+        ScriptRunner runner = new ScriptRunner(client, platform, options, System.out, System.err);
+        int failures;
+        try (BufferedReader script = open(options)) {
+            failures = runner.run(script);
+        } catch (IOException e) {
+            System.err.println(String.valueOf(e));
+            System.exit(2);
+            return;
+        }
+        if (!client.shutdown(options.getTimeoutMillis())) {
+            System.err.println("Alcune operazioni non sono terminate entro " + options.getTimeoutMillis() + " ms");
+        }
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    /**
+     * Apre la sorgente dei comandi: lo script, i comandi specificati con {@code --exec} oppure lo
+     * standard input.
+     * @param options Opzioni della riga di comando.
+     * @return Sorgente dei comandi, uno per riga.
+     * @throws IOException Se lo script non può essere aperto.
+     */
+    private static BufferedReader open(CliOptions options) throws IOException {
+        if (options.getScript() != null) {
+            return new BufferedReader(new InputStreamReader(new FileInputStream(options.getScript()),
+                    StandardCharsets.UTF_8));
+        }
+        if (!options.getCommands().isEmpty()) {
+            return new BufferedReader(new StringReader(String.join("\n", options.getCommands())));
+        }
+        return new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,520 @@
+package com.fralav.rtminer.cli;
+
+import com.fralav.rtminer.client.BatchListener;
+import com.fralav.rtminer.client.BatchPrediction;
+import com.fralav.rtminer.client.Callback;
+import com.fralav.rtminer.client.Client;
+import com.fralav.rtminer.client.LocalPrediction;
+import com.fralav.rtminer.client.Platform;
+import com.fralav.rtminer.client.PredictionStep;
+import com.fralav.rtminer.client.tree.BatchScorer;
+import com.fralav.rtminer.client.tree.CompiledTree;
+import com.fralav.rtminer.client.tree.FlatTree;
+import com.fralav.rtminer.client.tree.RowTable;
+import com.fralav.rtminer.client.tree.TreeModel;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * La classe esegue i comandi di uno script, uno per riga, tramite il {@link Client}. Ogni comando
+ * viene avviato nel thread dei risultati della {@link Platform}, come farebbe un'activity, e il
+ * thread dello script ne attende il risultato prima di passare al comando successivo: le operazioni
+ * avvengono quindi nello stesso ordine e con le stesse regole dell'app. Le righe vuote e quelle che
+ * iniziano con {@code #} vengono ignorate.
+ * <p>
+ * I comandi disponibili sono:
+ * <ul>
+ *     <li>{@code tables} e {@code files}: scrivono i nomi delle tabelle del database o dei file
+ *     dell'archivio, uno per riga;</li>
+ *     <li>{@code learn <tabella>} e {@code load <file>}: apprendono l'albero da una tabella o lo
+ *     leggono da un file del server;</li>
+ *     <li>{@code print [file]}: scrive la rappresentazione testuale dell'albero;</li>
+ *     <li>{@code structure}: scarica l'albero e, se è stata indicata una cartella, lo salva per le
+ *     esecuzioni successive;</li>
+ *     <li>{@code predict <figlio>...}: percorre la fase di predizione scegliendo, nodo dopo nodo, i
+ *     figli indicati;</li>
+ *     <li>{@code score <esempi.csv> [predizioni.csv]}: calcola la predizione di ogni esempio del file
+ *     CSV, sul computer se l'albero è stato scaricato, altrimenti sul server a blocchi; con
+ *     {@code --compiled} l'albero scaricato viene prima compilato con {@link CompiledTree};</li>
+ *     <li>{@code reset}: azzera la sessione sul server;</li>
+ *     <li>{@code stats}: scrive i contatori del client.</li>
+ * </ul>
+ */
+class ScriptRunner {
+
+    /**
+     * Client che esegue i comandi.
+     */
+    private final Client client;
+
+    /**
+     * Ambiente del client, nel cui thread vengono avviati i comandi.
+     */
+    private final Platform platform;
+
+    /**
+     * Opzioni della riga di comando.
+     */
+    private final CliOptions options;
+
+    /**
+     * Stream sul quale scrivere i risultati dei comandi.
+     */
+    private final PrintStream out;
+
+    /**
+     * Stream sul quale scrivere gli errori dei comandi.
+     */
+    private final PrintStream err;
+
+    /**
+     * Inizializza gli attributi d'istanza con quelli passati in input.
+     * @param client Client che esegue i comandi.
+     * @param platform Ambiente del client.
+     * @param options Opzioni della riga di comando.
+     * @param out Stream sul quale scrivere i risultati dei comandi.
+     * @param err Stream sul quale scrivere gli errori dei comandi.
+     */
+    ScriptRunner(Client client, Platform platform, CliOptions options, PrintStream out, PrintStream err) {
+        this.client = client;
+        this.platform = platform;
+        this.options = options;
+        this.out = out;
+        this.err = err;
+    }
+
+    /**
+     * Esegue i comandi dello script, interrompendosi al primo comando fallito a meno che le opzioni non
+     * indichino di proseguire.
+     * @param script Sorgente dello script.
+     * @return Numero di comandi falliti.
+     * @throws IOException Se si verifica un errore di lettura dello script.
+     * @throws InterruptedException Se il thread viene interrotto.
+     */
+    int run(BufferedReader script) throws IOException, InterruptedException {
+        int failures = 0;
+        int lineNumber = 0;
+        String line;
+        while ((line = script.readLine()) != null) {
+            lineNumber++;
+            String command = line.trim();
+            if (command.isEmpty() || command.startsWith("#")) {
+                continue;
+            }
+            try {
+                execute(command.split("\\s+"));
+            } catch (IOException | IllegalArgumentException e) {
+                failures++;
+                err.println("Riga " + lineNumber + " (" + command + "): " + e.getMessage());
+                if (!options.isKeepGoing()) {
+                    break;
+                }
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * Esegue un comando.
+     * @param words Nome del comando seguito dai suoi argomenti.
+     * @throws IOException Se il comando fallisce.
+     * @throws InterruptedException Se il thread viene interrotto.
+     * @throws IllegalArgumentException Se il comando non esiste o ha argomenti non validi.
+     */
+    private void execute(String[] words) throws IOException, InterruptedException {
+        switch (words[0]) {
+            case "tables":
+                arguments(words, 0, 0);
+                list(require(await(connected(client::getTablesFromDb))), Client.NO_TABLES_FOUND);
+                break;
+            case "files":
+                arguments(words, 0, 0);
+                list(require(await(connected(client::getFilesFromArchive))), Client.NO_FILES_FOUND);
+                break;
+            case "learn":
+                arguments(words, 1, 1);
+                outcome(require(await(connected(callback -> client.learnTreeFromDb(words[1], callback)))));
+                break;
+            case "load":
+                arguments(words, 1, 1);
+                outcome(require(await(connected(callback -> client.getTreeFromFile(words[1], callback)))));
+                break;
+            case "print":
+                arguments(words, 0, 1);
+                print(require(await(connected(client::printTree))), words.length > 1 ? new File(words[1]) : null);
+                break;
+            case "structure":
+                arguments(words, 0, 0);
+                structure();
+                break;
+            case "predict":
+                predict(Arrays.copyOfRange(words, 1, words.length));
+                break;
+            case "score":
+                arguments(words, 1, 2);
+                score(new File(words[1]), words.length > 2 ? new File(words[2]) : null);
+                break;
+            case "reset":
+                arguments(words, 0, 0);
+                await((Callback<Boolean> callback) -> {
+                    client.resetSession();
+                    callback.onResult(true);
+                });
+                break;
+            case "stats":
+                arguments(words, 0, 0);
+                out.print(client.getDiagnostics());
+                break;
+            default:
+                throw new IllegalArgumentException("Comando sconosciuto: " + words[0]);
+        }
+    }
+
+    /**
+     * Scrive una lista di nomi, uno per riga.
+     * @param names Nomi ricevuti dal server.
+     * @param none Stringa con la quale il server indica che la lista è vuota.
+     */
+    private void list(LinkedList<String> names, String none) {
+        if (names.size() == 1 && none.equals(names.getFirst())) {
+            return;
+        }
+        for (String name : names) {
+            out.println(name);
+        }
+    }
+
+    /**
+     * Verifica l'esito dell'apprendimento o della lettura di un albero.
+     * @param answer Esito ricevuto dal server.
+     * @throws IOException Se il server non ha caricato l'albero.
+     */
+    private void outcome(String answer) throws IOException {
+        if (!Client.OK.equals(answer)) {
+            throw new IOException("Il server ha risposto " + answer);
+        }
+        out.println(answer);
+    }
+
+    /**
+     * Scrive la rappresentazione testuale dell'albero.
+     * @param text Rappresentazione testuale dell'albero.
+     * @param file File nel quale scriverla, {@code null} per lo standard output.
+     * @throws IOException Se si verifica un errore di scrittura.
+     */
+    private void print(String text, File file) throws IOException {
+        if (file == null) {
+            out.println(text);
+            return;
+        }
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            writer.write(text);
+        }
+    }
+
+    /**
+     * Scarica l'albero e ne scrive le dimensioni.
+     * @throws IOException Se il server non restituisce l'albero.
+     * @throws InterruptedException Se il thread viene interrotto.
+     */
+    private void structure() throws IOException, InterruptedException {
+        TreeModel tree = await(connected(client::getTreeStructure));
+        if (tree == null) {
+            throw new IOException("Il server non ha restituito l'albero");
+        }
+        out.println(tree.size() + " nodi, attributi " + tree.getAttributes());
+    }
+
+    /**
+     * Percorre la fase di predizione scegliendo i figli indicati e ne scrive le domande e il valore di
+     * predizione. Come in {@code PredictActivity}, la fase di predizione avviene sul computer se il
+     * server restituisce l'albero, altrimenti con il protocollo interattivo.
+     * @param answers Indici dei figli da scegliere, uno per ogni domanda.
+     * @throws IOException Se si verifica un errore o le risposte non corrispondono alle domande.
+     * @throws InterruptedException Se il thread viene interrotto.
+     */
+    private void predict(String[] answers) throws IOException, InterruptedException {
+        TreeModel tree = await(connected(client::getTreeStructure));
+        LocalPrediction local = tree != null ? new LocalPrediction(tree) : null;
+        PredictionStep step = local != null ? local.start() : require(await(client::startPredictionMode));
+        int next = 0;
+        while (!step.isLeaf()) {
+            out.println(step.getQuestion());
+            if (next >= answers.length) {
+                throw new IOException("Manca la risposta alla domanda " + (next + 1));
+            }
+            int child = child(answers[next++], step.getChildren());
+            step = local != null ? local.answer(child)
+                    : require(await(callback -> client.answerPrediction(child, callback)));
+        }
+        if (next < answers.length) {
+            throw new IOException("Risposte in eccesso: la predizione è terminata dopo " + next + " domande");
+        }
+        out.println(step.getPrediction());
+    }
+
+    /**
+     * Calcola la predizione di ogni esempio di un file CSV. Se il server restituisce l'albero, le
+     * predizioni vengono calcolate in parallelo sul computer tramite {@link BatchScorer}, visitando i
+     * nodi dell'albero oppure, se richiesto dalle opzioni, con l'albero compilato; altrimenti
+     * gli esempi vengono inviati al server con {@link Client#predictBatch(List, BatchListener)}.
+     * @param input File CSV degli esempi.
+     * @param output File nel quale scrivere le predizioni, una per riga, {@code null} per lo standard
+     *               output.
+     * @throws IOException Se si verifica un errore di lettura, di scrittura o di comunicazione.
+     * @throws InterruptedException Se il thread viene interrotto.
+     */
+    private void score(File input, File output) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        TreeModel tree = await(connected(client::getTreeStructure));
+        double[] predictions;
+        if (tree instanceof FlatTree) {
+            RowTable table;
+            try (Reader reader = new InputStreamReader(new FileInputStream(input), StandardCharsets.UTF_8)) {
+                table = RowTable.readCsv(reader, (FlatTree) tree, options.hasHeader());
+            }
+            try (BatchScorer scorer = new BatchScorer()) {
+                predictions = options.isCompiled()
+                        ? scorer.score(CompiledTree.compile((FlatTree) tree), table).getPredictions()
+                        : scorer.score((FlatTree) tree, table).getPredictions();
+            }
+        } else {
+            predictions = scoreOnServer(readRows(input));
+        }
+        if (output == null) {
+            for (double prediction : predictions) {
+                out.println(prediction);
+            }
+            return;
+        }
+        try (PrintWriter writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(output),
+                StandardCharsets.UTF_8))) {
+            for (double prediction : predictions) {
+                writer.println(prediction);
+            }
+        }
+        out.println(predictions.length + " predizioni in "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+    }
+
+    /**
+     * Calcola sul server le predizioni degli esempi, attendendo i blocchi finché ne arrivano entro il
+     * tempo massimo di attesa.
+     * @param rows Esempi da predire.
+     * @return Predizioni degli esempi.
+     * @throws IOException Se il server non completa la predizione.
+     * @throws InterruptedException Se il thread viene interrotto.
+     */
+    private double[] scoreOnServer(List<String[]> rows) throws IOException, InterruptedException {
+        if (rows.isEmpty()) {
+            return new double[0];
+        }
+        BatchReceiver receiver = new BatchReceiver(rows.size());
+        AtomicReference<BatchPrediction> batch = new AtomicReference<>();
+        platform.post(() -> batch.set(client.predictBatch(rows, receiver)));
+        long received = -1;
+        while (!receiver.done.await(options.getTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+            if (receiver.received == received) {
+                platform.post(() -> batch.get().cancel());
+                throw new IOException("Nessun blocco di predizioni entro " + options.getTimeoutMillis() + " ms");
+            }
+            received = receiver.received;
+        }
+        if (!receiver.success) {
+            throw new IOException("Il server non ha completato le predizioni");
+        }
+        return receiver.predictions;
+    }
+
+    /**
+     * Legge gli esempi di un file CSV come stringhe, da inviare al server.
+     * @param input File CSV degli esempi.
+     * @return Valori degli esempi.
+     * @throws IOException Se si verifica un errore di lettura o le righe hanno un numero diverso di
+     * valori.
+     */
+    private List<String[]> readRows(File input) throws IOException {
+        List<String[]> rows = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(input),
+                StandardCharsets.UTF_8))) {
+            int lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if ((options.hasHeader() && lineNumber == 1) || line.trim().isEmpty()) {
+                    continue;
+                }
+                String[] values = line.split(",", -1);
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = values[i].trim();
+                }
+                if (!rows.isEmpty() && values.length != rows.get(0).length) {
+                    throw new IOException("Riga " + lineNumber + ": attesi " + rows.get(0).length + " valori");
+                }
+                rows.add(values);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Avvia un'operazione nel thread dei risultati e ne attende il risultato.
+     * @param operation Operazione da avviare, che riceve la {@code callback} del risultato.
+     * @param <T> Tipo del risultato.
+     * @return Primo risultato consegnato alla {@code callback}.
+     * @throws IOException Se il risultato non arriva entro il tempo massimo di attesa.
+     * @throws InterruptedException Se il thread viene interrotto.
+     */
+    private <T> T await(Consumer<Callback<T>> operation) throws IOException, InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicReference<T> result = new AtomicReference<>();
+        platform.post(() -> operation.accept(value -> {
+            if (latch.getCount() > 0) {
+                result.set(value);
+                latch.countDown();
+            }
+        }));
+        if (!latch.await(options.getTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+            throw new IOException("Nessuna risposta entro " + options.getTimeoutMillis() + " ms");
+        }
+        return result.get();
+    }
+
+    /**
+     * Restituisce un'operazione che, prima di quella specificata, stabilisce la connessione con il
+     * server se non è già stabilita, come fa {@code TablesActivity} all'avvio.
+     * @param operation Operazione da eseguire dopo la connessione.
+     * @param <T> Tipo del risultato.
+     * @return Operazione che stabilisce la connessione ed esegue {@code operation}; se la connessione
+     * non può essere stabilita, il risultato è {@code null}.
+     */
+    private <T> Consumer<Callback<T>> connected(Consumer<Callback<T>> operation) {
+        return callback -> {
+            if (client.isConnected()) {
+                operation.accept(callback);
+                return;
+            }
+            client.connect(connected -> {
+                if (connected) {
+                    operation.accept(callback);
+                } else {
+                    callback.onResult(null);
+                }
+            });
+        };
+    }
+
+    /**
+     * Verifica che un'operazione abbia restituito un risultato.
+     * @param result Risultato dell'operazione.
+     * @param <T> Tipo del risultato.
+     * @return {@code result}
+     * @throws IOException Se il risultato è {@code null}, cioè se si è verificato un errore di
+     * comunicazione con il server.
+     */
+    private <T> T require(T result) throws IOException {
+        if (result == null) {
+            throw new IOException("Errore di comunicazione con " + client.getServers());
+        }
+        return result;
+    }
+
+    /**
+     * Verifica il numero di argomenti di un comando.
+     * @param words Nome del comando seguito dai suoi argomenti.
+     * @param min Numero minimo di argomenti.
+     * @param max Numero massimo di argomenti.
+     * @throws IllegalArgumentException Se il numero di argomenti non rientra nei limiti.
+     */
+    private static void arguments(String[] words, int min, int max) {
+        int count = words.length - 1;
+        if (count < min || count > max) {
+            throw new IllegalArgumentException("Numero di argomenti non valido per " + words[0] + ": " + count);
+        }
+    }
+
+    /**
+     * Legge l'indice del figlio scelto per il nodo corrente.
+     * @param value Indice del figlio.
+     * @param children Numero di figli del nodo corrente.
+     * @return Indice del figlio.
+     * @throws IllegalArgumentException Se l'indice non è un numero o il nodo non ha quel figlio.
+     */
+    private static int child(String value, int children) {
+        int child;
+        try {
+            child = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Figlio non valido: " + value);
+        }
+        if (child < 0 || child >= children) {
+            throw new IllegalArgumentException("Figlio non valido: " + value + ", il nodo ha " + children + " figli");
+        }
+        return child;
+    }
+
+    /**
+     * La classe raccoglie le predizioni ricevute dal server nel thread dei risultati.
+     */
+    private static class BatchReceiver implements BatchListener {
+
+        /**
+         * Predizioni ricevute, nella posizione dei rispettivi esempi.
+         */
+        private final double[] predictions;
+
+        /**
+         * Viene decrementato al termine della predizione.
+         */
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        /**
+         * Numero di predizioni ricevute.
+         */
+        private volatile long received;
+
+        /**
+         * {@code true} se tutte le predizioni sono state ricevute.
+         */
+        private volatile boolean success;
+
+        /**
+         * Inizializza gli attributi d'istanza a partire dal numero di esempi.
+         * @param rows Numero di esempi da predire.
+         */
+        BatchReceiver(int rows) {
+            this.predictions = new double[rows];
+        }
+
+        @Override
+        public void onChunk(int firstRow, double[] chunk) {
+            System.arraycopy(chunk, 0, predictions, firstRow, chunk.length);
+            received += chunk.length;
+        }
+
+        @Override
+        public void onComplete(boolean success) {
+            this.success = success;
+            done.countDown();
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.fralav.rtminer.client;
+
+/**
+ * L'interfaccia riceve i risultati di una predizione a blocchi avviata con
+ * {@link Client#predictBatch(java.util.List, BatchListener)}. I metodi vengono sempre richiamati
+ * nel thread dei risultati della {@link Platform}, l'{@code UI Thread} in Android, in modo che
+ * l'activity possa mostrare i risultati parziali man mano che arrivano.
+ */
+public interface BatchListener {
+
+    /**
+     * Viene richiamato quando il server ha inviato un blocco di predizioni. Il blocco successivo viene
+     * richiesto al server solo dopo il termine di questo metodo.
+     * @param firstRow Indice del primo esempio del blocco.
+     * @param predictions Predizioni degli esempi del blocco, {@link Double#NaN} se un esempio non
+     *                    ricade in alcun ramo dell'albero.
+     */
+    void onChunk(int firstRow, double[] predictions);
+
+    /**
+     * Viene richiamato al termine della predizione.
+     * @param success {@code true} se tutte le predizioni sono state ricevute, {@code false} se si è
+     *                verificato un errore o se la predizione è stata interrotta.
+     */
+    void onComplete(boolean success);
+}
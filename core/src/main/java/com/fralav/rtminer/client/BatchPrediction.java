@@ -0,0 +1,55 @@
+package com.fralav.rtminer.client;
+
+import com.fralav.rtminer.client.protocol.Protocol;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * La classe rappresenta una predizione a blocchi in corso, avviata con
+ * {@link Client#predictBatch(java.util.List, BatchListener)}, e permette di interromperla: il
+ * {@link BatchListener} non riceve più alcun blocco. Se la predizione è distribuita su più server,
+ * l'oggetto rappresenta la parte inviata al server della sessione e l'interruzione si estende alle
+ * altre parti.
+ */
+public class BatchPrediction extends StreamCall {
+
+    /**
+     * Parti della predizione inviate agli altri server.
+     */
+    private final List<BatchPrediction> shards = new CopyOnWriteArrayList<>();
+
+    /**
+     * Istanzia un oggetto della classe. Viene definito come package-private poiché gli oggetti
+     * vengono creati solo dal {@link Client}.
+     * @param client Client che ha avviato la richiesta.
+     */
+    BatchPrediction(Client client) {
+        super(client, Protocol.TASK_PREDICT_BATCH);
+    }
+
+    /**
+     * Aggiunge una parte della predizione da inviare a un altro server. Se la predizione è già stata
+     * interrotta, anche la nuova parte risulta interrotta.
+     * @return Nuova parte della predizione.
+     */
+    BatchPrediction addShard() {
+        BatchPrediction shard = new BatchPrediction(client);
+        shards.add(shard);
+        if (cancelled) {
+            shard.cancel();
+        }
+        return shard;
+    }
+
+    /**
+     * Interrompe la predizione, comprese le parti inviate agli altri server.
+     */
+    @Override
+    public void cancel() {
+        super.cancel();
+        for (BatchPrediction shard : shards) {
+            shard.cancel();
+        }
+    }
+}
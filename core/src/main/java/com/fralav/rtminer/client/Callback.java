@@ -0,0 +1,18 @@
+package com.fralav.rtminer.client;
+
+/**
+ * L'interfaccia rappresenta l'azione da eseguire al termine di un'operazione asincrona del
+ * {@link Client}. Il metodo {@code onResult} viene sempre richiamato nel thread dei risultati della
+ * {@link Platform}, l'{@code UI Thread} in Android, in modo che l'activity possa aggiornare
+ * direttamente la propria interfaccia.
+ * @param <T> Tipo del risultato dell'operazione.
+ */
+public interface Callback<T> {
+
+    /**
+     * Viene richiamato quando l'operazione è terminata.
+     * @param result Risultato dell'operazione, {@code null} se si è verificato un errore durante la
+     *               comunicazione con il server.
+     */
+    void onResult(T result);
+}
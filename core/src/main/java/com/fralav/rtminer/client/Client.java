@@ -0,0 +1,1984 @@
+package com.fralav.rtminer.client;
+
+import com.fralav.rtminer.client.protocol.CodecStats;
+import com.fralav.rtminer.client.protocol.Connection;
+import com.fralav.rtminer.client.protocol.ConnectionOptions;
+import com.fralav.rtminer.client.protocol.EndpointPool;
+import com.fralav.rtminer.client.protocol.Frame;
+import com.fralav.rtminer.client.protocol.OperationStats;
+import com.fralav.rtminer.client.protocol.Protocol;
+import com.fralav.rtminer.client.protocol.ResponseHandler;
+import com.fralav.rtminer.client.protocol.ServerEndpoint;
+import com.fralav.rtminer.client.protocol.SessionManager;
+import com.fralav.rtminer.client.protocol.SessionStats;
+import com.fralav.rtminer.client.protocol.StreamGovernor;
+import com.fralav.rtminer.client.protocol.StreamHandler;
+import com.fralav.rtminer.client.protocol.TaskRejectedException;
+import com.fralav.rtminer.client.tree.FlatTree;
+import com.fralav.rtminer.client.tree.TreeCache;
+import com.fralav.rtminer.client.tree.TreeModel;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * La classe implementa tutte le funzioni utili alla comunicazione con il server. Non dipende da
+ * Android: i risultati vengono consegnati e i messaggi registrati tramite la {@link Platform} passata
+ * al costruttore, quindi la stessa classe viene utilizzata dall'app, che ne mantiene un'unica istanza,
+ * e dai programmi eseguiti su una JVM qualsiasi.
+ * @author Francesco Lavecchia
+ */
+public class Client {
+
+    /**
+     * Tempo massimo di attesa, in millisecondi, per stabilire la connessione con il server.
+     */
+    private static final int CONNECT_TIMEOUT = 5000;
+
+    /**
+     * Numero massimo di esempi per blocco nelle predizioni a blocchi.
+     */
+    private static final int BATCH_CHUNK_ROWS = 256;
+
+    /**
+     * Numero di blocchi che il server può inviare, nelle predizioni a blocchi, prima che il client ne
+     * abbia mostrati altrettanti.
+     */
+    private static final int BATCH_CREDITS = 4;
+
+    /**
+     * Numero minimo di esempi che ogni server deve predire quando una predizione a blocchi viene
+     * distribuita su più server: sotto questa soglia, il costo di una nuova connessione e del
+     * caricamento dell'albero supera il tempo risparmiato.
+     */
+    private static final int BATCH_SPREAD_ROWS = 4 * BATCH_CHUNK_ROWS;
+
+    /**
+     * Numero massimo di server, oltre a quello della sessione, sui quali distribuire una predizione a
+     * blocchi.
+     */
+    private static final int BATCH_SPREAD_SERVERS = 3;
+
+    /**
+     * Tempo massimo, in millisecondi, per ripetere su un altro server tutte le richieste registrate,
+     * tra le quali l'apprendimento dell'albero.
+     */
+    private static final long REPLAY_TIMEOUT = 60000;
+
+    /**
+     * Numero massimo di righe per blocco nella stampa a blocchi dell'albero.
+     */
+    private static final int PRINT_CHUNK_LINES = 200;
+
+    /**
+     * Numero di blocchi che il server può inviare, nella stampa a blocchi dell'albero, prima che il
+     * client ne abbia mostrati altrettanti.
+     */
+    private static final int PRINT_CREDITS = 4;
+
+    /**
+     * Numero di livelli scaricati a ogni richiesta di un sottoalbero, sotto il nodo richiesto.
+     */
+    private static final int SUBTREE_DEPTH = 3;
+
+    /**
+     * Numero massimo di nodi dei sottoalberi conservati durante l'esplorazione dell'albero.
+     */
+    private static final int SUBTREE_CACHE_NODES = 4096;
+
+    /**
+     * Versione consegnata quando il server rifiuta il task {@link Protocol#TASK_LISTING_VERSION},
+     * distinta dal {@code null} che indica un errore di comunicazione.
+     */
+    private static final Object UNVERSIONED = new Object();
+
+    /**
+     * Pagina consegnata quando il server rifiuta il task {@link Protocol#TASK_LIST_PAGE}, distinta
+     * dal {@code null} che indica un errore di comunicazione.
+     */
+    private static final NamePage UNPAGED = new NamePage(0, 0, Collections.<String>emptyList());
+
+    /**
+     * Tempo predefinito, in millisecondi, per il quale le liste di nomi ricevute dal server vengono
+     * considerate valide senza alcuna verifica.
+     */
+    private static final long LISTING_TTL = 30000;
+
+    /**
+     * Opzioni con le quali vengono stabilite le connessioni con il server.
+     */
+    private final ConnectionOptions options = new ConnectionOptions(CONNECT_TIMEOUT);
+
+    /**
+     * Gestisce la connessione con il server, mantenendola aperta tra un'operazione e l'altra.
+     */
+    private final SessionManager sessionManager = new SessionManager(options);
+
+    /**
+     * Server, tutti equivalenti, ai quali connettersi, con il tempo di andata e ritorno e lo stato di
+     * ognuno.
+     */
+    private final EndpointPool endpoints = new EndpointPool(CONNECT_TIMEOUT);
+
+    /**
+     * Richieste che hanno determinato lo stato della sessione, da ripetere su un altro server se
+     * quello corrente si interrompe.
+     */
+    private final SessionJournal journal = new SessionJournal();
+
+    /**
+     * Vale {@code true} tra {@link #connect(Callback)} e {@link #disconnect()}: se in questo intervallo
+     * la connessione si interrompe, il client si connette a un altro server. Viene utilizzato solo
+     * all'interno del thread di I/O.
+     */
+    private boolean sessionOpen;
+
+    /**
+     * Azioni in attesa che la sessione venga ripristinata su un nuovo server, {@code null} se non è
+     * in corso alcun ripristino. Le richieste accodate durante il ripristino non vengono inviate
+     * finché il nuovo server non ha ripetuto tutte quelle registrate. Viene utilizzato solo
+     * all'interno del thread di I/O.
+     */
+    private List<Continuation<Connection>> restoring;
+
+    /**
+     * Unico thread che comunica con il server. In Android, la comunicazione tramite socket deve
+     * necessariamente avvenire in un thread diverso dall'{@code UI Thread}: tutte le operazioni sul
+     * socket vengono accodate a questo executor, che le esegue una alla volta nell'ordine in cui sono
+     * state richieste. In questo modo nessun thread resta bloccato in attesa del server. Lo stesso
+     * thread interrompe il ripristino di una sessione che supera {@link #REPLAY_TIMEOUT}.
+     */
+    private final ScheduledThreadPoolExecutor ioExecutor = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "RTMiner-IO");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Thread che stabiliscono le connessioni con gli altri server e vi inviano parte degli esempi
+     * delle predizioni a blocchi, senza ritardare il thread di I/O.
+     */
+    private final ExecutorService batchExecutor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "RTMiner-Batch");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Thread che legge e scrive gli alberi salvati sul dispositivo, in modo che gli accessi al disco
+     * non ritardino né l'{@code UI Thread} né la comunicazione con il server.
+     */
+    private final ExecutorService diskExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "RTMiner-Disk");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Alberi salvati sul dispositivo, {@code null} finché non viene impostata la cartella con
+     * {@link #setCacheDirectory(File)}.
+     */
+    private volatile TreeCache treeCache;
+
+    /**
+     * Ambiente nel quale viene eseguito il client, utilizzato per restituire i risultati delle
+     * operazioni nell'{@code UI Thread} e per registrare i messaggi.
+     */
+    private final Platform platform;
+
+    /**
+     * Liste di nomi ricevute dal server. Viene utilizzata solo all'interno dell'{@code UI Thread}.
+     */
+    private final ListingCache listingCache = new ListingCache();
+
+    /**
+     * Tempo, in millisecondi, per il quale le liste di nomi ricevute dal server vengono considerate
+     * valide senza alcuna verifica. Viene utilizzato solo all'interno dell'{@code UI Thread}.
+     */
+    private long listingTtl = LISTING_TTL;
+
+    /**
+     * Elenchi di server, nella forma restituita da {@link #serverKey()}, che non supportano il task
+     * {@link Protocol#TASK_LIST_PAGE}: le pagine vengono estratte sul dispositivo dalla lista completa.
+     * Viene utilizzato solo all'interno dell'{@code UI Thread}.
+     */
+    private final Set<String> unpagedServers = new HashSet<>();
+
+    /**
+     * Elenchi di server, nella forma restituita da {@link #serverKey()}, che non supportano il task
+     * {@link Protocol#TASK_LISTING_VERSION}: le liste di nomi vengono richieste per intero senza
+     * chiederne prima la versione. Viene utilizzato solo all'interno dell'{@code UI Thread}.
+     */
+    private final Set<String> unversionedServers = new HashSet<>();
+
+    /**
+     * Sottoalberi scaricati durante l'esplorazione dell'albero corrente, utilizzati solo all'interno
+     * dell'{@code UI Thread}.
+     */
+    private final SubtreeCache subtreeCache = new SubtreeCache(SUBTREE_CACHE_NODES);
+
+    /**
+     * Albero scaricato dal server con {@link #getTreeStructure(Callback)}, {@code null} se non è
+     * ancora stato scaricato o se l'utente ha scelto un nuovo albero. Viene utilizzato solo
+     * all'interno dell'{@code UI Thread}.
+     */
+    private TreeModel tree;
+
+    /**
+     * Origine dell'albero scelto dall'utente, {@link TreeCache#FROM_DB} o {@link TreeCache#FROM_FILE}.
+     * Viene utilizzata solo all'interno dell'{@code UI Thread}.
+     */
+    private int treeSource;
+
+    /**
+     * Nome della tabella o del file dell'albero scelto dall'utente, {@code null} se l'utente non ha
+     * ancora scelto un albero. Viene utilizzato solo all'interno dell'{@code UI Thread}.
+     */
+    private String treeName;
+
+    /**
+     * Viene incrementato ogni volta che l'albero scaricato non è più valido, in modo da scartare gli
+     * alberi ricevuti in risposta a richieste precedenti.
+     */
+    private int treeGeneration;
+
+    /**
+     * Il server invia questa stringa al client quando un'operazione va a buon fine.
+     */
+    public static final String OK = "ok";
+
+    /**
+     * Il server invia questa stringa al client quando si verifica un errore durante la computazione
+     * dell'oggetto di tipo {@code Data}.
+     */
+    public static final String DATA_ERROR = "dataError";
+
+    /**
+     * Il server invia questa stringa al client quando la tabella selezionata non è presente
+     * all'interno del database.
+     */
+    public static final String TABLE_NOT_FOUND = "tableNotFound";
+
+    /**
+     * Il server invia questa stringa al client quando il file selezionato non è presente
+     * all'interno dell'archivio.
+     */
+    public static final String FILE_NOT_FOUND = "fileNotFound";
+
+    /**
+     * Il server invia questa stringa al client quando nessuna tabella è presente all'interno
+     * del database.
+     */
+    public static final String NO_TABLES_FOUND = "NoTablesFound";
+
+    /**
+     * Il server invia questa stringa al client quando nessun file è presente all'interno
+     * dell'archivio.
+     */
+    public static final String NO_FILES_FOUND = "NoFilesFound";
+
+    /**
+     * Inizializza gli attributi d'istanza con quelli passati in input.
+     * @param platform Ambiente nel quale viene eseguito il client.
+     */
+    public Client(Platform platform) {
+        this.platform = platform;
+        ioExecutor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    /**
+     * Imposta i server ai quali connettersi, tutti equivalenti. Le nuove sessioni vengono stabilite
+     * con il server disponibile dal tempo di andata e ritorno più basso; se il server non risponde
+     * durante la connessione o si interrompe durante la sessione, il client passa al migliore degli
+     * altri. I server già presenti nell'elenco precedente conservano il proprio stato.
+     * @param servers Server, nell'ordine in cui provarli finché non ne è stato misurato il tempo di
+     *                andata e ritorno.
+     */
+    public void setServers(List<ServerEndpoint> servers) {
+        endpoints.setEndpoints(servers);
+    }
+
+    /**
+     * Restituisce i server ai quali connettersi, con il relativo stato.
+     * @return Server, nell'ordine indicato con {@link #setServers(List)}.
+     */
+    public List<ServerEndpoint> getServers() {
+        return endpoints.getEndpoints();
+    }
+
+    /**
+     * Restituisce il server della sessione corrente.
+     * @return Server della connessione corrente, {@code null} se il client non si è ancora connesso.
+     */
+    public ServerEndpoint getCurrentServer() {
+        return sessionManager.getEndpoint();
+    }
+
+    /**
+     * Restituisce {@code true} se il client è connesso al server, {@code false} altrimenti.
+     * @return {@code connected}
+     */
+    public boolean isConnected() {
+        return sessionManager.isConnected();
+    }
+
+    /**
+     * Restituisce i contatori della sessione con il server, utili a misurare quante connessioni
+     * vengono risparmiate riutilizzando la connessione esistente.
+     * @return Contatori della sessione.
+     */
+    public SessionStats getSessionStats() {
+        return sessionManager.getStats();
+    }
+
+    /**
+     * Restituisce, per ogni tipo di messaggio, il numero di messaggi scambiati con il server, la loro
+     * dimensione e il tempo impiegato per codificarli e decodificarli.
+     * @return Contatori dei codec.
+     */
+    public CodecStats getCodecStats() {
+        return options.getCodecStats();
+    }
+
+    /**
+     * Restituisce i tempi delle operazioni: il tempo di connessione e, per ogni task, la
+     * distribuzione dei tempi fino al primo frame della risposta e fino alla sua elaborazione.
+     * @return Tempi delle operazioni.
+     */
+    public OperationStats getOperationStats() {
+        return options.getOperationStats();
+    }
+
+    /**
+     * Restituisce un rapporto testuale con tutti i contatori del client, da mostrare all'utente o da
+     * allegare alle segnalazioni dei problemi.
+     * @return Tempi delle operazioni, contatori della sessione, dei codec e degli stream e, se sono più
+     * di uno, stato dei server.
+     */
+    public String getDiagnostics() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(options.getOperationStats());
+        builder.append(sessionManager.getStats()).append('\n');
+        builder.append(options.getCodecStats());
+        if (endpoints.getEndpoints().size() > 1) {
+            builder.append(endpoints);
+        }
+        StreamGovernor governor = getStreamGovernor();
+        if (governor != null) {
+            builder.append(governor).append('\n');
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Restituisce i contatori degli oggetti trattenuti dagli stream della serializzazione Java della
+     * connessione corrente, e quindi la stima della memoria che la sessione occupa sul client.
+     * @return Contatori degli stream, {@code null} se il client non è connesso o la connessione non
+     * utilizza la serializzazione Java.
+     */
+    public StreamGovernor getStreamGovernor() {
+        Connection current = sessionManager.current();
+        return current != null ? current.getStreamGovernor() : null;
+    }
+
+    /**
+     * Imposta i limiti oltre i quali gli stream della serializzazione Java vengono azzerati alle
+     * connessioni successive, in modo che una sessione lunga non trattenga tutti gli oggetti scambiati.
+     * @param messages Numero massimo di messaggi tra due azzeramenti, almeno {@code 1}.
+     * @param bytes Numero massimo di byte tra due azzeramenti, almeno {@code 1}.
+     */
+    public void setStreamReset(int messages, long bytes) {
+        options.setStreamReset(messages, bytes);
+    }
+
+    /**
+     * Imposta il codec proposto al server alle connessioni successive: il codec binario, predefinito,
+     * oppure la serializzazione Java. I server che non supportano il codec binario utilizzano comunque
+     * la serializzazione Java.
+     * @param binary {@code true} per proporre il codec binario.
+     */
+    public void setBinaryCodec(boolean binary) {
+        options.setCodec(binary ? Protocol.CODEC_BINARY : Protocol.CODEC_JAVA);
+    }
+
+    /**
+     * Imposta il trasporto utilizzato alle connessioni successive: il trasporto NIO, nel quale un unico
+     * thread gestisce le letture e le scritture tramite un selettore, oppure il trasporto basato su
+     * socket, predefinito. Le activity non devono distinguere i due trasporti.
+     * @param nio {@code true} per utilizzare il trasporto NIO.
+     */
+    public void setNioTransport(boolean nio) {
+        options.setNioTransport(nio);
+    }
+
+    /**
+     * Imposta la dimensione minima dei frame da comprimere proposta al server alle connessioni
+     * successive. La compressione viene utilizzata solo con i server che supportano la versione
+     * {@link Protocol#PROTOCOL_COMPRESSION} e il codec binario; i byte risparmiati e il tempo impiegato
+     * sono riportati da {@link #getCodecStats()}.
+     * @param threshold Dimensione minima in byte, negativa per non comprimere.
+     */
+    public void setCompressionThreshold(int threshold) {
+        options.setCompressionThreshold(threshold);
+    }
+
+    /**
+     * Imposta il tempo per il quale le liste delle tabelle e dei file ricevute dal server vengono
+     * mostrate senza alcuna verifica. Trascorso questo tempo, la lista salvata viene comunque mostrata
+     * subito, ma il client verifica in background se è cambiata. Deve essere richiamato all'interno
+     * dell'{@code UI Thread}.
+     * @param millis Tempo in millisecondi, {@code 0} per verificare le liste ogni volta.
+     */
+    public void setListingTtl(long millis) {
+        listingTtl = Math.max(0, millis);
+    }
+
+    /**
+     * Imposta la cartella nella quale salvare gli alberi scaricati dal server, che potranno essere
+     * utilizzati per la fase di predizione anche quando il server non è raggiungibile.
+     * @param directory Cartella privata dell'app.
+     */
+    public void setCacheDirectory(File directory) {
+        treeCache = new TreeCache(directory);
+    }
+
+    /**
+     * Stabilisce, all'interno del thread di I/O, la connessione con il migliore dei server. Se il
+     * client è già connesso a uno dei server e la connessione è ancora valida, questa viene
+     * riutilizzata; altrimenti i server vengono provati dal più veloce, finché uno di essi non accetta
+     * la connessione. Durante una nuova connessione il client negozia con il server la versione del
+     * protocollo, a meno che il server non abbia già dimostrato di utilizzare il protocollo originale.
+     * Se la connessione precedente si è interrotta, sul nuovo server viene ripristinato lo stato della
+     * sessione senza bloccare il thread di I/O. Se i server sono più di uno, fino a
+     * {@link #disconnect()} il client verifica periodicamente quelli esclusi dopo un tentativo fallito.
+     * @param callback Riceve {@code true} se il client è connesso al server, {@code false} altrimenti.
+     *                 Può essere {@code null}.
+     */
+    public void connect(Callback<Boolean> callback) {
+        endpoints.startProbing();
+        ioExecutor.execute(() -> {
+            Continuation<Connection> connected = next -> {
+                sessionOpen = isConnected();
+                deliver(callback, sessionOpen);
+            };
+            Connection previous = sessionManager.current();
+            if (restoring != null || (previous == null && sessionOpen)) {
+                failover(null, connected);
+                return;
+            }
+            Connection current = null;
+            try {
+                current = sessionManager.acquire(endpoints);
+            } catch (IOException e) {
+                platform.logError(String.valueOf(e));
+            }
+            if (current == null || current == previous) {
+                connected.resume(current);
+                return;
+            }
+            restoring = new ArrayList<>();
+            restoring.add(connected);
+            restore(current, journal.getEntries(), endpoints.getEndpoints().size());
+        });
+    }
+
+    /**
+     * Azzera la sessione sul server, in modo che l'utente possa scegliere un nuovo albero, senza
+     * chiudere la connessione quando il protocollo lo permette. L'operazione avviene nel thread di
+     * I/O, dopo l'invio di tutte le richieste precedenti.
+     */
+    public void resetSession() {
+        invalidateTree();
+        ioExecutor.execute(() -> {
+            StreamGovernor governor = getStreamGovernor();
+            journal.clear();
+            sessionManager.reset();
+            platform.logInfo(String.valueOf(sessionManager.getStats()));
+            platform.logInfo(String.valueOf(options.getCodecStats()));
+            if (governor != null) {
+                platform.logInfo(String.valueOf(governor));
+            }
+        });
+    }
+
+    /**
+     * Si occupa di chiudere la connessione con il server. La chiusura avviene nel thread di I/O,
+     * dopo l'invio di tutte le richieste precedenti.
+     */
+    public void disconnect() {
+        invalidateTree();
+        endpoints.stopProbing();
+        ioExecutor.execute(() -> {
+            sessionOpen = false;
+            journal.clear();
+            sessionManager.close();
+            if (restoring != null) {
+                restored(null);
+            }
+        });
+    }
+
+    /**
+     * Chiude la connessione con il server e termina i thread del client, attendendo che le richieste
+     * già inviate siano concluse e che gli alberi scaricati siano salvati sul disco. Viene utilizzato
+     * dai programmi che terminano dopo l'ultima operazione; in seguito il client non può più essere
+     * utilizzato.
+     * @param millis Tempo massimo di attesa, in millisecondi.
+     * @return {@code true} se tutte le operazioni sono terminate entro il tempo specificato.
+     * @throws InterruptedException Se il thread viene interrotto durante l'attesa.
+     */
+    public boolean shutdown(long millis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        disconnect();
+        ioExecutor.shutdown();
+        batchExecutor.shutdownNow();
+        boolean terminated = ioExecutor.awaitTermination(millis, TimeUnit.MILLISECONDS);
+        diskExecutor.shutdown();
+        return diskExecutor.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)
+                && terminated;
+    }
+
+    /**
+     * Chiede al server la lista delle tabelle presenti nel database. Se la lista è già stata ricevuta,
+     * viene restituita subito e, se è trascorso il tempo impostato con {@link #setListingTtl(long)},
+     * viene verificata in background: in questo caso la {@code callback} viene richiamata una seconda
+     * volta, con la nuova lista, solo se la lista è cambiata. Deve essere richiamato all'interno
+     * dell'{@code UI Thread}.
+     * @param callback Riceve la lista delle tabelle del database.
+     */
+    public void getTablesFromDb(Callback<LinkedList<String>> callback) {
+        listing(Protocol.TASK_GET_TABLES_FROM_DB, callback);
+    }
+
+    /**
+     * Chiede al server la lista dei file presenti nell'archivio. La lista viene conservata e
+     * verificata come in {@link #getTablesFromDb(Callback)}. Deve essere richiamato all'interno
+     * dell'{@code UI Thread}.
+     * @param callback Riceve la lista dei file presenti nell'archivio.
+     */
+    public void getFilesFromArchive(Callback<LinkedList<String>> callback) {
+        listing(Protocol.TASK_GET_FILES_FROM_ARCHIVE, callback);
+    }
+
+    /**
+     * Chiede al server una pagina della lista delle tabelle presenti nel database, filtrata sul
+     * server. Se il server non supporta le pagine, la pagina viene estratta sul dispositivo dalla
+     * lista completa, ricevuta con {@link #getTablesFromDb(Callback)}. Deve essere richiamato
+     * all'interno dell'{@code UI Thread}.
+     * @param filter Sottostringa che i nomi devono contenere, vuota per tutte le tabelle.
+     * @param offset Posizione della prima tabella della pagina nella lista filtrata.
+     * @param limit Numero massimo di tabelle della pagina.
+     * @param callback Riceve la pagina; può essere richiamata una seconda volta se la lista completa
+     *                 salvata sul dispositivo risulta cambiata.
+     */
+    public void getTablesPage(String filter, int offset, int limit, Callback<NamePage> callback) {
+        page(Protocol.TASK_GET_TABLES_FROM_DB, NO_TABLES_FOUND, filter, offset, limit, callback);
+    }
+
+    /**
+     * Chiede al server una pagina della lista dei file presenti nell'archivio, filtrata sul server,
+     * come in {@link #getTablesPage(String, int, int, Callback)}. Deve essere richiamato all'interno
+     * dell'{@code UI Thread}.
+     * @param filter Sottostringa che i nomi devono contenere, vuota per tutti i file.
+     * @param offset Posizione del primo file della pagina nella lista filtrata.
+     * @param limit Numero massimo di file della pagina.
+     * @param callback Riceve la pagina.
+     */
+    public void getFilesPage(String filter, int offset, int limit, Callback<NamePage> callback) {
+        page(Protocol.TASK_GET_FILES_FROM_ARCHIVE, NO_FILES_FOUND, filter, offset, limit, callback);
+    }
+
+    /**
+     * Comunica al server di apprendere l'albero dalla tabella del database selezionata in input
+     * restituendone l'esito.
+     * @param table Nome della tabella del database dove risiede il data set.
+     * @param callback Riceve l'esito della computazione.
+     */
+    public void learnTreeFromDb(String table, Callback<String> callback) {
+        invalidateTree();
+        treeSource = TreeCache.FROM_DB;
+        treeName = table;
+        request(Protocol.TASK_LEARN_TREE_FROM_DB, new Object[] {table}, Client::toText, callback);
+    }
+
+    /**
+     * Comunica al server di voler recuperare l'albero specificato in input, precedentemente appreso
+     * e serializzato sul file system del server e ne restituisce l'esito.
+     * @param file Nome del file dove è serializzato l'albero.
+     * @param callback Riceve l'esito della computazione.
+     */
+    public void getTreeFromFile(String file, Callback<String> callback) {
+        invalidateTree();
+        treeSource = TreeCache.FROM_FILE;
+        treeName = file;
+        request(Protocol.TASK_GET_TREE_FROM_FILE, new Object[] {file}, Client::toText, callback);
+    }
+
+    /**
+     * Richiede al server l'albero appreso sotto forma di stringa per poterla stampare a video.
+     * @param callback Riceve l'albero appreso sottoforma di stringa.
+     */
+    public void printTree(Callback<String> callback) {
+        request(Protocol.TASK_PRINT_TREE, new Object[0], Client::toText, callback);
+    }
+
+    /**
+     * Richiede al server la rappresentazione testuale dell'albero una riga alla volta, in blocchi, in
+     * modo che l'activity possa mostrare le prime righe prima di aver ricevuto l'intero albero. Come
+     * nelle predizioni a blocchi, il server può inviare solo un numero limitato di blocchi prima che
+     * l'activity li abbia mostrati. Se il server non supporta il task
+     * {@link Protocol#TASK_PRINT_TREE_STREAM}, l'albero viene richiesto con
+     * {@link #printTree(Callback)} e le sue righe vengono consegnate con un unico blocco. Un blocco che
+     * non può essere letto interrompe la stampa.
+     * @param listener Riceve le righe e l'esito finale.
+     * @return Stampa in corso, che può essere interrotta.
+     */
+    public TreePrintout printTreeStream(PrintListener listener) {
+        TreePrintout printout = new TreePrintout(this);
+        Object[] args = {PRINT_CHUNK_LINES, PRINT_CREDITS};
+        ioExecutor.execute(() -> withSession(false, current -> {
+            if (current == null) {
+                platform.post(() -> listener.onComplete(false));
+                return;
+            }
+            printout.connection = current;
+            try {
+                printout.id = call(current, Protocol.TASK_PRINT_TREE_STREAM, args, new StreamHandler() {
+
+                    /**
+                     * Vale {@code true} dopo il primo blocco ricevuto. Viene utilizzato solo
+                     * all'interno del thread che legge le risposte.
+                     */
+                    private boolean started;
+
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public void onChunk(Frame chunk) {
+                        started = true;
+                        int firstLine;
+                        List<String> lines;
+                        try {
+                            firstLine = (Integer) chunk.getValue(0);
+                            lines = (List<String>) chunk.getValue(1);
+                        } catch (IOException | RuntimeException e) {
+                            platform.logError(String.valueOf(e));
+                            printout.cancel();
+                            return;
+                        }
+                        platform.post(() -> {
+                            if (!printout.cancelled) {
+                                listener.onLines(firstLine, lines);
+                                grantCredit(current, printout);
+                            }
+                        });
+                    }
+
+                    @Override
+                    public void onResponse(Frame end) {
+                        platform.post(() -> listener.onComplete(!printout.cancelled));
+                    }
+
+                    @Override
+                    public void onError(IOException e) {
+                        platform.logError(String.valueOf(e));
+                        if (started) {
+                            platform.post(() -> listener.onComplete(false));
+                        } else {
+                            printWhole(printout, listener);
+                        }
+                    }
+                });
+            } catch (IOException e) {
+                platform.logError(String.valueOf(e));
+                printWhole(printout, listener);
+            }
+        }));
+        return printout;
+    }
+
+    /**
+     * Richiede al server la rappresentazione testuale dell'albero come un'unica stringa, per i server
+     * che non supportano la stampa a blocchi, e ne consegna le righe con un unico blocco.
+     * @param printout Stampa in corso.
+     * @param listener Riceve le righe e l'esito finale.
+     */
+    private void printWhole(TreePrintout printout, PrintListener listener) {
+        printTree(text -> {
+            if (printout.cancelled) {
+                return;
+            }
+            if (text != null) {
+                listener.onLines(0, Arrays.asList(text.split("\\r?\\n", -1)));
+            }
+            listener.onComplete(text != null);
+        });
+    }
+
+    /**
+     * Richiede il sottoalbero che ha come radice il nodo specificato, limitato ai primi livelli, in
+     * modo che l'activity possa mostrare l'albero scaricando solo i rami che l'utente espande. I
+     * sottoalberi ricevuti vengono conservati finché l'utente non sceglie un nuovo albero, scartando
+     * quelli utilizzati meno di recente. Se l'albero è già presente sul dispositivo, il sottoalbero
+     * viene estratto senza alcuno scambio di messaggi; se il server non supporta il task
+     * {@link Protocol#TASK_GET_SUBTREE}, l'albero viene scaricato per intero con
+     * {@link #getTreeStructure(Callback)} e i sottoalberi successivi vengono estratti da questo. Deve
+     * essere richiamato all'interno dell'{@code UI Thread}.
+     * @param path Percorso del nodo, ovvero la posizione del figlio scelto a ogni livello a partire
+     *             dalla radice, vuoto per la radice.
+     * @param callback Riceve il sottoalbero, nel quale i nodi dell'ultimo livello non hanno figli
+     *                 scaricati.
+     */
+    public void getSubtree(int[] path, Callback<TreeBranch> callback) {
+        TreeBranch cached = subtreeCache.get(path);
+        if (cached != null) {
+            deliver(callback, cached);
+            return;
+        }
+        int generation = treeGeneration;
+        Callback<TreeBranch> store = result -> {
+            if (result != null && generation == treeGeneration) {
+                subtreeCache.put(result);
+            }
+            if (callback != null) {
+                callback.onResult(result);
+            }
+        };
+        if (tree != null) {
+            deliver(store, TreeBranch.fromModel(tree, path, SUBTREE_DEPTH));
+            return;
+        }
+        int[] requested = path.clone();
+        request(Protocol.TASK_GET_SUBTREE, new Object[] {requested, SUBTREE_DEPTH},
+                response -> toSubtree(response, requested), result -> {
+                    if (result != null) {
+                        store.onResult(result);
+                        return;
+                    }
+                    getTreeStructure(model -> store.onResult(model != null
+                            ? TreeBranch.fromModel(model, requested, SUBTREE_DEPTH) : null));
+                });
+    }
+
+    /**
+     * Scarica dal server, con un'unica risposta, l'intero albero appreso, in modo che la fase di
+     * predizione possa avvenire sul dispositivo tramite {@link LocalPrediction}. L'albero viene
+     * conservato finché l'utente non sceglie un nuovo albero, quindi le predizioni successive non
+     * richiedono alcuno scambio di messaggi, e viene salvato sul dispositivo per poter essere
+     * utilizzato anche quando il server non è raggiungibile. Se l'albero è già salvato, il client
+     * invia al server la sua impronta e lo scarica di nuovo solo se è cambiato; altrimenti lo legge
+     * dal disco nel thread dedicato, senza occupare il thread che riceve le risposte. Anche l'albero
+     * ricevuto viene costruito nel thread dedicato al disco, poiché la conversione della visita in
+     * preordine cresce con il numero di nodi. Deve essere richiamato all'interno dell'{@code UI Thread}.
+     * @param callback Riceve l'albero appreso, {@code null} se il server non supporta il task
+     *                 {@link Protocol#TASK_GET_TREE_STRUCTURE}: in questo caso la predizione deve
+     *                 avvenire con {@link #startPredictionMode(Callback)}.
+     */
+    public void getTreeStructure(Callback<TreeModel> callback) {
+        if (tree != null) {
+            deliver(callback, tree);
+            return;
+        }
+        int generation = treeGeneration;
+        TreeCache cache = treeCache;
+        String server = serverKey();
+        int source = treeSource;
+        String name = treeName;
+        Callback<TreeModel> store = result -> {
+            if (result != null && generation == treeGeneration) {
+                tree = result;
+            }
+            if (callback != null) {
+                callback.onResult(result);
+            }
+        };
+        if (cache == null || name == null) {
+            request(Protocol.TASK_GET_TREE_STRUCTURE, new Object[0], response -> response,
+                    response -> diskExecutor.execute(() -> deliver(store, buildTree(response))));
+            return;
+        }
+        diskExecutor.execute(() -> {
+            TreeCache.Entry cached = cache.find(server, source, name);
+            Object[] args = cached != null && cached.getFingerprint() != null
+                    ? new Object[] {cached.getFingerprint()} : new Object[0];
+            boolean[] notModified = new boolean[1];
+            request(Protocol.TASK_GET_TREE_STRUCTURE, args, response -> {
+                if (Protocol.NOT_MODIFIED.equals(response.getValue(0))) {
+                    if (cached == null) {
+                        throw new IOException("Nessun albero salvato sul dispositivo");
+                    }
+                    notModified[0] = true;
+                    return null;
+                }
+                return response;
+            }, response -> diskExecutor.execute(() -> {
+                if (!notModified[0]) {
+                    FlatTree result = buildTree(response);
+                    deliver(store, result);
+                    if (result != null) {
+                        storeTree(cache, server, source, name, response, result);
+                    }
+                    return;
+                }
+                TreeModel opened = null;
+                try {
+                    opened = cache.open(cached);
+                } catch (IOException e) {
+                    platform.logError(String.valueOf(e));
+                }
+                deliver(store, opened);
+            }));
+        });
+    }
+
+    /**
+     * Costruisce l'albero contenuto nella risposta del server. Deve essere richiamato all'interno del
+     * thread dedicato al disco.
+     * @param response Frame di risposta, {@code null} se la richiesta non è andata a buon fine.
+     * @return Albero ricevuto, {@code null} se la risposta manca o non è valida.
+     */
+    private FlatTree buildTree(Frame response) {
+        if (response == null) {
+            return null;
+        }
+        try {
+            return toTree(response);
+        } catch (IOException | RuntimeException e) {
+            platform.logError(String.valueOf(e));
+            return null;
+        }
+    }
+
+    /**
+     * Salva sul dispositivo l'albero ricevuto, insieme all'impronta indicata dal server. Deve essere
+     * richiamato all'interno del thread dedicato al disco.
+     * @param cache Alberi salvati sul dispositivo.
+     * @param server Server dal quale è stato scaricato l'albero.
+     * @param source Origine dell'albero, {@link TreeCache#FROM_DB} o {@link TreeCache#FROM_FILE}.
+     * @param name Nome della tabella o del file.
+     * @param response Frame di risposta.
+     * @param result Albero costruito a partire da {@code response}.
+     */
+    private void storeTree(TreeCache cache, String server, int source, String name, Frame response,
+                           FlatTree result) {
+        try {
+            String fingerprint = response.size() > 7 ? String.valueOf(response.getValue(7)) : null;
+            cache.put(server, source, name, fingerprint, result);
+        } catch (IOException e) {
+            platform.logError(String.valueOf(e));
+        }
+    }
+
+    /**
+     * Restituisce i nomi delle tabelle o dei file dei quali è stato salvato un albero scaricato dal
+     * server corrente, in modo che l'utente possa sceglierne uno anche quando il server non è
+     * raggiungibile.
+     * @param source Origine degli alberi, {@link TreeCache#FROM_DB} o {@link TreeCache#FROM_FILE}.
+     * @param callback Riceve i nomi in ordine alfabetico, vuoto se non è stato salvato alcun albero.
+     */
+    public void getCachedTrees(int source, Callback<List<String>> callback) {
+        TreeCache cache = treeCache;
+        String server = serverKey();
+        diskExecutor.execute(() -> deliver(callback, cache != null
+                ? cache.list(server, source) : Collections.<String>emptyList()));
+    }
+
+    /**
+     * Sceglie un albero salvato sul dispositivo, senza alcuno scambio di messaggi con il server:
+     * l'albero viene restituito da {@link #getTreeStructure(Callback)} finché l'utente non ne sceglie
+     * un altro. Deve essere richiamato all'interno dell'{@code UI Thread}.
+     * @param source Origine dell'albero, {@link TreeCache#FROM_DB} o {@link TreeCache#FROM_FILE}.
+     * @param name Nome della tabella o del file.
+     * @param callback Riceve {@code true} se l'albero è stato letto dal disco, {@code false}
+     *                 altrimenti.
+     */
+    public void openCachedTree(int source, String name, Callback<Boolean> callback) {
+        invalidateTree();
+        treeSource = source;
+        treeName = name;
+        int generation = treeGeneration;
+        TreeCache cache = treeCache;
+        String server = serverKey();
+        diskExecutor.execute(() -> {
+            TreeModel result = null;
+            TreeCache.Entry entry = cache != null ? cache.find(server, source, name) : null;
+            if (entry != null) {
+                try {
+                    result = cache.open(entry);
+                } catch (IOException e) {
+                    platform.logError(String.valueOf(e));
+                }
+            }
+            TreeModel opened = result;
+            platform.post(() -> {
+                if (opened != null && generation == treeGeneration) {
+                    tree = opened;
+                }
+                if (callback != null) {
+                    callback.onResult(opened != null);
+                }
+            });
+        });
+    }
+
+    /**
+     * Richiede al server di voler iniziare la fase di predizione e ne riceve il primo passo.
+     * @param callback Riceve il primo passo della fase di predizione.
+     */
+    public void startPredictionMode(Callback<PredictionStep> callback) {
+        request(Protocol.TASK_PREDICT_TREE, new Object[0], Client::toPredictionStep, callback);
+    }
+
+    /**
+     * Comunica al server il figlio scelto dall'utente per il nodo corrente e ne riceve il passo
+     * successivo della fase di predizione.
+     * @param child Indice del figlio scelto dall'utente.
+     * @param callback Riceve il passo successivo della fase di predizione.
+     */
+    public void answerPrediction(int child, Callback<PredictionStep> callback) {
+        request(Protocol.TASK_PREDICT_ANSWER, new Object[] {child}, Client::toPredictionStep, callback);
+    }
+
+    /**
+     * Chiede al server di calcolare la predizione dell'albero per un blocco di esempi. Le predizioni
+     * vengono restituite a blocchi, man mano che il server le calcola; per evitare che i blocchi si
+     * accumulino più velocemente di quanto l'activity riesca a mostrarli, il server può inviarne solo
+     * un numero limitato, e il client ne richiede uno nuovo ogni volta che l'activity ne ha mostrato
+     * uno. Se gli esempi sono molti e sono disponibili altri server, gli esempi vengono suddivisi tra
+     * il server della sessione e gli altri, ognuno dei quali carica lo stesso albero su una propria
+     * connessione; se uno degli altri server non riesce a completare la propria parte, questa viene
+     * calcolata dal server della sessione, e alcuni blocchi possono essere consegnati due volte. Se il
+     * server non supporta il task {@link Protocol#TASK_PREDICT_BATCH}, il {@code listener} riceve
+     * subito un esito negativo.
+     * @param rows Esempi da predire, con i valori degli attributi nello stesso ordine del training
+     *             set; i valori continui sono in notazione decimale.
+     * @param listener Riceve le predizioni e l'esito finale.
+     * @return Predizione in corso, che può essere interrotta.
+     * @throws IllegalArgumentException Se gli esempi non hanno tutti lo stesso numero di valori.
+     */
+    public BatchPrediction predictBatch(List<String[]> rows, BatchListener listener) {
+        int columns = rows.isEmpty() ? 0 : rows.get(0).length;
+        for (String[] row : rows) {
+            if (row.length != columns) {
+                throw new IllegalArgumentException("Gli esempi devono avere " + columns + " valori");
+            }
+        }
+        BatchPrediction batch = new BatchPrediction(this);
+        ioExecutor.execute(() -> withSession(false, current -> {
+            if (current == null) {
+                platform.post(() -> listener.onComplete(false));
+                return;
+            }
+            SessionJournal.Entry setup = journal.getSetup();
+            int helpers = setup != null
+                    ? Math.min(BATCH_SPREAD_SERVERS, rows.size() / BATCH_SPREAD_ROWS - 1) : 0;
+            List<ServerEndpoint> spare = helpers > 0
+                    ? endpoints.spare(sessionManager.getEndpoint(), helpers)
+                    : Collections.<ServerEndpoint>emptyList();
+            BatchMerger merger = new BatchMerger(batch, listener, spare.size() + 1);
+            int size = (rows.size() + spare.size()) / (spare.size() + 1);
+            for (int i = spare.size(); i >= 0; i--) {
+                int offset = i * size;
+                List<String[]> part = rows.subList(offset, Math.min(rows.size(), offset + size));
+                if (i == 0) {
+                    sendBatch(current, batch, columns, part, offset, merger, () -> retryBatch(current, batch,
+                            columns, part, offset, merger), false);
+                } else {
+                    BatchPrediction shard = batch.addShard();
+                    ServerEndpoint endpoint = spare.get(i - 1);
+                    batchExecutor.execute(() -> sendBatchTo(endpoint, setup, shard, columns, part, offset,
+                            merger));
+                }
+            }
+        }));
+        return batch;
+    }
+
+    /**
+     * Invia una parte degli esempi di una predizione a blocchi tramite la connessione specificata.
+     * Se un blocco non può essere letto, la parte viene interrotta con un frame {@link Frame#CANCEL},
+     * poiché il server non riceverebbe più il credito per i blocchi successivi; se il frame
+     * {@link Frame#END} indica un numero di esempi diverso da quelli inviati, la parte non viene
+     * considerata completata. Deve essere richiamato nel thread che utilizza la connessione.
+     * @param connection Connessione con il server.
+     * @param call Parte della predizione alla quale appartengono gli esempi.
+     * @param columns Numero di valori di ogni esempio.
+     * @param rows Esempi della parte.
+     * @param offset Posizione del primo esempio della parte tra tutti gli esempi della predizione.
+     * @param merger Raccoglie i blocchi e gli esiti di tutte le parti.
+     * @param fallback Azione da eseguire nel thread di I/O se la parte non viene completata,
+     *                 {@code null} per consegnare un esito negativo.
+     * @param dedicated {@code true} se la connessione è stata stabilita solo per questa parte e va
+     *                  chiusa al termine.
+     */
+    private void sendBatch(Connection connection, BatchPrediction call, int columns, List<String[]> rows,
+                           int offset, BatchMerger merger, Runnable fallback, boolean dedicated) {
+        LinkedList<String> cells = new LinkedList<>();
+        for (String[] row : rows) {
+            Collections.addAll(cells, row);
+        }
+        Object[] args = {columns, cells, BATCH_CHUNK_ROWS, BATCH_CREDITS};
+        StreamHandler handler = new StreamHandler() {
+            @Override
+            public void onChunk(Frame chunk) {
+                int firstRow;
+                double[] predictions;
+                try {
+                    firstRow = (Integer) chunk.getValue(0);
+                    predictions = (double[]) chunk.getValue(1);
+                } catch (IOException | RuntimeException e) {
+                    platform.logError(String.valueOf(e));
+                    call.cancel();
+                    return;
+                }
+                platform.post(() -> {
+                    if (!call.cancelled) {
+                        merger.onChunk(offset + firstRow, predictions);
+                        grantCredit(connection, call);
+                    }
+                });
+            }
+
+            @Override
+            public void onResponse(Frame end) {
+                if (dedicated) {
+                    closeQuietly(connection);
+                }
+                boolean complete;
+                try {
+                    complete = ((Number) end.getValue(0)).intValue() == rows.size();
+                } catch (IOException | RuntimeException e) {
+                    complete = false;
+                }
+                if (!complete) {
+                    platform.logError("Il server non ha predetto tutti i " + rows.size() + " esempi");
+                }
+                boolean success = complete;
+                platform.post(() -> merger.onComplete(success && !call.cancelled));
+            }
+
+            @Override
+            public void onError(IOException e) {
+                platform.logError(String.valueOf(e));
+                failBatch(connection, call, merger, fallback, dedicated);
+            }
+        };
+        call.connection = connection;
+        try {
+            call.id = call(connection, Protocol.TASK_PREDICT_BATCH, args, handler);
+        } catch (IOException e) {
+            platform.logError(String.valueOf(e));
+            failBatch(connection, call, merger, fallback, dedicated);
+        }
+    }
+
+    /**
+     * Gestisce una parte di una predizione a blocchi che non è stata completata: esegue l'azione
+     * alternativa, se presente, oppure consegna un esito negativo.
+     * @param connection Connessione sulla quale era in corso la parte.
+     * @param call Parte della predizione.
+     * @param merger Raccoglie gli esiti di tutte le parti.
+     * @param fallback Azione da eseguire nel thread di I/O, {@code null} per consegnare un esito
+     *                 negativo.
+     * @param dedicated {@code true} se la connessione va chiusa.
+     */
+    private void failBatch(Connection connection, BatchPrediction call, BatchMerger merger, Runnable fallback,
+                           boolean dedicated) {
+        if (dedicated) {
+            closeQuietly(connection);
+        }
+        if (fallback != null && !call.cancelled) {
+            ioExecutor.execute(fallback);
+        } else {
+            platform.post(() -> merger.onComplete(false));
+        }
+    }
+
+    /**
+     * Ripete la parte di una predizione a blocchi assegnata al server della sessione, se la
+     * connessione si è interrotta, tramite la connessione con un altro server. Viene richiamato nel
+     * thread di I/O.
+     * @param failed Connessione sulla quale era in corso la parte.
+     * @param call Parte della predizione.
+     * @param columns Numero di valori di ogni esempio.
+     * @param rows Esempi della parte.
+     * @param offset Posizione del primo esempio della parte.
+     * @param merger Raccoglie i blocchi e gli esiti di tutte le parti.
+     */
+    private void retryBatch(Connection failed, BatchPrediction call, int columns, List<String[]> rows,
+                            int offset, BatchMerger merger) {
+        if (failed.isOpen()) {
+            platform.post(() -> merger.onComplete(false));
+            return;
+        }
+        failover(failed, next -> {
+            if (next != null) {
+                sendBatch(next, call, columns, rows, offset, merger, null, false);
+            } else {
+                platform.post(() -> merger.onComplete(false));
+            }
+        });
+    }
+
+    /**
+     * Stabilisce una connessione con un altro server, vi carica l'albero della sessione e invia una
+     * parte degli esempi di una predizione a blocchi. Se il server non è raggiungibile, non riesce a
+     * caricare l'albero o non completa la parte, questa viene inviata al server della sessione. Viene
+     * richiamato in uno dei thread di {@code batchExecutor}; il caricamento dell'albero prosegue nel
+     * thread di I/O, senza attenderne la risposta.
+     * @param endpoint Server al quale inviare la parte.
+     * @param setup Richiesta con la quale è stato caricato l'albero della sessione.
+     * @param call Parte della predizione.
+     * @param columns Numero di valori di ogni esempio.
+     * @param rows Esempi della parte.
+     * @param offset Posizione del primo esempio della parte.
+     * @param merger Raccoglie i blocchi e gli esiti di tutte le parti.
+     */
+    private void sendBatchTo(ServerEndpoint endpoint, SessionJournal.Entry setup, BatchPrediction call,
+                             int columns, List<String[]> rows, int offset, BatchMerger merger) {
+        Runnable local = () -> withSession(false, current -> {
+            if (current != null && !call.cancelled) {
+                sendBatch(current, call, columns, rows, offset, merger, null, false);
+            } else {
+                platform.post(() -> merger.onComplete(false));
+            }
+        });
+        if (call.cancelled) {
+            platform.post(() -> merger.onComplete(false));
+            return;
+        }
+        Connection connection;
+        try {
+            connection = Connection.open(endpoint.getHost(), endpoint.getPort(), options,
+                    !endpoint.isLegacy());
+        } catch (IOException e) {
+            platform.logError(String.valueOf(e));
+            endpoint.recordFailure();
+            ioExecutor.execute(local);
+            return;
+        }
+        endpoint.recordSuccess(-1);
+        if (connection.getProtocolVersion() < Protocol.PROTOCOL_FRAMED) {
+            platform.logError("Il server " + endpoint.getAddress() + " non può predire parte degli esempi");
+            closeQuietly(connection);
+            ioExecutor.execute(local);
+            return;
+        }
+        ioExecutor.execute(() -> replay(connection, Collections.singletonList(setup), accepted -> {
+            if (accepted) {
+                sendBatch(connection, call, columns, rows, offset, merger, local, true);
+            } else {
+                platform.logError("Il server " + endpoint.getAddress() + " non ha caricato l'albero");
+                closeQuietly(connection);
+                local.run();
+            }
+        }));
+    }
+
+    /**
+     * Restituisce la lista di nomi salvata per il task specificato e, se non è più recente del tempo
+     * impostato, la verifica chiedendo al server la sua versione: solo se la versione è cambiata, o se
+     * il server non la comunica, la lista viene richiesta di nuovo per intero.
+     * @param task ID del task che restituisce la lista.
+     * @param callback Riceve la lista salvata e, se cambiata, quella nuova.
+     */
+    private void listing(int task, Callback<LinkedList<String>> callback) {
+        String server = serverKey();
+        ListingCache.Entry entry = listingCache.get(server, task);
+        if (entry == null) {
+            fetchListing(server, task, null, callback);
+            return;
+        }
+        deliver(callback, entry.names);
+        if (entry.refreshing || elapsedRealtime() - entry.checkedAt < listingTtl) {
+            return;
+        }
+        entry.refreshing = true;
+        if (entry.version == null) {
+            fetchListing(server, task, entry, callback);
+            return;
+        }
+        request(Protocol.TASK_LISTING_VERSION, new Object[] {task}, Client::toVersion, version -> {
+            if (entry.version.equals(version)) {
+                entry.checkedAt = elapsedRealtime();
+                entry.refreshing = false;
+            } else {
+                fetchListing(server, task, entry, callback);
+            }
+        });
+    }
+
+    /**
+     * Richiede al server la lista di nomi per intero, preceduta dalla sua versione, e la salva. La
+     * versione viene richiesta per prima, quindi una lista cambiata tra le due richieste verrà
+     * comunque richiesta di nuovo alla verifica successiva. Se il server restituisce la lista ma
+     * rifiuta il task {@link Protocol#TASK_LISTING_VERSION}, le richieste successive allo stesso server
+     * non chiedono più la versione; se invece la versione non arriva per un errore di comunicazione,
+     * viene chiesta di nuovo alla verifica successiva.
+     * @param server Elenco dei server, nella forma restituita da {@link #serverKey()}.
+     * @param task ID del task che restituisce la lista.
+     * @param previous Lista salvata in precedenza, {@code null} se non presente.
+     * @param callback Riceve la nuova lista se è diversa da quella salvata, oppure {@code null} se si
+     *                 è verificato un errore e non c'era alcuna lista salvata.
+     */
+    private void fetchListing(String server, int task, ListingCache.Entry previous,
+                              Callback<LinkedList<String>> callback) {
+        Object[] version = new Object[1];
+        boolean[] unversioned = {unversionedServers.contains(server)};
+        if (!unversioned[0]) {
+            request(Protocol.TASK_LISTING_VERSION, new Object[] {task}, Client::toVersion, UNVERSIONED,
+                    result -> {
+                        if (result == UNVERSIONED) {
+                            unversioned[0] = true;
+                        } else {
+                            version[0] = result;
+                        }
+                    });
+        }
+        request(task, new Object[0], Client::toList, names -> {
+            if (previous != null) {
+                previous.refreshing = false;
+            }
+            if (unversioned[0] && names != null) {
+                unversionedServers.add(server);
+            }
+            if (names != null) {
+                listingCache.put(server, task, names, version[0], elapsedRealtime());
+            }
+            boolean changed = previous == null || (names != null && !names.equals(previous.names));
+            if (changed && callback != null) {
+                callback.onResult(names);
+            }
+        });
+    }
+
+    /**
+     * Chiede al server una pagina della lista di nomi restituita dal task specificato. Se la pagina
+     * non arriva, viene estratta dalla lista completa; se il server ha rifiutato il task
+     * {@link Protocol#TASK_LIST_PAGE}, le richieste successive allo stesso server non tentano più di
+     * utilizzarlo.
+     * @param task ID del task che restituisce la lista completa.
+     * @param empty Stringa inviata dal server, nella lista completa, quando non ci sono nomi.
+     * @param filter Sottostringa che i nomi devono contenere.
+     * @param offset Posizione del primo nome della pagina nella lista filtrata.
+     * @param limit Numero massimo di nomi della pagina.
+     * @param callback Riceve la pagina.
+     */
+    private void page(int task, String empty, String filter, int offset, int limit,
+                      Callback<NamePage> callback) {
+        String server = serverKey();
+        boolean[] unpaged = new boolean[1];
+        Callback<LinkedList<String>> fallback = names -> {
+            if (unpaged[0] && names != null) {
+                unpagedServers.add(server);
+            }
+            if (callback != null) {
+                callback.onResult(names == null ? null : NamePage.filter(
+                        names.contains(empty) ? Collections.<String>emptyList() : names,
+                        filter, offset, limit));
+            }
+        };
+        if (unpagedServers.contains(server)) {
+            listing(task, fallback);
+            return;
+        }
+        Object[] args = {task, filter, offset, limit};
+        request(Protocol.TASK_LIST_PAGE, args, response -> toPage(response, offset), UNPAGED, page -> {
+            if (page != null && page != UNPAGED) {
+                if (callback != null) {
+                    callback.onResult(page);
+                }
+            } else {
+                unpaged[0] = page == UNPAGED;
+                listing(task, fallback);
+            }
+        });
+    }
+
+    /**
+     * Comunica al server di interrompere la richiesta a blocchi specificata. Il frame viene inviato
+     * nel thread di I/O, dopo la richiesta da interrompere.
+     * @param call Richiesta da interrompere.
+     */
+    void cancelStream(StreamCall call) {
+        ioExecutor.execute(() -> {
+            Connection current = call.connection != null ? call.connection : sessionManager.current();
+            if (current != null && current.isOpen() && call.id != 0) {
+                try {
+                    current.send(new Frame(call.id, Frame.CANCEL, call.task));
+                } catch (IOException e) {
+                    platform.logError(String.valueOf(e));
+                }
+            }
+        });
+    }
+
+    /**
+     * Permette al server di inviare un altro blocco della richiesta specificata, dopo che l'activity
+     * ne ha mostrato uno.
+     * @param connection Connessione sulla quale è in corso la richiesta.
+     * @param call Richiesta in corso.
+     */
+    private void grantCredit(Connection connection, StreamCall call) {
+        ioExecutor.execute(() -> {
+            if (connection.isOpen()) {
+                try {
+                    connection.send(new Frame(call.id, Frame.CREDIT, call.task, 1));
+                } catch (IOException e) {
+                    platform.logError(String.valueOf(e));
+                }
+            }
+        });
+    }
+
+    /**
+     * Accoda al thread di I/O l'invio della richiesta al server. Quando arriva la risposta, questa
+     * viene convertita tramite {@code parser} e consegnata alla {@code callback} all'interno
+     * dell'{@code UI Thread}. Con il protocollo a frame il thread di I/O non attende la risposta e
+     * può inviare subito le richieste successive. Se la connessione si interrompe durante la
+     * sessione, la richiesta viene ripetuta una volta su un altro server, dopo avervi ripristinato lo
+     * stato della sessione. Se si verifica un errore, la {@code callback} riceve {@code null}.
+     * @param task ID del task.
+     * @param args Argomenti del task.
+     * @param parser Converte il frame di risposta nel risultato dell'operazione.
+     * @param callback Azione da eseguire al termine dell'operazione. Può essere {@code null}.
+     * @param <T> Tipo del risultato dell'operazione.
+     */
+    private <T> void request(int task, Object[] args, ResponseParser<T> parser, Callback<T> callback) {
+        request(task, args, parser, null, callback);
+    }
+
+    /**
+     * Accoda al thread di I/O l'invio della richiesta al server, come
+     * {@link #request(int, Object[], ResponseParser, Callback)}, distinguendo però un task rifiutato
+     * dal server da un errore di comunicazione.
+     * @param task ID del task.
+     * @param args Argomenti del task.
+     * @param parser Converte il frame di risposta nel risultato dell'operazione.
+     * @param rejected Risultato consegnato se il server rifiuta il task con {@link TaskRejectedException}.
+     * @param callback Azione da eseguire al termine dell'operazione. Può essere {@code null}.
+     * @param <T> Tipo del risultato dell'operazione.
+     */
+    private <T> void request(int task, Object[] args, ResponseParser<T> parser, T rejected,
+                             Callback<T> callback) {
+        ioExecutor.execute(() -> withSession(true, current -> {
+            if (current != null) {
+                send(current, task, args, parser, rejected, callback, true);
+            } else {
+                deliver(callback, null);
+            }
+        }));
+    }
+
+    /**
+     * Invia la richiesta tramite la connessione specificata e registra nel {@code journal} quelle che
+     * modificano lo stato della sessione. Deve essere richiamato nel thread di I/O.
+     * @param current Connessione con il server.
+     * @param task ID del task.
+     * @param args Argomenti del task.
+     * @param parser Converte il frame di risposta nel risultato dell'operazione.
+     * @param rejected Risultato consegnato se il server rifiuta il task.
+     * @param callback Azione da eseguire al termine dell'operazione. Può essere {@code null}.
+     * @param retry {@code true} se la richiesta può essere ripetuta su un altro server.
+     * @param <T> Tipo del risultato dell'operazione.
+     */
+    private <T> void send(Connection current, int task, Object[] args, ResponseParser<T> parser, T rejected,
+                          Callback<T> callback, boolean retry) {
+        try {
+            call(current, task, args, new ResponseHandler() {
+                @Override
+                public void onResponse(Frame response) {
+                    journal.record(task, args, response);
+                    T result = null;
+                    try {
+                        result = parser.parse(response);
+                    } catch (IOException | RuntimeException e) {
+                        platform.logError(String.valueOf(e));
+                    }
+                    deliver(callback, result);
+                }
+
+                @Override
+                public void onError(IOException e) {
+                    platform.logError(String.valueOf(e));
+                    resend(current, task, args, parser, rejected, callback, retry, e);
+                }
+            });
+        } catch (IOException e) {
+            platform.logError(String.valueOf(e));
+            resend(current, task, args, parser, rejected, callback, retry, e);
+        }
+    }
+
+    /**
+     * Ripete una richiesta fallita su un altro server, se la connessione si è interrotta e la
+     * richiesta non è già stata ripetuta; altrimenti la {@code callback} riceve {@code null}. Un
+     * frame di errore inviato dal server non provoca alcun tentativo, poiché la connessione è ancora
+     * valida.
+     * @param failed Connessione sulla quale è fallita la richiesta.
+     * @param task ID del task.
+     * @param args Argomenti del task.
+     * @param parser Converte il frame di risposta nel risultato dell'operazione.
+     * @param rejected Risultato consegnato se il server ha rifiutato il task.
+     * @param callback Azione da eseguire al termine dell'operazione. Può essere {@code null}.
+     * @param retry {@code true} se la richiesta può essere ripetuta.
+     * @param error Errore che ha fatto fallire la richiesta.
+     * @param <T> Tipo del risultato dell'operazione.
+     */
+    private <T> void resend(Connection failed, int task, Object[] args, ResponseParser<T> parser, T rejected,
+                            Callback<T> callback, boolean retry, IOException error) {
+        if (error instanceof TaskRejectedException) {
+            deliver(callback, rejected);
+            return;
+        }
+        if (!retry || failed.isOpen()) {
+            deliver(callback, null);
+            return;
+        }
+        ioExecutor.execute(() -> {
+            if (!sessionOpen) {
+                deliver(callback, null);
+                return;
+            }
+            failover(failed, next -> {
+                if (next != null) {
+                    send(next, task, args, parser, rejected, callback, false);
+                } else {
+                    deliver(callback, null);
+                }
+            });
+        });
+    }
+
+    /**
+     * Esegue l'azione con la connessione della sessione, dopo il ripristino eventualmente in corso.
+     * Deve essere richiamato nel thread di I/O.
+     * @param restore {@code true} per ripristinare la sessione su un altro server se la connessione
+     *                corrente è chiusa.
+     * @param action Riceve la connessione, {@code null} se il client non è connesso.
+     */
+    private void withSession(boolean restore, Continuation<Connection> action) {
+        Connection current = sessionManager.current();
+        if (restoring != null || (restore && current == null && sessionOpen)) {
+            failover(null, action);
+        } else {
+            action.resume(current);
+        }
+    }
+
+    /**
+     * Sostituisce una connessione interrotta durante la sessione con quella di un altro server e vi
+     * ripete le richieste registrate nel {@code journal}, in modo che il nuovo server si trovi nello
+     * stesso stato. Se un server non accetta le richieste, viene escluso e si passa al successivo. Il
+     * thread di I/O non attende le risposte: se è già in corso un ripristino, l'azione viene eseguita
+     * al suo termine. Deve essere richiamato nel thread di I/O.
+     * @param failed Connessione interrotta, {@code null} se la connessione corrente è già chiusa.
+     * @param action Riceve la nuova connessione, {@code null} se nessun server ha ripristinato la
+     *               sessione.
+     */
+    private void failover(Connection failed, Continuation<Connection> action) {
+        if (restoring != null) {
+            restoring.add(action);
+            return;
+        }
+        Connection current = sessionManager.current();
+        if (current != null && current != failed) {
+            action.resume(current);
+            return;
+        }
+        restoring = new ArrayList<>();
+        restoring.add(action);
+        replace(failed, journal.getEntries(), endpoints.getEndpoints().size());
+    }
+
+    /**
+     * Sostituisce la connessione specificata con quella di un altro server e vi ripete le richieste
+     * registrate. Deve essere richiamato nel thread di I/O, durante un ripristino.
+     * @param failed Connessione da sostituire, {@code null} se la connessione corrente è già chiusa.
+     * @param entries Richieste da ripetere.
+     * @param attempts Numero di server che possono ancora essere provati.
+     */
+    private void replace(Connection failed, List<SessionJournal.Entry> entries, int attempts) {
+        if (attempts <= 0) {
+            restored(null);
+            return;
+        }
+        Connection next;
+        try {
+            next = sessionManager.failover(failed, endpoints);
+        } catch (IOException e) {
+            platform.logError(String.valueOf(e));
+            restored(null);
+            return;
+        }
+        restore(next, entries, attempts - 1);
+    }
+
+    /**
+     * Ripete sulla connessione specificata le richieste registrate e, se il server non le accetta,
+     * passa al server successivo. Se nel frattempo il ripristino è stato concluso da
+     * {@link #disconnect()}, l'esito viene ignorato. Deve essere richiamato nel thread di I/O, durante
+     * un ripristino.
+     * @param next Connessione con il nuovo server.
+     * @param entries Richieste da ripetere.
+     * @param attempts Numero di altri server che possono ancora essere provati.
+     */
+    private void restore(Connection next, List<SessionJournal.Entry> entries, int attempts) {
+        List<Continuation<Connection>> waiting = restoring;
+        replay(next, entries, accepted -> {
+            if (restoring != waiting) {
+                return;
+            }
+            if (!accepted) {
+                replace(next, entries, attempts);
+                return;
+            }
+            if (!entries.isEmpty()) {
+                platform.logInfo("Sessione ripristinata su " + sessionManager.getEndpoint().getAddress());
+            }
+            restored(next);
+        });
+    }
+
+    /**
+     * Conclude il ripristino in corso ed esegue le azioni che lo attendevano. Deve essere richiamato
+     * nel thread di I/O.
+     * @param connection Nuova connessione, {@code null} se nessun server ha ripristinato la sessione.
+     */
+    private void restored(Connection connection) {
+        List<Continuation<Connection>> waiting = restoring;
+        restoring = null;
+        for (Continuation<Connection> action : waiting) {
+            action.resume(connection);
+        }
+    }
+
+    /**
+     * Ripete sulla connessione specificata le richieste registrate, una alla volta, senza attenderne
+     * le risposte nel thread di I/O. Deve essere richiamato nel thread di I/O.
+     * @param connection Connessione con il nuovo server.
+     * @param entries Richieste da ripetere, nell'ordine in cui sono state eseguite.
+     * @param action Riceve {@code true} se il server ha accettato tutte le richieste entro
+     *               {@link #REPLAY_TIMEOUT} millisecondi.
+     */
+    private void replay(Connection connection, List<SessionJournal.Entry> entries,
+                        Continuation<Boolean> action) {
+        new Replay(connection, entries, action).start();
+    }
+
+    /**
+     * Invia la richiesta tramite la connessione specificata, registrando i tempi della risposta nei
+     * contatori restituiti da {@link #getOperationStats()}.
+     * @param current Connessione con il server.
+     * @param task ID del task.
+     * @param args Argomenti del task.
+     * @param handler Riceve la risposta del server.
+     * @return ID della richiesta.
+     * @throws IOException Se non è possibile inviare la richiesta.
+     */
+    private int call(Connection current, int task, Object[] args, ResponseHandler handler)
+            throws IOException {
+        return current.call(task, args, options.getOperationStats().track(task, handler));
+    }
+
+    /**
+     * Restituisce la chiave con la quale vengono salvati gli alberi e le liste di nomi: poiché i
+     * server sono equivalenti, la chiave comprende tutti i server dell'elenco, e un solo server
+     * conserva la chiave {@code ip:porta} delle versioni precedenti.
+     * @return Indirizzi dei server, separati da virgole.
+     */
+    private String serverKey() {
+        StringBuilder key = new StringBuilder();
+        for (ServerEndpoint endpoint : endpoints.getEndpoints()) {
+            if (key.length() > 0) {
+                key.append(',');
+            }
+            key.append(endpoint.getAddress());
+        }
+        return key.toString();
+    }
+
+    /**
+     * Chiude la connessione specificata ignorando eventuali errori.
+     * @param connection Connessione da chiudere.
+     */
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (IOException ignored) {
+            // La connessione è già chiusa.
+        }
+    }
+
+    /**
+     * Consegna il risultato alla {@code callback} all'interno dell'{@code UI Thread}.
+     * @param callback Azione da eseguire. Se {@code null}, il risultato viene ignorato.
+     * @param result Risultato dell'operazione.
+     * @param <T> Tipo del risultato dell'operazione.
+     */
+    private <T> void deliver(Callback<T> callback, T result) {
+        if (callback != null) {
+            platform.post(() -> callback.onResult(result));
+        }
+    }
+
+    /**
+     * Restituisce il tempo trascorso da un istante fisso, che non cambia se viene modificato l'orologio
+     * del sistema.
+     * @return Tempo trascorso, in millisecondi.
+     */
+    private static long elapsedRealtime() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
+    /**
+     * Converte la risposta del server nella lista dei nomi ricevuta.
+     * @param response Frame di risposta.
+     * @return Lista dei nomi.
+     * @throws IOException Se la risposta è incompleta.
+     */
+    @SuppressWarnings("unchecked")
+    private static LinkedList<String> toList(Frame response) throws IOException {
+        return (LinkedList<String>) response.getValue(0);
+    }
+
+    /**
+     * Converte la risposta del server in una pagina di una lista di nomi.
+     * @param response Frame di risposta.
+     * @param offset Posizione del primo nome della pagina, indicata nella richiesta.
+     * @return Pagina ricevuta.
+     * @throws IOException Se la risposta è incompleta.
+     */
+    @SuppressWarnings("unchecked")
+    private static NamePage toPage(Frame response, int offset) throws IOException {
+        int total = ((Number) response.getValue(0)).intValue();
+        List<String> names = (List<String>) response.getValue(1);
+        return new NamePage(total, offset, Collections.unmodifiableList(names));
+    }
+
+    /**
+     * Converte la risposta del server nella versione di una lista di nomi.
+     * @param response Frame di risposta.
+     * @return Versione della lista.
+     * @throws IOException Se la risposta è incompleta.
+     */
+    private static Object toVersion(Frame response) throws IOException {
+        return response.getValue(0);
+    }
+
+    /**
+     * Scarta l'albero scaricato, poiché l'utente ha scelto un nuovo albero o ha chiuso la sessione.
+     */
+    private void invalidateTree() {
+        tree = null;
+        subtreeCache.clear();
+        treeGeneration++;
+    }
+
+    /**
+     * Converte la risposta del server nell'albero ricevuto, memorizzato come insieme di array
+     * primitivi a partire dalla visita in preordine.
+     * @param response Frame di risposta.
+     * @return Albero ricevuto.
+     * @throws IOException Se la risposta è incompleta.
+     */
+    @SuppressWarnings("unchecked")
+    private static FlatTree toTree(Frame response) throws IOException {
+        return FlatTree.fromPreorder((List<String>) response.getValue(0),
+                (int[]) response.getValue(1), (int[]) response.getValue(2),
+                (double[]) response.getValue(3), (List<String>) response.getValue(4),
+                (double[]) response.getValue(5), (List<String>) response.getValue(6));
+    }
+
+    /**
+     * Converte la risposta del server nel sottoalbero ricevuto, a partire dalla visita in preordine.
+     * @param response Frame di risposta.
+     * @param path Percorso del nodo radice, indicato nella richiesta.
+     * @return Sottoalbero ricevuto.
+     * @throws IOException Se la risposta è incompleta.
+     */
+    @SuppressWarnings("unchecked")
+    private static TreeBranch toSubtree(Frame response, int[] path) throws IOException {
+        return TreeBranch.fromPreorder(path, (int[]) response.getValue(0),
+                (List<String>) response.getValue(1), (List<String>) response.getValue(2));
+    }
+
+    /**
+     * Converte la risposta del server nella stringa ricevuta.
+     * @param response Frame di risposta.
+     * @return Stringa ricevuta.
+     * @throws IOException Se la risposta è incompleta.
+     */
+    private static String toText(Frame response) throws IOException {
+        return response.getValue(0).toString();
+    }
+
+    /**
+     * Converte la risposta del server in un passo della fase di predizione: se il primo valore è
+     * uguale a {@code QUERY}, seguono il testo della domanda e il numero di figli del nodo corrente;
+     * se è uguale a {@code OK}, segue il valore di predizione.
+     * @param response Frame di risposta.
+     * @return Passo della fase di predizione.
+     * @throws IOException Se la risposta non è valida.
+     */
+    private static PredictionStep toPredictionStep(Frame response) throws IOException {
+        String answer = response.getValue(0).toString();
+        if (answer.equals(Protocol.QUERY)) {
+            String question = response.getValue(1).toString();
+            int children = Integer.parseInt(response.getValue(2).toString());
+            return PredictionStep.query(question, children);
+        } else if (answer.equals(Protocol.PREDICTION)) {
+            return PredictionStep.leaf(response.getValue(1).toString());
+        } else {
+            throw new IOException("Risposta inattesa dal server: " + answer);
+        }
+    }
+
+    /**
+     * L'interfaccia converte il frame di risposta del server nel risultato di un'operazione.
+     * @param <T> Tipo del risultato dell'operazione.
+     */
+    private interface ResponseParser<T> {
+
+        /**
+         * Converte il frame di risposta nel risultato dell'operazione.
+         * @param response Frame di risposta.
+         * @return Risultato dell'operazione.
+         * @throws IOException Se la risposta non è valida.
+         */
+        T parse(Frame response) throws IOException;
+    }
+
+    /**
+     * L'interfaccia rappresenta il seguito di un'operazione eseguita dal client nel thread di I/O,
+     * come il ripristino della sessione su un altro server.
+     * @param <T> Tipo del risultato dell'operazione.
+     */
+    private interface Continuation<T> {
+
+        /**
+         * Viene richiamato nel thread di I/O quando l'operazione è terminata.
+         * @param result Risultato dell'operazione.
+         */
+        void resume(T result);
+    }
+
+    /**
+     * La classe ripete sulla connessione con un nuovo server le richieste registrate nel
+     * {@code journal}: ogni richiesta viene inviata quando arriva la risposta alla precedente, e
+     * l'intera sequenza deve concludersi entro {@link #REPLAY_TIMEOUT} millisecondi, altrimenti la
+     * connessione viene chiusa. Lo stato viene utilizzato solo all'interno del thread di I/O.
+     */
+    private final class Replay implements ResponseHandler {
+
+        /**
+         * Connessione con il nuovo server.
+         */
+        private final Connection connection;
+
+        /**
+         * Richieste ancora da ripetere.
+         */
+        private final Iterator<SessionJournal.Entry> entries;
+
+        /**
+         * Riceve l'esito della ripetizione.
+         */
+        private final Continuation<Boolean> action;
+
+        /**
+         * Richiesta in attesa di risposta.
+         */
+        private SessionJournal.Entry entry;
+
+        /**
+         * Interrompe la ripetizione allo scadere di {@link #REPLAY_TIMEOUT}.
+         */
+        private Future<?> timeout;
+
+        /**
+         * Vale {@code true} dopo che l'esito è stato consegnato.
+         */
+        private boolean done;
+
+        /**
+         * Inizializza gli attributi d'istanza con quelli passati in input.
+         * @param connection Connessione con il nuovo server.
+         * @param entries Richieste da ripetere, nell'ordine in cui sono state eseguite.
+         * @param action Riceve l'esito della ripetizione.
+         */
+        Replay(Connection connection, List<SessionJournal.Entry> entries, Continuation<Boolean> action) {
+            this.connection = connection;
+            this.entries = entries.iterator();
+            this.action = action;
+        }
+
+        /**
+         * Avvia il conteggio del tempo massimo e invia la prima richiesta.
+         */
+        void start() {
+            if (!entries.hasNext()) {
+                finish(true);
+                return;
+            }
+            try {
+                timeout = ioExecutor.schedule(this::expire, REPLAY_TIMEOUT, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                finish(false);
+                return;
+            }
+            next();
+        }
+
+        @Override
+        public void onResponse(Frame response) {
+            proceed(() -> {
+                if (entry.accepts(response)) {
+                    next();
+                } else {
+                    finish(false);
+                }
+            });
+        }
+
+        @Override
+        public void onError(IOException e) {
+            platform.logError(String.valueOf(e));
+            proceed(() -> finish(false));
+        }
+
+        /**
+         * Prosegue la ripetizione nel thread di I/O. Se il client è già stato chiuso con
+         * {@link #shutdown(long)}, la ripetizione viene abbandonata.
+         * @param step Passo successivo della ripetizione.
+         */
+        private void proceed(Runnable step) {
+            try {
+                ioExecutor.execute(step);
+            } catch (RejectedExecutionException e) {
+                // Il client è stato chiuso mentre la ripetizione era in corso.
+            }
+        }
+
+        /**
+         * Invia la richiesta successiva oppure, se sono state accettate tutte, consegna l'esito.
+         */
+        private void next() {
+            if (done) {
+                return;
+            }
+            if (!entries.hasNext()) {
+                finish(true);
+                return;
+            }
+            entry = entries.next();
+            try {
+                call(connection, entry.task, entry.args, this);
+            } catch (IOException e) {
+                platform.logError(String.valueOf(e));
+                finish(false);
+            }
+        }
+
+        /**
+         * Chiude la connessione se il server non ha risposto a tutte le richieste in tempo.
+         */
+        private void expire() {
+            if (!done) {
+                platform.logError("Il server non ha ripetuto le richieste entro " + REPLAY_TIMEOUT + " ms");
+                finish(false);
+                closeQuietly(connection);
+            }
+        }
+
+        /**
+         * Consegna l'esito della ripetizione, una sola volta.
+         * @param accepted {@code true} se il server ha accettato tutte le richieste.
+         */
+        private void finish(boolean accepted) {
+            if (done) {
+                return;
+            }
+            done = true;
+            if (timeout != null) {
+                timeout.cancel(false);
+            }
+            action.resume(accepted);
+        }
+    }
+
+    /**
+     * La classe riunisce le parti di una predizione a blocchi distribuita su più server: consegna al
+     * {@link BatchListener} i blocchi di tutte le parti, con la posizione degli esempi tra tutti
+     * quelli della predizione, e l'esito finale dopo che tutte le parti sono terminate. Viene
+     * utilizzata solo all'interno dell'{@code UI Thread}.
+     */
+    private static class BatchMerger {
+
+        /**
+         * Predizione della quale fanno parte i blocchi.
+         */
+        private final BatchPrediction batch;
+
+        /**
+         * Riceve i blocchi e l'esito finale.
+         */
+        private final BatchListener listener;
+
+        /**
+         * Numero di parti non ancora terminate.
+         */
+        private int remaining;
+
+        /**
+         * Vale {@code true} finché nessuna parte è fallita.
+         */
+        private boolean success = true;
+
+        /**
+         * Inizializza gli attributi d'istanza con quelli passati in input.
+         * @param batch Predizione della quale fanno parte i blocchi.
+         * @param listener Riceve i blocchi e l'esito finale.
+         * @param parts Numero di parti della predizione.
+         */
+        BatchMerger(BatchPrediction batch, BatchListener listener, int parts) {
+            this.batch = batch;
+            this.listener = listener;
+            this.remaining = parts;
+        }
+
+        /**
+         * Consegna un blocco di predizioni al {@code listener}.
+         * @param firstRow Posizione del primo esempio del blocco tra tutti gli esempi.
+         * @param predictions Predizioni del blocco.
+         */
+        void onChunk(int firstRow, double[] predictions) {
+            listener.onChunk(firstRow, predictions);
+        }
+
+        /**
+         * Registra la fine di una parte e, se era l'ultima, consegna l'esito finale al
+         * {@code listener}.
+         * @param partSuccess {@code true} se la parte è stata completata.
+         */
+        void onComplete(boolean partSuccess) {
+            success &= partSuccess;
+            if (--remaining == 0) {
+                listener.onComplete(success && !batch.cancelled);
+            }
+        }
+    }
+}
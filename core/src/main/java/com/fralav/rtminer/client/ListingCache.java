@@ -0,0 +1,83 @@
+package com.fralav.rtminer.client;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+/**
+ * La classe conserva le liste di nomi ricevute dal server, come le tabelle del database e i file
+ * dell'archivio, in modo che le activity possano mostrarle subito, anche dopo una rotazione dello
+ * schermo, mentre il {@link Client} verifica in background se sono ancora valide. Ogni lista è
+ * associata al server e al task che l'ha restituita, alla versione comunicata dal server e al momento
+ * in cui è stata verificata l'ultima volta. Viene utilizzata solo all'interno dell'{@code UI Thread}.
+ */
+class ListingCache {
+
+    /**
+     * Liste salvate, indicizzate per server e task.
+     */
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    /**
+     * Restituisce la lista salvata per il server e il task specificati.
+     * @param server Server, nella forma {@code ip:porta}.
+     * @param task ID del task che restituisce la lista.
+     * @return Lista salvata, {@code null} se non presente.
+     */
+    Entry get(String server, int task) {
+        return entries.get(server + '#' + task);
+    }
+
+    /**
+     * Salva la lista ricevuta dal server, sostituendo quella eventualmente già salvata.
+     * @param server Server, nella forma {@code ip:porta}.
+     * @param task ID del task che restituisce la lista.
+     * @param names Nomi ricevuti.
+     * @param version Versione della lista, {@code null} se il server non la comunica.
+     * @param now Momento della verifica, in millisecondi.
+     * @return Lista salvata.
+     */
+    Entry put(String server, int task, LinkedList<String> names, Object version, long now) {
+        Entry entry = new Entry(names, version, now);
+        entries.put(server + '#' + task, entry);
+        return entry;
+    }
+
+    /**
+     * La classe rappresenta una lista salvata.
+     */
+    static class Entry {
+
+        /**
+         * Nomi ricevuti dal server.
+         */
+        final LinkedList<String> names;
+
+        /**
+         * Versione della lista, {@code null} se il server non la comunica.
+         */
+        final Object version;
+
+        /**
+         * Momento, in millisecondi, in cui la lista è stata verificata l'ultima volta.
+         */
+        long checkedAt;
+
+        /**
+         * {@code true} mentre è in corso una verifica, in modo da non avviarne altre.
+         */
+        boolean refreshing;
+
+        /**
+         * Inizializza gli attributi d'istanza con quelli passati in input.
+         * @param names Nomi ricevuti dal server.
+         * @param version Versione della lista.
+         * @param checkedAt Momento della verifica, in millisecondi.
+         */
+        Entry(LinkedList<String> names, Object version, long checkedAt) {
+            this.names = names;
+            this.version = version;
+            this.checkedAt = checkedAt;
+        }
+    }
+}
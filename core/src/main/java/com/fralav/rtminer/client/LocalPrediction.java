@@ -0,0 +1,64 @@
+package com.fralav.rtminer.client;
+
+import com.fralav.rtminer.client.tree.TreeModel;
+
+/**
+ * La classe esegue la fase di predizione sul dispositivo, percorrendo l'albero scaricato dal server
+ * con {@link Client#getTreeStructure(Callback)}. I passi restituiti sono gli stessi che il server
+ * invierebbe con il protocollo interattivo, quindi l'activity può mostrarli allo stesso modo, ma
+ * nessuna scelta dell'utente richiede uno scambio di messaggi.
+ */
+public class LocalPrediction {
+
+    /**
+     * Albero sul quale avviene la predizione.
+     */
+    private final TreeModel tree;
+
+    /**
+     * Indice del nodo corrente della fase di predizione, {@code -1} se la fase non è ancora iniziata.
+     */
+    private int current = -1;
+
+    /**
+     * Inizializza gli attributi d'istanza con quelli passati in input.
+     * @param tree Albero sul quale avviene la predizione.
+     */
+    public LocalPrediction(TreeModel tree) {
+        this.tree = tree;
+    }
+
+    /**
+     * Avvia la fase di predizione dalla radice dell'albero.
+     * @return Primo passo della fase di predizione.
+     */
+    public PredictionStep start() {
+        current = 0;
+        return step();
+    }
+
+    /**
+     * Sceglie il figlio indicato dall'utente per il nodo corrente.
+     * @param child Indice del figlio scelto dall'utente.
+     * @return Passo successivo della fase di predizione.
+     * @throws IllegalArgumentException Se il nodo corrente non ha il figlio specificato.
+     */
+    public PredictionStep answer(int child) {
+        if (current < 0 || child < 0 || child >= tree.getChildCount(current)) {
+            throw new IllegalArgumentException("Figlio non valido: " + child);
+        }
+        current = tree.getChild(current, child);
+        return step();
+    }
+
+    /**
+     * Converte il nodo corrente in un passo della fase di predizione.
+     * @return Domanda del nodo corrente oppure, se il nodo è una foglia, valore di predizione.
+     */
+    private PredictionStep step() {
+        if (tree.isLeaf(current)) {
+            return PredictionStep.leaf(String.valueOf(tree.getPrediction(current)));
+        }
+        return PredictionStep.query(tree.getQuestion(current), tree.getChildCount(current));
+    }
+}
@@ -0,0 +1,90 @@
+package com.fralav.rtminer.client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * La classe rappresenta una pagina di una lista di nomi, come le tabelle del database o i file
+ * dell'archivio, filtrata per sottostringa: contiene i nomi della pagina, la loro posizione nella
+ * lista filtrata e il numero complessivo di nomi che soddisfano il filtro.
+ */
+public class NamePage {
+
+    /**
+     * Numero complessivo di nomi che soddisfano il filtro.
+     */
+    private final int total;
+
+    /**
+     * Posizione del primo nome della pagina nella lista filtrata.
+     */
+    private final int offset;
+
+    /**
+     * Nomi della pagina.
+     */
+    private final List<String> names;
+
+    /**
+     * Inizializza gli attributi d'istanza con quelli passati in input.
+     * @param total Numero complessivo di nomi che soddisfano il filtro.
+     * @param offset Posizione del primo nome della pagina.
+     * @param names Nomi della pagina.
+     */
+    public NamePage(int total, int offset, List<String> names) {
+        this.total = total;
+        this.offset = offset;
+        this.names = names;
+    }
+
+    /**
+     * Estrae una pagina da una lista di nomi completa, applicando sul dispositivo lo stesso filtro
+     * del server: vengono mantenuti i nomi che contengono {@code filter}, senza distinzione tra
+     * maiuscole e minuscole, nello stesso ordine della lista.
+     * @param all Lista completa dei nomi.
+     * @param filter Sottostringa da cercare, vuota per mantenere tutti i nomi.
+     * @param offset Posizione del primo nome della pagina nella lista filtrata.
+     * @param limit Numero massimo di nomi della pagina.
+     * @return Pagina estratta.
+     */
+    public static NamePage filter(List<String> all, String filter, int offset, int limit) {
+        String needle = filter.toLowerCase(Locale.ROOT);
+        int total = 0;
+        List<String> names = new ArrayList<>(Math.min(limit, all.size()));
+        for (String name : all) {
+            if (needle.isEmpty() || name.toLowerCase(Locale.ROOT).contains(needle)) {
+                if (total >= offset && names.size() < limit) {
+                    names.add(name);
+                }
+                total++;
+            }
+        }
+        return new NamePage(total, offset, Collections.unmodifiableList(names));
+    }
+
+    /**
+     * Restituisce il numero complessivo di nomi che soddisfano il filtro.
+     * @return {@code total}
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * Restituisce la posizione del primo nome della pagina nella lista filtrata.
+     * @return {@code offset}
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * Restituisce i nomi della pagina.
+     * @return {@code names}
+     */
+    public List<String> getNames() {
+        return names;
+    }
+}
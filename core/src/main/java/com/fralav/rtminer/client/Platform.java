@@ -0,0 +1,30 @@
+package com.fralav.rtminer.client;
+
+/**
+ * L'interfaccia rappresenta l'ambiente nel quale viene eseguito il {@link Client}: stabilisce il
+ * thread nel quale vengono consegnati i risultati delle operazioni e dove vengono registrati i
+ * messaggi. In questo modo il client non dipende da Android e può essere utilizzato anche da un
+ * programma Java qualsiasi.
+ */
+public interface Platform {
+
+    /**
+     * Esegue l'azione nel thread dei risultati, ad esempio l'{@code UI Thread} in Android. Le azioni
+     * devono essere eseguite in un unico thread, una alla volta e nell'ordine in cui sono state
+     * accodate, poiché il client accede ad alcuni dei propri attributi solo all'interno di quel thread.
+     * @param action Azione da eseguire.
+     */
+    void post(Runnable action);
+
+    /**
+     * Registra un errore.
+     * @param message Descrizione dell'errore.
+     */
+    void logError(String message);
+
+    /**
+     * Registra un messaggio informativo.
+     * @param message Messaggio da registrare.
+     */
+    void logInfo(String message);
+}
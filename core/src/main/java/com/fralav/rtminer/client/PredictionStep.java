@@ -0,0 +1,87 @@
+package com.fralav.rtminer.client;
+
+/**
+ * La classe rappresenta un singolo passo della fase di predizione. Un passo può essere una domanda
+ * posta dal server, alla quale l'utente risponde scegliendo uno dei figli del nodo corrente, oppure
+ * il valore di predizione restituito quando viene raggiunto un nodo foglia.
+ */
+public class PredictionStep {
+
+    /**
+     * Testo della domanda posta dal server, {@code null} se il passo contiene la predizione.
+     */
+    private final String question;
+
+    /**
+     * Numero di figli del nodo corrente tra i quali l'utente deve scegliere.
+     */
+    private final int children;
+
+    /**
+     * Valore di predizione, {@code null} se il passo contiene una domanda.
+     */
+    private final String prediction;
+
+    /**
+     * Inizializza gli attributi d'istanza con quelli passati in input.
+     * @param question Testo della domanda.
+     * @param children Numero di figli del nodo corrente.
+     * @param prediction Valore di predizione.
+     */
+    private PredictionStep(String question, int children, String prediction) {
+        this.question = question;
+        this.children = children;
+        this.prediction = prediction;
+    }
+
+    /**
+     * Crea un passo contenente una domanda.
+     * @param question Testo della domanda.
+     * @param children Numero di figli del nodo corrente.
+     * @return Passo di predizione.
+     */
+    public static PredictionStep query(String question, int children) {
+        return new PredictionStep(question, children, null);
+    }
+
+    /**
+     * Crea un passo contenente il valore di predizione.
+     * @param prediction Valore di predizione.
+     * @return Passo di predizione.
+     */
+    public static PredictionStep leaf(String prediction) {
+        return new PredictionStep(null, 0, prediction);
+    }
+
+    /**
+     * Restituisce {@code true} se il passo contiene il valore di predizione, {@code false} altrimenti.
+     * @return {@code true} se è stato raggiunto un nodo foglia.
+     */
+    public boolean isLeaf() {
+        return prediction != null;
+    }
+
+    /**
+     * Restituisce il testo della domanda.
+     * @return {@code question}
+     */
+    public String getQuestion() {
+        return question;
+    }
+
+    /**
+     * Restituisce il numero di figli del nodo corrente.
+     * @return {@code children}
+     */
+    public int getChildren() {
+        return children;
+    }
+
+    /**
+     * Restituisce il valore di predizione.
+     * @return {@code prediction}
+     */
+    public String getPrediction() {
+        return prediction;
+    }
+}
@@ -0,0 +1,27 @@
+package com.fralav.rtminer.client;
+
+import java.util.List;
+
+/**
+ * L'interfaccia riceve la rappresentazione testuale dell'albero, una riga alla volta, richiesta con
+ * {@link Client#printTreeStream(PrintListener)}. I metodi vengono sempre richiamati nel thread
+ * dei risultati della {@link Platform}, l'{@code UI Thread} in Android, in modo che l'activity possa
+ * mostrare le righe man mano che arrivano.
+ */
+public interface PrintListener {
+
+    /**
+     * Viene richiamato quando il server ha inviato un blocco di righe. Il blocco successivo viene
+     * richiesto al server solo dopo il termine di questo metodo.
+     * @param firstLine Indice della prima riga del blocco.
+     * @param lines Righe del blocco, senza il carattere di fine riga.
+     */
+    void onLines(int firstLine, List<String> lines);
+
+    /**
+     * Viene richiamato al termine della stampa.
+     * @param success {@code true} se tutte le righe sono state ricevute, {@code false} se si è
+     *                verificato un errore o se la stampa è stata interrotta.
+     */
+    void onComplete(boolean success);
+}
@@ -0,0 +1,141 @@
+package com.fralav.rtminer.client;
+
+import com.fralav.rtminer.client.protocol.Frame;
+import com.fralav.rtminer.client.protocol.Protocol;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * La classe registra le richieste che hanno determinato lo stato della sessione sul server: la
+ * tabella o il file dal quale è stato caricato l'albero e i passi della fase di predizione in corso.
+ * Se il server si interrompe durante la sessione, il {@link Client} ripete queste richieste su un
+ * altro server, che si trova così nello stesso stato. Le richieste vengono registrate solo dopo che
+ * il server le ha eseguite con successo. I metodi possono essere richiamati da qualsiasi thread.
+ */
+class SessionJournal {
+
+    /**
+     * Richieste registrate, nell'ordine in cui sono state eseguite.
+     */
+    private final List<Entry> entries = new ArrayList<>();
+
+    /**
+     * Registra una richiesta eseguita con successo, se modifica lo stato della sessione: il
+     * caricamento di un albero sostituisce tutte le richieste precedenti, l'avvio della fase di
+     * predizione sostituisce i passi della fase precedente e ogni risposta a una domanda viene
+     * aggiunta in coda.
+     * @param task ID del task.
+     * @param args Argomenti del task.
+     * @param response Risposta del server.
+     */
+    synchronized void record(int task, Object[] args, Frame response) {
+        switch (task) {
+            case Protocol.TASK_LEARN_TREE_FROM_DB:
+            case Protocol.TASK_GET_TREE_FROM_FILE:
+                entries.clear();
+                if (Client.OK.equals(firstValue(response))) {
+                    entries.add(new Entry(task, args));
+                }
+                break;
+            case Protocol.TASK_PREDICT_TREE:
+                Entry setup = getSetup();
+                entries.clear();
+                if (setup != null) {
+                    entries.add(setup);
+                }
+                entries.add(new Entry(task, args));
+                break;
+            case Protocol.TASK_PREDICT_ANSWER:
+                entries.add(new Entry(task, args));
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Dimentica tutte le richieste, quando la sessione viene azzerata o chiusa.
+     */
+    synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Restituisce le richieste registrate.
+     * @return Copia delle richieste, nell'ordine in cui sono state eseguite.
+     */
+    synchronized List<Entry> getEntries() {
+        return new ArrayList<>(entries);
+    }
+
+    /**
+     * Restituisce la richiesta con la quale è stato caricato l'albero della sessione.
+     * @return Apprendimento o lettura dell'albero, {@code null} se la sessione non ha un albero.
+     */
+    synchronized Entry getSetup() {
+        if (entries.isEmpty()) {
+            return null;
+        }
+        Entry first = entries.get(0);
+        return first.isSetup() ? first : null;
+    }
+
+    /**
+     * Restituisce il primo valore della risposta come stringa.
+     * @param response Risposta del server.
+     * @return Primo valore della risposta, {@code null} se non può essere letto.
+     */
+    private static String firstValue(Frame response) {
+        try {
+            return response.size() > 0 ? String.valueOf(response.getValue(0)) : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * La classe rappresenta una richiesta registrata.
+     */
+    static class Entry {
+
+        /**
+         * ID del task.
+         */
+        final int task;
+
+        /**
+         * Argomenti del task.
+         */
+        final Object[] args;
+
+        /**
+         * Inizializza gli attributi d'istanza con quelli passati in input.
+         * @param task ID del task.
+         * @param args Argomenti del task.
+         */
+        Entry(int task, Object[] args) {
+            this.task = task;
+            this.args = args;
+        }
+
+        /**
+         * Restituisce {@code true} se la richiesta carica l'albero della sessione.
+         * @return {@code true} per l'apprendimento o la lettura di un albero.
+         */
+        boolean isSetup() {
+            return task == Protocol.TASK_LEARN_TREE_FROM_DB || task == Protocol.TASK_GET_TREE_FROM_FILE;
+        }
+
+        /**
+         * Verifica che la risposta del server a una richiesta ripetuta sia equivalente a quella
+         * originale: per il caricamento dell'albero, il server deve rispondere con {@link Client#OK}.
+         * @param response Risposta del server alla richiesta ripetuta.
+         * @return {@code true} se il server si trova nello stesso stato della sessione originale.
+         */
+        boolean accepts(Frame response) {
+            return !isSetup() || Client.OK.equals(firstValue(response));
+        }
+    }
+}
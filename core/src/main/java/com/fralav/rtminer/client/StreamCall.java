@@ -0,0 +1,68 @@
+package com.fralav.rtminer.client;
+
+import com.fralav.rtminer.client.protocol.Connection;
+
+/**
+ * La classe rappresenta una richiesta in corso la cui risposta viene inviata dal server a blocchi,
+ * come una predizione a blocchi o una stampa dell'albero, e permette di interromperla.
+ */
+public abstract class StreamCall {
+
+    /**
+     * Client che ha avviato la richiesta.
+     */
+    final Client client;
+
+    /**
+     * ID del task della richiesta.
+     */
+    final int task;
+
+    /**
+     * ID della richiesta, assegnato all'interno del thread che la invia; {@code 0} finché la
+     * richiesta non è stata inviata.
+     */
+    volatile int id;
+
+    /**
+     * Connessione sulla quale è stata inviata la richiesta, {@code null} finché la richiesta non è
+     * stata inviata.
+     */
+    volatile Connection connection;
+
+    /**
+     * Vale {@code true} se la richiesta è stata interrotta: i blocchi ricevuti in seguito vengono
+     * ignorati.
+     */
+    volatile boolean cancelled;
+
+    /**
+     * Inizializza gli attributi d'istanza con quelli passati in input. Viene definito come
+     * package-private poiché gli oggetti vengono creati solo dal {@link Client}.
+     * @param client Client che ha avviato la richiesta.
+     * @param task ID del task della richiesta.
+     */
+    StreamCall(Client client, int task) {
+        this.client = client;
+        this.task = task;
+    }
+
+    /**
+     * Interrompe la richiesta: il server smette di inviare blocchi e l'activity non riceve più alcun
+     * blocco.
+     */
+    public void cancel() {
+        if (!cancelled) {
+            cancelled = true;
+            client.cancelStream(this);
+        }
+    }
+
+    /**
+     * Restituisce {@code true} se la richiesta è stata interrotta.
+     * @return {@code cancelled}
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
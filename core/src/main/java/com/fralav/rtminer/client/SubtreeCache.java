@@ -0,0 +1,76 @@
+package com.fralav.rtminer.client;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * La classe conserva i sottoalberi scaricati durante l'esplorazione dell'albero, in modo che un ramo
+ * chiuso e riaperto, o l'albero mostrato di nuovo dopo una rotazione dello schermo, non debba essere
+ * scaricato una seconda volta. Quando il numero complessivo di nodi conservati supera il limite,
+ * vengono scartati i sottoalberi utilizzati meno di recente. Viene utilizzata solo all'interno
+ * dell'{@code UI Thread}.
+ */
+class SubtreeCache {
+
+    /**
+     * Numero massimo di nodi conservati.
+     */
+    private final int capacity;
+
+    /**
+     * Sottoalberi conservati, indicizzati per percorso del nodo radice, dal meno al più recente.
+     */
+    private final LinkedHashMap<String, TreeBranch> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Numero complessivo di nodi conservati.
+     */
+    private int size;
+
+    /**
+     * Inizializza gli attributi d'istanza con quelli passati in input.
+     * @param capacity Numero massimo di nodi conservati.
+     */
+    SubtreeCache(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Restituisce il sottoalbero conservato con il nodo radice specificato, segnandolo come il più
+     * recente.
+     * @param path Percorso del nodo radice.
+     * @return Sottoalbero conservato, {@code null} se non presente.
+     */
+    TreeBranch get(int[] path) {
+        return entries.get(Arrays.toString(path));
+    }
+
+    /**
+     * Conserva un sottoalbero, scartando quelli utilizzati meno di recente se viene superato il
+     * numero massimo di nodi. Un sottoalbero più grande del limite non viene conservato.
+     * @param subtree Sottoalbero da conservare.
+     */
+    void put(TreeBranch subtree) {
+        int nodes = subtree.size();
+        if (nodes > capacity) {
+            return;
+        }
+        TreeBranch previous = entries.put(Arrays.toString(subtree.getPath()), subtree);
+        size += nodes - (previous != null ? previous.size() : 0);
+        Iterator<Map.Entry<String, TreeBranch>> eldest = entries.entrySet().iterator();
+        while (size > capacity) {
+            size -= eldest.next().getValue().size();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Scarta tutti i sottoalberi conservati, poiché l'utente ha scelto un nuovo albero.
+     */
+    void clear() {
+        entries.clear();
+        size = 0;
+    }
+}
@@ -0,0 +1,254 @@
+package com.fralav.rtminer.client;
+
+import com.fralav.rtminer.client.tree.TreeModel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * La classe rappresenta un nodo dell'albero mostrato nell'esplorazione dell'albero, insieme ai figli
+ * già scaricati. Ogni nodo è identificato dal suo percorso, ovvero dalla posizione del figlio scelto
+ * a ogni livello a partire dalla radice, e i suoi figli possono non essere ancora stati scaricati:
+ * in questo caso vengono richiesti al server solo quando l'utente espande il nodo.
+ */
+public class TreeBranch {
+
+    /**
+     * Percorso del nodo a partire dalla radice, vuoto per la radice.
+     */
+    private final int[] path;
+
+    /**
+     * Condizione che porta dal padre al nodo, vuota per il nodo richiesto.
+     */
+    private final String branch;
+
+    /**
+     * Descrizione del nodo: la domanda per i nodi di split, il valore di predizione per le foglie.
+     */
+    private final String label;
+
+    /**
+     * Numero di figli del nodo, {@code 0} per le foglie.
+     */
+    private final int childCount;
+
+    /**
+     * Figli del nodo, {@code null} se non sono ancora stati scaricati.
+     */
+    private final List<TreeBranch> children;
+
+    /**
+     * Inizializza gli attributi d'istanza con quelli passati in input.
+     * @param path Percorso del nodo.
+     * @param branch Condizione che porta dal padre al nodo.
+     * @param label Descrizione del nodo.
+     * @param childCount Numero di figli del nodo.
+     * @param children Figli del nodo, {@code null} se non scaricati.
+     */
+    private TreeBranch(int[] path, String branch, String label, int childCount, List<TreeBranch> children) {
+        this.path = path;
+        this.branch = branch;
+        this.label = label;
+        this.childCount = childCount;
+        this.children = children;
+    }
+
+    /**
+     * Ricostruisce un sottoalbero a partire dalla visita in preordine ricevuta dal server con il task
+     * {@link com.fralav.rtminer.client.protocol.Protocol#TASK_GET_SUBTREE}.
+     * @param path Percorso del nodo radice del sottoalbero.
+     * @param childCount Numero di figli di ogni nodo, cambiato di segno se i figli non sono inclusi.
+     * @param branches Condizione che porta dal padre a ogni nodo.
+     * @param labels Descrizione di ogni nodo.
+     * @return Nodo radice del sottoalbero.
+     * @throws IllegalArgumentException Se la visita non descrive un sottoalbero valido.
+     */
+    static TreeBranch fromPreorder(int[] path, int[] childCount, List<String> branches, List<String> labels) {
+        if (childCount.length == 0 || branches.size() != childCount.length
+                || labels.size() != childCount.length) {
+            throw new IllegalArgumentException("Struttura del sottoalbero non valida");
+        }
+        int[] cursor = {0};
+        TreeBranch root = read(path, childCount, branches, labels, cursor);
+        if (cursor[0] != childCount.length) {
+            throw new IllegalArgumentException("Struttura del sottoalbero non valida");
+        }
+        return root;
+    }
+
+    /**
+     * Legge dalla visita in preordine il nodo che si trova nella posizione indicata da {@code cursor},
+     * insieme ai figli inclusi, e sposta {@code cursor} dopo il suo sottoalbero.
+     * @param path Percorso del nodo.
+     * @param childCount Numero di figli di ogni nodo.
+     * @param branches Condizione che porta dal padre a ogni nodo.
+     * @param labels Descrizione di ogni nodo.
+     * @param cursor Posizione del nodo nella visita.
+     * @return Nodo letto.
+     */
+    private static TreeBranch read(int[] path, int[] childCount, List<String> branches, List<String> labels,
+                                   int[] cursor) {
+        int node = cursor[0]++;
+        if (node >= childCount.length) {
+            throw new IllegalArgumentException("Struttura del sottoalbero incompleta");
+        }
+        int count = Math.abs(childCount[node]);
+        List<TreeBranch> children = null;
+        if (childCount[node] >= 0) {
+            children = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                children.add(read(childPath(path, i), childCount, branches, labels, cursor));
+            }
+            children = Collections.unmodifiableList(children);
+        }
+        return new TreeBranch(path, branches.get(node), labels.get(node), count, children);
+    }
+
+    /**
+     * Estrae un sottoalbero da un albero già presente sul dispositivo, con la stessa struttura che
+     * verrebbe restituita dal server.
+     * @param tree Albero presente sul dispositivo.
+     * @param path Percorso del nodo radice del sottoalbero.
+     * @param depth Numero di livelli da includere sotto il nodo.
+     * @return Nodo radice del sottoalbero, {@code null} se il percorso non esiste nell'albero.
+     */
+    static TreeBranch fromModel(TreeModel tree, int[] path, int depth) {
+        int node = 0;
+        for (int child : path) {
+            if (child < 0 || child >= tree.getChildCount(node)) {
+                return null;
+            }
+            node = tree.getChild(node, child);
+        }
+        return describe(tree, node, path, "", depth);
+    }
+
+    /**
+     * Descrive un nodo dell'albero presente sul dispositivo, insieme ai figli fino al numero di
+     * livelli specificato.
+     * @param tree Albero presente sul dispositivo.
+     * @param node Indice del nodo nell'albero.
+     * @param path Percorso del nodo.
+     * @param branch Condizione che porta dal padre al nodo.
+     * @param depth Numero di livelli da includere sotto il nodo.
+     * @return Nodo descritto.
+     */
+    private static TreeBranch describe(TreeModel tree, int node, int[] path, String branch, int depth) {
+        int count = tree.getChildCount(node);
+        if (count == 0) {
+            return new TreeBranch(path, branch, String.valueOf(tree.getPrediction(node)), 0,
+                    Collections.<TreeBranch>emptyList());
+        }
+        List<TreeBranch> children = null;
+        if (depth > 0) {
+            String attribute = tree.getAttributes().get(tree.getSplitAttribute(node));
+            children = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String condition;
+                if (tree.isContinuous(node)) {
+                    condition = attribute + (i == 0 ? " <= " : " > ") + tree.getThreshold(node);
+                } else {
+                    condition = attribute + " = " + tree.getSplitValue(node, i);
+                }
+                children.add(describe(tree, tree.getChild(node, i), childPath(path, i), condition, depth - 1));
+            }
+            children = Collections.unmodifiableList(children);
+        }
+        return new TreeBranch(path, branch, tree.getQuestion(node), count, children);
+    }
+
+    /**
+     * Calcola il percorso di un figlio.
+     * @param path Percorso del padre.
+     * @param child Posizione del figlio.
+     * @return Percorso del figlio.
+     */
+    private static int[] childPath(int[] path, int child) {
+        int[] result = new int[path.length + 1];
+        System.arraycopy(path, 0, result, 0, path.length);
+        result[path.length] = child;
+        return result;
+    }
+
+    /**
+     * Restituisce una copia del sottoalbero nella quale la condizione del nodo radice è sostituita da
+     * quella specificata, poiché il server non la conosce quando restituisce il sottoalbero da solo.
+     * @param branch Condizione che porta dal padre al nodo.
+     * @return Copia del sottoalbero.
+     */
+    public TreeBranch withBranch(String branch) {
+        return new TreeBranch(path, branch, label, childCount, children);
+    }
+
+    /**
+     * Conta i nodi del sottoalbero già scaricati, compreso il nodo stesso.
+     * @return Numero di nodi.
+     */
+    int size() {
+        int size = 1;
+        if (children != null) {
+            for (TreeBranch child : children) {
+                size += child.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Restituisce il percorso del nodo a partire dalla radice.
+     * @return {@code path}
+     */
+    public int[] getPath() {
+        return path.clone();
+    }
+
+    /**
+     * Restituisce la profondità del nodo.
+     * @return Lunghezza del percorso, {@code 0} per la radice.
+     */
+    public int getDepth() {
+        return path.length;
+    }
+
+    /**
+     * Restituisce la condizione che porta dal padre al nodo.
+     * @return {@code branch}
+     */
+    public String getBranch() {
+        return branch;
+    }
+
+    /**
+     * Restituisce la descrizione del nodo.
+     * @return {@code label}
+     */
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * Restituisce il numero di figli del nodo.
+     * @return {@code childCount}
+     */
+    public int getChildCount() {
+        return childCount;
+    }
+
+    /**
+     * Restituisce {@code true} se il nodo è una foglia.
+     * @return {@code true} se il nodo non ha figli.
+     */
+    public boolean isLeaf() {
+        return childCount == 0;
+    }
+
+    /**
+     * Restituisce i figli del nodo.
+     * @return {@code children}, {@code null} se non sono ancora stati scaricati.
+     */
+    public List<TreeBranch> getChildren() {
+        return children;
+    }
+}
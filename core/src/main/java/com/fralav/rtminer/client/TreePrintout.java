@@ -0,0 +1,20 @@
+package com.fralav.rtminer.client;
+
+import com.fralav.rtminer.client.protocol.Protocol;
+
+/**
+ * La classe rappresenta una stampa dell'albero in corso, avviata con
+ * {@link Client#printTreeStream(PrintListener)}, e permette di interromperla: il
+ * {@link PrintListener} non riceve più alcuna riga.
+ */
+public class TreePrintout extends StreamCall {
+
+    /**
+     * Istanzia un oggetto della classe. Viene definito come package-private poiché gli oggetti
+     * vengono creati solo dal {@link Client}.
+     * @param client Client che ha avviato la richiesta.
+     */
+    TreePrintout(Client client) {
+        super(client, Protocol.TASK_PRINT_TREE_STREAM);
+    }
+}
@@ -0,0 +1,412 @@
+package com.fralav.rtminer.client.protocol;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.LinkedList;
+
+/**
+ * Il codec scrive ogni frame in un formato binario compatto, senza i descrittori di classe e la
+ * riflessione richiesti dalla serializzazione Java. Ogni frame è preceduto dalla lunghezza del corpo,
+ * codificata come varint; il corpo contiene l'ID della richiesta (varint), il tipo del frame (un
+ * byte), l'ID del task (varint), il numero di valori (varint) e, a seguire, i valori, ognuno
+ * preceduto da un byte che ne indica il tipo:
+ * <ul>
+ *     <li>{@link #TAG_NULL}: nessun dato;</li>
+ *     <li>{@link #TAG_INT}: intero codificato come varint zigzag;</li>
+ *     <li>{@link #TAG_STRING}: lunghezza (varint) e byte della stringa in UTF-8;</li>
+ *     <li>{@link #TAG_STRING_LIST}: numero di elementi (varint) e, per ogni elemento, lunghezza e
+ *     byte in UTF-8; viene decodificata come {@link LinkedList};</li>
+ *     <li>{@link #TAG_DOUBLE}: 8 byte in formato IEEE 754, big endian;</li>
+ *     <li>{@link #TAG_INT_ARRAY}: numero di elementi (varint) e, per ogni elemento, un varint zigzag;</li>
+ *     <li>{@link #TAG_DOUBLE_ARRAY}: numero di elementi (varint) e, per ogni elemento, 8 byte in
+ *     formato IEEE 754, big endian.</li>
+ * </ul>
+ * Con la versione {@link Protocol#PROTOCOL_COMPRESSION}, se il client e il server concordano una
+ * soglia di compressione, i frame più grandi possono essere compressi come descritto in
+ * {@link FrameCompression}.
+ */
+class BinaryFrameCodec implements FrameCodec {
+
+    /**
+     * Dimensione massima, in byte, del corpo di un frame.
+     */
+    static final int MAX_FRAME_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * Numero massimo di byte occupati da un intero codificato come varint.
+     */
+    static final int MAX_VARINT_SIZE = 5;
+
+    /**
+     * Tipo del valore {@code null}.
+     */
+    static final byte TAG_NULL = 0;
+
+    /**
+     * Tipo dei valori {@link Integer}.
+     */
+    static final byte TAG_INT = 1;
+
+    /**
+     * Tipo dei valori {@link String}.
+     */
+    static final byte TAG_STRING = 2;
+
+    /**
+     * Tipo delle liste di stringhe.
+     */
+    static final byte TAG_STRING_LIST = 3;
+
+    /**
+     * Tipo dei valori {@link Double}.
+     */
+    static final byte TAG_DOUBLE = 4;
+
+    /**
+     * Tipo degli array {@code int[]}.
+     */
+    static final byte TAG_INT_ARRAY = 5;
+
+    /**
+     * Tipo degli array {@code double[]}.
+     */
+    static final byte TAG_DOUBLE_ARRAY = 6;
+
+    /**
+     * Codifica dei caratteri delle stringhe.
+     */
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Stream di input.
+     */
+    private final InputStream in;
+
+    /**
+     * Stream di output.
+     */
+    private final OutputStream out;
+
+    /**
+     * Contatori del codec.
+     */
+    private final CodecStats stats;
+
+    /**
+     * Codifica i frame da inviare.
+     */
+    private final BinaryFrameEncoder encoder;
+
+    /**
+     * Comprime e decomprime i frame, {@code null} se la compressione non è concordata.
+     */
+    private final FrameCompression compression;
+
+    /**
+     * Buffer nel quale viene letto il corpo dei frame ricevuti, riutilizzato da un frame all'altro e
+     * ingrandito quando necessario.
+     */
+    private byte[] readBuffer = new byte[512];
+
+    /**
+     * Inizializza gli attributi d'istanza con quelli passati in input.
+     * @param in Stream di input.
+     * @param out Stream di output.
+     * @param stats Contatori del codec.
+     * @param compression Comprime e decomprime i frame, {@code null} se la compressione non è
+     *                    concordata.
+     */
+    BinaryFrameCodec(InputStream in, OutputStream out, CodecStats stats, FrameCompression compression) {
+        this.in = new BufferedInputStream(in);
+        this.out = out;
+        this.stats = stats;
+        this.compression = compression;
+        this.encoder = new BinaryFrameEncoder(compression);
+    }
+
+    /**
+     * Codifica il frame e lo invia con una sola scrittura sul socket. Il tempo registrato comprende
+     * solo la codifica, compresa l'eventuale compressione.
+     * @param frame Frame da inviare.
+     * @throws IOException Se si verifica un errore di comunicazione o se il frame contiene valori
+     * non supportati.
+     */
+    @Override
+    public synchronized void write(Frame frame) throws IOException {
+        long start = System.nanoTime();
+        ByteBuffer encoded = encoder.encode(frame);
+        long nanos = System.nanoTime() - start;
+        out.write(encoded.array(), encoded.arrayOffset() + encoded.position(), encoded.remaining());
+        out.flush();
+        stats.recordEncode(frame.getTask(), encoded.remaining(), nanos);
+    }
+
+    /**
+     * Legge la lunghezza e il corpo del frame successivo e lo decodifica. Il tempo registrato
+     * comprende solo la decodifica del corpo, già ricevuto per intero, compresa l'eventuale
+     * decompressione.
+     * @return Frame ricevuto.
+     * @throws IOException Se si verifica un errore di comunicazione o se il frame non è valido.
+     */
+    @Override
+    public Frame read() throws IOException {
+        int header = readLength(in, compression != null ? FrameCompression.MAX_HEADER : MAX_FRAME_SIZE);
+        int length = compression != null ? header >>> 1 : header;
+        if (length > readBuffer.length) {
+            readBuffer = new byte[Math.max(length, readBuffer.length * 2)];
+        }
+        int read = 0;
+        while (read < length) {
+            int n = in.read(readBuffer, read, length - read);
+            if (n < 0) {
+                throw new EOFException("Frame incompleto");
+            }
+            read += n;
+        }
+        long start = System.nanoTime();
+        ByteBuffer body = ByteBuffer.wrap(readBuffer, 0, length);
+        if (compression != null && (header & 1) != 0) {
+            body = compression.decompress(body);
+        }
+        Frame frame = decode(body);
+        stats.recordDecode(frame.getTask(), varintSize(header) + length, System.nanoTime() - start);
+        return frame;
+    }
+
+    /**
+     * Restituisce l'identificativo del codec.
+     * @return {@link Protocol#CODEC_BINARY}
+     */
+    @Override
+    public int getId() {
+        return Protocol.CODEC_BINARY;
+    }
+
+    /**
+     * Decodifica il corpo di un frame.
+     * @param body Buffer contenente il corpo del frame, dalla posizione al limite.
+     * @return Frame decodificato.
+     * @throws IOException Se il corpo del frame non è valido.
+     */
+    static Frame decode(ByteBuffer body) throws IOException {
+        try {
+            int id = getVarint(body);
+            int type = body.get();
+            int task = getVarint(body);
+            int count = getCount(body);
+            Object[] values = new Object[count];
+            for (int i = 0; i < count; i++) {
+                values[i] = getValue(body);
+            }
+            if (body.hasRemaining()) {
+                throw new IOException("Frame non valido: " + body.remaining() + " byte in eccesso");
+            }
+            return new Frame(id, type, task, values);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Frame incompleto");
+        }
+    }
+
+    /**
+     * Legge dallo stream la lunghezza del corpo del frame successivo.
+     * @param in Stream di input.
+     * @param max Valore massimo ammesso, che comprende l'eventuale bit di compressione.
+     * @return Lunghezza del corpo del frame.
+     * @throws IOException Se lo stream è terminato o se la lunghezza non è valida.
+     */
+    private static int readLength(InputStream in, int max) throws IOException {
+        int length = 0;
+        for (int shift = 0; shift < 7 * MAX_VARINT_SIZE; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Connessione chiusa dal server");
+            }
+            length |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (length < 0 || length > max) {
+                    throw new IOException("Lunghezza del frame non valida: " + length);
+                }
+                return length;
+            }
+        }
+        throw new IOException("Lunghezza del frame non valida");
+    }
+
+    /**
+     * Legge un valore, preceduto dal byte che ne indica il tipo.
+     * @param body Buffer contenente il corpo del frame.
+     * @return Valore letto.
+     * @throws IOException Se il valore non è valido.
+     */
+    private static Object getValue(ByteBuffer body) throws IOException {
+        byte tag = body.get();
+        switch (tag) {
+            case TAG_NULL:
+                return null;
+            case TAG_INT:
+                return unzigzag(getVarint(body));
+            case TAG_DOUBLE:
+                return body.getDouble();
+            case TAG_STRING:
+                return getString(body);
+            case TAG_STRING_LIST:
+                int count = getCount(body);
+                LinkedList<String> list = new LinkedList<>();
+                for (int i = 0; i < count; i++) {
+                    list.add(getString(body));
+                }
+                return list;
+            case TAG_INT_ARRAY:
+                int[] ints = new int[getCount(body)];
+                for (int i = 0; i < ints.length; i++) {
+                    ints[i] = unzigzag(getVarint(body));
+                }
+                return ints;
+            case TAG_DOUBLE_ARRAY:
+                int length = getVarint(body);
+                if (length < 0 || length > body.remaining() / 8) {
+                    throw new IOException("Frame non valido: lunghezza " + length);
+                }
+                double[] doubles = new double[length];
+                body.asDoubleBuffer().get(doubles);
+                body.position(body.position() + 8 * length);
+                return doubles;
+            default:
+                throw new IOException("Tipo di valore sconosciuto: " + tag);
+        }
+    }
+
+    /**
+     * Legge una stringa, preceduta dalla sua lunghezza in byte.
+     * @param body Buffer contenente il corpo del frame.
+     * @return Stringa letta.
+     * @throws IOException Se la lunghezza non è valida.
+     */
+    private static String getString(ByteBuffer body) throws IOException {
+        int length = getCount(body);
+        String value;
+        if (body.hasArray()) {
+            value = new String(body.array(), body.arrayOffset() + body.position(), length, UTF8);
+            body.position(body.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            body.get(bytes);
+            value = new String(bytes, UTF8);
+        }
+        return value;
+    }
+
+    /**
+     * Legge un numero di elementi o una lunghezza, verificando che non superi i byte rimasti nel
+     * corpo del frame: ogni elemento occupa almeno un byte.
+     * @param body Buffer contenente il corpo del frame.
+     * @return Numero letto.
+     * @throws IOException Se il numero non è valido.
+     */
+    private static int getCount(ByteBuffer body) throws IOException {
+        int count = getVarint(body);
+        if (count < 0 || count > body.remaining()) {
+            throw new IOException("Frame non valido: lunghezza " + count);
+        }
+        return count;
+    }
+
+    /**
+     * Legge, senza spostare la posizione del buffer, la lunghezza del corpo del frame che inizia alla
+     * posizione corrente. Utilizzato quando i byte arrivano a blocchi e il frame può essere incompleto.
+     * @param buffer Buffer contenente i byte ricevuti, dalla posizione al limite.
+     * @param max Valore massimo ammesso, che comprende l'eventuale bit di compressione.
+     * @return Lunghezza del corpo del frame, {@code -1} se i byte della lunghezza non sono ancora
+     * stati ricevuti per intero.
+     * @throws IOException Se la lunghezza non è valida.
+     */
+    static int peekLength(ByteBuffer buffer, int max) throws IOException {
+        int length = 0;
+        int index = buffer.position();
+        for (int shift = 0; shift < 7 * MAX_VARINT_SIZE; shift += 7) {
+            if (index >= buffer.limit()) {
+                return -1;
+            }
+            byte b = buffer.get(index++);
+            length |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (length < 0 || length > max) {
+                    throw new IOException("Lunghezza del frame non valida: " + length);
+                }
+                return length;
+            }
+        }
+        throw new IOException("Lunghezza del frame non valida");
+    }
+
+    /**
+     * Scrive un intero come varint: 7 bit per byte, a partire dai meno significativi, con il bit più
+     * significativo di ogni byte che indica se segue un altro byte.
+     * @param buffer Buffer di destinazione.
+     * @param value Intero da scrivere, interpretato come senza segno.
+     */
+    static void putVarint(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Legge un intero codificato come varint.
+     * @param buffer Buffer di origine.
+     * @return Intero letto.
+     * @throws IOException Se il varint occupa più di {@link #MAX_VARINT_SIZE} byte.
+     */
+    static int getVarint(ByteBuffer buffer) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 7 * MAX_VARINT_SIZE; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Varint non valido");
+    }
+
+    /**
+     * Codifica un intero con segno in modo che i valori di modulo piccolo, anche negativi, occupino
+     * pochi byte come varint.
+     * @param value Intero con segno.
+     * @return Intero codificato.
+     */
+    static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    /**
+     * Decodifica un intero codificato con {@link #zigzag(int)}.
+     * @param value Intero codificato.
+     * @return Intero con segno.
+     */
+    static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Restituisce il numero di byte occupati da un intero codificato come varint.
+     * @param value Intero, interpretato come senza segno.
+     * @return Numero di byte, da 1 a {@link #MAX_VARINT_SIZE}.
+     */
+    static int varintSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+}
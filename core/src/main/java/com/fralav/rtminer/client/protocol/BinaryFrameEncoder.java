@@ -0,0 +1,162 @@
+package com.fralav.rtminer.client.protocol;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * La classe codifica i frame nel formato descritto in {@link BinaryFrameCodec}, utilizzando un buffer
+ * che viene riutilizzato da un frame all'altro. Non è thread-safe: il chiamante deve sincronizzare
+ * l'accesso e consumare il frame codificato prima di codificare il successivo.
+ */
+class BinaryFrameEncoder {
+
+    /**
+     * Buffer nel quale vengono codificati i frame da inviare, riutilizzato da un frame all'altro e
+     * ingrandito quando necessario.
+     */
+    private ByteBuffer writeBuffer = ByteBuffer.allocate(512);
+
+    /**
+     * Comprime i frame più grandi della soglia concordata con il server, {@code null} se la
+     * compressione non è concordata.
+     */
+    private final FrameCompression compression;
+
+    /**
+     * Inizializza gli attributi d'istanza con quelli passati in input.
+     * @param compression Comprime i frame più grandi della soglia, {@code null} se la compressione
+     *                    non è concordata.
+     */
+    BinaryFrameEncoder(FrameCompression compression) {
+        this.compression = compression;
+    }
+
+    /**
+     * Codifica il frame, preceduto dalla lunghezza del corpo, nel buffer di scrittura. Il corpo viene
+     * scritto lasciando libero lo spazio massimo occupato dalla lunghezza, che viene poi scritta
+     * subito prima del corpo: in questo modo il frame non deve essere copiato. Se la compressione è
+     * concordata, la lunghezza comprende il bit di compressione e i frame più grandi della soglia
+     * vengono compressi, se in questo modo occupano meno byte.
+     * @param frame Frame da codificare.
+     * @return Buffer, con posizione e limite che delimitano il frame codificato. Il contenuto resta
+     * valido fino alla codifica del frame successivo.
+     * @throws IOException Se il frame contiene valori non supportati o supera
+     * {@link BinaryFrameCodec#MAX_FRAME_SIZE}.
+     */
+    ByteBuffer encode(Frame frame) throws IOException {
+        writeBuffer.clear();
+        writeBuffer.position(BinaryFrameCodec.MAX_VARINT_SIZE);
+        ensure(3 * BinaryFrameCodec.MAX_VARINT_SIZE + 1);
+        BinaryFrameCodec.putVarint(writeBuffer, frame.getId());
+        writeBuffer.put((byte) frame.getType());
+        BinaryFrameCodec.putVarint(writeBuffer, frame.getTask());
+        Object[] values = frame.getValues();
+        BinaryFrameCodec.putVarint(writeBuffer, values.length);
+        for (Object value : values) {
+            putValue(value);
+        }
+        int end = writeBuffer.position();
+        int length = end - BinaryFrameCodec.MAX_VARINT_SIZE;
+        if (length > BinaryFrameCodec.MAX_FRAME_SIZE) {
+            throw new IOException("Frame troppo grande: " + length + " byte");
+        }
+        int header = length;
+        if (compression != null) {
+            ByteBuffer compressed = compression.compress(writeBuffer.array(),
+                    BinaryFrameCodec.MAX_VARINT_SIZE, length);
+            if (compressed != null) {
+                return compressed;
+            }
+            header = FrameCompression.header(length, false);
+        }
+        int start = BinaryFrameCodec.MAX_VARINT_SIZE - BinaryFrameCodec.varintSize(header);
+        writeBuffer.position(start);
+        BinaryFrameCodec.putVarint(writeBuffer, header);
+        writeBuffer.position(start);
+        writeBuffer.limit(end);
+        return writeBuffer;
+    }
+
+    /**
+     * Scrive un valore, preceduto dal byte che ne indica il tipo, nel buffer di scrittura.
+     * @param value Valore da scrivere.
+     * @throws IOException Se il tipo del valore non è supportato.
+     */
+    private void putValue(Object value) throws IOException {
+        ensure(1 + Math.max(BinaryFrameCodec.MAX_VARINT_SIZE, 8));
+        if (value == null) {
+            writeBuffer.put(BinaryFrameCodec.TAG_NULL);
+        } else if (value instanceof Integer) {
+            writeBuffer.put(BinaryFrameCodec.TAG_INT);
+            BinaryFrameCodec.putVarint(writeBuffer, BinaryFrameCodec.zigzag((Integer) value));
+        } else if (value instanceof Double) {
+            writeBuffer.put(BinaryFrameCodec.TAG_DOUBLE);
+            writeBuffer.putDouble((Double) value);
+        } else if (value instanceof String) {
+            writeBuffer.put(BinaryFrameCodec.TAG_STRING);
+            putString((String) value);
+        } else if (value instanceof int[]) {
+            int[] ints = (int[]) value;
+            writeBuffer.put(BinaryFrameCodec.TAG_INT_ARRAY);
+            BinaryFrameCodec.putVarint(writeBuffer, ints.length);
+            ensure((long) ints.length * BinaryFrameCodec.MAX_VARINT_SIZE);
+            for (int n : ints) {
+                BinaryFrameCodec.putVarint(writeBuffer, BinaryFrameCodec.zigzag(n));
+            }
+        } else if (value instanceof double[]) {
+            double[] doubles = (double[]) value;
+            writeBuffer.put(BinaryFrameCodec.TAG_DOUBLE_ARRAY);
+            BinaryFrameCodec.putVarint(writeBuffer, doubles.length);
+            ensure(8L * doubles.length);
+            writeBuffer.asDoubleBuffer().put(doubles);
+            writeBuffer.position(writeBuffer.position() + 8 * doubles.length);
+        } else if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            writeBuffer.put(BinaryFrameCodec.TAG_STRING_LIST);
+            BinaryFrameCodec.putVarint(writeBuffer, list.size());
+            for (Object element : list) {
+                if (!(element instanceof String)) {
+                    throw new IOException("Il codec binario supporta solo liste di stringhe");
+                }
+                putString((String) element);
+            }
+        } else {
+            throw new IOException("Tipo non supportato dal codec binario: " + value.getClass().getName());
+        }
+    }
+
+    /**
+     * Scrive una stringa, preceduta dalla sua lunghezza in byte, nel buffer di scrittura.
+     * @param value Stringa da scrivere.
+     * @throws IOException Se il frame supera {@link BinaryFrameCodec#MAX_FRAME_SIZE}.
+     */
+    private void putString(String value) throws IOException {
+        byte[] bytes = value.getBytes(BinaryFrameCodec.UTF8);
+        ensure(BinaryFrameCodec.MAX_VARINT_SIZE + bytes.length);
+        BinaryFrameCodec.putVarint(writeBuffer, bytes.length);
+        writeBuffer.put(bytes);
+    }
+
+    /**
+     * Ingrandisce il buffer di scrittura, se necessario, in modo che possa contenere almeno
+     * {@code required} byte oltre la posizione corrente.
+     * @param required Numero di byte da scrivere.
+     * @throws IOException Se il frame supera {@link BinaryFrameCodec#MAX_FRAME_SIZE}.
+     */
+    private void ensure(long required) throws IOException {
+        if (writeBuffer.remaining() >= required) {
+            return;
+        }
+        long needed = writeBuffer.position() + required;
+        int limit = BinaryFrameCodec.MAX_FRAME_SIZE + BinaryFrameCodec.MAX_VARINT_SIZE;
+        if (needed > limit) {
+            throw new IOException("Frame troppo grande: " + needed + " byte");
+        }
+        ByteBuffer bigger = ByteBuffer.allocate(
+                (int) Math.min(limit, Math.max(needed, 2L * writeBuffer.capacity())));
+        writeBuffer.flip();
+        bigger.put(writeBuffer);
+        writeBuffer = bigger;
+    }
+}
@@ -0,0 +1,316 @@
+package com.fralav.rtminer.client.protocol;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * La classe raccoglie, per ogni tipo di messaggio (ovvero per ogni ID di task), il numero di messaggi
+ * codificati e decodificati, la loro dimensione in byte e il tempo impiegato dal codec. Con il codec
+ * Java il tempo di decodifica comprende anche l'attesa dei dati dalla rete, poiché lo stream viene
+ * decodificato man mano che i byte arrivano. Quando la compressione è concordata con il server, la
+ * classe raccoglie anche, per ogni direzione, il numero di frame che hanno superato la soglia, i byte
+ * prima e dopo la compressione e il tempo impiegato, in modo da poter valutare la soglia rispetto al
+ * costo di CPU.
+ */
+public class CodecStats {
+
+    /**
+     * Contatori indicizzati per ID del task.
+     */
+    private final ConcurrentHashMap<Integer, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Contatori della compressione dei frame inviati.
+     */
+    private final Compression deflate = new Compression();
+
+    /**
+     * Contatori della decompressione dei frame ricevuti.
+     */
+    private final Compression inflate = new Compression();
+
+    /**
+     * Registra la codifica di un messaggio.
+     * @param task ID del task.
+     * @param bytes Dimensione in byte del messaggio codificato.
+     * @param nanos Tempo, in nanosecondi, impiegato per la codifica.
+     */
+    public void recordEncode(int task, long bytes, long nanos) {
+        Entry entry = entry(task);
+        entry.encoded.incrementAndGet();
+        entry.encodedBytes.addAndGet(bytes);
+        entry.encodeNanos.addAndGet(nanos);
+    }
+
+    /**
+     * Registra la decodifica di un messaggio.
+     * @param task ID del task.
+     * @param bytes Dimensione in byte del messaggio codificato.
+     * @param nanos Tempo, in nanosecondi, impiegato per la decodifica.
+     */
+    public void recordDecode(int task, long bytes, long nanos) {
+        Entry entry = entry(task);
+        entry.decoded.incrementAndGet();
+        entry.decodedBytes.addAndGet(bytes);
+        entry.decodeNanos.addAndGet(nanos);
+    }
+
+    /**
+     * Registra la compressione di un frame da inviare che ha superato la soglia.
+     * @param rawBytes Dimensione in byte del corpo originale.
+     * @param sentBytes Dimensione in byte del frame inviato, uguale a {@code rawBytes} se la
+     *                  compressione non ha ridotto il frame, che viene quindi inviato senza
+     *                  compressione.
+     * @param nanos Tempo, in nanosecondi, impiegato per la compressione.
+     */
+    public void recordDeflate(long rawBytes, long sentBytes, long nanos) {
+        deflate.record(rawBytes, sentBytes, nanos);
+    }
+
+    /**
+     * Registra la decompressione di un frame ricevuto.
+     * @param rawBytes Dimensione in byte del corpo originale.
+     * @param receivedBytes Dimensione in byte del corpo compresso.
+     * @param nanos Tempo, in nanosecondi, impiegato per la decompressione.
+     */
+    public void recordInflate(long rawBytes, long receivedBytes, long nanos) {
+        inflate.record(rawBytes, receivedBytes, nanos);
+    }
+
+    /**
+     * Restituisce il numero di frame inviati che hanno superato la soglia di compressione.
+     * @return Numero di frame.
+     */
+    public long getDeflatedFrames() {
+        return deflate.frames.get();
+    }
+
+    /**
+     * Restituisce la dimensione complessiva, prima della compressione, dei frame inviati che hanno
+     * superato la soglia.
+     * @return Numero di byte non compressi.
+     */
+    public long getDeflatedRawBytes() {
+        return deflate.rawBytes.get();
+    }
+
+    /**
+     * Restituisce la dimensione complessiva, dopo la compressione, dei frame inviati che hanno
+     * superato la soglia.
+     * @return Numero di byte inviati.
+     */
+    public long getDeflatedBytes() {
+        return deflate.bytes.get();
+    }
+
+    /**
+     * Restituisce il tempo complessivo, in nanosecondi, impiegato per comprimere i frame inviati.
+     * @return Tempo di compressione.
+     */
+    public long getDeflateNanos() {
+        return deflate.nanos.get();
+    }
+
+    /**
+     * Restituisce il numero di frame ricevuti compressi.
+     * @return Numero di frame.
+     */
+    public long getInflatedFrames() {
+        return inflate.frames.get();
+    }
+
+    /**
+     * Restituisce la dimensione complessiva, dopo la decompressione, dei frame ricevuti compressi.
+     * @return Numero di byte non compressi.
+     */
+    public long getInflatedRawBytes() {
+        return inflate.rawBytes.get();
+    }
+
+    /**
+     * Restituisce la dimensione complessiva dei corpi compressi ricevuti.
+     * @return Numero di byte ricevuti.
+     */
+    public long getInflatedBytes() {
+        return inflate.bytes.get();
+    }
+
+    /**
+     * Restituisce il tempo complessivo, in nanosecondi, impiegato per decomprimere i frame ricevuti.
+     * @return Tempo di decompressione.
+     */
+    public long getInflateNanos() {
+        return inflate.nanos.get();
+    }
+
+    /**
+     * Restituisce gli ID dei task per i quali sono stati registrati messaggi, in ordine crescente.
+     * @return Lista degli ID dei task.
+     */
+    public List<Integer> getTasks() {
+        List<Integer> tasks = new ArrayList<>(entries.keySet());
+        Collections.sort(tasks);
+        return tasks;
+    }
+
+    /**
+     * Restituisce il numero di messaggi codificati per il task specificato.
+     * @param task ID del task.
+     * @return Numero di messaggi codificati.
+     */
+    public long getEncodedMessages(int task) {
+        return entry(task).encoded.get();
+    }
+
+    /**
+     * Restituisce il numero di byte codificati per il task specificato.
+     * @param task ID del task.
+     * @return Numero di byte codificati.
+     */
+    public long getEncodedBytes(int task) {
+        return entry(task).encodedBytes.get();
+    }
+
+    /**
+     * Restituisce il tempo complessivo, in nanosecondi, impiegato per codificare i messaggi del task
+     * specificato.
+     * @param task ID del task.
+     * @return Tempo di codifica.
+     */
+    public long getEncodeNanos(int task) {
+        return entry(task).encodeNanos.get();
+    }
+
+    /**
+     * Restituisce il numero di messaggi decodificati per il task specificato.
+     * @param task ID del task.
+     * @return Numero di messaggi decodificati.
+     */
+    public long getDecodedMessages(int task) {
+        return entry(task).decoded.get();
+    }
+
+    /**
+     * Restituisce il numero di byte decodificati per il task specificato.
+     * @param task ID del task.
+     * @return Numero di byte decodificati.
+     */
+    public long getDecodedBytes(int task) {
+        return entry(task).decodedBytes.get();
+    }
+
+    /**
+     * Restituisce il tempo complessivo, in nanosecondi, impiegato per decodificare i messaggi del
+     * task specificato.
+     * @param task ID del task.
+     * @return Tempo di decodifica.
+     */
+    public long getDecodeNanos(int task) {
+        return entry(task).decodeNanos.get();
+    }
+
+    /**
+     * Restituisce una descrizione testuale dei contatori, una riga per ogni task: messaggi, byte medi
+     * e tempo medio in microsecondi, prima in codifica e poi in decodifica. Se sono stati compressi o
+     * decompressi dei frame, segue una riga per ogni direzione con i byte prima e dopo la
+     * compressione e il tempo complessivo in millisecondi.
+     * @return Descrizione dei contatori.
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (int task : getTasks()) {
+            Entry entry = entry(task);
+            long encoded = entry.encoded.get();
+            long decoded = entry.decoded.get();
+            builder.append(String.format(Locale.ROOT,
+                    "task %d: inviati %d (%.0f B, %.1f us), ricevuti %d (%.0f B, %.1f us)%n",
+                    task, encoded, average(entry.encodedBytes.get(), encoded),
+                    average(entry.encodeNanos.get(), encoded) / 1000, decoded,
+                    average(entry.decodedBytes.get(), decoded),
+                    average(entry.decodeNanos.get(), decoded) / 1000));
+        }
+        deflate.append(builder, "compressi in invio");
+        inflate.append(builder, "compressi in ricezione");
+        return builder.toString();
+    }
+
+    /**
+     * Restituisce i contatori del task specificato, creandoli se necessario.
+     * @param task ID del task.
+     * @return Contatori del task.
+     */
+    private Entry entry(int task) {
+        Entry entry = entries.get(task);
+        if (entry == null) {
+            entry = new Entry();
+            Entry previous = entries.putIfAbsent(task, entry);
+            if (previous != null) {
+                entry = previous;
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Calcola la media, restituendo {@code 0} se non ci sono campioni.
+     * @param total Somma dei campioni.
+     * @param count Numero di campioni.
+     * @return Media dei campioni.
+     */
+    private static double average(long total, long count) {
+        return count == 0 ? 0 : (double) total / count;
+    }
+
+    /**
+     * Contatori di un singolo task.
+     */
+    private static class Entry {
+        private final AtomicLong encoded = new AtomicLong();
+        private final AtomicLong encodedBytes = new AtomicLong();
+        private final AtomicLong encodeNanos = new AtomicLong();
+        private final AtomicLong decoded = new AtomicLong();
+        private final AtomicLong decodedBytes = new AtomicLong();
+        private final AtomicLong decodeNanos = new AtomicLong();
+    }
+
+    /**
+     * Contatori della compressione in una direzione.
+     */
+    private static class Compression {
+        private final AtomicLong frames = new AtomicLong();
+        private final AtomicLong rawBytes = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicLong nanos = new AtomicLong();
+
+        /**
+         * Registra un frame.
+         * @param raw Dimensione in byte prima della compressione.
+         * @param compressed Dimensione in byte dopo la compressione.
+         * @param elapsed Tempo impiegato, in nanosecondi.
+         */
+        private void record(long raw, long compressed, long elapsed) {
+            frames.incrementAndGet();
+            rawBytes.addAndGet(raw);
+            bytes.addAndGet(compressed);
+            nanos.addAndGet(elapsed);
+        }
+
+        /**
+         * Aggiunge la descrizione dei contatori, se è stato registrato almeno un frame.
+         * @param builder Descrizione in costruzione.
+         * @param label Direzione dei frame.
+         */
+        private void append(StringBuilder builder, String label) {
+            long count = frames.get();
+            if (count > 0) {
+                builder.append(String.format(Locale.ROOT, "%s: %d frame, %d B -> %d B, %.1f ms%n",
+                        label, count, rawBytes.get(), bytes.get(), nanos.get() / 1e6));
+            }
+        }
+    }
+}
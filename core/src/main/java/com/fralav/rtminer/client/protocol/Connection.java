@@ -0,0 +1,300 @@
+package com.fralav.rtminer.client.protocol;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/**
+ * La classe rappresenta una connessione con il server. Al momento della connessione il client
+ * chiede al server la versione del protocollo supportata: se il server supporta il protocollo a
+ * frame viene creata una {@link FramedConnection}, altrimenti una {@link LegacyConnection} che
+ * utilizza il protocollo originale. Con la versione {@link Protocol#PROTOCOL_CODEC} il client e il
+ * server concordano anche il codec con il quale scrivere i frame e, con la versione
+ * {@link Protocol#PROTOCOL_COMPRESSION}, la soglia oltre la quale i frame vengono compressi.
+ */
+public abstract class Connection implements Closeable {
+
+    /**
+     * Socket che stabilisce la connessione al server.
+     */
+    final Socket socket;
+
+    /**
+     * Istante, in nanosecondi, dell'ultima risposta ricevuta dal server.
+     */
+    private volatile long lastActivity = System.nanoTime();
+
+    /**
+     * Inizializza gli attributi d'istanza con quelli passati in input.
+     * @param socket Socket che stabilisce la connessione al server.
+     */
+    Connection(Socket socket) {
+        this.socket = socket;
+    }
+
+    /**
+     * Stabilisce la connessione con il server. Se {@code hello} è {@code true}, il client chiede al
+     * server la versione del protocollo supportata: se il server non risponde entro
+     * {@link Protocol#HELLO_TIMEOUT} millisecondi, la connessione viene chiusa e ristabilita
+     * utilizzando il protocollo originale. Se le opzioni lo richiedono, la connessione viene stabilita
+     * tramite il trasporto NIO, disponibile con i server che supportano il codec binario.
+     * @param ip Indirizzo IP del server.
+     * @param port Porta del server.
+     * @param options Opzioni della connessione.
+     * @param hello {@code true} se il client deve negoziare la versione del protocollo.
+     * @return Connessione stabilita con il server.
+     * @throws IOException Se non è possibile connettersi al server.
+     */
+    public static Connection open(String ip, int port, ConnectionOptions options, boolean hello)
+            throws IOException {
+        int timeout = options.getConnectTimeout();
+        if (hello && options.isNioTransport()) {
+            Connection connection = NioConnection.open(ip, port, options);
+            if (connection != null) {
+                return connection;
+            }
+        } else if (hello) {
+            Socket socket = createSocket(ip, port, timeout);
+            try {
+                CountingOutputStream output = new CountingOutputStream(socket.getOutputStream());
+                CountingInputStream input = new CountingInputStream(socket.getInputStream());
+                ObjectOutputStream out = new ObjectOutputStream(output);
+                ObjectInputStream in = new ObjectInputStream(input);
+                int version;
+                int codec = Protocol.CODEC_JAVA;
+                int threshold = -1;
+                try {
+                    socket.setSoTimeout(Protocol.HELLO_TIMEOUT);
+                    version = negotiate(in, out);
+                    if (version >= Protocol.PROTOCOL_COMPRESSION) {
+                        threshold = negotiateCompression(in, out, options.getCompressionThreshold());
+                    }
+                    if (version >= Protocol.PROTOCOL_CODEC) {
+                        codec = negotiateCodec(in, out, options.getCodec());
+                    }
+                } catch (IOException e) {
+                    // Il server non conosce il task TASK_HELLO: non ha risposto oppure ha chiuso la connessione.
+                    version = Protocol.PROTOCOL_LEGACY;
+                }
+                if (version >= Protocol.PROTOCOL_FRAMED) {
+                    socket.setSoTimeout(0);
+                    FrameCompression compression = threshold >= 0
+                            ? new FrameCompression(threshold, options.getCodecStats()) : null;
+                    if (codec == Protocol.CODEC_BINARY) {
+                        return new FramedConnection(socket,
+                                new BinaryFrameCodec(input, output, options.getCodecStats(), compression),
+                                version, null);
+                    }
+                    StreamGovernor governor = options.createStreamGovernor();
+                    return new FramedConnection(socket, new ObjectFrameCodec(in, out, input, output,
+                            options.getCodecStats(), governor), version, governor);
+                }
+            } catch (IOException e) {
+                socket.close();
+                throw e;
+            }
+            socket.close();
+        }
+        Socket socket = createSocket(ip, port, timeout);
+        try {
+            CountingOutputStream output = new CountingOutputStream(socket.getOutputStream());
+            CountingInputStream input = new CountingInputStream(socket.getInputStream());
+            ObjectOutputStream out = new ObjectOutputStream(output);
+            ObjectInputStream in = new ObjectInputStream(input);
+            socket.setSoTimeout(0);
+            return new LegacyConnection(socket, in, out, input, output, options.getCodecStats(),
+                    options.createStreamGovernor());
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Crea il socket e lo connette al server. Fino alla fine della negoziazione, le letture dallo
+     * stream di input attendono al massimo {@code timeout} millisecondi.
+     * @param ip Indirizzo IP del server.
+     * @param port Porta del server.
+     * @param timeout Tempo massimo di attesa, in millisecondi.
+     * @return Socket connesso al server.
+     * @throws IOException Se non è possibile connettersi al server.
+     */
+    private static Socket createSocket(String ip, int port, int timeout) throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(ip, port), timeout);
+            socket.setSoTimeout(timeout);
+            socket.setTcpNoDelay(true);
+            return socket;
+        } catch (IOException | IllegalArgumentException e) {
+            socket.close();
+            throw e instanceof IOException ? (IOException) e : new IOException(e.getMessage());
+        }
+    }
+
+    /**
+     * Invia al server il task {@link Protocol#TASK_HELLO} e concorda la versione del protocollo: il
+     * server risponde con la versione più recente che supporta, il client sceglie la minore tra
+     * questa e la propria e il server la conferma. Il chiamante deve impostare il tempo massimo di
+     * attesa della risposta a {@link Protocol#HELLO_TIMEOUT}.
+     * @param in Stream di input.
+     * @param out Stream di output.
+     * @return Versione del protocollo concordata, {@link Protocol#PROTOCOL_LEGACY} se il server non
+     * ha risposto correttamente.
+     * @throws IOException Se si verifica un errore di comunicazione.
+     */
+    static int negotiate(ObjectInputStream in, ObjectOutputStream out) throws IOException {
+        out.writeObject(Protocol.TASK_HELLO);
+        out.flush();
+        try {
+            Object reply = in.readObject();
+            if (!(reply instanceof Integer) || (Integer) reply < Protocol.PROTOCOL_FRAMED) {
+                return Protocol.PROTOCOL_LEGACY;
+            }
+            int version = Math.min((Integer) reply, Protocol.PROTOCOL_VERSION);
+            out.writeObject(version);
+            out.flush();
+            Object ack = in.readObject();
+            return Integer.valueOf(version).equals(ack) ? version : Protocol.PROTOCOL_LEGACY;
+        } catch (ClassNotFoundException e) {
+            return Protocol.PROTOCOL_LEGACY;
+        }
+    }
+
+    /**
+     * Propone al server la dimensione minima dei frame da comprimere e ne legge la scelta. La soglia
+     * scelta dal server vale per entrambe le direzioni, ma solo se viene concordato il codec binario:
+     * se il client propone una soglia negativa, il server deve rispondere con una soglia negativa.
+     * @param in Stream di input.
+     * @param out Stream di output.
+     * @param threshold Soglia proposta dal client, negativa se il client non vuole comprimere.
+     * @return Soglia scelta dal server, negativa se la compressione non viene utilizzata.
+     * @throws IOException Se si verifica un errore di comunicazione o se la risposta del server non è
+     * valida.
+     */
+    static int negotiateCompression(ObjectInputStream in, ObjectOutputStream out, int threshold)
+            throws IOException {
+        out.writeObject(threshold < 0 ? -1 : threshold);
+        out.flush();
+        try {
+            Object reply = in.readObject();
+            if (!(reply instanceof Integer)) {
+                throw new IOException("Soglia di compressione non valida: " + reply);
+            }
+            return Math.max((Integer) reply, -1);
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e.getMessage());
+        }
+    }
+
+    /**
+     * Propone al server il codec con il quale scrivere i frame e ne legge la scelta. Dopo la risposta
+     * entrambi smettono di utilizzare la serializzazione Java, se il codec scelto è
+     * {@link Protocol#CODEC_BINARY}.
+     * @param in Stream di input.
+     * @param out Stream di output.
+     * @param preferred Codec preferito dal client.
+     * @return Codec scelto dal server.
+     * @throws IOException Se si verifica un errore di comunicazione o se il server sceglie un codec
+     * sconosciuto.
+     */
+    static int negotiateCodec(ObjectInputStream in, ObjectOutputStream out, int preferred)
+            throws IOException {
+        out.writeObject(preferred);
+        out.flush();
+        try {
+            Object reply = in.readObject();
+            if (Integer.valueOf(Protocol.CODEC_JAVA).equals(reply)
+                    || Integer.valueOf(Protocol.CODEC_BINARY).equals(reply)) {
+                return (Integer) reply;
+            }
+            throw new IOException("Codec sconosciuto: " + reply);
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e.getMessage());
+        }
+    }
+
+    /**
+     * Invia al server la richiesta di eseguire il task specificato. La risposta viene consegnata a
+     * {@code handler}, nel thread corrente oppure in un thread di lettura a seconda del protocollo.
+     * Se {@code handler} è uno {@link StreamHandler}, riceve anche i blocchi dei task che
+     * restituiscono il risultato a blocchi.
+     * @param task ID del task.
+     * @param args Argomenti del task.
+     * @param handler Riceve la risposta del server.
+     * @return ID della richiesta, da utilizzare nei frame inviati con {@link #send(Frame)}.
+     * @throws IOException Se non è possibile inviare la richiesta.
+     */
+    public abstract int call(int task, Object[] args, ResponseHandler handler) throws IOException;
+
+    /**
+     * Invia al server un frame di controllo relativo a una richiesta in corso, ad esempio di tipo
+     * {@link Frame#CREDIT} o {@link Frame#CANCEL}. Disponibile solo con il protocollo a frame.
+     * @param frame Frame da inviare.
+     * @throws IOException Se non è possibile inviare il frame.
+     */
+    public abstract void send(Frame frame) throws IOException;
+
+    /**
+     * Restituisce la versione del protocollo utilizzata dalla connessione.
+     * @return Versione del protocollo.
+     */
+    public abstract int getProtocolVersion();
+
+    /**
+     * Restituisce il codec con il quale la connessione scrive i messaggi.
+     * @return Una delle costanti {@code CODEC_*} di {@link Protocol}.
+     */
+    public abstract int getCodec();
+
+    /**
+     * Restituisce i contatori degli oggetti trattenuti dagli stream della serializzazione Java.
+     * @return Contatori degli stream, {@code null} se la connessione non utilizza la serializzazione
+     * Java.
+     */
+    public StreamGovernor getStreamGovernor() {
+        return null;
+    }
+
+    /**
+     * Restituisce {@code true} se la connessione è aperta, {@code false} altrimenti.
+     * @return {@code true} se la connessione è aperta.
+     */
+    public boolean isOpen() {
+        return !socket.isClosed();
+    }
+
+    /**
+     * Restituisce {@code true} se il server non sta attendendo la continuazione di un dialogo, e
+     * quindi la connessione può essere riutilizzata per una nuova operazione.
+     * @return {@code true} se la connessione è inattiva.
+     */
+    public abstract boolean isIdle();
+
+    /**
+     * Restituisce il tempo, in millisecondi, trascorso dall'ultima risposta ricevuta dal server.
+     * @return Tempo di inattività.
+     */
+    public long getIdleMillis() {
+        return (System.nanoTime() - lastActivity) / 1000000L;
+    }
+
+    /**
+     * Registra la ricezione di una risposta dal server.
+     */
+    void touch() {
+        lastActivity = System.nanoTime();
+    }
+
+    /**
+     * Chiude il socket, e quindi la connessione con il server.
+     * @throws IOException Se si verifica un errore durante la chiusura.
+     */
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
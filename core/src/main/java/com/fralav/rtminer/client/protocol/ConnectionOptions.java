@@ -0,0 +1,182 @@
+package com.fralav.rtminer.client.protocol;
+
+/**
+ * La classe raccoglie le opzioni con le quali vengono stabilite le connessioni con il server. Le
+ * modifiche alle opzioni hanno effetto a partire dalla connessione successiva.
+ */
+public class ConnectionOptions {
+
+    /**
+     * Tempo massimo di attesa, in millisecondi, per stabilire una connessione.
+     */
+    private final int connectTimeout;
+
+    /**
+     * Contatori dei codec, condivisi da tutte le connessioni.
+     */
+    private final CodecStats codecStats = new CodecStats();
+
+    /**
+     * Tempi delle operazioni, condivisi da tutte le connessioni.
+     */
+    private final OperationStats operationStats = new OperationStats(codecStats);
+
+    /**
+     * Codec proposto al server durante la negoziazione.
+     */
+    private volatile int codec = Protocol.CODEC_BINARY;
+
+    /**
+     * Vale {@code true} se le connessioni devono essere stabilite tramite il trasporto NIO.
+     */
+    private volatile boolean nioTransport;
+
+    /**
+     * Dimensione minima, in byte, dei frame da comprimere proposta al server durante la
+     * negoziazione, negativa per non comprimere.
+     */
+    private volatile int compressionThreshold = FrameCompression.DEFAULT_THRESHOLD;
+
+    /**
+     * Numero massimo di messaggi scambiati in una direzione tra due azzeramenti degli stream della
+     * serializzazione Java.
+     */
+    private volatile int streamResetMessages = StreamGovernor.DEFAULT_MAX_MESSAGES;
+
+    /**
+     * Numero massimo di byte scambiati in una direzione tra due azzeramenti degli stream della
+     * serializzazione Java.
+     */
+    private volatile long streamResetBytes = StreamGovernor.DEFAULT_MAX_BYTES;
+
+    /**
+     * Inizializza gli attributi d'istanza con quelli passati in input.
+     * @param connectTimeout Tempo massimo di attesa, in millisecondi, per stabilire una connessione.
+     */
+    public ConnectionOptions(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    /**
+     * Restituisce il tempo massimo di attesa per stabilire una connessione.
+     * @return {@code connectTimeout}
+     */
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    /**
+     * Restituisce il codec proposto al server durante la negoziazione.
+     * @return {@code codec}
+     */
+    public int getCodec() {
+        return codec;
+    }
+
+    /**
+     * Imposta il codec proposto al server durante la negoziazione. Il server può comunque scegliere
+     * la serializzazione Java se non supporta il codec richiesto.
+     * @param codec {@link Protocol#CODEC_BINARY} oppure {@link Protocol#CODEC_JAVA}.
+     */
+    public void setCodec(int codec) {
+        if (codec != Protocol.CODEC_BINARY && codec != Protocol.CODEC_JAVA) {
+            throw new IllegalArgumentException("Codec sconosciuto: " + codec);
+        }
+        this.codec = codec;
+    }
+
+    /**
+     * Restituisce {@code true} se le connessioni vengono stabilite tramite il trasporto NIO.
+     * @return {@code nioTransport}
+     */
+    public boolean isNioTransport() {
+        return nioTransport;
+    }
+
+    /**
+     * Imposta il trasporto con il quale vengono stabilite le connessioni. Con il trasporto NIO un
+     * unico thread gestisce le letture e le scritture di tutte le connessioni tramite un selettore;
+     * è disponibile solo con i server che supportano il codec binario, e per gli altri viene
+     * utilizzato il trasporto basato su socket.
+     * @param nioTransport {@code true} per utilizzare il trasporto NIO.
+     */
+    public void setNioTransport(boolean nioTransport) {
+        this.nioTransport = nioTransport;
+    }
+
+    /**
+     * Restituisce la dimensione minima dei frame da comprimere proposta al server.
+     * @return {@code compressionThreshold}, negativa se la compressione è disattivata.
+     */
+    public int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    /**
+     * Imposta la dimensione minima dei frame da comprimere proposta al server. Il server può
+     * scegliere una soglia diversa, oppure non comprimere se non supporta la versione
+     * {@link Protocol#PROTOCOL_COMPRESSION}. Una soglia più alta risparmia tempo di CPU, una più bassa
+     * risparmia byte sulla rete.
+     * @param compressionThreshold Dimensione minima in byte, negativa per non comprimere.
+     */
+    public void setCompressionThreshold(int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    /**
+     * Restituisce il numero massimo di messaggi scambiati in una direzione tra due azzeramenti degli
+     * stream della serializzazione Java.
+     * @return {@code streamResetMessages}
+     */
+    public int getStreamResetMessages() {
+        return streamResetMessages;
+    }
+
+    /**
+     * Restituisce il numero massimo di byte scambiati in una direzione tra due azzeramenti degli
+     * stream della serializzazione Java.
+     * @return {@code streamResetBytes}
+     */
+    public long getStreamResetBytes() {
+        return streamResetBytes;
+    }
+
+    /**
+     * Imposta i limiti oltre i quali gli stream della serializzazione Java vengono azzerati, in modo
+     * che non trattengano tutti gli oggetti scambiati durante la sessione. Limiti più bassi riducono
+     * la memoria occupata, limiti più alti evitano di inviare di nuovo le descrizioni delle classi.
+     * @param messages Numero massimo di messaggi, almeno {@code 1}.
+     * @param bytes Numero massimo di byte, almeno {@code 1}.
+     */
+    public void setStreamReset(int messages, long bytes) {
+        if (messages < 1 || bytes < 1) {
+            throw new IllegalArgumentException("Limiti non validi: " + messages + ", " + bytes);
+        }
+        this.streamResetMessages = messages;
+        this.streamResetBytes = bytes;
+    }
+
+    /**
+     * Crea i contatori degli stream di una nuova connessione che utilizza la serializzazione Java.
+     * @return Contatori con i limiti correnti.
+     */
+    StreamGovernor createStreamGovernor() {
+        return new StreamGovernor(streamResetMessages, streamResetBytes);
+    }
+
+    /**
+     * Restituisce i contatori dei codec.
+     * @return {@code codecStats}
+     */
+    public CodecStats getCodecStats() {
+        return codecStats;
+    }
+
+    /**
+     * Restituisce i tempi delle operazioni.
+     * @return {@code operationStats}
+     */
+    public OperationStats getOperationStats() {
+        return operationStats;
+    }
+}
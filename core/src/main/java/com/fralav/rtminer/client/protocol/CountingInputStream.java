@@ -0,0 +1,57 @@
+package com.fralav.rtminer.client.protocol;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Stream di input che conta i byte letti dallo stream sottostante.
+ */
+class CountingInputStream extends FilterInputStream {
+
+    /**
+     * Numero di byte letti.
+     */
+    private volatile long count;
+
+    /**
+     * Inizializza lo stream con lo stream sottostante.
+     * @param in Stream sottostante.
+     */
+    CountingInputStream(InputStream in) {
+        super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b >= 0) {
+            count++;
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = super.read(b, off, len);
+        if (n > 0) {
+            count += n;
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        count += skipped;
+        return skipped;
+    }
+
+    /**
+     * Restituisce il numero di byte letti.
+     * @return {@code count}
+     */
+    long getCount() {
+        return count;
+    }
+}
@@ -0,0 +1,44 @@
+package com.fralav.rtminer.client.protocol;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Stream di output che conta i byte scritti sullo stream sottostante.
+ */
+class CountingOutputStream extends FilterOutputStream {
+
+    /**
+     * Numero di byte scritti.
+     */
+    private volatile long count;
+
+    /**
+     * Inizializza lo stream con lo stream sottostante.
+     * @param out Stream sottostante.
+     */
+    CountingOutputStream(OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        count += len;
+    }
+
+    /**
+     * Restituisce il numero di byte scritti.
+     * @return {@code count}
+     */
+    long getCount() {
+        return count;
+    }
+}
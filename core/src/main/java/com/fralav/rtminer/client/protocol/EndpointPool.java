@@ -0,0 +1,217 @@
+package com.fralav.rtminer.client.protocol;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * La classe raccoglie i server, tutti equivalenti, ai quali il client può connettersi e stabilisce
+ * l'ordine nel quale provarli: prima i server disponibili, dal tempo di andata e ritorno più basso,
+ * poi quelli non ancora misurati, nell'ordine dell'elenco, e infine quelli esclusi dopo un tentativo
+ * fallito. Quando i server sono più di uno, un thread in background verifica periodicamente i soli
+ * server esclusi, stabilendo e chiudendo subito una connessione TCP, in modo da riammetterli appena
+ * tornano raggiungibili: i server raggiungibili non ricevono quindi connessioni chiuse prima
+ * dell'handshake, e il loro tempo di andata e ritorno viene misurato da {@link SessionManager} con il
+ * task {@link Protocol#TASK_PING}. I metodi possono essere richiamati da qualsiasi thread.
+ */
+public class EndpointPool {
+
+    /**
+     * Intervallo, in millisecondi, tra due verifiche dei server.
+     */
+    public static final long PROBE_INTERVAL = 30000;
+
+    /**
+     * Tempo massimo di attesa, in millisecondi, di una connessione TCP durante la verifica.
+     */
+    private final int probeTimeout;
+
+    /**
+     * Server ai quali il client può connettersi, nell'ordine indicato dall'utente.
+     */
+    private volatile List<ServerEndpoint> endpoints = Collections.emptyList();
+
+    /**
+     * Thread che verifica i server, {@code null} se la verifica non è in corso.
+     */
+    private ScheduledExecutorService prober;
+
+    /**
+     * Inizializza gli attributi d'istanza con quelli passati in input.
+     * @param probeTimeout Tempo massimo di attesa, in millisecondi, di una connessione TCP durante la
+     *                     verifica.
+     */
+    public EndpointPool(int probeTimeout) {
+        this.probeTimeout = probeTimeout;
+    }
+
+    /**
+     * Imposta i server ai quali il client può connettersi. I server già presenti nell'elenco
+     * precedente conservano il proprio stato.
+     * @param servers Server, nell'ordine in cui provarli quando non sono ancora stati misurati.
+     */
+    public synchronized void setEndpoints(List<ServerEndpoint> servers) {
+        List<ServerEndpoint> updated = new ArrayList<>();
+        for (ServerEndpoint server : servers) {
+            int index = endpoints.indexOf(server);
+            ServerEndpoint endpoint = index >= 0 ? endpoints.get(index) : server;
+            if (!updated.contains(endpoint)) {
+                updated.add(endpoint);
+            }
+        }
+        endpoints = Collections.unmodifiableList(updated);
+        if (prober != null && updated.size() < 2) {
+            stopProbing();
+        }
+    }
+
+    /**
+     * Restituisce i server ai quali il client può connettersi.
+     * @return {@code endpoints}, nell'ordine indicato dall'utente.
+     */
+    public List<ServerEndpoint> getEndpoints() {
+        return endpoints;
+    }
+
+    /**
+     * Restituisce {@code true} se il server appartiene all'elenco.
+     * @param endpoint Server da cercare.
+     * @return {@code true} se il server appartiene all'elenco.
+     */
+    public boolean contains(ServerEndpoint endpoint) {
+        return endpoints.contains(endpoint);
+    }
+
+    /**
+     * Restituisce i server nell'ordine nel quale provarli.
+     * @return Server disponibili dal più veloce, poi quelli non misurati e infine quelli esclusi.
+     */
+    public List<ServerEndpoint> rank() {
+        List<ServerEndpoint> measured = new ArrayList<>();
+        final Map<ServerEndpoint, Long> rtt = new HashMap<>();
+        List<ServerEndpoint> unmeasured = new ArrayList<>();
+        List<ServerEndpoint> excluded = new ArrayList<>();
+        for (ServerEndpoint endpoint : endpoints) {
+            // Il tempo viene letto una sola volta, perché le verifiche possono modificarlo durante
+            // l'ordinamento.
+            long nanos = endpoint.getRttNanos();
+            if (!endpoint.isAvailable()) {
+                excluded.add(endpoint);
+            } else if (nanos < 0) {
+                unmeasured.add(endpoint);
+            } else {
+                measured.add(endpoint);
+                rtt.put(endpoint, nanos);
+            }
+        }
+        Collections.sort(measured, new Comparator<ServerEndpoint>() {
+            @Override
+            public int compare(ServerEndpoint first, ServerEndpoint second) {
+                return rtt.get(first).compareTo(rtt.get(second));
+            }
+        });
+        measured.addAll(unmeasured);
+        measured.addAll(excluded);
+        return measured;
+    }
+
+    /**
+     * Restituisce i server disponibili diversi da quello specificato, dal più veloce, ai quali
+     * distribuire parte di un'operazione.
+     * @param excluded Server da escludere, di solito quello della connessione corrente.
+     * @param max Numero massimo di server da restituire.
+     * @return Server disponibili, al più {@code max}.
+     */
+    public List<ServerEndpoint> spare(ServerEndpoint excluded, int max) {
+        List<ServerEndpoint> spare = new ArrayList<>();
+        for (ServerEndpoint endpoint : rank()) {
+            if (spare.size() >= max) {
+                break;
+            }
+            if (!endpoint.equals(excluded) && endpoint.isAvailable()) {
+                spare.add(endpoint);
+            }
+        }
+        return spare;
+    }
+
+    /**
+     * Avvia la verifica periodica dei server, se sono più di uno e la verifica non è già in corso.
+     */
+    public synchronized void startProbing() {
+        if (prober != null || endpoints.size() < 2) {
+            return;
+        }
+        prober = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "RTMiner-Probe");
+            thread.setDaemon(true);
+            return thread;
+        });
+        prober.scheduleWithFixedDelay(this::probeAll, 0, PROBE_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Interrompe la verifica periodica dei server.
+     */
+    public synchronized void stopProbing() {
+        if (prober != null) {
+            prober.shutdownNow();
+            prober = null;
+        }
+    }
+
+    /**
+     * Verifica, uno dopo l'altro, i server che hanno fallito l'ultimo tentativo.
+     */
+    public void probeAll() {
+        for (ServerEndpoint endpoint : endpoints) {
+            if (endpoint.getFailures() > 0) {
+                probe(endpoint);
+            }
+        }
+    }
+
+    /**
+     * Verifica che un server sia di nuovo raggiungibile stabilendo e chiudendo una connessione TCP, e
+     * ne misura il tempo di andata e ritorno.
+     * @param endpoint Server da verificare.
+     */
+    private void probe(ServerEndpoint endpoint) {
+        Socket socket = new Socket();
+        long start = System.nanoTime();
+        try {
+            socket.connect(new InetSocketAddress(endpoint.getHost(), endpoint.getPort()), probeTimeout);
+            endpoint.recordSuccess(System.nanoTime() - start);
+        } catch (IOException | IllegalArgumentException e) {
+            endpoint.recordFailure();
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // Il socket è già chiuso.
+            }
+        }
+    }
+
+    /**
+     * Restituisce lo stato dei server, uno per riga.
+     * @return Descrizione dei server.
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (ServerEndpoint endpoint : endpoints) {
+            builder.append(endpoint).append('\n');
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,168 @@
+package com.fralav.rtminer.client.protocol;
+
+import java.io.IOException;
+
+/**
+ * La classe rappresenta un messaggio del protocollo a frame. Ogni frame contiene l'ID della richiesta
+ * alla quale appartiene, il tipo del frame, l'ID del task e i valori trasportati. Il server riporta
+ * nella risposta l'ID della richiesta, in modo che il client possa associarla al chiamante anche
+ * quando più richieste sono in corso contemporaneamente.
+ */
+public class Frame {
+
+    /**
+     * Frame inviato dal client per richiedere l'esecuzione di un task.
+     */
+    public static final int REQUEST = 0;
+
+    /**
+     * Frame inviato dal server contenente il risultato di un task.
+     */
+    public static final int RESPONSE = 1;
+
+    /**
+     * Frame inviato dal server quando l'esecuzione di un task non è andata a buon fine. Il primo
+     * valore contiene la descrizione dell'errore.
+     */
+    public static final int ERROR = 2;
+
+    /**
+     * Frame inviato dal server contenente una parte del risultato di un task che restituisce il
+     * risultato a blocchi. La richiesta resta in attesa dei frame successivi.
+     */
+    public static final int CHUNK = 3;
+
+    /**
+     * Frame inviato dal server al termine di un task che restituisce il risultato a blocchi.
+     */
+    public static final int END = 4;
+
+    /**
+     * Frame inviato dal client per permettere al server di inviare altri blocchi del risultato. Il
+     * primo valore contiene il numero di blocchi aggiuntivi.
+     */
+    public static final int CREDIT = 5;
+
+    /**
+     * Frame inviato dal client per interrompere un task che restituisce il risultato a blocchi. Il
+     * server termina il task con un frame {@link #END} oppure {@link #ERROR}.
+     */
+    public static final int CANCEL = 6;
+
+    /**
+     * ID della richiesta alla quale appartiene il frame.
+     */
+    private final int id;
+
+    /**
+     * Tipo del frame.
+     */
+    private final int type;
+
+    /**
+     * ID del task.
+     */
+    private final int task;
+
+    /**
+     * Valori trasportati dal frame.
+     */
+    private final Object[] values;
+
+    /**
+     * Inizializza gli attributi d'istanza con quelli passati in input.
+     * @param id ID della richiesta.
+     * @param type Tipo del frame.
+     * @param task ID del task.
+     * @param values Valori trasportati dal frame.
+     */
+    public Frame(int id, int type, int task, Object... values) {
+        this.id = id;
+        this.type = type;
+        this.task = task;
+        this.values = values;
+    }
+
+    /**
+     * Restituisce l'ID della richiesta alla quale appartiene il frame.
+     * @return {@code id}
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Restituisce il tipo del frame.
+     * @return {@code type}
+     */
+    public int getType() {
+        return type;
+    }
+
+    /**
+     * Restituisce l'ID del task.
+     * @return {@code task}
+     */
+    public int getTask() {
+        return task;
+    }
+
+    /**
+     * Restituisce il numero di valori trasportati dal frame.
+     * @return Numero di valori.
+     */
+    public int size() {
+        return values.length;
+    }
+
+    /**
+     * Restituisce il valore in posizione {@code index}.
+     * @param index Posizione del valore.
+     * @return Valore in posizione {@code index}.
+     * @throws IOException Se il frame non contiene abbastanza valori.
+     */
+    public Object getValue(int index) throws IOException {
+        if (index >= values.length) {
+            throw new IOException("Frame incompleto per il task " + task);
+        }
+        return values[index];
+    }
+
+    /**
+     * Restituisce i valori trasportati dal frame.
+     * @return {@code values}
+     */
+    public Object[] getValues() {
+        return values;
+    }
+
+    /**
+     * Converte il frame nell'array di oggetti inviato sullo stream: ID della richiesta, tipo, ID del
+     * task e, a seguire, i valori.
+     * @return Array di oggetti che rappresenta il frame.
+     */
+    Object[] toArray() {
+        Object[] array = new Object[values.length + 3];
+        array[0] = id;
+        array[1] = type;
+        array[2] = task;
+        System.arraycopy(values, 0, array, 3, values.length);
+        return array;
+    }
+
+    /**
+     * Ricostruisce il frame a partire dall'array di oggetti ricevuto dallo stream.
+     * @param array Array di oggetti ricevuto.
+     * @return Frame ricostruito.
+     * @throws IOException Se l'array non rappresenta un frame valido.
+     */
+    static Frame fromArray(Object[] array) throws IOException {
+        if (array.length < 3 || !(array[0] instanceof Integer) || !(array[1] instanceof Integer)
+                || !(array[2] instanceof Integer)) {
+            throw new IOException("Frame non valido");
+        }
+        Object[] values = new Object[array.length - 3];
+        System.arraycopy(array, 3, values, 0, values.length);
+        return new Frame((Integer) array[0], (Integer) array[1], (Integer) array[2], values);
+    }
+}
@@ -0,0 +1,35 @@
+package com.fralav.rtminer.client.protocol;
+
+import java.io.IOException;
+
+/**
+ * L'interfaccia rappresenta il formato con il quale i {@link Frame} vengono scritti sullo stream e
+ * letti dallo stream. Il codec viene scelto durante la negoziazione della versione del protocollo.
+ * Il metodo {@code write} può essere richiamato da più thread, mentre il metodo {@code read} viene
+ * richiamato solo dal thread di lettura della connessione.
+ */
+interface FrameCodec {
+
+    /**
+     * Scrive il frame sullo stream di output e lo invia subito al server.
+     * @param frame Frame da inviare.
+     * @throws IOException Se si verifica un errore di comunicazione o se il frame contiene valori
+     * non supportati dal codec.
+     */
+    void write(Frame frame) throws IOException;
+
+    /**
+     * Legge il frame successivo dallo stream di input, bloccando il thread chiamante finché non è
+     * disponibile.
+     * @return Frame ricevuto.
+     * @throws IOException Se si verifica un errore di comunicazione o se il frame non è valido.
+     */
+    Frame read() throws IOException;
+
+    /**
+     * Restituisce l'identificativo del codec, uguale a una delle costanti {@code CODEC_*} di
+     * {@link Protocol}.
+     * @return Identificativo del codec.
+     */
+    int getId();
+}
@@ -0,0 +1,173 @@
+package com.fralav.rtminer.client.protocol;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * La classe comprime con l'algoritmo deflate i frame del codec binario più grandi della soglia
+ * concordata con il server durante la negoziazione della versione {@link Protocol#PROTOCOL_COMPRESSION}.
+ * Quando la compressione è concordata, la lunghezza che precede ogni frame viene moltiplicata per due
+ * e il bit meno significativo indica se il corpo è compresso: in questo caso il corpo contiene la
+ * lunghezza del corpo originale (varint) seguita dai byte compressi. Un frame viene inviato compresso
+ * solo se in questo modo occupa meno byte. La compressione e la decompressione possono avvenire
+ * contemporaneamente in due thread diversi, ma ognuna deve essere sincronizzata dal chiamante.
+ */
+class FrameCompression {
+
+    /**
+     * Soglia predefinita, in byte: i frame più piccoli vengono inviati senza compressione, poiché il
+     * risparmio non ripagherebbe il tempo di CPU.
+     */
+    static final int DEFAULT_THRESHOLD = 1024;
+
+    /**
+     * Valore massimo della lunghezza, comprensiva del bit di compressione, che precede un frame.
+     */
+    static final int MAX_HEADER = (BinaryFrameCodec.MAX_FRAME_SIZE << 1) | 1;
+
+    /**
+     * Spazio lasciato libero all'inizio del buffer di compressione per la lunghezza del frame e
+     * quella del corpo originale, che vengono scritte dopo la compressione.
+     */
+    private static final int PREFIX = 2 * BinaryFrameCodec.MAX_VARINT_SIZE;
+
+    /**
+     * Dimensione minima, in byte, dei frame da comprimere.
+     */
+    private final int threshold;
+
+    /**
+     * Contatori del codec.
+     */
+    private final CodecStats stats;
+
+    /**
+     * Comprime i frame da inviare. Il livello più veloce ottiene già buona parte del risparmio sui
+     * testi e sulle liste di nomi, con un costo contenuto sui dispositivi meno potenti.
+     */
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+
+    /**
+     * Decomprime i frame ricevuti.
+     */
+    private final Inflater inflater = new Inflater();
+
+    /**
+     * Buffer nel quale vengono compressi i frame da inviare, riutilizzato da un frame all'altro e
+     * ingrandito quando necessario.
+     */
+    private byte[] deflated = new byte[512];
+
+    /**
+     * Buffer nel quale vengono decompressi i frame ricevuti, riutilizzato da un frame all'altro e
+     * ingrandito quando necessario.
+     */
+    private byte[] inflated = new byte[512];
+
+    /**
+     * Inizializza gli attributi d'istanza con quelli passati in input.
+     * @param threshold Dimensione minima, in byte, dei frame da comprimere.
+     * @param stats Contatori del codec.
+     */
+    FrameCompression(int threshold, CodecStats stats) {
+        this.threshold = threshold;
+        this.stats = stats;
+    }
+
+    /**
+     * Calcola la lunghezza che precede un frame quando la compressione è concordata.
+     * @param length Lunghezza del corpo del frame.
+     * @param compressed {@code true} se il corpo è compresso.
+     * @return Lunghezza comprensiva del bit di compressione.
+     */
+    static int header(int length, boolean compressed) {
+        return (length << 1) | (compressed ? 1 : 0);
+    }
+
+    /**
+     * Comprime il corpo di un frame, se supera la soglia.
+     * @param body Array contenente il corpo del frame.
+     * @param offset Posizione del corpo nell'array.
+     * @param length Lunghezza del corpo.
+     * @return Buffer con posizione e limite che delimitano il frame compresso, preceduto dalla sua
+     * lunghezza, oppure {@code null} se il frame deve essere inviato senza compressione. Il contenuto
+     * resta valido fino alla compressione del frame successivo.
+     */
+    ByteBuffer compress(byte[] body, int offset, int length) {
+        if (length < threshold) {
+            return null;
+        }
+        long start = System.nanoTime();
+        if (deflated.length < PREFIX + length) {
+            deflated = new byte[Math.max(PREFIX + length, deflated.length * 2)];
+        }
+        deflater.reset();
+        deflater.setInput(body, offset, length);
+        deflater.finish();
+        // Lo spazio disponibile è pari al corpo originale: se non basta, la compressione non conviene.
+        int size = 0;
+        while (!deflater.finished() && size < length) {
+            size += deflater.deflate(deflated, PREFIX + size, length - size);
+        }
+        int compressedLength = BinaryFrameCodec.varintSize(length) + size;
+        if (!deflater.finished() || compressedLength >= length) {
+            stats.recordDeflate(length, length, System.nanoTime() - start);
+            return null;
+        }
+        int header = header(compressedLength, true);
+        int begin = PREFIX - BinaryFrameCodec.varintSize(length) - BinaryFrameCodec.varintSize(header);
+        ByteBuffer frame = ByteBuffer.wrap(deflated);
+        frame.position(begin);
+        BinaryFrameCodec.putVarint(frame, header);
+        BinaryFrameCodec.putVarint(frame, length);
+        frame.position(begin);
+        frame.limit(PREFIX + size);
+        stats.recordDeflate(length, frame.remaining(), System.nanoTime() - start);
+        return frame;
+    }
+
+    /**
+     * Decomprime il corpo di un frame ricevuto compresso.
+     * @param body Buffer contenente il corpo compresso, dalla posizione al limite. Deve essere
+     *             basato su un array.
+     * @return Buffer contenente il corpo originale, dalla posizione al limite. Il contenuto resta
+     * valido fino alla decompressione del frame successivo.
+     * @throws IOException Se il corpo compresso non è valido.
+     */
+    ByteBuffer decompress(ByteBuffer body) throws IOException {
+        long start = System.nanoTime();
+        int received = body.remaining();
+        int length = BinaryFrameCodec.getVarint(body);
+        if (length < 0 || length > BinaryFrameCodec.MAX_FRAME_SIZE) {
+            throw new IOException("Lunghezza del frame non valida: " + length);
+        }
+        // Un byte in più permette di riconoscere la fine dei dati compressi anche quando il corpo
+        // originale occupa esattamente la lunghezza dichiarata.
+        if (inflated.length < length + 1) {
+            inflated = new byte[Math.max(length + 1, inflated.length * 2)];
+        }
+        inflater.reset();
+        inflater.setInput(body.array(), body.arrayOffset() + body.position(), body.remaining());
+        int size = 0;
+        try {
+            while (size <= length && !inflater.finished()) {
+                int n = inflater.inflate(inflated, size, length + 1 - size);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                size += n;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Frame compresso non valido: " + e.getMessage());
+        }
+        if (size != length || !inflater.finished() || inflater.getRemaining() != 0) {
+            throw new IOException("Frame compresso non valido");
+        }
+        body.position(body.limit());
+        stats.recordInflate(length, received, System.nanoTime() - start);
+        return ByteBuffer.wrap(inflated, 0, length);
+    }
+}
@@ -0,0 +1,184 @@
+package com.fralav.rtminer.client.protocol;
+
+import java.io.IOException;
+import java.net.Socket;
+
+/**
+ * La classe implementa la connessione con un server che supporta il protocollo a frame. Ogni
+ * richiesta riceve un ID univoco e viene inviata senza attendere le risposte alle richieste
+ * precedenti; un thread dedicato legge i frame ricevuti dal server e, tramite l'ID, consegna ogni
+ * risposta al chiamante corrispondente. Il formato dei frame sullo stream dipende dal
+ * {@link FrameCodec} concordato con il server.
+ */
+class FramedConnection extends Connection {
+
+    /**
+     * Versione del protocollo concordata con il server.
+     */
+    private final int version;
+
+    /**
+     * Codec con il quale vengono scritti e letti i frame.
+     */
+    private final FrameCodec codec;
+
+    /**
+     * Richieste inviate al server che non hanno ancora ricevuto risposta.
+     */
+    private final PendingCalls pending = new PendingCalls();
+
+    /**
+     * Limita gli oggetti trattenuti dagli stream della serializzazione Java, {@code null} se il codec
+     * non la utilizza.
+     */
+    private final StreamGovernor governor;
+
+    /**
+     * Inizializza gli attributi d'istanza con quelli passati in input e avvia il thread che legge i
+     * frame ricevuti dal server.
+     * @param socket Socket che stabilisce la connessione al server.
+     * @param codec Codec con il quale vengono scritti e letti i frame.
+     * @param version Versione del protocollo concordata con il server.
+     * @param governor Limita gli oggetti trattenuti dagli stream del codec, {@code null} se il codec
+     *                 non utilizza la serializzazione Java.
+     */
+    FramedConnection(Socket socket, FrameCodec codec, int version, StreamGovernor governor) {
+        super(socket);
+        this.codec = codec;
+        this.version = version;
+        this.governor = governor;
+        Thread reader = new Thread(this::readFrames, "RTMiner-Reader");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * Invia al server il frame di richiesta senza attendere la risposta, che verrà consegnata a
+     * {@code handler} dal thread di lettura.
+     * @param task ID del task.
+     * @param args Argomenti del task.
+     * @param handler Riceve la risposta del server.
+     * @return ID della richiesta.
+     * @throws IOException Se non è possibile inviare la richiesta e l'errore non è già stato
+     * consegnato a {@code handler} dal thread di lettura.
+     */
+    @Override
+    public int call(int task, Object[] args, ResponseHandler handler) throws IOException {
+        int id = pending.register(handler);
+        try {
+            codec.write(new Frame(id, Frame.REQUEST, task, args));
+        } catch (IOException e) {
+            close();
+            if (pending.remove(id)) {
+                throw e;
+            }
+        }
+        return id;
+    }
+
+    /**
+     * Invia al server un frame di controllo relativo a una richiesta in corso.
+     * @param frame Frame da inviare.
+     * @throws IOException Se non è possibile inviare il frame.
+     */
+    @Override
+    public void send(Frame frame) throws IOException {
+        try {
+            codec.write(frame);
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Restituisce la versione del protocollo concordata con il server.
+     * @return {@code version}
+     */
+    @Override
+    public int getProtocolVersion() {
+        return version;
+    }
+
+    /**
+     * Restituisce il codec concordato con il server.
+     * @return Identificativo del codec.
+     */
+    @Override
+    public int getCodec() {
+        return codec.getId();
+    }
+
+    /**
+     * Restituisce i contatori degli oggetti trattenuti dagli stream del codec.
+     * @return {@code governor}, {@code null} se il codec non utilizza la serializzazione Java.
+     */
+    @Override
+    public StreamGovernor getStreamGovernor() {
+        return governor;
+    }
+
+    /**
+     * Restituisce sempre {@code true}: con il protocollo a frame la sessione può essere azzerata
+     * tramite il task {@link Protocol#TASK_RESET_SESSION} anche durante la fase di predizione.
+     * @return {@code true}
+     */
+    @Override
+    public boolean isIdle() {
+        return true;
+    }
+
+    /**
+     * Corpo del thread di lettura: legge i frame ricevuti dal server e li consegna ai chiamanti
+     * corrispondenti e, quando lo stream di input trattiene troppi oggetti, chiede al server di
+     * azzerare il proprio stream di output. Quando la connessione viene chiusa o si verifica un
+     * errore, tutte le richieste ancora in attesa vengono terminate con un errore.
+     */
+    private void readFrames() {
+        IOException error;
+        try {
+            while (true) {
+                Frame frame = codec.read();
+                touch();
+                pending.dispatch(frame);
+                if (governor != null && governor.shouldResetPeer()) {
+                    requestStreamReset();
+                }
+            }
+        } catch (IOException e) {
+            error = e;
+        }
+        try {
+            close();
+        } catch (IOException ignored) {
+            // La connessione è già stata chiusa.
+        }
+        pending.failAll(error);
+    }
+
+    /**
+     * Chiede al server di azzerare il proprio stream di output tramite il task
+     * {@link Protocol#TASK_RESET_STREAM}. Lo stream di input del client viene azzerato quando riceve
+     * il marcatore scritto dal server, che precede la risposta. Se il server non conosce il task, le
+     * richieste successive non vengono più inviate.
+     */
+    private void requestStreamReset() {
+        try {
+            call(Protocol.TASK_RESET_STREAM, new Object[0], new ResponseHandler() {
+                @Override
+                public void onResponse(Frame response) {
+                    governor.onPeerReset();
+                }
+
+                @Override
+                public void onError(IOException e) {
+                    if (isOpen()) {
+                        governor.onPeerResetUnsupported();
+                    }
+                }
+            });
+        } catch (IOException ignored) {
+            // La connessione è stata chiusa: il thread di lettura termina alla lettura successiva.
+        }
+    }
+}
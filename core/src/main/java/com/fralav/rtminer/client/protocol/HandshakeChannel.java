@@ -0,0 +1,214 @@
+package com.fralav.rtminer.client.protocol;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+
+/**
+ * La classe stabilisce una connessione tramite un {@link SocketChannel} non bloccante e ne espone
+ * degli stream che attendono i dati per al massimo il timeout impostato, in modo che la negoziazione
+ * del protocollo sia la stessa del trasporto basato su {@link java.net.Socket}. Le attese avvengono su
+ * un selettore temporaneo, chiuso al termine della negoziazione. Se il canale viene poi reso
+ * bloccante, gli stream continuano a funzionare senza timeout.
+ */
+class HandshakeChannel implements Closeable {
+
+    /**
+     * Canale connesso al server.
+     */
+    private final SocketChannel channel;
+
+    /**
+     * Selettore temporaneo utilizzato per le attese.
+     */
+    private final Selector selector;
+
+    /**
+     * Registrazione del canale presso il selettore temporaneo.
+     */
+    private final SelectionKey key;
+
+    /**
+     * Byte ricevuti dal server e non ancora letti dallo stream di input, in modalità lettura.
+     */
+    private final ByteBuffer received = ByteBuffer.allocate(1024);
+
+    /**
+     * Tempo massimo di attesa, in millisecondi, di ogni operazione sul canale.
+     */
+    private int timeout;
+
+    /**
+     * Stream di input che legge i byte dal canale.
+     */
+    private final InputStream input = new InputStream() {
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (!received.hasRemaining()) {
+                received.clear();
+                int n = channel.read(received);
+                received.flip();
+                if (n < 0) {
+                    return -1;
+                } else if (n == 0) {
+                    await(SelectionKey.OP_READ);
+                }
+            }
+            int count = Math.min(len, received.remaining());
+            received.get(b, off, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return received.remaining();
+        }
+    };
+
+    /**
+     * Stream di output che scrive i byte sul canale.
+     */
+    private final OutputStream output = new OutputStream() {
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+            while (buffer.hasRemaining()) {
+                if (channel.write(buffer) == 0) {
+                    await(SelectionKey.OP_WRITE);
+                }
+            }
+        }
+    };
+
+    /**
+     * Inizializza gli attributi d'istanza con quelli passati in input.
+     * @param channel Canale non bloccante.
+     * @param selector Selettore temporaneo.
+     * @param key Registrazione del canale presso il selettore.
+     * @param timeout Tempo massimo di attesa, in millisecondi.
+     */
+    private HandshakeChannel(SocketChannel channel, Selector selector, SelectionKey key, int timeout) {
+        this.channel = channel;
+        this.selector = selector;
+        this.key = key;
+        this.timeout = timeout;
+        received.flip();
+    }
+
+    /**
+     * Connette un nuovo canale non bloccante al server, attendendo al massimo {@code timeout}
+     * millisecondi.
+     * @param ip Indirizzo IP del server.
+     * @param port Porta del server.
+     * @param timeout Tempo massimo di attesa, in millisecondi.
+     * @return Canale connesso al server.
+     * @throws IOException Se non è possibile connettersi al server entro il tempo specificato.
+     */
+    static HandshakeChannel connect(String ip, int port, int timeout) throws IOException {
+        SocketChannel channel = SocketChannel.open();
+        Selector selector = null;
+        try {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            selector = Selector.open();
+            SelectionKey key = channel.register(selector, 0);
+            HandshakeChannel handshake = new HandshakeChannel(channel, selector, key, timeout);
+            if (!channel.connect(new InetSocketAddress(ip, port))) {
+                while (!channel.finishConnect()) {
+                    handshake.await(SelectionKey.OP_CONNECT);
+                }
+            }
+            return handshake;
+        } catch (IOException | IllegalArgumentException e) {
+            if (selector != null) {
+                selector.close();
+            }
+            channel.close();
+            throw e instanceof IOException ? (IOException) e : new IOException(e.getMessage());
+        }
+    }
+
+    /**
+     * Restituisce il canale connesso al server.
+     * @return {@code channel}
+     */
+    SocketChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * Restituisce lo stream di input.
+     * @return {@code input}
+     */
+    InputStream getInputStream() {
+        return input;
+    }
+
+    /**
+     * Restituisce lo stream di output.
+     * @return {@code output}
+     */
+    OutputStream getOutputStream() {
+        return output;
+    }
+
+    /**
+     * Imposta il tempo massimo di attesa delle operazioni successive.
+     * @param timeout Tempo massimo di attesa, in millisecondi.
+     */
+    void setTimeout(int timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * Restituisce i byte già ricevuti dal server ma non ancora letti dallo stream di input, che
+     * devono essere consegnati al lettore successivo.
+     * @return Buffer in modalità lettura.
+     */
+    ByteBuffer getReceived() {
+        return received;
+    }
+
+    /**
+     * Chiude il selettore temporaneo, lasciando aperto il canale.
+     * @throws IOException Se si verifica un errore durante la chiusura.
+     */
+    @Override
+    public void close() throws IOException {
+        selector.close();
+    }
+
+    /**
+     * Attende che il canale sia pronto per l'operazione specificata.
+     * @param ops Operazione attesa, una delle costanti {@code OP_*} di {@link SelectionKey}.
+     * @throws IOException Se il canale non è pronto entro il tempo massimo di attesa.
+     */
+    private void await(int ops) throws IOException {
+        key.interestOps(ops);
+        selector.selectedKeys().clear();
+        if (selector.select(timeout) == 0) {
+            throw new SocketTimeoutException("Il server non ha risposto entro " + timeout + " ms");
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.fralav.rtminer.client.protocol;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * La classe raccoglie una distribuzione di tempi in un numero fisso di intervalli, in modo che la
+ * memoria occupata non dipenda dal numero di campioni. I tempi vengono registrati in microsecondi:
+ * i valori inferiori a {@code 8} hanno un intervallo ciascuno, mentre ogni potenza di due successiva
+ * viene divisa in otto intervalli di uguale ampiezza, quindi i percentili vengono stimati con un
+ * errore relativo inferiore al 12,5%. I tempi superiori a circa 67 minuti finiscono nell'ultimo
+ * intervallo, per il quale i percentili riportano il campione più grande. I metodi possono essere
+ * richiamati da più thread contemporaneamente.
+ */
+public class LatencyHistogram {
+
+    /**
+     * Numero di bit che individuano l'intervallo all'interno di una potenza di due.
+     */
+    private static final int SUB_BITS = 3;
+
+    /**
+     * Numero di intervalli per ogni potenza di due.
+     */
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    /**
+     * Esponente della più grande potenza di due, in microsecondi, distinta dalle altre.
+     */
+    private static final int MAX_EXPONENT = 31;
+
+    /**
+     * Numero complessivo di intervalli.
+     */
+    static final int BUCKETS = SUB_BUCKETS + (MAX_EXPONENT - SUB_BITS + 1) * SUB_BUCKETS;
+
+    /**
+     * Numero di campioni di ogni intervallo.
+     */
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    /**
+     * Numero complessivo di campioni.
+     */
+    private final AtomicLong count = new AtomicLong();
+
+    /**
+     * Somma dei campioni, in microsecondi.
+     */
+    private final AtomicLong sum = new AtomicLong();
+
+    /**
+     * Campione più grande, in microsecondi.
+     */
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Registra un campione.
+     * @param nanos Tempo in nanosecondi.
+     */
+    public void record(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        counts.incrementAndGet(bucket(micros));
+        count.incrementAndGet();
+        sum.addAndGet(micros);
+        long current = max.get();
+        while (micros > current && !max.compareAndSet(current, micros)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * Restituisce il numero di campioni registrati.
+     * @return Numero di campioni.
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Restituisce la somma dei campioni, in millisecondi.
+     * @return Tempo complessivo.
+     */
+    public double getTotalMillis() {
+        return sum.get() / 1e3;
+    }
+
+    /**
+     * Restituisce la media dei campioni, in millisecondi.
+     * @return Tempo medio, {@code 0} se non ci sono campioni.
+     */
+    public double getMeanMillis() {
+        long samples = count.get();
+        return samples == 0 ? 0 : sum.get() / 1e3 / samples;
+    }
+
+    /**
+     * Restituisce il campione più grande, in millisecondi.
+     * @return Tempo massimo, {@code 0} se non ci sono campioni.
+     */
+    public double getMaxMillis() {
+        return max.get() / 1e3;
+    }
+
+    /**
+     * Stima il percentile specificato, restituendo l'estremo superiore dell'intervallo che lo
+     * contiene, limitato al campione più grande.
+     * @param percentile Percentile, compreso tra {@code 0} e {@code 100}.
+     * @return Tempo in millisecondi, {@code 0} se non ci sono campioni.
+     */
+    public double getPercentileMillis(double percentile) {
+        long samples = count.get();
+        if (samples == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(samples * Math.min(100, Math.max(0, percentile)) / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBound(i), max.get()) / 1e3;
+            }
+        }
+        return max.get() / 1e3;
+    }
+
+    /**
+     * Calcola l'intervallo al quale appartiene un tempo.
+     * @param micros Tempo in microsecondi, non negativo.
+     * @return Indice dell'intervallo.
+     */
+    static int bucket(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int sub = (int) (micros >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS + (exponent - SUB_BITS) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * Calcola il tempo più grande appartenente a un intervallo. L'ultimo intervallo raccoglie anche
+     * tutti i tempi più grandi, quindi non ha un estremo superiore.
+     * @param bucket Indice dell'intervallo.
+     * @return Tempo in microsecondi, {@link Long#MAX_VALUE} per l'ultimo intervallo.
+     */
+    static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        if (bucket == BUCKETS - 1) {
+            return Long.MAX_VALUE;
+        }
+        int exponent = (bucket - SUB_BUCKETS) / SUB_BUCKETS + SUB_BITS;
+        int sub = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BITS);
+        return (SUB_BUCKETS + sub + 1) * width - 1;
+    }
+}
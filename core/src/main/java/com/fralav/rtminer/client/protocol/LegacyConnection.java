@@ -0,0 +1,249 @@
+package com.fralav.rtminer.client.protocol;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.Socket;
+
+/**
+ * La classe implementa la connessione con un server che utilizza il protocollo originale, nel quale
+ * gli oggetti vengono scambiati uno dopo l'altro senza alcun ID di richiesta. Ogni richiesta viene
+ * eseguita in modo sincrono nel thread chiamante, che deve essere sempre lo stesso, e la risposta
+ * viene convertita in un {@link Frame} in modo che il chiamante non debba distinguere i due protocolli.
+ * Gli oggetti vengono sempre scambiati tramite la serializzazione Java.
+ */
+class LegacyConnection extends Connection {
+
+    /**
+     * Oggetto di output stream.
+     */
+    private final ObjectOutputStream out;
+
+    /**
+     * Oggetto di input stream.
+     */
+    private final ObjectInputStream in;
+
+    /**
+     * Conta i byte scritti da {@code out}.
+     */
+    private final CountingOutputStream output;
+
+    /**
+     * Conta i byte letti da {@code in}.
+     */
+    private final CountingInputStream input;
+
+    /**
+     * Contatori del codec.
+     */
+    private final CodecStats stats;
+
+    /**
+     * Limita gli oggetti trattenuti dagli stream. Il protocollo originale non permette di chiedere al
+     * server di azzerare il proprio stream di output, quindi viene limitato solo lo stream di output
+     * del client, insieme a quello di input del server.
+     */
+    private final StreamGovernor governor;
+
+    /**
+     * Tempo, in nanosecondi, impiegato per scrivere gli oggetti della richiesta in corso.
+     */
+    private long encodeNanos;
+
+    /**
+     * Tempo, in nanosecondi, impiegato per leggere gli oggetti della risposta in corso, compresa
+     * l'attesa dei dati dalla rete.
+     */
+    private long decodeNanos;
+
+    /**
+     * ID dell'ultima richiesta eseguita, utilizzato per numerare i frame di risposta.
+     */
+    private int lastId;
+
+    /**
+     * Vale {@code true} se il server ha posto una domanda della fase di predizione e sta attendendo
+     * la scelta dell'utente.
+     */
+    private boolean awaitingAnswer;
+
+    /**
+     * Inizializza gli attributi d'istanza con quelli passati in input.
+     * @param socket Socket che stabilisce la connessione al server.
+     * @param in Stream di input, costruito su {@code input}.
+     * @param out Stream di output, costruito su {@code output}.
+     * @param input Stream che conta i byte letti.
+     * @param output Stream che conta i byte scritti.
+     * @param stats Contatori del codec.
+     * @param governor Limita gli oggetti trattenuti dagli stream.
+     */
+    LegacyConnection(Socket socket, ObjectInputStream in, ObjectOutputStream out,
+                     CountingInputStream input, CountingOutputStream output, CodecStats stats,
+                     StreamGovernor governor) {
+        super(socket);
+        this.in = in;
+        this.out = out;
+        this.input = input;
+        this.output = output;
+        this.stats = stats;
+        this.governor = governor;
+    }
+
+    /**
+     * Invia la richiesta al server e ne legge la risposta, bloccando il thread chiamante. Se si
+     * verifica un errore di comunicazione, la connessione viene chiusa poiché lo stato degli stream
+     * non è più affidabile; se invece il task non esiste nel protocollo originale, la richiesta non
+     * viene inviata e la connessione resta aperta. Al termine vengono registrati la dimensione e il
+     * tempo di scrittura della richiesta e di lettura della risposta.
+     * @param task ID del task.
+     * @param args Argomenti del task.
+     * @param handler Riceve la risposta del server.
+     * @return ID della richiesta, assegnato localmente.
+     * @throws IOException Se si verifica un errore di comunicazione; {@link TaskRejectedException} se
+     * il task non è supportato dal protocollo originale.
+     */
+    @Override
+    public int call(int task, Object[] args, ResponseHandler handler) throws IOException {
+        if (task < Protocol.TASK_GET_TABLES_FROM_DB || task > Protocol.TASK_PREDICT_ANSWER) {
+            throw new TaskRejectedException("Task " + task + " non supportato dal server");
+        }
+        Object[] values;
+        long written = output.getCount();
+        long read = input.getCount();
+        encodeNanos = 0;
+        decodeNanos = 0;
+        try {
+            switch (task) {
+                case Protocol.TASK_GET_TABLES_FROM_DB:
+                case Protocol.TASK_GET_FILES_FROM_ARCHIVE:
+                case Protocol.TASK_PRINT_TREE:
+                    write(task);
+                    values = new Object[] {read()};
+                    break;
+                case Protocol.TASK_LEARN_TREE_FROM_DB:
+                case Protocol.TASK_GET_TREE_FROM_FILE:
+                    write(task);
+                    write(args[0]);
+                    values = new Object[] {read()};
+                    break;
+                case Protocol.TASK_PREDICT_TREE:
+                    write(task);
+                    values = readPredictionStep();
+                    break;
+                case Protocol.TASK_PREDICT_ANSWER:
+                    write(args[0]);
+                    values = readPredictionStep();
+                    break;
+                default:
+                    throw new IOException("Task " + task + " non supportato dal server");
+            }
+        } catch (IOException | ClassNotFoundException e) {
+            close();
+            throw e instanceof IOException ? (IOException) e : new IOException(e.getMessage());
+        }
+        touch();
+        stats.recordEncode(task, output.getCount() - written, encodeNanos);
+        stats.recordDecode(task, input.getCount() - read, decodeNanos);
+        handler.onResponse(new Frame(++lastId, Frame.RESPONSE, task, values));
+        return lastId;
+    }
+
+    /**
+     * Il protocollo originale non prevede frame di controllo.
+     * @param frame Frame da inviare.
+     * @throws IOException Sempre.
+     */
+    @Override
+    public void send(Frame frame) throws IOException {
+        throw new IOException("Frame di controllo non supportati dal server");
+    }
+
+    /**
+     * Restituisce la versione del protocollo utilizzata dalla connessione.
+     * @return {@link Protocol#PROTOCOL_LEGACY}
+     */
+    @Override
+    public int getProtocolVersion() {
+        return Protocol.PROTOCOL_LEGACY;
+    }
+
+    /**
+     * Restituisce il codec utilizzato dalla connessione.
+     * @return {@link Protocol#CODEC_JAVA}
+     */
+    @Override
+    public int getCodec() {
+        return Protocol.CODEC_JAVA;
+    }
+
+    /**
+     * Restituisce i contatori degli oggetti trattenuti dagli stream.
+     * @return {@code governor}
+     */
+    @Override
+    public StreamGovernor getStreamGovernor() {
+        return governor;
+    }
+
+    /**
+     * Restituisce {@code true} se il server non sta attendendo la scelta dell'utente durante la fase
+     * di predizione: il protocollo originale non permette di interrompere il dialogo.
+     * @return {@code true} se la connessione è inattiva.
+     */
+    @Override
+    public boolean isIdle() {
+        return !awaitingAnswer;
+    }
+
+    /**
+     * Invia al server, tramite lo stream di output, l'oggetto {@code obj} e, se necessario, azzera lo
+     * stream. Il marcatore di azzeramento viene inviato insieme all'oggetto successivo.
+     * @param obj Oggetto da inviare al server.
+     * @throws IOException Se si verifica un errore di comunicazione.
+     */
+    private void write(Object obj) throws IOException {
+        long start = System.nanoTime();
+        long count = output.getCount();
+        out.writeObject(obj);
+        out.flush();
+        governor.afterWrite(out, obj, output.getCount() - count);
+        encodeNanos += System.nanoTime() - start;
+    }
+
+    /**
+     * Legge l'oggetto ricevuto dal server attraverso lo stream di input.
+     * @return Oggetto ricevuto dal server.
+     * @throws IOException Se si verifica un errore di comunicazione.
+     * @throws ClassNotFoundException Se la classe dell'oggetto ricevuto non è disponibile.
+     */
+    private Object read() throws IOException, ClassNotFoundException {
+        long start = System.nanoTime();
+        long count = input.getCount();
+        Object obj = in.readObject();
+        decodeNanos += System.nanoTime() - start;
+        governor.afterRead(obj, input.getCount() - count);
+        return obj;
+    }
+
+    /**
+     * Legge dal server un passo della fase di predizione: se la stringa ricevuta è uguale a
+     * {@link Protocol#QUERY}, seguono il testo della domanda e il numero di figli del nodo corrente;
+     * se è uguale a {@link Protocol#PREDICTION}, segue il valore di predizione.
+     * @return Valori del passo di predizione, nello stesso ordine in cui sono stati ricevuti.
+     * @throws IOException Se si verifica un errore di comunicazione o se la risposta non è valida.
+     * @throws ClassNotFoundException Se la classe dell'oggetto ricevuto non è disponibile.
+     */
+    private Object[] readPredictionStep() throws IOException, ClassNotFoundException {
+        String answer = read().toString();
+        if (answer.equals(Protocol.QUERY)) {
+            awaitingAnswer = true;
+            return new Object[] {answer, read(), read()};
+        } else if (answer.equals(Protocol.PREDICTION)) {
+            awaitingAnswer = false;
+            return new Object[] {answer, read()};
+        } else {
+            throw new IOException("Risposta inattesa dal server: " + answer);
+        }
+    }
+}
@@ -0,0 +1,376 @@
+package com.fralav.rtminer.client.protocol;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+/**
+ * La classe implementa la connessione con un server che supporta il protocollo a frame e il codec
+ * binario tramite un {@link SocketChannel} non bloccante. Nessun thread resta bloccato in attesa del
+ * server: le letture e le scritture che non possono essere completate subito vengono portate a termine
+ * dal thread del {@link NioEventLoop}, condiviso da tutte le connessioni. I buffer di lettura e di
+ * scrittura vengono riutilizzati da un frame all'altro.
+ */
+class NioConnection extends Connection {
+
+    /**
+     * Dimensione iniziale, in byte, dei buffer di lettura e di scrittura.
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Canale connesso al server.
+     */
+    private final SocketChannel channel;
+
+    /**
+     * Versione del protocollo concordata con il server.
+     */
+    private final int version;
+
+    /**
+     * Contatori del codec.
+     */
+    private final CodecStats stats;
+
+    /**
+     * Ciclo di eventi presso il quale è registrato il canale.
+     */
+    private final NioEventLoop loop;
+
+    /**
+     * Richieste inviate al server che non hanno ancora ricevuto risposta.
+     */
+    private final PendingCalls pending = new PendingCalls();
+
+    /**
+     * Codifica i frame da inviare. Viene utilizzato anche per sincronizzare l'accesso a
+     * {@code outbound}.
+     */
+    private final BinaryFrameEncoder encoder;
+
+    /**
+     * Comprime e decomprime i frame, {@code null} se la compressione non è concordata. La
+     * decompressione avviene solo nel thread del ciclo di eventi.
+     */
+    private final FrameCompression compression;
+
+    /**
+     * Byte codificati che il canale non ha ancora accettato, in modalità scrittura.
+     */
+    private ByteBuffer outbound = ByteBuffer.allocate(BUFFER_SIZE);
+
+    /**
+     * Byte ricevuti che non formano ancora un frame completo, in modalità scrittura. Viene utilizzato
+     * solo dal thread del ciclo di eventi.
+     */
+    private ByteBuffer inbound;
+
+    /**
+     * Registrazione del canale presso il selettore del ciclo di eventi, {@code null} finché la
+     * registrazione non è completata.
+     */
+    private volatile SelectionKey key;
+
+    /**
+     * Inizializza gli attributi d'istanza con quelli passati in input e registra il canale presso il
+     * ciclo di eventi.
+     * @param channel Canale non bloccante connesso al server.
+     * @param received Byte già ricevuti dal server durante la negoziazione, in modalità lettura.
+     * @param version Versione del protocollo concordata con il server.
+     * @param stats Contatori del codec.
+     * @param compression Comprime e decomprime i frame, {@code null} se la compressione non è
+     *                    concordata.
+     * @param loop Ciclo di eventi presso il quale registrare il canale.
+     */
+    private NioConnection(SocketChannel channel, ByteBuffer received, int version, CodecStats stats,
+                          FrameCompression compression, NioEventLoop loop) {
+        super(channel.socket());
+        this.channel = channel;
+        this.version = version;
+        this.stats = stats;
+        this.compression = compression;
+        this.encoder = new BinaryFrameEncoder(compression);
+        this.loop = loop;
+        inbound = ByteBuffer.allocate(Math.max(BUFFER_SIZE, received.remaining()));
+        inbound.put(received);
+        loop.register(channel, this);
+    }
+
+    /**
+     * Stabilisce la connessione con il server tramite un canale non bloccante e negozia la versione
+     * del protocollo, la compressione e il codec. Se il server concorda il codec binario viene creata una
+     * {@link NioConnection}; se supporta il protocollo a frame ma non il codec binario, il canale viene
+     * reso bloccante e viene creata una {@link FramedConnection} che utilizza la serializzazione Java,
+     * senza stabilire una nuova connessione.
+     * @param ip Indirizzo IP del server.
+     * @param port Porta del server.
+     * @param options Opzioni della connessione.
+     * @return Connessione stabilita con il server, {@code null} se il server utilizza il protocollo
+     * originale e la connessione deve quindi essere ristabilita.
+     * @throws IOException Se non è possibile connettersi al server.
+     */
+    static Connection open(String ip, int port, ConnectionOptions options) throws IOException {
+        HandshakeChannel handshake = HandshakeChannel.connect(ip, port, options.getConnectTimeout());
+        SocketChannel channel = handshake.getChannel();
+        try {
+            CountingOutputStream output = new CountingOutputStream(handshake.getOutputStream());
+            CountingInputStream input = new CountingInputStream(handshake.getInputStream());
+            ObjectOutputStream out = new ObjectOutputStream(output);
+            ObjectInputStream in = new ObjectInputStream(input);
+            int version;
+            int codec = Protocol.CODEC_JAVA;
+            int threshold = -1;
+            try {
+                handshake.setTimeout(Protocol.HELLO_TIMEOUT);
+                version = negotiate(in, out);
+                if (version >= Protocol.PROTOCOL_COMPRESSION) {
+                    threshold = negotiateCompression(in, out, options.getCompressionThreshold());
+                }
+                if (version >= Protocol.PROTOCOL_CODEC) {
+                    codec = negotiateCodec(in, out, options.getCodec());
+                }
+            } catch (IOException e) {
+                // Il server non conosce il task TASK_HELLO: non ha risposto oppure ha chiuso la connessione.
+                version = Protocol.PROTOCOL_LEGACY;
+            }
+            handshake.close();
+            if (version < Protocol.PROTOCOL_FRAMED) {
+                channel.close();
+                return null;
+            }
+            if (codec == Protocol.CODEC_BINARY) {
+                FrameCompression compression = threshold >= 0
+                        ? new FrameCompression(threshold, options.getCodecStats()) : null;
+                return new NioConnection(channel, handshake.getReceived(), version,
+                        options.getCodecStats(), compression, NioEventLoop.getShared());
+            }
+            channel.configureBlocking(true);
+            StreamGovernor governor = options.createStreamGovernor();
+            return new FramedConnection(channel.socket(), new ObjectFrameCodec(in, out, input, output,
+                    options.getCodecStats(), governor), version, governor);
+        } catch (IOException e) {
+            handshake.close();
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Codifica il frame di richiesta e lo scrive sul canale senza attendere la risposta, che verrà
+     * consegnata a {@code handler} dal thread del ciclo di eventi. Se il canale non accetta subito
+     * tutti i byte, i restanti vengono scritti dal ciclo di eventi.
+     * @param task ID del task.
+     * @param args Argomenti del task.
+     * @param handler Riceve la risposta del server.
+     * @return ID della richiesta.
+     * @throws IOException Se non è possibile inviare la richiesta e l'errore non è già stato
+     * consegnato a {@code handler}.
+     */
+    @Override
+    public int call(int task, Object[] args, ResponseHandler handler) throws IOException {
+        int id = pending.register(handler);
+        try {
+            write(new Frame(id, Frame.REQUEST, task, args));
+        } catch (IOException e) {
+            close();
+            if (pending.remove(id)) {
+                throw e;
+            }
+        }
+        return id;
+    }
+
+    /**
+     * Invia al server un frame di controllo relativo a una richiesta in corso.
+     * @param frame Frame da inviare.
+     * @throws IOException Se non è possibile inviare il frame.
+     */
+    @Override
+    public void send(Frame frame) throws IOException {
+        try {
+            write(frame);
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Restituisce la versione del protocollo concordata con il server.
+     * @return {@code version}
+     */
+    @Override
+    public int getProtocolVersion() {
+        return version;
+    }
+
+    /**
+     * Restituisce il codec utilizzato dalla connessione.
+     * @return {@link Protocol#CODEC_BINARY}
+     */
+    @Override
+    public int getCodec() {
+        return Protocol.CODEC_BINARY;
+    }
+
+    /**
+     * Restituisce sempre {@code true}, come per {@link FramedConnection}.
+     * @return {@code true}
+     */
+    @Override
+    public boolean isIdle() {
+        return true;
+    }
+
+    /**
+     * Chiude il canale e termina con un errore tutte le richieste ancora in attesa: a differenza del
+     * trasporto basato su socket, nessun thread di lettura si accorge della chiusura.
+     * @throws IOException Se si verifica un errore durante la chiusura.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            pending.failAll(new EOFException("Connessione chiusa"));
+        }
+    }
+
+    /**
+     * Viene richiamato dal ciclo di eventi al termine della registrazione del canale. Gli eventuali
+     * byte ricevuti durante la negoziazione vengono elaborati subito.
+     * @param key Registrazione del canale.
+     * @throws IOException Se i byte ricevuti non formano frame validi.
+     */
+    void onRegistered(SelectionKey key) throws IOException {
+        this.key = key;
+        readFrames();
+    }
+
+    /**
+     * Viene richiamato dal ciclo di eventi quando il canale è pronto per la lettura o la scrittura.
+     * @param key Registrazione del canale.
+     * @throws IOException Se si verifica un errore di comunicazione.
+     */
+    void onReady(SelectionKey key) throws IOException {
+        if (key.isReadable()) {
+            if (channel.read(inbound) < 0) {
+                throw new EOFException("Connessione chiusa dal server");
+            }
+            readFrames();
+        }
+        if (key.isValid() && key.isWritable()) {
+            synchronized (encoder) {
+                outbound.flip();
+                channel.write(outbound);
+                outbound.compact();
+                if (outbound.position() == 0) {
+                    key.interestOps(SelectionKey.OP_READ);
+                }
+            }
+        }
+    }
+
+    /**
+     * Chiude la connessione in seguito a un errore, consegnando l'errore a tutte le richieste in
+     * attesa.
+     * @param error Errore che si è verificato.
+     */
+    void fail(IOException error) {
+        pending.failAll(error);
+        try {
+            close();
+        } catch (IOException ignored) {
+            // La connessione è già stata chiusa.
+        }
+    }
+
+    /**
+     * Codifica il frame e lo scrive sul canale. Se il canale non accetta tutti i byte, i restanti
+     * vengono accodati in {@code outbound} e il ciclo di eventi viene avvisato di attendere che il
+     * canale sia pronto per la scrittura.
+     * @param frame Frame da inviare.
+     * @throws IOException Se si verifica un errore di comunicazione o se il frame non è valido.
+     */
+    private void write(Frame frame) throws IOException {
+        boolean queued;
+        synchronized (encoder) {
+            long start = System.nanoTime();
+            ByteBuffer encoded = encoder.encode(frame);
+            long nanos = System.nanoTime() - start;
+            int size = encoded.remaining();
+            if (outbound.position() == 0) {
+                channel.write(encoded);
+            }
+            queued = encoded.hasRemaining();
+            if (queued) {
+                if (outbound.remaining() < encoded.remaining()) {
+                    ByteBuffer bigger = ByteBuffer.allocate(
+                            Math.max(outbound.capacity() * 2, outbound.position() + encoded.remaining()));
+                    outbound.flip();
+                    bigger.put(outbound);
+                    outbound = bigger;
+                }
+                outbound.put(encoded);
+            }
+            stats.recordEncode(frame.getTask(), size, nanos);
+        }
+        if (queued) {
+            loop.execute(() -> {
+                SelectionKey current = key;
+                if (current != null && current.isValid()) {
+                    current.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                }
+            });
+        }
+    }
+
+    /**
+     * Decodifica e consegna tutti i frame completi presenti in {@code inbound}, decomprimendo quelli
+     * compressi, e lascia nel buffer i byte di un eventuale frame incompleto. Se il frame incompleto
+     * non può essere contenuto nel buffer, il buffer viene ingrandito.
+     * @throws IOException Se i byte ricevuti non formano frame validi.
+     */
+    private void readFrames() throws IOException {
+        inbound.flip();
+        while (true) {
+            int header = BinaryFrameCodec.peekLength(inbound,
+                    compression != null ? FrameCompression.MAX_HEADER : BinaryFrameCodec.MAX_FRAME_SIZE);
+            if (header < 0) {
+                break;
+            }
+            int length = compression != null ? header >>> 1 : header;
+            int size = BinaryFrameCodec.varintSize(header) + length;
+            if (inbound.remaining() < size) {
+                if (inbound.capacity() < size) {
+                    ByteBuffer bigger = ByteBuffer.allocate(size);
+                    bigger.put(inbound);
+                    bigger.flip();
+                    inbound = bigger;
+                }
+                break;
+            }
+            int limit = inbound.limit();
+            int end = inbound.position() + size;
+            inbound.position(end - length);
+            inbound.limit(end);
+            long start = System.nanoTime();
+            Frame frame;
+            if (compression != null && (header & 1) != 0) {
+                frame = BinaryFrameCodec.decode(compression.decompress(inbound));
+            } else {
+                frame = BinaryFrameCodec.decode(inbound);
+            }
+            stats.recordDecode(frame.getTask(), size, System.nanoTime() - start);
+            inbound.limit(limit);
+            touch();
+            pending.dispatch(frame);
+        }
+        inbound.compact();
+    }
+}
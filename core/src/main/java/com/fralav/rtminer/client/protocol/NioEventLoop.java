@@ -0,0 +1,133 @@
+package com.fralav.rtminer.client.protocol;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * La classe implementa il ciclo di eventi del trasporto NIO: un unico thread attende, tramite un
+ * {@link Selector}, che i canali di tutte le {@link NioConnection} siano pronti per la lettura o la
+ * scrittura, e le operazioni sul selettore richieste dagli altri thread vengono accodate ed eseguite
+ * dallo stesso thread.
+ */
+final class NioEventLoop implements Runnable {
+
+    /**
+     * Ciclo di eventi condiviso da tutte le connessioni, creato alla prima richiesta.
+     */
+    private static NioEventLoop shared;
+
+    /**
+     * Selettore presso il quale sono registrati i canali.
+     */
+    private final Selector selector;
+
+    /**
+     * Operazioni da eseguire nel thread del ciclo di eventi.
+     */
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Inizializza gli attributi d'istanza con quelli passati in input.
+     * @param selector Selettore presso il quale vengono registrati i canali.
+     */
+    private NioEventLoop(Selector selector) {
+        this.selector = selector;
+    }
+
+    /**
+     * Restituisce il ciclo di eventi condiviso, avviandone il thread se necessario.
+     * @return Ciclo di eventi condiviso.
+     * @throws IOException Se non è possibile aprire il selettore.
+     */
+    static synchronized NioEventLoop getShared() throws IOException {
+        if (shared == null) {
+            shared = new NioEventLoop(Selector.open());
+            Thread thread = new Thread(shared, "RTMiner-NIO");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        return shared;
+    }
+
+    /**
+     * Accoda un'operazione da eseguire nel thread del ciclo di eventi.
+     * @param task Operazione da eseguire.
+     */
+    void execute(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    /**
+     * Registra il canale presso il selettore, in lettura. Gli eventi del canale vengono consegnati a
+     * {@code connection}.
+     * @param channel Canale non bloccante.
+     * @param connection Connessione alla quale consegnare gli eventi.
+     */
+    void register(SocketChannel channel, NioConnection connection) {
+        execute(() -> {
+            try {
+                connection.onRegistered(channel.register(selector, SelectionKey.OP_READ, connection));
+            } catch (IOException e) {
+                connection.fail(e);
+            } catch (IllegalStateException e) {
+                // Il selettore è stato chiuso.
+                connection.fail(new IOException(e.getMessage()));
+            }
+        });
+    }
+
+    /**
+     * Corpo del thread: attende gli eventi dei canali e li consegna alle connessioni, eseguendo tra
+     * un'attesa e l'altra le operazioni accodate. Se il selettore smette di funzionare, tutte le
+     * connessioni vengono chiuse e il ciclo successivo verrà creato alla prossima richiesta.
+     */
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                selector.select();
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    task.run();
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    NioConnection connection = (NioConnection) key.attachment();
+                    try {
+                        connection.onReady(key);
+                    } catch (IOException e) {
+                        connection.fail(e);
+                    } catch (CancelledKeyException e) {
+                        connection.fail(new IOException("Connessione chiusa"));
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            synchronized (NioEventLoop.class) {
+                shared = null;
+            }
+            IOException error = e instanceof IOException ? (IOException) e : new IOException(e.getMessage());
+            for (SelectionKey key : selector.keys()) {
+                ((NioConnection) key.attachment()).fail(error);
+            }
+            try {
+                selector.close();
+            } catch (IOException ignored) {
+                // Il selettore è già inutilizzabile.
+            }
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+        }
+    }
+}
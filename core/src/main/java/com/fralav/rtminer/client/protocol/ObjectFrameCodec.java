@@ -0,0 +1,117 @@
+package com.fralav.rtminer.client.protocol;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+/**
+ * Il codec scrive ogni frame come array di oggetti tramite la serializzazione Java, come previsto
+ * dalla versione {@link Protocol#PROTOCOL_FRAMED} del protocollo. Viene utilizzato con i server che
+ * non supportano il codec binario. La dimensione dei frame viene misurata contando i byte che
+ * attraversano gli stream, e uno {@link StreamGovernor} impedisce agli stream di trattenere tutti gli
+ * oggetti scambiati durante la sessione.
+ */
+class ObjectFrameCodec implements FrameCodec {
+
+    /**
+     * Oggetto di output stream.
+     */
+    private final ObjectOutputStream out;
+
+    /**
+     * Oggetto di input stream.
+     */
+    private final ObjectInputStream in;
+
+    /**
+     * Conta i byte scritti da {@code out}.
+     */
+    private final CountingOutputStream output;
+
+    /**
+     * Conta i byte letti da {@code in}.
+     */
+    private final CountingInputStream input;
+
+    /**
+     * Contatori del codec.
+     */
+    private final CodecStats stats;
+
+    /**
+     * Limita gli oggetti trattenuti dagli stream.
+     */
+    private final StreamGovernor governor;
+
+    /**
+     * Inizializza gli attributi d'istanza con quelli passati in input.
+     * @param in Stream di input, costruito su {@code input}.
+     * @param out Stream di output, costruito su {@code output}.
+     * @param input Stream che conta i byte letti.
+     * @param output Stream che conta i byte scritti.
+     * @param stats Contatori del codec.
+     * @param governor Limita gli oggetti trattenuti dagli stream.
+     */
+    ObjectFrameCodec(ObjectInputStream in, ObjectOutputStream out, CountingInputStream input,
+                     CountingOutputStream output, CodecStats stats, StreamGovernor governor) {
+        this.in = in;
+        this.out = out;
+        this.input = input;
+        this.output = output;
+        this.stats = stats;
+        this.governor = governor;
+    }
+
+    /**
+     * Scrive il frame come array di oggetti e, se necessario, azzera lo stream di output. Il tempo
+     * registrato comprende anche l'invio dei byte sul socket.
+     * @param frame Frame da inviare.
+     * @throws IOException Se si verifica un errore di comunicazione.
+     */
+    @Override
+    public synchronized void write(Frame frame) throws IOException {
+        long start = System.nanoTime();
+        long count = output.getCount();
+        Object[] values = frame.toArray();
+        out.writeObject(values);
+        out.flush();
+        long size = output.getCount() - count;
+        stats.recordEncode(frame.getTask(), size, System.nanoTime() - start);
+        governor.afterWrite(out, values, size);
+    }
+
+    /**
+     * Legge il frame successivo. Poiché la serializzazione Java decodifica lo stream man mano che i
+     * byte arrivano, il tempo registrato comprende anche l'attesa dei dati dalla rete.
+     * @return Frame ricevuto.
+     * @throws IOException Se si verifica un errore di comunicazione o se il frame non è valido.
+     */
+    @Override
+    public Frame read() throws IOException {
+        long count = input.getCount();
+        long start = System.nanoTime();
+        Object received;
+        try {
+            received = in.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e.getMessage());
+        }
+        if (!(received instanceof Object[])) {
+            throw new IOException("Frame non valido");
+        }
+        Frame frame = Frame.fromArray((Object[]) received);
+        long size = input.getCount() - count;
+        stats.recordDecode(frame.getTask(), size, System.nanoTime() - start);
+        governor.afterRead(received, size);
+        return frame;
+    }
+
+    /**
+     * Restituisce l'identificativo del codec.
+     * @return {@link Protocol#CODEC_JAVA}
+     */
+    @Override
+    public int getId() {
+        return Protocol.CODEC_JAVA;
+    }
+}
@@ -0,0 +1,303 @@
+package com.fralav.rtminer.client.protocol;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * La classe raccoglie i tempi delle operazioni eseguite dal client: il tempo impiegato per stabilire
+ * le connessioni e, per ogni task, il tempo trascorso dall'invio della richiesta alla ricezione del
+ * primo frame della risposta (il primo blocco, per i task che restituiscono il risultato a blocchi)
+ * e fino alla sua elaborazione completa. I tempi vengono raccolti in {@link LatencyHistogram}, quindi
+ * la memoria occupata non cresce con il numero di richieste. La descrizione testuale riporta anche i
+ * byte inviati e ricevuti per ogni task, letti dai {@link CodecStats}, e può essere allegata alle
+ * segnalazioni dei problemi.
+ */
+public class OperationStats {
+
+    /**
+     * Tempi impiegati per stabilire le connessioni.
+     */
+    private final LatencyHistogram connect = new LatencyHistogram();
+
+    /**
+     * Contatori indicizzati per ID del task.
+     */
+    private final ConcurrentHashMap<Integer, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Contatori dei codec, dai quali vengono letti i byte scambiati per ogni task.
+     */
+    private final CodecStats codecStats;
+
+    /**
+     * Inizializza gli attributi d'istanza con quelli passati in input.
+     * @param codecStats Contatori dei codec delle stesse connessioni.
+     */
+    OperationStats(CodecStats codecStats) {
+        this.codecStats = codecStats;
+    }
+
+    /**
+     * Registra una nuova connessione. Le connessioni stabilite da {@link SessionManager} vengono
+     * registrate automaticamente; gli strumenti che utilizzano direttamente
+     * {@link Connection#open(String, int, ConnectionOptions, boolean)} le registrano con questo metodo.
+     * @param nanos Tempo, in nanosecondi, impiegato per stabilire la connessione.
+     */
+    public void recordConnect(long nanos) {
+        connect.record(nanos);
+    }
+
+    /**
+     * Restituisce un {@link ResponseHandler} che registra i tempi della richiesta e consegna la
+     * risposta a {@code handler}. Deve essere richiamato subito prima dell'invio della richiesta.
+     * Se {@code handler} è uno {@link StreamHandler}, lo è anche quello restituito.
+     * @param task ID del task.
+     * @param handler Riceve la risposta del server.
+     * @return Handler da passare a {@link Connection#call(int, Object[], ResponseHandler)}.
+     */
+    public ResponseHandler track(int task, ResponseHandler handler) {
+        Entry entry = entry(task);
+        long start = System.nanoTime();
+        return handler instanceof StreamHandler
+                ? new TrackedStream(entry, start, (StreamHandler) handler)
+                : new Tracked(entry, start, handler);
+    }
+
+    /**
+     * Restituisce i tempi impiegati per stabilire le connessioni.
+     * @return Distribuzione dei tempi di connessione.
+     */
+    public LatencyHistogram getConnectLatency() {
+        return connect;
+    }
+
+    /**
+     * Restituisce gli ID dei task per i quali sono state inviate richieste, in ordine crescente.
+     * @return Lista degli ID dei task.
+     */
+    public List<Integer> getTasks() {
+        List<Integer> tasks = new ArrayList<>(entries.keySet());
+        Collections.sort(tasks);
+        return tasks;
+    }
+
+    /**
+     * Restituisce i tempi trascorsi fino alla ricezione del primo frame della risposta.
+     * @param task ID del task.
+     * @return Distribuzione dei tempi.
+     */
+    public LatencyHistogram getFirstFrameLatency(int task) {
+        return entry(task).firstFrame;
+    }
+
+    /**
+     * Restituisce i tempi trascorsi fino all'elaborazione completa della risposta.
+     * @param task ID del task.
+     * @return Distribuzione dei tempi.
+     */
+    public LatencyHistogram getTotalLatency(int task) {
+        return entry(task).total;
+    }
+
+    /**
+     * Restituisce il numero di richieste terminate con un errore.
+     * @param task ID del task.
+     * @return Numero di errori.
+     */
+    public long getErrors(int task) {
+        return entry(task).errors.get();
+    }
+
+    /**
+     * Restituisce una descrizione testuale dei tempi: per ogni task, il numero di richieste e di
+     * errori, i percentili 50 e 99 del tempo fino al primo frame e del tempo totale, il tempo massimo,
+     * i byte scambiati e la velocità di ricezione rispetto al tempo totale.
+     * @return Descrizione dei tempi.
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format(Locale.ROOT,
+                "connessione: %d, p50 %.1f ms, p99 %.1f ms, max %.1f ms%n", connect.getCount(),
+                connect.getPercentileMillis(50), connect.getPercentileMillis(99), connect.getMaxMillis()));
+        for (int task : getTasks()) {
+            Entry entry = entry(task);
+            long received = codecStats.getDecodedBytes(task);
+            double seconds = entry.total.getTotalMillis() / 1e3;
+            builder.append(String.format(Locale.ROOT,
+                    "%s: %d (errori %d), primo frame p50 %.1f ms p99 %.1f ms, totale p50 %.1f ms "
+                            + "p99 %.1f ms max %.1f ms, inviati %d B, ricevuti %d B (%.1f KB/s)%n",
+                    name(task), entry.total.getCount(), entry.errors.get(),
+                    entry.firstFrame.getPercentileMillis(50), entry.firstFrame.getPercentileMillis(99),
+                    entry.total.getPercentileMillis(50), entry.total.getPercentileMillis(99),
+                    entry.total.getMaxMillis(), codecStats.getEncodedBytes(task), received,
+                    seconds == 0 ? 0 : received / 1024.0 / seconds));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Restituisce i contatori del task specificato, creandoli se necessario.
+     * @param task ID del task.
+     * @return Contatori del task.
+     */
+    private Entry entry(int task) {
+        Entry entry = entries.get(task);
+        if (entry == null) {
+            entry = new Entry();
+            Entry previous = entries.putIfAbsent(task, entry);
+            if (previous != null) {
+                entry = previous;
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Restituisce il nome del task da riportare nella descrizione testuale.
+     * @param task ID del task.
+     * @return Nome del task, oppure il suo ID se non è conosciuto.
+     */
+    private static String name(int task) {
+        switch (task) {
+            case Protocol.TASK_GET_TABLES_FROM_DB:
+                return "tabelle";
+            case Protocol.TASK_GET_FILES_FROM_ARCHIVE:
+                return "file";
+            case Protocol.TASK_LEARN_TREE_FROM_DB:
+                return "apprendimento";
+            case Protocol.TASK_GET_TREE_FROM_FILE:
+                return "lettura albero";
+            case Protocol.TASK_PRINT_TREE:
+            case Protocol.TASK_PRINT_TREE_STREAM:
+                return "stampa (task " + task + ")";
+            case Protocol.TASK_PREDICT_TREE:
+            case Protocol.TASK_PREDICT_ANSWER:
+            case Protocol.TASK_PREDICT_BATCH:
+                return "predizione (task " + task + ")";
+            case Protocol.TASK_PING:
+                return "ping";
+            case Protocol.TASK_GET_TREE_STRUCTURE:
+                return "struttura albero";
+            case Protocol.TASK_GET_SUBTREE:
+                return "sottoalbero";
+            default:
+                return "task " + task;
+        }
+    }
+
+    /**
+     * Contatori di un singolo task.
+     */
+    private static class Entry {
+        private final LatencyHistogram firstFrame = new LatencyHistogram();
+        private final LatencyHistogram total = new LatencyHistogram();
+        private final AtomicLong errors = new AtomicLong();
+    }
+
+    /**
+     * La classe registra i tempi di una richiesta e ne consegna la risposta all'handler originale.
+     */
+    private static class Tracked implements ResponseHandler {
+
+        /**
+         * Contatori del task.
+         */
+        final Entry entry;
+
+        /**
+         * Istante, in nanosecondi, dell'invio della richiesta.
+         */
+        final long start;
+
+        /**
+         * Riceve la risposta del server.
+         */
+        private final ResponseHandler handler;
+
+        /**
+         * Vale {@code true} dopo la ricezione del primo frame della risposta.
+         */
+        private volatile boolean received;
+
+        /**
+         * Inizializza gli attributi d'istanza con quelli passati in input.
+         * @param entry Contatori del task.
+         * @param start Istante, in nanosecondi, dell'invio della richiesta.
+         * @param handler Riceve la risposta del server.
+         */
+        Tracked(Entry entry, long start, ResponseHandler handler) {
+            this.entry = entry;
+            this.start = start;
+            this.handler = handler;
+        }
+
+        /**
+         * Registra la ricezione di un frame della risposta, se è il primo.
+         */
+        void firstFrame() {
+            if (!received) {
+                received = true;
+                entry.firstFrame.record(System.nanoTime() - start);
+            }
+        }
+
+        /**
+         * Consegna la risposta e registra il tempo totale, comprensivo della sua elaborazione.
+         * @param response Frame di risposta.
+         */
+        @Override
+        public void onResponse(Frame response) {
+            firstFrame();
+            handler.onResponse(response);
+            entry.total.record(System.nanoTime() - start);
+        }
+
+        /**
+         * Registra l'errore e lo consegna.
+         * @param e Errore che ha terminato la richiesta.
+         */
+        @Override
+        public void onError(IOException e) {
+            entry.errors.incrementAndGet();
+            handler.onError(e);
+        }
+    }
+
+    /**
+     * La classe registra i tempi di una richiesta il cui risultato viene restituito a blocchi.
+     */
+    private static class TrackedStream extends Tracked implements StreamHandler {
+
+        /**
+         * Riceve i blocchi del risultato.
+         */
+        private final StreamHandler handler;
+
+        /**
+         * Inizializza gli attributi d'istanza con quelli passati in input.
+         * @param entry Contatori del task.
+         * @param start Istante, in nanosecondi, dell'invio della richiesta.
+         * @param handler Riceve i blocchi e la fine del risultato.
+         */
+        TrackedStream(Entry entry, long start, StreamHandler handler) {
+            super(entry, start, handler);
+            this.handler = handler;
+        }
+
+        /**
+         * Registra la ricezione del blocco, se è il primo, e lo consegna.
+         * @param chunk Frame di tipo {@link Frame#CHUNK}.
+         */
+        @Override
+        public void onChunk(Frame chunk) {
+            firstFrame();
+            handler.onChunk(chunk);
+        }
+    }
+}
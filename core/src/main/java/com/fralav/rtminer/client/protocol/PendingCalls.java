@@ -0,0 +1,91 @@
+package com.fralav.rtminer.client.protocol;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * La classe tiene traccia delle richieste inviate con il protocollo a frame che non hanno ancora
+ * ricevuto risposta, e consegna ogni frame ricevuto al chiamante corrispondente tramite l'ID della
+ * richiesta. Può essere utilizzata da più thread.
+ */
+class PendingCalls {
+
+    /**
+     * Generatore degli ID delle richieste.
+     */
+    private final AtomicInteger nextId = new AtomicInteger();
+
+    /**
+     * Richieste inviate al server che non hanno ancora ricevuto risposta, indicizzate per ID.
+     */
+    private final Map<Integer, ResponseHandler> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Assegna un nuovo ID alla richiesta e ne registra il destinatario della risposta.
+     * @param handler Riceve la risposta del server.
+     * @return ID della richiesta.
+     */
+    int register(ResponseHandler handler) {
+        int id = nextId.incrementAndGet();
+        pending.put(id, handler);
+        return id;
+    }
+
+    /**
+     * Rimuove la richiesta specificata, ad esempio perché non è stato possibile inviarla.
+     * @param id ID della richiesta.
+     * @return {@code true} se la richiesta era ancora in attesa, {@code false} se la risposta o
+     * l'errore sono già stati consegnati.
+     */
+    boolean remove(int id) {
+        return pending.remove(id) != null;
+    }
+
+    /**
+     * Consegna il frame ricevuto al chiamante che ha inviato la richiesta corrispondente. I frame di
+     * tipo {@link Frame#ERROR} vengono consegnati come {@link TaskRejectedException}; i frame di tipo
+     * {@link Frame#CHUNK} vengono consegnati a {@link StreamHandler#onChunk(Frame)} e la richiesta
+     * resta in attesa dei frame successivi; i frame senza un chiamante in attesa vengono ignorati.
+     * @param frame Frame ricevuto dal server.
+     */
+    void dispatch(Frame frame) {
+        if (frame.getType() == Frame.CHUNK) {
+            ResponseHandler handler = pending.get(frame.getId());
+            if (handler instanceof StreamHandler) {
+                ((StreamHandler) handler).onChunk(frame);
+            }
+            return;
+        }
+        ResponseHandler handler = pending.remove(frame.getId());
+        if (handler == null) {
+            return;
+        }
+        if (frame.getType() == Frame.ERROR) {
+            String message;
+            try {
+                message = String.valueOf(frame.getValue(0));
+            } catch (IOException e) {
+                message = e.getMessage();
+            }
+            handler.onError(new TaskRejectedException(message));
+        } else {
+            handler.onResponse(frame);
+        }
+    }
+
+    /**
+     * Termina con un errore tutte le richieste ancora in attesa.
+     * @param error Errore da consegnare.
+     */
+    void failAll(IOException error) {
+        List<ResponseHandler> handlers = new ArrayList<>(pending.values());
+        pending.clear();
+        for (ResponseHandler handler : handlers) {
+            handler.onError(error);
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.fralav.rtminer.client.protocol;
+
+/**
+ * La classe raccoglie le costanti del protocollo di comunicazione tra client e server: gli ID dei
+ * task, le versioni del protocollo e le stringhe scambiate durante la fase di predizione.
+ */
+public final class Protocol {
+
+    private Protocol() {}
+
+    /**
+     * Rappresenta l'ID del task con il quale il client, appena connesso, chiede al server la versione
+     * del protocollo supportata. Un server che non conosce questo task non risponde, e il client
+     * utilizza il protocollo originale.
+     */
+    public static final int TASK_HELLO = 0;
+
+    /**
+     * Rappresenta l'ID del task che preleva i nomi delle tabelle dal database.
+     */
+    public static final int TASK_GET_TABLES_FROM_DB = 1;
+
+    /**
+     * Rappresenta l'ID del task che preleva i nomi dei file dall'archivio.
+     */
+    public static final int TASK_GET_FILES_FROM_ARCHIVE = 2;
+
+    /**
+     * Rappresenta l'ID del task che apprende un albero da un training set del database.
+     */
+    public static final int TASK_LEARN_TREE_FROM_DB = 3;
+
+    /**
+     * Rappresenta l'ID del task che preleva un albero precedentemente serializzato su file.
+     */
+    public static final int TASK_GET_TREE_FROM_FILE = 4;
+
+    /**
+     * Rappresenta l'ID del task che fornisce al client la rappresentazione in {@link String}
+     * dell'albero.
+     */
+    public static final int TASK_PRINT_TREE = 5;
+
+    /**
+     * Rappresenta l'ID del task che fornisce la predizione dell'albero al client.
+     */
+    public static final int TASK_PREDICT_TREE = 6;
+
+    /**
+     * Rappresenta l'ID del task con il quale il client comunica il figlio scelto dall'utente durante
+     * la fase di predizione. Nel protocollo originale la scelta viene inviata senza alcun ID.
+     */
+    public static final int TASK_PREDICT_ANSWER = 7;
+
+    /**
+     * Rappresenta l'ID del task con il quale il client verifica che il server sia ancora raggiungibile
+     * prima di riutilizzare una connessione inattiva. Disponibile solo con il protocollo a frame.
+     */
+    public static final int TASK_PING = 8;
+
+    /**
+     * Rappresenta l'ID del task con il quale il client chiede al server di dimenticare l'albero
+     * caricato e l'eventuale fase di predizione in corso, mantenendo aperta la connessione.
+     * Disponibile solo con il protocollo a frame.
+     */
+    public static final int TASK_RESET_SESSION = 9;
+
+    /**
+     * Rappresenta l'ID del task che trasferisce al client l'intero albero appreso con un'unica
+     * risposta, in modo che la fase di predizione possa avvenire sul dispositivo. La risposta contiene
+     * la visita in preordine dell'albero, nella quale ogni nodo è seguito dai sottoalberi dei suoi
+     * figli:
+     * <ol start="0">
+     *     <li>i nomi degli attributi indipendenti ({@code List<String>});</li>
+     *     <li>il numero di figli di ogni nodo, {@code 0} per le foglie ({@code int[]});</li>
+     *     <li>l'indice dell'attributo di split di ogni nodo, {@code -1} per le foglie ({@code int[]});</li>
+     *     <li>la soglia degli split continui, {@code NaN} per gli altri nodi ({@code double[]}): il
+     *     primo figlio raccoglie i valori minori o uguali alla soglia;</li>
+     *     <li>i valori associati ai figli degli split discreti, uno per ogni figlio
+     *     ({@code List<String>});</li>
+     *     <li>il valore di predizione delle foglie, {@code NaN} per gli altri nodi ({@code double[]});</li>
+     *     <li>la domanda da porre all'utente per ogni nodo di split ({@code List<String>});</li>
+     *     <li>facoltativo, l'impronta dell'albero ({@code String}), che cambia solo quando cambia
+     *     l'albero.</li>
+     * </ol>
+     * Il client può inviare come argomento l'impronta dell'albero salvato sul dispositivo: se coincide
+     * con quella dell'albero caricato, il server risponde solo con {@link #NOT_MODIFIED}. I server che
+     * ignorano l'argomento inviano sempre l'albero.
+     * Disponibile solo con il protocollo a frame.
+     */
+    public static final int TASK_GET_TREE_STRUCTURE = 10;
+
+    /**
+     * Rappresenta l'ID del task che calcola la predizione dell'albero per un blocco di esempi. La
+     * richiesta contiene il numero di attributi di ogni esempio ({@code Integer}), i valori degli
+     * esempi riga per riga ({@code List<String>}, con i valori continui in notazione decimale), il
+     * numero massimo di esempi per blocco ({@code Integer}) e il numero di blocchi che il server può
+     * inviare prima di attendere un frame {@link Frame#CREDIT} ({@code Integer}). Il server risponde
+     * con frame {@link Frame#CHUNK} contenenti l'indice del primo esempio del blocco ({@code Integer})
+     * e le predizioni ({@code double[]}, {@code NaN} se un esempio non ricade in alcun ramo), e
+     * chiude il risultato con un frame {@link Frame#END} contenente il numero di esempi.
+     * Disponibile solo con il protocollo a frame.
+     */
+    public static final int TASK_PREDICT_BATCH = 11;
+
+    /**
+     * Rappresenta l'ID del task con il quale il client chiede al server la versione corrente di una
+     * lista di nomi, per verificare con un solo messaggio se la lista salvata sul dispositivo è ancora
+     * valida. La richiesta contiene l'ID del task che restituisce la lista,
+     * {@link #TASK_GET_TABLES_FROM_DB} o {@link #TASK_GET_FILES_FROM_ARCHIVE}; la risposta contiene la
+     * versione, un valore che cambia ogni volta che cambia la lista. Disponibile solo con il
+     * protocollo a frame.
+     */
+    public static final int TASK_LISTING_VERSION = 12;
+
+    /**
+     * Rappresenta l'ID del task con il quale il client chiede al server una sola pagina di una lista
+     * di nomi, filtrata sul server, in modo da non trasferire le liste molto lunghe per intero. La
+     * richiesta contiene l'ID del task che restituisce la lista completa,
+     * {@link #TASK_GET_TABLES_FROM_DB} o {@link #TASK_GET_FILES_FROM_ARCHIVE} ({@code Integer}), la
+     * sottostringa che i nomi devono contenere senza distinzione tra maiuscole e minuscole, vuota per
+     * tutti i nomi ({@code String}), la posizione del primo nome della pagina e il numero massimo di
+     * nomi ({@code Integer}). La risposta contiene il numero complessivo di nomi che soddisfano il
+     * filtro ({@code Integer}) e i nomi della pagina ({@code List<String>}), sempre nello stesso ordine.
+     * Disponibile solo con il protocollo a frame.
+     */
+    public static final int TASK_LIST_PAGE = 13;
+
+    /**
+     * Rappresenta l'ID del task che trasferisce al client la rappresentazione testuale dell'albero una
+     * riga alla volta, anziché come un'unica {@link String}, in modo che il client possa mostrare le
+     * prime righe prima di aver ricevuto l'intero albero. La richiesta contiene il numero massimo di
+     * righe per blocco ({@code Integer}) e il numero di blocchi che il server può inviare prima di
+     * attendere un frame {@link Frame#CREDIT} ({@code Integer}). Il server risponde con frame
+     * {@link Frame#CHUNK} contenenti l'indice della prima riga del blocco ({@code Integer}) e le righe
+     * ({@code List<String>}), e chiude il risultato con un frame {@link Frame#END} contenente il numero
+     * di righe. Disponibile solo con il protocollo a frame.
+     */
+    public static final int TASK_PRINT_TREE_STREAM = 14;
+
+    /**
+     * Rappresenta l'ID del task che trasferisce al client un solo sottoalbero, limitato ai primi
+     * livelli, in modo che l'albero possa essere esplorato scaricando solo i rami che l'utente espande.
+     * La richiesta contiene il percorso del nodo radice del sottoalbero, ovvero la posizione del figlio
+     * scelto a ogni livello a partire dalla radice dell'albero, vuoto per la radice ({@code int[]}), e
+     * il numero di livelli da includere sotto il nodo, almeno {@code 1} ({@code Integer}). La risposta
+     * contiene la visita in preordine del sottoalbero, nella quale ogni nodo è seguito dai sottoalberi
+     * dei suoi figli:
+     * <ol start="0">
+     *     <li>il numero di figli di ogni nodo, {@code 0} per le foglie, cambiato di segno se i figli
+     *     non sono inclusi perché il nodo si trova all'ultimo livello richiesto ({@code int[]});</li>
+     *     <li>la condizione che porta dal padre a ogni nodo, vuota per il nodo richiesto
+     *     ({@code List<String>});</li>
+     *     <li>la descrizione di ogni nodo: la domanda per i nodi di split e il valore di predizione
+     *     per le foglie ({@code List<String>}).</li>
+     * </ol>
+     * Disponibile solo con il protocollo a frame.
+     */
+    public static final int TASK_GET_SUBTREE = 15;
+
+    /**
+     * Rappresenta l'ID del task che chiede al server di azzerare il proprio stream di output, in modo
+     * che la serializzazione Java smetta di trattenere gli oggetti già inviati. Il server esegue
+     * {@link java.io.ObjectOutputStream#reset()} prima di scrivere la risposta, che non contiene alcun
+     * valore. La richiesta non contiene argomenti. Disponibile solo con il protocollo a frame e il
+     * codec {@link #CODEC_JAVA}.
+     */
+    public static final int TASK_RESET_STREAM = 16;
+
+    /**
+     * Protocollo originale: gli oggetti vengono scambiati uno dopo l'altro e ogni richiesta deve
+     * attendere la risposta alla richiesta precedente.
+     */
+    public static final int PROTOCOL_LEGACY = 1;
+
+    /**
+     * Protocollo a frame: ogni richiesta ha un ID che il server riporta nella risposta, quindi più
+     * richieste possono essere in corso contemporaneamente sulla stessa connessione.
+     */
+    public static final int PROTOCOL_FRAMED = 2;
+
+    /**
+     * Protocollo a frame con codec negoziabile: dopo aver concordato la versione, il client propone
+     * al server il codec con il quale scrivere i frame e il server risponde con il codec scelto.
+     */
+    public static final int PROTOCOL_CODEC = 3;
+
+    /**
+     * Protocollo a frame con codec e compressione negoziabili: subito dopo aver concordato la
+     * versione, il client propone al server la dimensione minima in byte dei frame da comprimere
+     * ({@code Integer}, negativa se il client non vuole comprimere) e il server risponde con la soglia
+     * che entrambi utilizzeranno, negativa se la compressione non viene utilizzata. Segue la
+     * negoziazione del codec: la compressione si applica solo ai frame del codec binario.
+     */
+    public static final int PROTOCOL_COMPRESSION = 4;
+
+    /**
+     * Versione più recente del protocollo supportata dal client. La versione cambia solo quando
+     * cambia il formato dei messaggi: un server a frame che non conosce un task risponde con un frame
+     * di tipo {@link Frame#ERROR}, quindi i nuovi task non richiedono una nuova versione.
+     */
+    public static final int PROTOCOL_VERSION = PROTOCOL_COMPRESSION;
+
+    /**
+     * Codec che scrive i frame come array di oggetti tramite la serializzazione Java. È l'unico codec
+     * disponibile con la versione {@link #PROTOCOL_FRAMED}.
+     */
+    public static final int CODEC_JAVA = 1;
+
+    /**
+     * Codec che scrive i frame in un formato binario compatto, preceduti dalla loro lunghezza.
+     */
+    public static final int CODEC_BINARY = 2;
+
+    /**
+     * Tempo massimo di attesa, in millisecondi, della risposta del server al task {@code TASK_HELLO}.
+     */
+    public static final int HELLO_TIMEOUT = 2000;
+
+    /**
+     * Il server invia questa stringa al client durante la fase di predizione, prima di porre una
+     * domanda all'utente.
+     */
+    public static final String QUERY = "QUERY";
+
+    /**
+     * Il server invia questa stringa al client durante la fase di predizione, quando viene raggiunto
+     * un nodo foglia e quindi prima di inviare il valore di predizione.
+     */
+    public static final String PREDICTION = "OK";
+
+    /**
+     * Il server invia questa stringa al client, in risposta al task {@link #TASK_GET_TREE_STRUCTURE},
+     * quando l'albero salvato sul dispositivo coincide con quello caricato.
+     */
+    public static final String NOT_MODIFIED = "notModified";
+}
@@ -0,0 +1,23 @@
+package com.fralav.rtminer.client.protocol;
+
+import java.io.IOException;
+
+/**
+ * L'interfaccia riceve la risposta del server a una richiesta inviata tramite {@link Connection}.
+ * I metodi possono essere richiamati da un thread qualsiasi: è compito dell'implementazione
+ * spostare il risultato nel thread corretto.
+ */
+public interface ResponseHandler {
+
+    /**
+     * Viene richiamato quando il server ha risposto alla richiesta.
+     * @param response Frame ricevuto in risposta.
+     */
+    void onResponse(Frame response);
+
+    /**
+     * Viene richiamato quando la richiesta non è andata a buon fine.
+     * @param e Errore che si è verificato.
+     */
+    void onError(IOException e);
+}
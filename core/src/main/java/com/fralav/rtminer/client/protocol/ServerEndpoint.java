@@ -0,0 +1,244 @@
+package com.fralav.rtminer.client.protocol;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * La classe rappresenta uno dei server, tutti equivalenti, ai quali il client può connettersi, e ne
+ * conserva lo stato: il tempo di andata e ritorno misurato dalle verifiche periodiche di
+ * {@link EndpointPool} e il numero di tentativi falliti consecutivi. Dopo un tentativo fallito il
+ * server viene escluso per un tempo che raddoppia a ogni nuovo fallimento, fino a
+ * {@link #MAX_BACKOFF} millisecondi; trascorso questo tempo, può essere scelto di nuovo. I metodi
+ * possono essere richiamati da qualsiasi thread.
+ */
+public class ServerEndpoint {
+
+    /**
+     * Tempo, in millisecondi, per il quale un server viene escluso dopo il primo tentativo fallito.
+     */
+    public static final long MIN_BACKOFF = 1000;
+
+    /**
+     * Tempo massimo, in millisecondi, per il quale un server viene escluso dopo più tentativi falliti
+     * consecutivi.
+     */
+    public static final long MAX_BACKOFF = 60000;
+
+    /**
+     * Peso dell'ultima misura nella media mobile del tempo di andata e ritorno.
+     */
+    private static final double SMOOTHING = 0.3;
+
+    /**
+     * Indirizzo del server.
+     */
+    private final String host;
+
+    /**
+     * Porta del server.
+     */
+    private final int port;
+
+    /**
+     * Media mobile del tempo di andata e ritorno, in nanosecondi, {@code -1} se non è ancora stato
+     * misurato.
+     */
+    private long rttNanos = -1;
+
+    /**
+     * Numero di tentativi falliti consecutivi.
+     */
+    private int failures;
+
+    /**
+     * Istante, in nanosecondi, prima del quale il server non viene scelto.
+     */
+    private long excludedUntil;
+
+    /**
+     * Vale {@code true} se il server utilizza il protocollo originale: in questo caso, alle
+     * connessioni successive, il client non negozia la versione del protocollo.
+     */
+    private volatile boolean legacy;
+
+    /**
+     * Inizializza gli attributi d'istanza con quelli passati in input.
+     * @param host Indirizzo del server.
+     * @param port Porta del server.
+     * @throws IllegalArgumentException Se l'indirizzo è vuoto o la porta non è valida.
+     */
+    public ServerEndpoint(String host, int port) {
+        if (host == null || host.trim().isEmpty()) {
+            throw new IllegalArgumentException("Indirizzo mancante");
+        }
+        if (port < 1 || port > 65535) {
+            throw new IllegalArgumentException("Porta non valida: " + port);
+        }
+        this.host = host.trim();
+        this.port = port;
+    }
+
+    /**
+     * Legge un elenco di server, separati da virgole, spazi o a capo, ognuno nella forma
+     * {@code indirizzo:porta} oppure {@code indirizzo}.
+     * @param text Elenco dei server.
+     * @param defaultPort Porta dei server per i quali non è indicata.
+     * @return Server letti, nell'ordine dell'elenco e senza duplicati.
+     * @throws IllegalArgumentException Se un server non è valido o l'elenco è vuoto.
+     */
+    public static List<ServerEndpoint> parseList(String text, int defaultPort) {
+        List<ServerEndpoint> endpoints = new ArrayList<>();
+        for (String address : text.trim().split("[,\\s]+")) {
+            if (address.isEmpty()) {
+                continue;
+            }
+            ServerEndpoint endpoint = parse(address, defaultPort);
+            if (!endpoints.contains(endpoint)) {
+                endpoints.add(endpoint);
+            }
+        }
+        if (endpoints.isEmpty()) {
+            throw new IllegalArgumentException("Nessun server indicato");
+        }
+        return endpoints;
+    }
+
+    /**
+     * Legge un server nella forma {@code indirizzo:porta} oppure {@code indirizzo}.
+     * @param address Indirizzo del server, eventualmente seguito dalla porta.
+     * @param defaultPort Porta del server se non è indicata.
+     * @return Server letto.
+     * @throws IllegalArgumentException Se l'indirizzo è vuoto o la porta non è valida.
+     */
+    public static ServerEndpoint parse(String address, int defaultPort) {
+        int colon = address.lastIndexOf(':');
+        if (colon < 0) {
+            return new ServerEndpoint(address, defaultPort);
+        }
+        try {
+            return new ServerEndpoint(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1)));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Porta non valida: " + address);
+        }
+    }
+
+    /**
+     * Restituisce l'indirizzo del server.
+     * @return {@code host}
+     */
+    public String getHost() {
+        return host;
+    }
+
+    /**
+     * Restituisce la porta del server.
+     * @return {@code port}
+     */
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * Restituisce l'indirizzo e la porta del server, nella forma {@code indirizzo:porta}.
+     * @return Indirizzo e porta del server.
+     */
+    public String getAddress() {
+        return host + ":" + port;
+    }
+
+    /**
+     * Registra un tentativo riuscito e, se disponibile, il tempo di andata e ritorno misurato.
+     * @param rttNanos Tempo di andata e ritorno, in nanosecondi, negativo se non è stato misurato.
+     */
+    public synchronized void recordSuccess(long rttNanos) {
+        failures = 0;
+        excludedUntil = 0;
+        if (rttNanos >= 0) {
+            this.rttNanos = this.rttNanos < 0 ? rttNanos
+                    : (long) (SMOOTHING * rttNanos + (1 - SMOOTHING) * this.rttNanos);
+        }
+    }
+
+    /**
+     * Registra un tentativo fallito ed esclude il server per un tempo che dipende dal numero di
+     * tentativi falliti consecutivi.
+     */
+    public synchronized void recordFailure() {
+        failures++;
+        long backoff = Math.min(MAX_BACKOFF, MIN_BACKOFF << Math.min(failures - 1, 16));
+        excludedUntil = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoff);
+    }
+
+    /**
+     * Restituisce {@code true} se il server può essere scelto: se l'ultimo tentativo è riuscito
+     * oppure se è trascorso il tempo di esclusione dopo l'ultimo tentativo fallito.
+     * @return {@code true} se il server può essere scelto.
+     */
+    public synchronized boolean isAvailable() {
+        return failures == 0 || System.nanoTime() - excludedUntil >= 0;
+    }
+
+    /**
+     * Restituisce il numero di tentativi falliti consecutivi.
+     * @return {@code failures}
+     */
+    public synchronized int getFailures() {
+        return failures;
+    }
+
+    /**
+     * Restituisce la media mobile del tempo di andata e ritorno.
+     * @return Tempo di andata e ritorno in nanosecondi, {@code -1} se non è ancora stato misurato.
+     */
+    public synchronized long getRttNanos() {
+        return rttNanos;
+    }
+
+    /**
+     * Restituisce {@code true} se il server utilizza il protocollo originale.
+     * @return {@code legacy}
+     */
+    public boolean isLegacy() {
+        return legacy;
+    }
+
+    /**
+     * Imposta l'attributo {@code legacy} con quello passato in input.
+     * @param legacy {@code true} se il server utilizza il protocollo originale.
+     */
+    public void setLegacy(boolean legacy) {
+        this.legacy = legacy;
+    }
+
+    /**
+     * Due server sono uguali se hanno lo stesso indirizzo e la stessa porta.
+     * @param other Oggetto da confrontare.
+     * @return {@code true} se {@code other} rappresenta lo stesso server.
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof ServerEndpoint)) {
+            return false;
+        }
+        ServerEndpoint endpoint = (ServerEndpoint) other;
+        return host.equals(endpoint.host) && port == endpoint.port;
+    }
+
+    @Override
+    public int hashCode() {
+        return host.hashCode() * 31 + port;
+    }
+
+    /**
+     * Restituisce l'indirizzo del server e il suo stato.
+     * @return Descrizione del server.
+     */
+    @Override
+    public synchronized String toString() {
+        String state = failures > 0 ? "non raggiungibile (" + failures + " tentativi falliti)"
+                : rttNanos < 0 ? "non misurato" : String.format(Locale.ROOT, "rtt %.1f ms", rttNanos / 1e6);
+        return getAddress() + " " + state;
+    }
+}
@@ -0,0 +1,285 @@
+package com.fralav.rtminer.client.protocol;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * La classe mantiene una connessione "calda" con uno dei server, in modo che il ritorno a una
+ * schermata precedente non richieda una nuova connessione, con il relativo handshake TCP e lo scambio
+ * delle intestazioni degli stream. Prima di riutilizzare una connessione rimasta inattiva a lungo, ne
+ * verifica lo stato; alla fine di un'operazione, azzera la sessione sul server tramite il task
+ * {@link Protocol#TASK_RESET_SESSION}, chiudendo il socket solo quando il protocollo non permette
+ * altrimenti. Se un server non risponde, la connessione viene stabilita con il migliore degli altri
+ * server di {@link EndpointPool}. I metodi devono essere richiamati sempre dallo stesso thread.
+ */
+public class SessionManager {
+
+    /**
+     * Tempo di inattività, in millisecondi, oltre il quale la connessione viene verificata prima di
+     * essere riutilizzata.
+     */
+    public static final long HEALTH_CHECK_INTERVAL = 30000;
+
+    /**
+     * Tempo massimo di attesa, in millisecondi, della risposta del server durante la verifica.
+     */
+    public static final long PING_TIMEOUT = 2000;
+
+    /**
+     * Opzioni con le quali vengono stabilite le nuove connessioni.
+     */
+    private final ConnectionOptions options;
+
+    /**
+     * Tempo di inattività, in millisecondi, oltre il quale la connessione viene verificata.
+     */
+    private final long healthCheckInterval;
+
+    /**
+     * Contatori della sessione.
+     */
+    private final SessionStats stats = new SessionStats();
+
+    /**
+     * Connessione corrente, {@code null} se il client non si è ancora connesso.
+     */
+    private volatile Connection connection;
+
+    /**
+     * Server della connessione corrente, {@code null} se il client non si è ancora connesso.
+     */
+    private volatile ServerEndpoint endpoint;
+
+    /**
+     * Inizializza gli attributi d'istanza con quelli passati in input.
+     * @param options Opzioni con le quali vengono stabilite le nuove connessioni.
+     */
+    public SessionManager(ConnectionOptions options) {
+        this(options, HEALTH_CHECK_INTERVAL);
+    }
+
+    /**
+     * Inizializza gli attributi d'istanza con quelli passati in input.
+     * @param options Opzioni con le quali vengono stabilite le nuove connessioni.
+     * @param healthCheckInterval Tempo di inattività, in millisecondi, oltre il quale la connessione
+     * viene verificata prima di essere riutilizzata.
+     */
+    SessionManager(ConnectionOptions options, long healthCheckInterval) {
+        this.options = options;
+        this.healthCheckInterval = healthCheckInterval;
+    }
+
+    /**
+     * Restituisce una connessione aperta con uno dei server: se la connessione corrente è aperta, è
+     * inattiva ed è stabilita con uno dei server dell'elenco, viene riutilizzata, eventualmente dopo
+     * averne verificato lo stato; altrimenti viene chiusa e i server vengono provati nell'ordine
+     * stabilito da {@link EndpointPool#rank()}, finché uno di essi non accetta la connessione. I
+     * server che non la accettano vengono esclusi per qualche tempo.
+     * @param pool Server ai quali connettersi.
+     * @return Connessione aperta con uno dei server.
+     * @throws IOException Se non è possibile connettersi ad alcun server.
+     */
+    public Connection acquire(EndpointPool pool) throws IOException {
+        Connection current = connection;
+        ServerEndpoint currentEndpoint = endpoint;
+        if (current != null && pool.contains(currentEndpoint) && current.isOpen() && current.isIdle()) {
+            if (isHealthy(current, currentEndpoint)) {
+                stats.recordReuse();
+                return current;
+            }
+            currentEndpoint.recordFailure();
+        }
+        close();
+        IOException failure = new IOException("Nessun server indicato");
+        boolean skipped = false;
+        for (ServerEndpoint candidate : pool.rank()) {
+            try {
+                long start = System.nanoTime();
+                current = Connection.open(candidate.getHost(), candidate.getPort(), options,
+                        !candidate.isLegacy());
+                long elapsed = System.nanoTime() - start;
+                stats.recordConnect(elapsed);
+                options.getOperationStats().recordConnect(elapsed);
+                candidate.setLegacy(current.getProtocolVersion() == Protocol.PROTOCOL_LEGACY);
+                candidate.recordSuccess(-1);
+                if (skipped) {
+                    stats.recordFailover();
+                }
+                endpoint = candidate;
+                connection = current;
+                return current;
+            } catch (IOException e) {
+                candidate.recordFailure();
+                failure = e;
+                skipped = true;
+            }
+        }
+        throw failure;
+    }
+
+    /**
+     * Sostituisce una connessione interrotta durante la sessione: se è ancora la connessione
+     * corrente, il suo server viene escluso per qualche tempo e viene stabilita una nuova connessione
+     * con il migliore dei server rimanenti; altrimenti la connessione è già stata sostituita e viene
+     * restituita quella corrente.
+     * @param failed Connessione interrotta, {@code null} per la connessione corrente se è chiusa.
+     * @param pool Server ai quali connettersi.
+     * @return Connessione aperta con uno dei server.
+     * @throws IOException Se non è possibile connettersi ad alcun server.
+     */
+    public Connection failover(Connection failed, EndpointPool pool) throws IOException {
+        ServerEndpoint failedEndpoint = endpoint;
+        if (failed == null) {
+            failed = connection != null && !connection.isOpen() ? connection : null;
+        }
+        if (failed != null && connection == failed) {
+            close();
+            if (failedEndpoint != null) {
+                failedEndpoint.recordFailure();
+            }
+            stats.recordFailover();
+        }
+        return acquire(pool);
+    }
+
+    /**
+     * Restituisce il server della connessione corrente.
+     * @return {@code endpoint}, {@code null} se il client non si è ancora connesso.
+     */
+    public ServerEndpoint getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * Restituisce la connessione corrente se è aperta, senza stabilirne una nuova.
+     * @return Connessione corrente, {@code null} se il client non è connesso.
+     */
+    public Connection current() {
+        Connection current = connection;
+        return current != null && current.isOpen() ? current : null;
+    }
+
+    /**
+     * Restituisce {@code true} se il client è connesso al server, {@code false} altrimenti.
+     * @return {@code true} se la connessione corrente è aperta.
+     */
+    public boolean isConnected() {
+        return current() != null;
+    }
+
+    /**
+     * Azzera la sessione sul server mantenendo aperta la connessione. Con il protocollo a frame viene
+     * inviato il task {@link Protocol#TASK_RESET_SESSION} e, se il server non lo conferma, la
+     * connessione viene chiusa; con il protocollo originale la connessione
+     * viene mantenuta solo se il server non sta attendendo la scelta dell'utente durante la fase di
+     * predizione, altrimenti viene chiusa e verrà ristabilita alla prossima richiesta.
+     */
+    public void reset() {
+        Connection current = current();
+        if (current == null) {
+            return;
+        }
+        if (current.getProtocolVersion() >= Protocol.PROTOCOL_FRAMED) {
+            if (Boolean.TRUE.equals(callAndWait(current, Protocol.TASK_RESET_SESSION))) {
+                stats.recordReset();
+            } else {
+                closeQuietly(current);
+            }
+        } else if (current.isIdle()) {
+            stats.recordReset();
+        } else {
+            closeQuietly(current);
+        }
+    }
+
+    /**
+     * Chiude la connessione corrente, se presente.
+     */
+    public void close() {
+        Connection current = connection;
+        connection = null;
+        if (current != null) {
+            closeQuietly(current);
+        }
+    }
+
+    /**
+     * Restituisce i contatori della sessione.
+     * @return {@code stats}
+     */
+    public SessionStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Verifica lo stato di una connessione rimasta inattiva per più di {@code healthCheckInterval}
+     * millisecondi. Con il protocollo a frame viene inviato il task {@link Protocol#TASK_PING}: il
+     * server è considerato raggiungibile se risponde entro {@link #PING_TIMEOUT} millisecondi, anche
+     * con un frame di errore, e il tempo della risposta aggiorna il tempo di andata e ritorno del
+     * server. Con il protocollo originale non è possibile interrogare il server, e ci si affida allo
+     * stato del socket.
+     * @param current Connessione da verificare.
+     * @param currentEndpoint Server della connessione.
+     * @return {@code true} se la connessione può essere riutilizzata.
+     */
+    private boolean isHealthy(Connection current, ServerEndpoint currentEndpoint) {
+        if (current.getIdleMillis() < healthCheckInterval
+                || current.getProtocolVersion() < Protocol.PROTOCOL_FRAMED) {
+            return true;
+        }
+        long start = System.nanoTime();
+        Boolean answer = callAndWait(current, Protocol.TASK_PING);
+        boolean healthy = answer != null && (answer || current.isOpen());
+        stats.recordHealthCheck(healthy);
+        if (healthy) {
+            currentEndpoint.recordSuccess(System.nanoTime() - start);
+        }
+        return healthy;
+    }
+
+    /**
+     * Invia al server la richiesta di eseguire il task specificato e ne attende la risposta per al
+     * massimo {@link #PING_TIMEOUT} millisecondi.
+     * @param current Connessione alla quale inviare la richiesta.
+     * @param task ID del task.
+     * @return {@code true} se il server ha risposto con successo, {@code false} se ha risposto con un
+     * errore o se la connessione è stata chiusa, {@code null} se il server non ha risposto in tempo.
+     */
+    private static Boolean callAndWait(Connection current, int task) {
+        CountDownLatch latch = new CountDownLatch(1);
+        boolean[] success = new boolean[1];
+        try {
+            current.call(task, new Object[0], new ResponseHandler() {
+                @Override
+                public void onResponse(Frame response) {
+                    success[0] = true;
+                    latch.countDown();
+                }
+
+                @Override
+                public void onError(IOException e) {
+                    latch.countDown();
+                }
+            });
+            return latch.await(PING_TIMEOUT, TimeUnit.MILLISECONDS) ? success[0] : null;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * Chiude la connessione specificata ignorando eventuali errori.
+     * @param current Connessione da chiudere.
+     */
+    private static void closeQuietly(Connection current) {
+        try {
+            current.close();
+        } catch (IOException ignored) {
+            // La connessione è già chiusa.
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.fralav.rtminer.client.protocol;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * La classe raccoglie i contatori di una {@link SessionManager}: quante connessioni sono state
+ * stabilite e quanto tempo hanno richiesto, quante volte una connessione esistente è stata
+ * riutilizzata, quante volte la sessione è stata azzerata senza chiudere il socket e quante volte il
+ * client è passato a un altro server.
+ */
+public class SessionStats {
+
+    /**
+     * Numero di connessioni stabilite con il server.
+     */
+    private final AtomicLong connects = new AtomicLong();
+
+    /**
+     * Tempo complessivo, in nanosecondi, impiegato per stabilire le connessioni.
+     */
+    private final AtomicLong connectNanos = new AtomicLong();
+
+    /**
+     * Tempo, in nanosecondi, impiegato per stabilire l'ultima connessione.
+     */
+    private final AtomicLong lastConnectNanos = new AtomicLong();
+
+    /**
+     * Numero di volte in cui è stata riutilizzata una connessione già aperta.
+     */
+    private final AtomicLong reuses = new AtomicLong();
+
+    /**
+     * Numero di sessioni azzerate tramite il protocollo, senza chiudere il socket.
+     */
+    private final AtomicLong resets = new AtomicLong();
+
+    /**
+     * Numero di verifiche effettuate su connessioni inattive.
+     */
+    private final AtomicLong healthChecks = new AtomicLong();
+
+    /**
+     * Numero di verifiche fallite, che hanno richiesto una nuova connessione.
+     */
+    private final AtomicLong healthCheckFailures = new AtomicLong();
+
+    /**
+     * Numero di connessioni stabilite con un server diverso dal migliore, perché questo non era
+     * raggiungibile o si è interrotto durante la sessione.
+     */
+    private final AtomicLong failovers = new AtomicLong();
+
+    /**
+     * Registra una nuova connessione.
+     * @param nanos Tempo, in nanosecondi, impiegato per stabilire la connessione.
+     */
+    void recordConnect(long nanos) {
+        connects.incrementAndGet();
+        connectNanos.addAndGet(nanos);
+        lastConnectNanos.set(nanos);
+    }
+
+    /**
+     * Registra il riutilizzo di una connessione già aperta.
+     */
+    void recordReuse() {
+        reuses.incrementAndGet();
+    }
+
+    /**
+     * Registra l'azzeramento di una sessione senza chiusura del socket.
+     */
+    void recordReset() {
+        resets.incrementAndGet();
+    }
+
+    /**
+     * Registra la verifica di una connessione inattiva.
+     * @param healthy {@code true} se il server ha risposto alla verifica.
+     */
+    void recordHealthCheck(boolean healthy) {
+        healthChecks.incrementAndGet();
+        if (!healthy) {
+            healthCheckFailures.incrementAndGet();
+        }
+    }
+
+    /**
+     * Registra il passaggio a un altro server.
+     */
+    void recordFailover() {
+        failovers.incrementAndGet();
+    }
+
+    /**
+     * Restituisce il numero di connessioni stabilite con il server.
+     * @return Numero di connessioni.
+     */
+    public long getConnects() {
+        return connects.get();
+    }
+
+    /**
+     * Restituisce il numero di volte in cui è stata riutilizzata una connessione già aperta.
+     * @return Numero di riutilizzi.
+     */
+    public long getReuses() {
+        return reuses.get();
+    }
+
+    /**
+     * Restituisce il numero di sessioni azzerate senza chiudere il socket.
+     * @return Numero di azzeramenti.
+     */
+    public long getResets() {
+        return resets.get();
+    }
+
+    /**
+     * Restituisce il numero di verifiche effettuate su connessioni inattive.
+     * @return Numero di verifiche.
+     */
+    public long getHealthChecks() {
+        return healthChecks.get();
+    }
+
+    /**
+     * Restituisce il numero di verifiche fallite.
+     * @return Numero di verifiche fallite.
+     */
+    public long getHealthCheckFailures() {
+        return healthCheckFailures.get();
+    }
+
+    /**
+     * Restituisce il numero di passaggi a un altro server.
+     * @return Numero di passaggi.
+     */
+    public long getFailovers() {
+        return failovers.get();
+    }
+
+    /**
+     * Restituisce il tempo medio, in millisecondi, impiegato per stabilire una connessione.
+     * @return Tempo medio di connessione, {@code 0} se non sono state stabilite connessioni.
+     */
+    public double getAverageConnectMillis() {
+        long count = connects.get();
+        return count == 0 ? 0 : connectNanos.get() / 1e6 / count;
+    }
+
+    /**
+     * Restituisce il tempo, in millisecondi, impiegato per stabilire l'ultima connessione.
+     * @return Tempo dell'ultima connessione.
+     */
+    public double getLastConnectMillis() {
+        return lastConnectNanos.get() / 1e6;
+    }
+
+    /**
+     * Restituisce la frazione di richieste di connessione soddisfatte riutilizzando una connessione
+     * già aperta.
+     * @return Tasso di riutilizzo, compreso tra {@code 0} e {@code 1}.
+     */
+    public double getReuseRate() {
+        long reused = reuses.get();
+        long total = reused + connects.get();
+        return total == 0 ? 0 : (double) reused / total;
+    }
+
+    /**
+     * Restituisce una descrizione testuale dei contatori.
+     * @return Descrizione dei contatori.
+     */
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT,
+                "connessioni=%d (media %.1f ms, ultima %.1f ms), riutilizzi=%d (%.0f%%), reset=%d, "
+                        + "verifiche=%d (fallite %d), cambi di server=%d",
+                getConnects(), getAverageConnectMillis(), getLastConnectMillis(), getReuses(),
+                getReuseRate() * 100, getResets(), getHealthChecks(), getHealthCheckFailures(), getFailovers());
+    }
+}
@@ -0,0 +1,253 @@
+package com.fralav.rtminer.client.protocol;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * La classe limita la memoria trattenuta dagli stream della serializzazione Java durante le sessioni
+ * lunghe. Ogni {@link ObjectOutputStream} conserva un riferimento a ogni oggetto scritto, e ogni
+ * {@link java.io.ObjectInputStream} a ogni oggetto letto, finché lo stream non viene azzerato: senza
+ * alcun azzeramento, una lunga fase di predizione trattiene tutte le domande e le risposte su
+ * entrambi i lati della connessione. Dopo un numero massimo di messaggi o di byte:
+ * <ul>
+ *     <li>il client azzera il proprio stream di output con {@link ObjectOutputStream#reset()}: il
+ *     marcatore scritto nello stream fa azzerare anche lo stream di input del server, con qualunque
+ *     versione del protocollo;</li>
+ *     <li>con il protocollo a frame, il client chiede al server di azzerare il proprio stream di
+ *     output tramite il task {@link Protocol#TASK_RESET_STREAM}, e lo stream di input del client
+ *     viene azzerato quando riceve il marcatore, prima della risposta. Con il protocollo originale
+ *     non è possibile chiederlo al server.</li>
+ * </ul>
+ * Le dimensioni delle tabelle dei riferimenti non sono accessibili: la classe ne fornisce una stima
+ * per eccesso, contando gli oggetti e i byte scambiati dall'ultimo azzeramento. I metodi di scrittura
+ * devono essere sincronizzati dal chiamante e quelli di lettura richiamati da un unico thread; i
+ * contatori possono essere letti da qualunque thread.
+ */
+public class StreamGovernor {
+
+    /**
+     * Numero predefinito di messaggi dopo il quale gli stream vengono azzerati.
+     */
+    static final int DEFAULT_MAX_MESSAGES = 256;
+
+    /**
+     * Numero predefinito di byte dopo il quale gli stream vengono azzerati.
+     */
+    static final long DEFAULT_MAX_BYTES = 256 * 1024;
+
+    /**
+     * Numero massimo di messaggi scambiati in una direzione tra due azzeramenti.
+     */
+    private final int maxMessages;
+
+    /**
+     * Numero massimo di byte scambiati in una direzione tra due azzeramenti.
+     */
+    private final long maxBytes;
+
+    /**
+     * Messaggi scritti dall'ultimo azzeramento dello stream di output.
+     */
+    private volatile int writtenMessages;
+
+    /**
+     * Byte scritti dall'ultimo azzeramento dello stream di output.
+     */
+    private volatile long writtenBytes;
+
+    /**
+     * Stima degli oggetti scritti dall'ultimo azzeramento dello stream di output.
+     */
+    private volatile long writtenHandles;
+
+    /**
+     * Messaggi letti dall'ultimo azzeramento dello stream di input.
+     */
+    private volatile int readMessages;
+
+    /**
+     * Byte letti dall'ultimo azzeramento dello stream di input.
+     */
+    private volatile long readBytes;
+
+    /**
+     * Stima degli oggetti letti dall'ultimo azzeramento dello stream di input.
+     */
+    private volatile long readHandles;
+
+    /**
+     * Vale {@code true} mentre è in corso una richiesta di azzeramento al server.
+     */
+    private volatile boolean resetRequested;
+
+    /**
+     * Vale {@code false} se il server non supporta il task {@link Protocol#TASK_RESET_STREAM}.
+     */
+    private volatile boolean peerResetSupported = true;
+
+    /**
+     * Numero di azzeramenti dello stream di output del client.
+     */
+    private final AtomicLong localResets = new AtomicLong();
+
+    /**
+     * Numero di azzeramenti dello stream di output del server.
+     */
+    private final AtomicLong peerResets = new AtomicLong();
+
+    /**
+     * Inizializza gli attributi d'istanza con quelli passati in input.
+     * @param maxMessages Numero massimo di messaggi scambiati in una direzione tra due azzeramenti.
+     * @param maxBytes Numero massimo di byte scambiati in una direzione tra due azzeramenti.
+     */
+    StreamGovernor(int maxMessages, long maxBytes) {
+        this.maxMessages = maxMessages;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Registra la scrittura di un messaggio e, se viene superato il limite, azzera lo stream di
+     * output. Deve essere richiamato tra due messaggi, mai durante la scrittura di un oggetto.
+     * @param out Stream di output.
+     * @param message Oggetto scritto.
+     * @param bytes Byte scritti.
+     * @throws IOException Se non è possibile azzerare lo stream.
+     */
+    void afterWrite(ObjectOutputStream out, Object message, long bytes) throws IOException {
+        writtenMessages++;
+        writtenBytes += bytes;
+        writtenHandles += countHandles(message);
+        if (writtenMessages >= maxMessages || writtenBytes >= maxBytes) {
+            out.reset();
+            writtenMessages = 0;
+            writtenBytes = 0;
+            writtenHandles = 0;
+            localResets.incrementAndGet();
+        }
+    }
+
+    /**
+     * Registra la lettura di un messaggio.
+     * @param message Oggetto letto.
+     * @param bytes Byte letti.
+     */
+    void afterRead(Object message, long bytes) {
+        readMessages++;
+        readBytes += bytes;
+        readHandles += countHandles(message);
+    }
+
+    /**
+     * Restituisce {@code true} se il client deve chiedere al server di azzerare il proprio stream di
+     * output, ovvero se è stato superato il limite, il server supporta la richiesta e non ce n'è già
+     * una in corso. In questo caso la richiesta viene considerata in corso.
+     * @return {@code true} se il chiamante deve inviare il task {@link Protocol#TASK_RESET_STREAM}.
+     */
+    boolean shouldResetPeer() {
+        if (!peerResetSupported || resetRequested
+                || (readMessages < maxMessages && readBytes < maxBytes)) {
+            return false;
+        }
+        resetRequested = true;
+        return true;
+    }
+
+    /**
+     * Registra l'azzeramento dello stream di output del server, e quindi di quello di input del client.
+     */
+    void onPeerReset() {
+        readMessages = 0;
+        readBytes = 0;
+        readHandles = 0;
+        resetRequested = false;
+        peerResets.incrementAndGet();
+    }
+
+    /**
+     * Registra che il server non supporta il task {@link Protocol#TASK_RESET_STREAM}: le richieste
+     * successive non vengono più inviate.
+     */
+    void onPeerResetUnsupported() {
+        peerResetSupported = false;
+        resetRequested = false;
+    }
+
+    /**
+     * Restituisce la stima del numero di oggetti trattenuti dalle tabelle dei riferimenti degli
+     * stream del client.
+     * @return Oggetti scritti e letti dall'ultimo azzeramento.
+     */
+    public long getRetainedHandles() {
+        return writtenHandles + readHandles;
+    }
+
+    /**
+     * Restituisce la stima della memoria trattenuta dagli stream del client, espressa come numero di
+     * byte serializzati degli oggetti scritti e letti dall'ultimo azzeramento.
+     * @return Byte scambiati dall'ultimo azzeramento.
+     */
+    public long getRetainedBytes() {
+        return writtenBytes + readBytes;
+    }
+
+    /**
+     * Restituisce il numero di azzeramenti dello stream di output del client.
+     * @return {@code localResets}
+     */
+    public long getLocalResets() {
+        return localResets.get();
+    }
+
+    /**
+     * Restituisce il numero di azzeramenti dello stream di output del server.
+     * @return {@code peerResets}
+     */
+    public long getPeerResets() {
+        return peerResets.get();
+    }
+
+    /**
+     * Restituisce una descrizione testuale dei contatori.
+     * @return Descrizione dei contatori.
+     */
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT,
+                "stream: %d oggetti (%d B) trattenuti, azzeramenti client %d, server %d%s",
+                getRetainedHandles(), getRetainedBytes(), getLocalResets(), getPeerResets(),
+                peerResetSupported ? "" : " (non supportati dal server)");
+    }
+
+    /**
+     * Stima per eccesso il numero di riferimenti che la serializzazione di un oggetto aggiunge alla
+     * tabella dello stream: uno per l'oggetto e, per gli array di oggetti e le collezioni, uno per
+     * ogni elemento. Gli oggetti già scritti, come gli {@link Integer} piccoli condivisi, vengono
+     * contati di nuovo.
+     * @param message Oggetto scritto o letto.
+     * @return Numero stimato di riferimenti.
+     */
+    static long countHandles(Object message) {
+        if (message == null) {
+            return 0;
+        }
+        long count = 1;
+        if (message instanceof Object[]) {
+            for (Object element : (Object[]) message) {
+                count += countHandles(element);
+            }
+        } else if (message instanceof Collection) {
+            for (Object element : (Collection<?>) message) {
+                count += countHandles(element);
+            }
+        } else if (message instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) message).entrySet()) {
+                count += countHandles(entry.getKey()) + countHandles(entry.getValue());
+            }
+        }
+        return count;
+    }
+}
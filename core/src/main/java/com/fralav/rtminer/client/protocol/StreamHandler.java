@@ -0,0 +1,15 @@
+package com.fralav.rtminer.client.protocol;
+
+/**
+ * L'interfaccia riceve la risposta del server a un task che restituisce il risultato a blocchi: ogni
+ * blocco viene consegnato a {@link #onChunk(Frame)}, mentre il frame {@link Frame#END} che chiude il
+ * risultato viene consegnato a {@link #onResponse(Frame)}.
+ */
+public interface StreamHandler extends ResponseHandler {
+
+    /**
+     * Viene richiamato quando il server ha inviato un blocco del risultato.
+     * @param chunk Frame di tipo {@link Frame#CHUNK}.
+     */
+    void onChunk(Frame chunk);
+}
@@ -0,0 +1,25 @@
+package com.fralav.rtminer.client.protocol;
+
+import java.io.IOException;
+
+/**
+ * L'eccezione indica che il server ha rifiutato una richiesta, rispondendo con un frame di tipo
+ * {@link Frame#ERROR}, oppure che il task non esiste nel protocollo originale e la richiesta non è
+ * stata inviata. In entrambi i casi la connessione resta valida, e ripetere la richiesta allo stesso
+ * server produrrebbe lo stesso risultato.
+ */
+public class TaskRejectedException extends IOException {
+
+    /**
+     * Versione della classe serializzabile.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Inizializza l'eccezione con il messaggio specificato.
+     * @param message Messaggio ricevuto dal server o motivo del rifiuto.
+     */
+    public TaskRejectedException(String message) {
+        super(message);
+    }
+}
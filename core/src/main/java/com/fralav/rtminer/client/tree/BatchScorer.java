@@ -0,0 +1,303 @@
+package com.fralav.rtminer.client.tree;
+
+import java.io.Closeable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * La classe calcola in parallelo le predizioni di un {@link FlatTree} per un insieme di esempi. Gli
+ * esempi vengono suddivisi in blocchi i cui valori occupano all'incirca la cache di primo livello di
+ * un core; i thread del pool, insieme al thread chiamante, prelevano i blocchi uno alla volta da un
+ * contatore condiviso, in modo che i core più veloci elaborino più blocchi, e scrivono le predizioni
+ * direttamente in un unico array preallocato. Gli alberi valutati molte volte possono essere prima
+ * compilati con {@link CompiledTree#compile(FlatTree)}: le predizioni sono le stesse.
+ */
+public class BatchScorer implements Closeable {
+
+    /**
+     * Dimensione in byte dei valori contenuti in un blocco di esempi.
+     */
+    private static final int BLOCK_BYTES = 32 * 1024;
+
+    /**
+     * Numero minimo di esempi in un blocco.
+     */
+    private static final int MIN_BLOCK_ROWS = 64;
+
+    /**
+     * Numero di thread che elaborano i blocchi, compreso il thread chiamante.
+     */
+    private final int parallelism;
+
+    /**
+     * Pool dei thread di supporto, {@code null} se {@code parallelism} vale 1.
+     */
+    private final ThreadPoolExecutor pool;
+
+    /**
+     * Crea un motore di predizione che utilizza tutti i core disponibili.
+     */
+    public BatchScorer() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Crea un motore di predizione che utilizza il numero di thread specificato.
+     * @param parallelism Numero di thread che elaborano i blocchi, compreso il thread chiamante.
+     * @throws IllegalArgumentException Se {@code parallelism} è minore di 1.
+     */
+    public BatchScorer(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelismo non valido: " + parallelism);
+        }
+        this.parallelism = parallelism;
+        if (parallelism == 1) {
+            pool = null;
+        } else {
+            final AtomicInteger threads = new AtomicInteger();
+            ThreadFactory factory = runnable -> {
+                Thread thread = new Thread(runnable, "RTMiner-Score-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            };
+            pool = new ThreadPoolExecutor(parallelism - 1, parallelism - 1, 0, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<Runnable>(), factory);
+        }
+    }
+
+    /**
+     * Restituisce il numero di thread che elaborano i blocchi.
+     * @return {@code parallelism}
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Calcola le predizioni dell'albero per tutti gli esempi della tabella, bloccando il thread
+     * chiamante fino al termine dell'elaborazione.
+     * @param tree Albero di regressione.
+     * @param table Esempi da predire.
+     * @return Predizioni e tempo impiegato.
+     * @throws InterruptedException Se il thread chiamante viene interrotto durante l'attesa.
+     * @throws IllegalArgumentException Se gli esempi hanno meno attributi dell'albero.
+     */
+    public Result score(FlatTree tree, RowTable table) throws InterruptedException {
+        return score(tree, table, new double[table.getRows()]);
+    }
+
+    /**
+     * Calcola le predizioni dell'albero per tutti gli esempi della tabella, scrivendole nell'array
+     * specificato, che può essere riutilizzato tra chiamate successive.
+     * @param tree Albero di regressione.
+     * @param table Esempi da predire.
+     * @param predictions Array nel quale scrivere le predizioni, lungo almeno quanto il numero di
+     *                    esempi.
+     * @return Predizioni e tempo impiegato.
+     * @throws InterruptedException Se il thread chiamante viene interrotto durante l'attesa.
+     * @throws IllegalArgumentException Se gli esempi hanno meno attributi dell'albero o se
+     * {@code predictions} è troppo corto.
+     */
+    public Result score(FlatTree tree, RowTable table, double[] predictions) throws InterruptedException {
+        return score(tree::predict, tree.getAttributes().size(), table, predictions);
+    }
+
+    /**
+     * Calcola le predizioni dell'albero compilato per tutti gli esempi della tabella, bloccando il
+     * thread chiamante fino al termine dell'elaborazione.
+     * @param tree Albero compilato.
+     * @param table Esempi da predire.
+     * @return Predizioni e tempo impiegato.
+     * @throws InterruptedException Se il thread chiamante viene interrotto durante l'attesa.
+     * @throws IllegalArgumentException Se gli esempi hanno meno attributi dell'albero.
+     */
+    public Result score(CompiledTree tree, RowTable table) throws InterruptedException {
+        return score(tree, table, new double[table.getRows()]);
+    }
+
+    /**
+     * Calcola le predizioni dell'albero compilato per tutti gli esempi della tabella, scrivendole
+     * nell'array specificato, che può essere riutilizzato tra chiamate successive.
+     * @param tree Albero compilato.
+     * @param table Esempi da predire.
+     * @param predictions Array nel quale scrivere le predizioni, lungo almeno quanto il numero di
+     *                    esempi.
+     * @return Predizioni e tempo impiegato.
+     * @throws InterruptedException Se il thread chiamante viene interrotto durante l'attesa.
+     * @throws IllegalArgumentException Se gli esempi hanno meno attributi dell'albero o se
+     * {@code predictions} è troppo corto.
+     */
+    public Result score(CompiledTree tree, RowTable table, double[] predictions) throws InterruptedException {
+        return score(tree::predict, tree.getAttributeCount(), table, predictions);
+    }
+
+    /**
+     * Calcola le predizioni per tutti gli esempi della tabella con il motore di predizione
+     * specificato.
+     * @param tree Motore di predizione.
+     * @param attributes Numero di attributi richiesti dall'albero.
+     * @param table Esempi da predire.
+     * @param predictions Array nel quale scrivere le predizioni.
+     * @return Predizioni e tempo impiegato.
+     * @throws InterruptedException Se il thread chiamante viene interrotto durante l'attesa.
+     * @throws IllegalArgumentException Se gli esempi hanno meno attributi dell'albero o se
+     * {@code predictions} è troppo corto.
+     */
+    private Result score(final RowPredictor tree, int attributes, final RowTable table,
+                         final double[] predictions) throws InterruptedException {
+        if (table.getColumns() < attributes) {
+            throw new IllegalArgumentException("Gli esempi hanno " + table.getColumns()
+                    + " attributi, l'albero ne richiede " + attributes);
+        }
+        if (predictions.length < table.getRows()) {
+            throw new IllegalArgumentException("Array delle predizioni troppo corto");
+        }
+        long start = System.nanoTime();
+        final int blockRows = Math.max(MIN_BLOCK_ROWS, BLOCK_BYTES / (8 * table.getColumns()));
+        int blocks = (int) (((long) table.getRows() + blockRows - 1) / blockRows);
+        int helpers = pool == null ? 0 : Math.min(parallelism, blocks) - 1;
+        final AtomicInteger cursor = new AtomicInteger();
+        final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        final CountDownLatch done = new CountDownLatch(Math.max(helpers, 0));
+        Runnable worker = () -> {
+            try {
+                scoreBlocks(tree, table, blockRows, cursor, predictions);
+            } catch (RuntimeException e) {
+                failure.compareAndSet(null, e);
+            } finally {
+                done.countDown();
+            }
+        };
+        for (int i = 0; i < helpers; i++) {
+            pool.execute(worker);
+        }
+        try {
+            scoreBlocks(tree, table, blockRows, cursor, predictions);
+        } finally {
+            // I blocchi non ancora assegnati vengono saltati dai thread di supporto.
+            done.await();
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        return new Result(predictions, table.getRows(), System.nanoTime() - start);
+    }
+
+    /**
+     * Arresta i thread di supporto. Il motore di predizione non può più essere utilizzato.
+     */
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Elabora i blocchi di esempi finché il contatore condiviso non supera l'ultimo blocco.
+     * @param tree Motore di predizione.
+     * @param table Esempi da predire.
+     * @param blockRows Numero di esempi in un blocco.
+     * @param cursor Indice del prossimo blocco da elaborare.
+     * @param predictions Array nel quale scrivere le predizioni.
+     */
+    private static void scoreBlocks(RowPredictor tree, RowTable table, int blockRows, AtomicInteger cursor,
+                                    double[] predictions) {
+        double[] values = table.getValues();
+        int columns = table.getColumns();
+        int rows = table.getRows();
+        long from;
+        while ((from = (long) cursor.getAndIncrement() * blockRows) < rows) {
+            int to = (int) Math.min(rows, from + blockRows);
+            for (int row = (int) from; row < to; row++) {
+                predictions[row] = tree.predict(values, row * columns);
+            }
+        }
+    }
+
+    /**
+     * L'interfaccia rappresenta un motore di predizione che valuta un esempio alla volta: la visita
+     * dei nodi di {@link FlatTree} oppure la catena di predicati di {@link CompiledTree}.
+     */
+    private interface RowPredictor {
+
+        /**
+         * Calcola la predizione per l'esempio che inizia alla posizione specificata.
+         * @param data Valori degli esempi, uno dopo l'altro.
+         * @param offset Posizione del primo valore dell'esempio.
+         * @return Valore di predizione.
+         */
+        double predict(double[] data, int offset);
+    }
+
+    /**
+     * La classe contiene il risultato di un'elaborazione: le predizioni, nello stesso ordine degli
+     * esempi, e il tempo impiegato per calcolarle.
+     */
+    public static class Result {
+
+        /**
+         * Predizioni degli esempi.
+         */
+        private final double[] predictions;
+
+        /**
+         * Numero di esempi elaborati.
+         */
+        private final int rows;
+
+        /**
+         * Tempo impiegato in nanosecondi.
+         */
+        private final long elapsedNanos;
+
+        /**
+         * Inizializza gli attributi d'istanza con quelli passati in input.
+         * @param predictions Predizioni degli esempi.
+         * @param rows Numero di esempi elaborati.
+         * @param elapsedNanos Tempo impiegato in nanosecondi.
+         */
+        Result(double[] predictions, int rows, long elapsedNanos) {
+            this.predictions = predictions;
+            this.rows = rows;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * Restituisce le predizioni degli esempi.
+         * @return {@code predictions}
+         */
+        public double[] getPredictions() {
+            return predictions;
+        }
+
+        /**
+         * Restituisce il numero di esempi elaborati.
+         * @return {@code rows}
+         */
+        public int getRows() {
+            return rows;
+        }
+
+        /**
+         * Restituisce il tempo impiegato in nanosecondi.
+         * @return {@code elapsedNanos}
+         */
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * Restituisce il numero di esempi elaborati al secondo.
+         * @return Throughput dell'elaborazione.
+         */
+        public double getRowsPerSecond() {
+            return elapsedNanos == 0 ? 0 : rows * 1e9 / elapsedNanos;
+        }
+    }
+}
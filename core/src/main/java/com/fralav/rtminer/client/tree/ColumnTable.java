@@ -0,0 +1,83 @@
+package com.fralav.rtminer.client.tree;
+
+/**
+ * La classe rappresenta un insieme di esempi da predire memorizzato per colonne: i valori di ogni
+ * attributo occupano un array di {@code double} separato, indicizzato per esempio. I valori degli
+ * attributi discreti sono i codici restituiti da {@link FlatTree#encode(int, String)}.
+ */
+public class ColumnTable {
+
+    /**
+     * Valori di ogni attributo, indicizzati per esempio.
+     */
+    private final double[][] columns;
+
+    /**
+     * Numero di esempi.
+     */
+    private final int rows;
+
+    /**
+     * Inizializza gli attributi d'istanza con quelli passati in input.
+     * @param columns Valori di ogni attributo, indicizzati per esempio; ogni array può essere più
+     *                lungo del necessario.
+     * @param rows Numero di esempi.
+     * @throws IllegalArgumentException Se una colonna non contiene tutti i valori.
+     */
+    public ColumnTable(double[][] columns, int rows) {
+        if (rows < 0) {
+            throw new IllegalArgumentException("Numero di esempi non valido: " + rows);
+        }
+        for (double[] column : columns) {
+            if (column.length < rows) {
+                throw new IllegalArgumentException("Colonna troppo corta");
+            }
+        }
+        this.columns = columns;
+        this.rows = rows;
+    }
+
+    /**
+     * Converte un insieme di esempi memorizzato per righe.
+     * @param table Esempi memorizzati per righe.
+     * @return Esempi memorizzati per colonne.
+     */
+    public static ColumnTable fromRows(RowTable table) {
+        int count = table.getColumns();
+        int rows = table.getRows();
+        double[] values = table.getValues();
+        double[][] columns = new double[count][rows];
+        for (int row = 0; row < rows; row++) {
+            int offset = row * count;
+            for (int column = 0; column < count; column++) {
+                columns[column][row] = values[offset + column];
+            }
+        }
+        return new ColumnTable(columns, rows);
+    }
+
+    /**
+     * Restituisce il numero di attributi.
+     * @return Numero di colonne.
+     */
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    /**
+     * Restituisce il numero di esempi.
+     * @return {@code rows}
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Restituisce i valori dell'attributo specificato.
+     * @param column Indice dell'attributo.
+     * @return Valori dell'attributo, indicizzati per esempio.
+     */
+    public double[] getColumn(int column) {
+        return columns[column];
+    }
+}
@@ -0,0 +1,198 @@
+package com.fralav.rtminer.client.tree;
+
+import java.util.Arrays;
+
+/**
+ * La classe calcola le predizioni di un {@link FlatTree} per un insieme di esempi memorizzato per
+ * colonne, visitando l'albero livello per livello anziché un esempio alla volta. Ogni nodo riceve gli
+ * indici degli esempi che lo raggiungono e li suddivide tra i figli con un unico ciclo sulla colonna
+ * del proprio attributo di split; le foglie assegnano la predizione a tutti gli esempi ricevuti. In
+ * questo modo ogni ciclo legge una sola colonna e confronta i valori con un'unica soglia, anziché
+ * saltare da un nodo all'altro per ogni esempio.
+ * <p>
+ * Poiché i nodi dell'albero sono numerati in ampiezza, visitarli in ordine di indice equivale a
+ * visitarli livello per livello. Gli indici degli esempi di ogni nodo occupano un intervallo contiguo
+ * di uno di due array, e il nodo li suddivide nello stesso intervallo dell'altro array, dove i figli
+ * li troveranno: nodi dello stesso livello occupano intervalli disgiunti, quindi non interferiscono.
+ * <p>
+ * Le predizioni coincidono con quelle di {@link FlatTree#predict(double[])}. Un'istanza può essere
+ * utilizzata da più thread contemporaneamente.
+ */
+public class ColumnarScorer {
+
+    /**
+     * Numero di esempi al di sotto del quale un nodo non li suddivide tra i figli, ma percorre il
+     * sottoalbero un esempio alla volta: per pochi esempi il costo della suddivisione supera il
+     * vantaggio di leggere una colonna alla volta.
+     */
+    private static final int MIN_PARTITION_ROWS = 64;
+
+    /**
+     * Albero di regressione.
+     */
+    private final FlatTree tree;
+
+    /**
+     * Figlio corrispondente a ogni codice dell'attributo di split, per ogni nodo con split discreto:
+     * {@code -1} se il codice non corrisponde ad alcun figlio; {@code null} per gli altri nodi.
+     */
+    private final int[][] childByCode;
+
+    /**
+     * Crea il motore di predizione per l'albero specificato.
+     * @param tree Albero di regressione.
+     */
+    public ColumnarScorer(FlatTree tree) {
+        this.tree = tree;
+        childByCode = new int[tree.size()][];
+        for (int node = 0; node < tree.size(); node++) {
+            if (!tree.isLeaf(node) && !tree.isContinuous(node)) {
+                childByCode[node] = tree.childTable(node);
+            }
+        }
+    }
+
+    /**
+     * Calcola le predizioni dell'albero per tutti gli esempi della tabella.
+     * @param table Esempi da predire.
+     * @return Predizioni, nello stesso ordine degli esempi.
+     * @throws IllegalArgumentException Se gli esempi hanno meno attributi dell'albero.
+     */
+    public double[] score(ColumnTable table) {
+        double[] predictions = new double[table.getRows()];
+        score(table, predictions);
+        return predictions;
+    }
+
+    /**
+     * Calcola le predizioni dell'albero per tutti gli esempi della tabella, scrivendole nell'array
+     * specificato.
+     * @param table Esempi da predire.
+     * @param predictions Array nel quale scrivere le predizioni, lungo almeno quanto il numero di
+     *                    esempi.
+     * @throws IllegalArgumentException Se gli esempi hanno meno attributi dell'albero o se
+     * {@code predictions} è troppo corto.
+     */
+    public void score(ColumnTable table, double[] predictions) {
+        if (table.getColumnCount() < tree.getAttributes().size()) {
+            throw new IllegalArgumentException("Gli esempi hanno " + table.getColumnCount()
+                    + " attributi, l'albero ne richiede " + tree.getAttributes().size());
+        }
+        int rows = table.getRows();
+        if (predictions.length < rows) {
+            throw new IllegalArgumentException("Array delle predizioni troppo corto");
+        }
+        if (rows == 0) {
+            return;
+        }
+        int nodes = tree.size();
+        int[][] buffers = {new int[rows], new int[rows]};
+        int[] start = new int[nodes];
+        int[] end = new int[nodes];
+        byte[] buffer = new byte[nodes];
+        int[] slot = new int[rows];
+        int[] offsets = new int[0];
+        for (int row = 0; row < rows; row++) {
+            buffers[0][row] = row;
+        }
+        end[0] = rows;
+        for (int node = 0; node < nodes; node++) {
+            int from = start[node];
+            int to = end[node];
+            if (from == to) {
+                continue;
+            }
+            int[] in = buffers[buffer[node]];
+            if (tree.isLeaf(node)) {
+                double value = tree.getPrediction(node);
+                for (int i = from; i < to; i++) {
+                    predictions[in[i]] = value;
+                }
+                continue;
+            }
+            if (to - from < MIN_PARTITION_ROWS) {
+                for (int i = from; i < to; i++) {
+                    int row = in[i];
+                    predictions[row] = walk(table, node, row);
+                }
+                continue;
+            }
+            int[] out = buffers[buffer[node] ^ 1];
+            double[] column = table.getColumn(tree.getSplitAttribute(node));
+            int first = tree.getChild(node, 0);
+            int count = tree.getChildCount(node);
+            if (tree.isContinuous(node)) {
+                double threshold = tree.getThreshold(node);
+                int low = from;
+                int high = to;
+                for (int i = from; i < to; i++) {
+                    int row = in[i];
+                    double value = column[row];
+                    if (value <= threshold) {
+                        out[low++] = row;
+                    } else if (value > threshold) {
+                        out[--high] = row;
+                    } else {
+                        predictions[row] = Double.NaN;
+                    }
+                }
+                start[first] = from;
+                end[first] = low;
+                start[first + 1] = high;
+                end[first + 1] = to;
+            } else {
+                if (offsets.length < count + 1) {
+                    offsets = new int[count + 1];
+                } else {
+                    Arrays.fill(offsets, 0, count + 1, 0);
+                }
+                int[] codes = childByCode[node];
+                for (int i = from; i < to; i++) {
+                    int row = in[i];
+                    double value = column[row];
+                    int code = (int) value;
+                    int child = code == value && code >= 0 && code < codes.length ? codes[code] : -1;
+                    slot[i] = child;
+                    if (child < 0) {
+                        predictions[row] = Double.NaN;
+                    } else {
+                        offsets[child + 1]++;
+                    }
+                }
+                offsets[0] = from;
+                for (int c = 0; c < count; c++) {
+                    offsets[c + 1] += offsets[c];
+                    start[first + c] = offsets[c];
+                    end[first + c] = offsets[c + 1];
+                }
+                for (int i = from; i < to; i++) {
+                    int child = slot[i];
+                    if (child >= 0) {
+                        out[offsets[child]++] = in[i];
+                    }
+                }
+            }
+            for (int c = 0; c < count; c++) {
+                buffer[first + c] = (byte) (buffer[node] ^ 1);
+            }
+        }
+    }
+
+    /**
+     * Percorre il sottoalbero del nodo specificato per un singolo esempio.
+     * @param table Esempi da predire.
+     * @param node Indice del nodo di partenza.
+     * @param row Indice dell'esempio.
+     * @return Valore di predizione, {@link Double#NaN} se un valore dell'esempio non corrisponde ad
+     * alcun ramo dell'albero.
+     */
+    private double walk(ColumnTable table, int node, int row) {
+        while (!tree.isLeaf(node)) {
+            node = tree.childFor(node, table.getColumn(tree.getSplitAttribute(node))[row]);
+            if (node < 0) {
+                return Double.NaN;
+            }
+        }
+        return tree.getPrediction(node);
+    }
+}
@@ -0,0 +1,244 @@
+package com.fralav.rtminer.client.tree;
+
+/**
+ * La classe rappresenta un {@link FlatTree} compilato in una catena chiusa di predicati
+ * specializzati: ogni nodo di split diventa un oggetto immutabile che contiene come costanti
+ * l'attributo, la soglia o la tabella dei codici e i riferimenti diretti ai figli, e ogni foglia il
+ * proprio valore di predizione. A differenza dell'interprete di {@link FlatTree}, la valutazione non
+ * legge gli array paralleli dell'albero né distingue a ogni passo il tipo di split, quindi il
+ * compilatore JIT può specializzare ciascun predicato separatamente.
+ * <p>
+ * Le predizioni coincidono con quelle di {@link FlatTree#predict(double[])}, comprese quelle
+ * {@link Double#NaN} per i valori che non corrispondono ad alcun ramo. La valutazione non utilizza la
+ * ricorsione, quindi anche gli alberi molto profondi non esauriscono lo stack. Per predire un
+ * insieme di esempi in parallelo, l'albero compilato può essere passato a {@link BatchScorer}.
+ */
+public class CompiledTree {
+
+    /**
+     * Foglia raggiunta dagli esempi con un valore che non corrisponde ad alcun figlio.
+     */
+    private static final Node UNMATCHED = new Node(Double.NaN);
+
+    /**
+     * Radice dell'albero compilato.
+     */
+    private final Node root;
+
+    /**
+     * Numero di attributi indipendenti dell'albero.
+     */
+    private final int attributes;
+
+    /**
+     * Inizializza gli attributi d'istanza con quelli passati in input.
+     * @param root Radice dell'albero compilato.
+     * @param attributes Numero di attributi indipendenti.
+     */
+    private CompiledTree(Node root, int attributes) {
+        this.root = root;
+        this.attributes = attributes;
+    }
+
+    /**
+     * Compila l'albero specificato. Poiché i nodi sono numerati in ampiezza, i figli hanno sempre
+     * indice maggiore del padre: visitando i nodi a ritroso ogni figlio è già compilato quando viene
+     * compilato il padre.
+     * @param tree Albero da compilare.
+     * @return Albero compilato.
+     */
+    public static CompiledTree compile(FlatTree tree) {
+        Node[] nodes = new Node[tree.size()];
+        for (int node = tree.size() - 1; node >= 0; node--) {
+            if (tree.isLeaf(node)) {
+                nodes[node] = new Node(tree.getPrediction(node));
+                continue;
+            }
+            int attribute = tree.getSplitAttribute(node);
+            int first = tree.getChild(node, 0);
+            if (tree.isContinuous(node)) {
+                nodes[node] = new ThresholdSplit(attribute, tree.getThreshold(node), nodes[first],
+                        nodes[first + 1]);
+            } else {
+                int[] table = tree.childTable(node);
+                Node[] children = new Node[table.length];
+                for (int code = 0; code < table.length; code++) {
+                    children[code] = table[code] < 0 ? UNMATCHED : nodes[first + table[code]];
+                }
+                nodes[node] = new DiscreteSplit(attribute, children);
+            }
+        }
+        return new CompiledTree(nodes[0], tree.getAttributes().size());
+    }
+
+    /**
+     * Restituisce il numero di attributi indipendenti dell'albero.
+     * @return {@code attributes}
+     */
+    public int getAttributeCount() {
+        return attributes;
+    }
+
+    /**
+     * Calcola la predizione dell'albero per l'esempio specificato, senza allocare alcun oggetto.
+     * @param row Valori degli attributi indipendenti, codificati come in
+     *            {@link FlatTree#predict(double[])}.
+     * @return Valore di predizione, {@link Double#NaN} se un valore dell'esempio non corrisponde ad
+     * alcun ramo dell'albero.
+     */
+    public double predict(double[] row) {
+        return predict(row, 0);
+    }
+
+    /**
+     * Calcola la predizione dell'albero per l'esempio che inizia alla posizione specificata di un
+     * array contenente più esempi, uno dopo l'altro, senza allocare alcun oggetto.
+     * @param data Valori degli esempi, codificati come in {@link FlatTree#predict(double[])}.
+     * @param offset Posizione del primo valore dell'esempio.
+     * @return Valore di predizione, {@link Double#NaN} se un valore dell'esempio non corrisponde ad
+     * alcun ramo dell'albero.
+     */
+    public double predict(double[] data, int offset) {
+        Node node = root;
+        while (!node.leaf) {
+            node = ((Split) node).next(data, offset);
+        }
+        return node.prediction;
+    }
+
+    /**
+     * La classe rappresenta un nodo dell'albero compilato. Le istanze di questa classe sono foglie;
+     * i nodi di split sono istanze delle sottoclassi di {@link Split}.
+     */
+    private static class Node {
+
+        /**
+         * {@code true} se il nodo è una foglia.
+         */
+        final boolean leaf;
+
+        /**
+         * Valore di predizione della foglia, {@link Double#NaN} per i nodi di split.
+         */
+        final double prediction;
+
+        /**
+         * Crea una foglia.
+         * @param prediction Valore di predizione.
+         */
+        Node(double prediction) {
+            this.leaf = true;
+            this.prediction = prediction;
+        }
+
+        /**
+         * Crea un nodo di split.
+         */
+        Node() {
+            this.leaf = false;
+            this.prediction = Double.NaN;
+        }
+    }
+
+    /**
+     * La classe rappresenta un nodo di split, che sceglie il figlio nel quale ricade un esempio.
+     */
+    private abstract static class Split extends Node {
+
+        /**
+         * Indice dell'attributo di split.
+         */
+        final int attribute;
+
+        /**
+         * Inizializza gli attributi d'istanza con quelli passati in input.
+         * @param attribute Indice dell'attributo di split.
+         */
+        Split(int attribute) {
+            this.attribute = attribute;
+        }
+
+        /**
+         * Sceglie il figlio nel quale ricade l'esempio.
+         * @param data Valori degli esempi.
+         * @param offset Posizione del primo valore dell'esempio.
+         * @return Figlio scelto, {@link #UNMATCHED} se il valore non corrisponde ad alcun figlio.
+         */
+        abstract Node next(double[] data, int offset);
+    }
+
+    /**
+     * La classe rappresenta uno split continuo: il primo figlio raccoglie gli esempi con valore minore
+     * o uguale alla soglia, il secondo quelli con valore maggiore; gli esempi con valore
+     * {@link Double#NaN} raggiungono {@link #UNMATCHED}.
+     */
+    private static final class ThresholdSplit extends Split {
+
+        /**
+         * Soglia dello split.
+         */
+        private final double threshold;
+
+        /**
+         * Figlio degli esempi con valore minore o uguale alla soglia.
+         */
+        private final Node low;
+
+        /**
+         * Figlio degli altri esempi.
+         */
+        private final Node high;
+
+        /**
+         * Inizializza gli attributi d'istanza con quelli passati in input.
+         * @param attribute Indice dell'attributo di split.
+         * @param threshold Soglia dello split.
+         * @param low Figlio degli esempi con valore minore o uguale alla soglia.
+         * @param high Figlio degli altri esempi.
+         */
+        ThresholdSplit(int attribute, double threshold, Node low, Node high) {
+            super(attribute);
+            this.threshold = threshold;
+            this.low = low;
+            this.high = high;
+        }
+
+        @Override
+        Node next(double[] data, int offset) {
+            double value = data[offset + attribute];
+            if (value <= threshold) {
+                return low;
+            }
+            return value > threshold ? high : UNMATCHED;
+        }
+    }
+
+    /**
+     * La classe rappresenta uno split discreto, che sceglie il figlio indicizzando direttamente una
+     * tabella con il codice del valore.
+     */
+    private static final class DiscreteSplit extends Split {
+
+        /**
+         * Figlio corrispondente a ogni codice, {@link #UNMATCHED} per i codici senza figlio.
+         */
+        private final Node[] children;
+
+        /**
+         * Inizializza gli attributi d'istanza con quelli passati in input.
+         * @param attribute Indice dell'attributo di split.
+         * @param children Figlio corrispondente a ogni codice.
+         */
+        DiscreteSplit(int attribute, Node[] children) {
+            super(attribute);
+            this.children = children;
+        }
+
+        @Override
+        Node next(double[] data, int offset) {
+            double value = data[offset + attribute];
+            int code = (int) value;
+            return code == value && code >= 0 && code < children.length ? children[code] : UNMATCHED;
+        }
+    }
+}
@@ -0,0 +1,513 @@
+package com.fralav.rtminer.client.tree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * La classe rappresenta un albero di regressione scaricato per intero dal server, memorizzato come
+ * insieme di array primitivi indicizzati per nodo anziché come oggetti collegati tra loro. I nodi sono
+ * numerati in ampiezza a partire dalla radice, che ha indice {@code 0}, quindi i figli di ogni nodo
+ * occupano posizioni contigue e vicine a quelle dei fratelli del padre. Percorrere l'albero per
+ * calcolare una predizione non alloca alcun oggetto.
+ * <p>
+ * Un nodo è una foglia se non ha figli. Uno split è continuo se la soglia è diversa da
+ * {@link Double#NaN}: il primo figlio raccoglie gli esempi con valore minore o uguale alla soglia, il
+ * secondo quelli con valore maggiore; un valore {@link Double#NaN}, come quello di un numero non
+ * leggibile, non ricade in alcun figlio. Altrimenti lo split è discreto e ogni figlio corrisponde a uno
+ * dei valori dell'attributo, rappresentato dal suo codice nel dizionario dell'attributo.
+ */
+public class FlatTree implements TreeModel {
+
+    /**
+     * Nomi degli attributi indipendenti del training set.
+     */
+    private final List<String> attributes;
+
+    /**
+     * Valori discreti di ogni attributo, indicizzati per codice; vuoto per gli attributi continui.
+     */
+    private final String[][] dictionaries;
+
+    /**
+     * Codici dei valori discreti di ogni attributo, indicizzati per valore.
+     */
+    private final Map<String, Integer>[] codes;
+
+    /**
+     * Indice dell'attributo di split di ogni nodo, {@code -1} per le foglie.
+     */
+    private final int[] splitAttribute;
+
+    /**
+     * Soglia degli split continui, {@link Double#NaN} per gli altri nodi.
+     */
+    private final double[] threshold;
+
+    /**
+     * Indice del primo figlio di ogni nodo.
+     */
+    private final int[] firstChild;
+
+    /**
+     * Numero di figli di ogni nodo, {@code 0} per le foglie.
+     */
+    private final int[] childCount;
+
+    /**
+     * Posizione, in {@code splitCodes}, del codice associato al primo figlio degli split discreti.
+     */
+    private final int[] valueOffset;
+
+    /**
+     * Codici dei valori associati ai figli degli split discreti, contigui per ogni nodo.
+     */
+    private final int[] splitCodes;
+
+    /**
+     * Valore di predizione delle foglie, {@link Double#NaN} per gli altri nodi.
+     */
+    private final double[] prediction;
+
+    /**
+     * Domanda da porre all'utente per ogni nodo di split, {@code null} per le foglie.
+     */
+    private final String[] questions;
+
+    /**
+     * Inizializza gli attributi d'istanza con quelli passati in input.
+     * @param attributes Nomi degli attributi indipendenti.
+     * @param dictionaries Valori discreti di ogni attributo, indicizzati per codice.
+     * @param codes Codici dei valori discreti di ogni attributo.
+     * @param splitAttribute Indice dell'attributo di split di ogni nodo.
+     * @param threshold Soglia degli split continui.
+     * @param firstChild Indice del primo figlio di ogni nodo.
+     * @param childCount Numero di figli di ogni nodo.
+     * @param valueOffset Posizione del codice associato al primo figlio degli split discreti.
+     * @param splitCodes Codici dei valori associati ai figli degli split discreti.
+     * @param prediction Valore di predizione delle foglie.
+     * @param questions Domanda da porre all'utente per ogni nodo di split.
+     */
+    private FlatTree(List<String> attributes, String[][] dictionaries, Map<String, Integer>[] codes,
+                     int[] splitAttribute, double[] threshold, int[] firstChild, int[] childCount,
+                     int[] valueOffset, int[] splitCodes, double[] prediction, String[] questions) {
+        this.attributes = attributes;
+        this.dictionaries = dictionaries;
+        this.codes = codes;
+        this.splitAttribute = splitAttribute;
+        this.threshold = threshold;
+        this.firstChild = firstChild;
+        this.childCount = childCount;
+        this.valueOffset = valueOffset;
+        this.splitCodes = splitCodes;
+        this.prediction = prediction;
+        this.questions = questions;
+    }
+
+    /**
+     * Costruisce l'albero a partire dalla sua visita in preordine, nella quale ogni nodo è seguito dai
+     * sottoalberi dei suoi figli, e rinumera i nodi in ampiezza. Gli array indicizzati per nodo hanno
+     * tutti la stessa lunghezza; le liste {@code splitValues} e {@code questions} contengono invece
+     * solo i valori dei nodi che ne fanno uso, nello stesso ordine della visita. La costruzione non
+     * utilizza la ricorsione, quindi anche gli alberi molto profondi non esauriscono lo stack.
+     * @param attributes Nomi degli attributi indipendenti.
+     * @param childCount Numero di figli di ogni nodo, {@code 0} per i nodi foglia.
+     * @param splitAttribute Indice dell'attributo di split di ogni nodo, {@code -1} per i nodi foglia.
+     * @param threshold Soglia degli split continui, {@link Double#NaN} per gli altri nodi.
+     * @param splitValues Valori associati ai figli degli split discreti, uno per ogni figlio.
+     * @param prediction Valore di predizione dei nodi foglia, {@link Double#NaN} per gli altri nodi.
+     * @param questions Domanda da porre all'utente per ogni nodo di split.
+     * @return Albero costruito.
+     * @throws IllegalArgumentException Se gli array non descrivono un albero valido.
+     */
+    public static FlatTree fromPreorder(List<String> attributes, int[] childCount, int[] splitAttribute,
+                                        double[] threshold, List<String> splitValues,
+                                        double[] prediction, List<String> questions) {
+        int size = childCount.length;
+        if (size == 0 || splitAttribute.length != size || threshold.length != size
+                || prediction.length != size) {
+            throw new IllegalArgumentException("Struttura dell'albero non valida");
+        }
+
+        // Posizione della domanda e dei valori di split di ogni nodo, nell'ordine della visita.
+        int[] questionIndex = new int[size];
+        int[] valueIndex = new int[size];
+        int nextQuestion = 0;
+        int nextValue = 0;
+        for (int node = 0; node < size; node++) {
+            int count = childCount[node];
+            if (count == 0) {
+                continue;
+            }
+            int attribute = splitAttribute[node];
+            if (count < 0 || attribute < 0 || attribute >= attributes.size()) {
+                throw new IllegalArgumentException("Nodo di split non valido: " + node);
+            }
+            if (!Double.isNaN(threshold[node]) && count != 2) {
+                throw new IllegalArgumentException("Lo split continuo deve avere due figli: " + node);
+            }
+            questionIndex[node] = nextQuestion++;
+            valueIndex[node] = nextValue;
+            if (Double.isNaN(threshold[node])) {
+                nextValue += count;
+            }
+        }
+        if (nextQuestion != questions.size() || nextValue != splitValues.size()) {
+            throw new IllegalArgumentException("Struttura dell'albero non valida");
+        }
+
+        // Dimensione del sottoalbero di ogni nodo, calcolata visitando i nodi a ritroso: quando si
+        // raggiunge un nodo, in cima allo stack si trovano i sottoalberi dei suoi figli, in ordine.
+        int[] subtree = new int[size];
+        int[] stack = new int[size];
+        int depth = 0;
+        for (int node = size - 1; node >= 0; node--) {
+            int count = childCount[node];
+            if (count > depth) {
+                throw new IllegalArgumentException("Struttura dell'albero incompleta");
+            }
+            int total = 1;
+            for (int i = 0; i < count; i++) {
+                total += stack[--depth];
+            }
+            subtree[node] = total;
+            stack[depth++] = total;
+        }
+        if (depth != 1) {
+            throw new IllegalArgumentException("Struttura dell'albero non valida");
+        }
+
+        // Visita in ampiezza: order[i] è l'indice nella visita in preordine del nodo i.
+        int[] order = stack;
+        order[0] = 0;
+        int tail = 1;
+        int[] flatFirstChild = new int[size];
+        for (int head = 0; head < size; head++) {
+            int node = order[head];
+            flatFirstChild[head] = tail;
+            int child = node + 1;
+            for (int i = 0; i < childCount[node]; i++) {
+                order[tail++] = child;
+                child += subtree[child];
+            }
+        }
+
+        Map<String, Integer>[] codes = newCodeTables(attributes.size());
+        List<List<String>> values = new ArrayList<>();
+        for (int i = 0; i < attributes.size(); i++) {
+            codes[i] = new HashMap<>();
+            values.add(new ArrayList<String>());
+        }
+        int[] flatSplitAttribute = new int[size];
+        double[] flatThreshold = new double[size];
+        int[] flatChildCount = new int[size];
+        int[] flatValueOffset = new int[size];
+        int[] flatSplitCodes = new int[splitValues.size()];
+        double[] flatPrediction = new double[size];
+        String[] flatQuestions = new String[size];
+        String[] valueArray = splitValues.toArray(new String[0]);
+        String[] questionArray = questions.toArray(new String[0]);
+        int nextCode = 0;
+        for (int flat = 0; flat < size; flat++) {
+            int node = order[flat];
+            int count = childCount[node];
+            flatChildCount[flat] = count;
+            flatThreshold[flat] = count == 0 ? Double.NaN : threshold[node];
+            flatPrediction[flat] = count == 0 ? prediction[node] : Double.NaN;
+            flatSplitAttribute[flat] = count == 0 ? -1 : splitAttribute[node];
+            if (count == 0) {
+                continue;
+            }
+            flatQuestions[flat] = questionArray[questionIndex[node]];
+            if (Double.isNaN(threshold[node])) {
+                int attribute = splitAttribute[node];
+                flatValueOffset[flat] = nextCode;
+                for (int i = 0; i < count; i++) {
+                    String value = valueArray[valueIndex[node] + i];
+                    Integer code = codes[attribute].get(value);
+                    if (code == null) {
+                        code = values.get(attribute).size();
+                        codes[attribute].put(value, code);
+                        values.get(attribute).add(value);
+                    }
+                    flatSplitCodes[nextCode++] = code;
+                }
+            }
+        }
+        String[][] dictionaries = new String[attributes.size()][];
+        for (int i = 0; i < dictionaries.length; i++) {
+            dictionaries[i] = values.get(i).toArray(new String[0]);
+        }
+        return new FlatTree(Collections.unmodifiableList(new ArrayList<>(attributes)), dictionaries,
+                codes, flatSplitAttribute, flatThreshold, flatFirstChild, flatChildCount,
+                flatValueOffset, flatSplitCodes, flatPrediction, flatQuestions);
+    }
+
+    /**
+     * Crea l'array delle tabelle dei codici dei valori discreti, una per attributo. Java non permette
+     * di creare direttamente array di tipi generici, quindi l'array viene creato senza parametri di
+     * tipo: la conversione è sicura perché l'array non esce mai dagli alberi che lo utilizzano.
+     * @param attributes Numero di attributi.
+     * @return Array vuoto delle tabelle dei codici.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static Map<String, Integer>[] newCodeTables(int attributes) {
+        return new Map[attributes];
+    }
+
+    /**
+     * Restituisce i nomi degli attributi indipendenti.
+     * @return {@code attributes}
+     */
+    @Override
+    public List<String> getAttributes() {
+        return attributes;
+    }
+
+    /**
+     * Restituisce il numero di nodi dell'albero.
+     * @return Numero di nodi.
+     */
+    @Override
+    public int size() {
+        return childCount.length;
+    }
+
+    /**
+     * Restituisce {@code true} se il nodo è una foglia, {@code false} altrimenti.
+     * @param node Indice del nodo.
+     * @return {@code true} se il nodo non ha figli.
+     */
+    @Override
+    public boolean isLeaf(int node) {
+        return childCount[node] == 0;
+    }
+
+    /**
+     * Restituisce il numero di figli del nodo.
+     * @param node Indice del nodo.
+     * @return Numero di figli.
+     */
+    @Override
+    public int getChildCount(int node) {
+        return childCount[node];
+    }
+
+    /**
+     * Restituisce l'indice del figlio specificato.
+     * @param node Indice del nodo.
+     * @param child Posizione del figlio, da {@code 0} a {@code getChildCount(node) - 1}.
+     * @return Indice del figlio.
+     */
+    @Override
+    public int getChild(int node, int child) {
+        return firstChild[node] + child;
+    }
+
+    /**
+     * Restituisce l'indice dell'attributo sul quale avviene lo split del nodo.
+     * @param node Indice del nodo.
+     * @return Indice dell'attributo, {@code -1} per le foglie.
+     */
+    @Override
+    public int getSplitAttribute(int node) {
+        return splitAttribute[node];
+    }
+
+    /**
+     * Restituisce {@code true} se lo split del nodo è continuo.
+     * @param node Indice del nodo.
+     * @return {@code true} se lo split è continuo.
+     */
+    @Override
+    public boolean isContinuous(int node) {
+        return !Double.isNaN(threshold[node]);
+    }
+
+    /**
+     * Restituisce la soglia dello split continuo del nodo.
+     * @param node Indice del nodo.
+     * @return Soglia, {@link Double#NaN} per gli split discreti e per le foglie.
+     */
+    @Override
+    public double getThreshold(int node) {
+        return threshold[node];
+    }
+
+    /**
+     * Restituisce il valore dell'attributo associato al figlio specificato di uno split discreto.
+     * @param node Indice del nodo.
+     * @param child Posizione del figlio.
+     * @return Valore dell'attributo.
+     */
+    @Override
+    public String getSplitValue(int node, int child) {
+        return dictionaries[splitAttribute[node]][splitCodes[valueOffset[node] + child]];
+    }
+
+    /**
+     * Restituisce la domanda da porre all'utente per il nodo.
+     * @param node Indice del nodo.
+     * @return Domanda, {@code null} per le foglie.
+     */
+    @Override
+    public String getQuestion(int node) {
+        return questions[node];
+    }
+
+    /**
+     * Restituisce il valore di predizione del nodo.
+     * @param node Indice del nodo.
+     * @return Valore di predizione, {@link Double#NaN} per i nodi di split.
+     */
+    @Override
+    public double getPrediction(int node) {
+        return prediction[node];
+    }
+
+    /**
+     * Restituisce i valori discreti dell'attributo specificato, indicizzati per codice.
+     * @param attribute Indice dell'attributo.
+     * @return Valori discreti, vuoto per gli attributi continui.
+     */
+    String[] getDictionary(int attribute) {
+        return dictionaries[attribute];
+    }
+
+    /**
+     * Restituisce {@code true} se l'attributo compare in almeno uno split discreto dell'albero, e i
+     * suoi valori devono quindi essere convertiti con {@link #encode(int, String)}.
+     * @param attribute Indice dell'attributo.
+     * @return {@code true} se l'attributo è discreto.
+     */
+    public boolean isDiscrete(int attribute) {
+        return dictionaries[attribute].length > 0;
+    }
+
+    /**
+     * Restituisce il codice del valore discreto specificato di un attributo, da utilizzare negli
+     * esempi passati a {@link #predict(double[])}.
+     * @param attribute Indice dell'attributo.
+     * @param value Valore discreto.
+     * @return Codice del valore, {@code -1} se il valore non compare in alcuno split dell'albero.
+     */
+    @Override
+    public int encode(int attribute, String value) {
+        Integer code = codes[attribute].get(value);
+        return code != null ? code : -1;
+    }
+
+    /**
+     * Sceglie il figlio del nodo nel quale ricade il valore specificato dell'attributo di split.
+     * @param node Indice di un nodo di split.
+     * @param value Valore dell'attributo: il valore numerico per gli split continui, il codice
+     *              restituito da {@link #encode(int, String)} per gli split discreti.
+     * @return Indice del figlio, {@code -1} se il valore non corrisponde ad alcun figlio, compreso un
+     * valore {@link Double#NaN} in uno split continuo.
+     */
+    public int childFor(int node, double value) {
+        double split = threshold[node];
+        if (!Double.isNaN(split)) {
+            if (value <= split) {
+                return firstChild[node];
+            }
+            return value > split ? firstChild[node] + 1 : -1;
+        }
+        int offset = valueOffset[node];
+        int count = childCount[node];
+        for (int i = 0; i < count; i++) {
+            if (splitCodes[offset + i] == value) {
+                return firstChild[node] + i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Costruisce la tabella che associa ogni codice dell'attributo di uno split discreto al figlio
+     * scelto da {@link #childFor(int, double)}, per i motori di predizione che evitano la ricerca
+     * lineare tra i figli.
+     * @param node Indice di un nodo con split discreto.
+     * @return Posizione del figlio per ogni codice, {@code -1} se il codice non corrisponde ad alcun
+     * figlio.
+     */
+    int[] childTable(int node) {
+        int offset = valueOffset[node];
+        int count = childCount[node];
+        int max = -1;
+        for (int i = 0; i < count; i++) {
+            max = Math.max(max, splitCodes[offset + i]);
+        }
+        int[] table = new int[max + 1];
+        Arrays.fill(table, -1);
+        // A parità di codice vale il primo figlio, come in childFor.
+        for (int i = count - 1; i >= 0; i--) {
+            table[splitCodes[offset + i]] = i;
+        }
+        return table;
+    }
+
+    /**
+     * Calcola la predizione dell'albero per l'esempio specificato, senza allocare alcun oggetto.
+     * @param row Valori degli attributi indipendenti, nello stesso ordine di {@code attributes}: i
+     *            valori degli attributi discreti sono i codici restituiti da
+     *            {@link #encode(int, String)}.
+     * @return Valore di predizione, {@link Double#NaN} se un valore dell'esempio non corrisponde ad
+     * alcun ramo dell'albero.
+     */
+    public double predict(double[] row) {
+        return predict(row, 0);
+    }
+
+    /**
+     * Calcola la predizione dell'albero per l'esempio che inizia alla posizione specificata di un
+     * array contenente più esempi, uno dopo l'altro, senza allocare alcun oggetto.
+     * @param data Valori degli esempi, codificati come in {@link #predict(double[])}.
+     * @param offset Posizione del primo valore dell'esempio.
+     * @return Valore di predizione, {@link Double#NaN} se un valore dell'esempio non corrisponde ad
+     * alcun ramo dell'albero.
+     */
+    @Override
+    public double predict(double[] data, int offset) {
+        int node = 0;
+        while (childCount[node] != 0) {
+            node = childFor(node, data[offset + splitAttribute[node]]);
+            if (node < 0) {
+                return Double.NaN;
+            }
+        }
+        return prediction[node];
+    }
+
+    /**
+     * Calcola la predizione dell'albero per l'esempio specificato, i cui valori discreti sono
+     * rappresentati come stringhe e quelli continui come {@link Number}.
+     * @param example Valori degli attributi indipendenti, nello stesso ordine di {@code attributes}.
+     * @return Valore di predizione, {@link Double#NaN} se un valore dell'esempio non corrisponde ad
+     * alcun ramo dell'albero.
+     */
+    public double predict(Object[] example) {
+        int node = 0;
+        while (childCount[node] != 0) {
+            int attribute = splitAttribute[node];
+            Object value = example[attribute];
+            double coded;
+            if (isContinuous(node)) {
+                if (!(value instanceof Number)) {
+                    return Double.NaN;
+                }
+                coded = ((Number) value).doubleValue();
+            } else {
+                coded = encode(attribute, String.valueOf(value));
+            }
+            node = childFor(node, coded);
+            if (node < 0) {
+                return Double.NaN;
+            }
+        }
+        return prediction[node];
+    }
+}
@@ -0,0 +1,577 @@
+package com.fralav.rtminer.client.tree;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * La classe rappresenta un albero di regressione salvato in un file binario compatto e letto tramite
+ * {@link FileChannel#map}: i nodi non vengono copiati nello heap, ma letti direttamente dal buffer
+ * mappato a ogni passo della predizione, quindi anche gli alberi molto grandi si aprono
+ * istantaneamente e non occupano memoria Java. Solo i nomi degli attributi e i valori discreti, usati
+ * per convertire gli esempi, vengono caricati all'apertura.
+ * <p>
+ * Il file contiene gli stessi array di {@link FlatTree}, uno dopo l'altro e in ordine big endian:
+ * <ol>
+ *     <li>un'intestazione di {@value #HEADER_SIZE} byte con {@link #MAGIC}, versione, flag e
+ *     dimensioni delle sezioni;</li>
+ *     <li>le predizioni dei nodi ({@code double}) e le soglie degli split continui ({@code float} o
+ *     {@code double});</li>
+ *     <li>il primo figlio, la posizione dei codici degli split discreti e l'indice della domanda di
+ *     ogni nodo, seguiti dai codici degli split discreti, tutti a 16 bit senza segno oppure, per gli
+ *     alberi più grandi, a 32 bit;</li>
+ *     <li>l'attributo di split ({@code short}) e il numero di figli (16 bit senza segno) di ogni nodo;</li>
+ *     <li>il numero di valori discreti di ogni attributo ({@code int});</li>
+ *     <li>la tabella delle stringhe: le posizioni ({@code int}) e i byte UTF-8 dei nomi degli
+ *     attributi, dei valori discreti di ogni attributo e delle domande.</li>
+ * </ol>
+ */
+public class MappedTree implements TreeModel {
+
+    /**
+     * Numero che identifica il formato all'inizio del file ("RTMT").
+     */
+    public static final int MAGIC = 0x52544D54;
+
+    /**
+     * Versione del formato.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * Dimensione in byte dell'intestazione.
+     */
+    static final int HEADER_SIZE = 32;
+
+    /**
+     * Flag che indica indici a 32 bit anziché a 16 bit.
+     */
+    private static final int FLAG_WIDE_INDEX = 1;
+
+    /**
+     * Flag che indica soglie {@code float} anziché {@code double}.
+     */
+    private static final int FLAG_FLOAT_THRESHOLD = 2;
+
+    /**
+     * Valore massimo di un indice a 16 bit, riservato per l'assenza della domanda.
+     */
+    private static final int NARROW_LIMIT = 0xFFFF;
+
+    /**
+     * Codifica delle stringhe.
+     */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Buffer contenente il file.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * Numero di nodi dell'albero.
+     */
+    private final int nodes;
+
+    /**
+     * {@code true} se gli indici sono a 32 bit.
+     */
+    private final boolean wide;
+
+    /**
+     * {@code true} se le soglie sono {@code float}.
+     */
+    private final boolean floatThreshold;
+
+    /**
+     * Posizione della sezione delle predizioni.
+     */
+    private final int predictionPosition;
+
+    /**
+     * Posizione della sezione delle soglie.
+     */
+    private final int thresholdPosition;
+
+    /**
+     * Posizione della sezione dei primi figli.
+     */
+    private final int firstChildPosition;
+
+    /**
+     * Posizione della sezione delle posizioni dei codici.
+     */
+    private final int valueOffsetPosition;
+
+    /**
+     * Posizione della sezione degli indici delle domande.
+     */
+    private final int questionPosition;
+
+    /**
+     * Posizione della sezione dei codici degli split discreti.
+     */
+    private final int splitCodePosition;
+
+    /**
+     * Posizione della sezione degli attributi di split.
+     */
+    private final int splitAttributePosition;
+
+    /**
+     * Posizione della sezione del numero di figli.
+     */
+    private final int childCountPosition;
+
+    /**
+     * Posizione delle posizioni delle stringhe.
+     */
+    private final int stringOffsetPosition;
+
+    /**
+     * Posizione dei byte delle stringhe.
+     */
+    private final int stringDataPosition;
+
+    /**
+     * Nomi degli attributi indipendenti.
+     */
+    private final List<String> attributes;
+
+    /**
+     * Indice, nella tabella delle stringhe, del primo valore discreto di ogni attributo.
+     */
+    private final int[] dictionaryStart;
+
+    /**
+     * Codici dei valori discreti di ogni attributo, indicizzati per valore.
+     */
+    private final Map<String, Integer>[] codes;
+
+    /**
+     * Legge l'intestazione del file e carica i nomi degli attributi e i valori discreti.
+     * @param buffer Buffer contenente il file, in ordine big endian.
+     * @throws IOException Se il buffer non contiene un albero valido.
+     */
+    private MappedTree(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        try {
+            if (buffer.getInt(0) != MAGIC || buffer.getShort(4) != VERSION) {
+                throw new IOException("Formato del file dell'albero non riconosciuto");
+            }
+            int flags = buffer.getShort(6);
+            nodes = buffer.getInt(8);
+            int attributeCount = buffer.getInt(12);
+            int codeCount = buffer.getInt(16);
+            int stringCount = buffer.getInt(20);
+            int stringBytes = buffer.getInt(24);
+            if (nodes <= 0 || attributeCount < 0 || codeCount < 0 || stringCount < attributeCount
+                    || stringBytes < 0) {
+                throw new IOException("Intestazione del file dell'albero non valida");
+            }
+            wide = (flags & FLAG_WIDE_INDEX) != 0;
+            floatThreshold = (flags & FLAG_FLOAT_THRESHOLD) != 0;
+            int index = wide ? 4 : 2;
+            long position = HEADER_SIZE;
+            predictionPosition = (int) position;
+            position += 8L * nodes;
+            thresholdPosition = (int) position;
+            position += (floatThreshold ? 4L : 8L) * nodes;
+            firstChildPosition = (int) position;
+            position += (long) index * nodes;
+            valueOffsetPosition = (int) position;
+            position += (long) index * nodes;
+            questionPosition = (int) position;
+            position += (long) index * nodes;
+            splitCodePosition = (int) position;
+            position += (long) index * codeCount;
+            splitAttributePosition = (int) position;
+            position += 2L * nodes;
+            childCountPosition = (int) position;
+            position += 2L * nodes;
+            int dictionarySizePosition = (int) position;
+            position += 4L * attributeCount;
+            stringOffsetPosition = (int) position;
+            position += 4L * (stringCount + 1);
+            stringDataPosition = (int) position;
+            position += stringBytes;
+            if (position > buffer.limit()) {
+                throw new IOException("File dell'albero troncato");
+            }
+            List<String> names = new ArrayList<>(attributeCount);
+            for (int i = 0; i < attributeCount; i++) {
+                names.add(getString(i));
+            }
+            attributes = Collections.unmodifiableList(names);
+            dictionaryStart = new int[attributeCount];
+            codes = FlatTree.newCodeTables(attributeCount);
+            int start = attributeCount;
+            for (int attribute = 0; attribute < attributeCount; attribute++) {
+                int size = buffer.getInt(dictionarySizePosition + 4 * attribute);
+                if (size < 0 || (long) start + size > stringCount) {
+                    throw new IOException("Dizionario dell'attributo " + attribute + " non valido");
+                }
+                dictionaryStart[attribute] = start;
+                codes[attribute] = new HashMap<>();
+                for (int code = 0; code < size; code++) {
+                    codes[attribute].put(getString(start + code), code);
+                }
+                start += size;
+            }
+        } catch (IndexOutOfBoundsException | BufferUnderflowException e) {
+            throw new IOException("File dell'albero troncato", e);
+        }
+    }
+
+    /**
+     * Apre un file scritto da {@link #write(FlatTree, File, boolean)} mappandolo in memoria in sola
+     * lettura. Il file resta mappato finché l'oggetto restituito è raggiungibile.
+     * @param file File dell'albero.
+     * @return Albero letto dal file.
+     * @throws IOException Se si verifica un errore di lettura o se il file non contiene un albero
+     * valido.
+     */
+    public static MappedTree open(File file) throws IOException {
+        try (RandomAccessFile input = new RandomAccessFile(file, "r");
+             FileChannel channel = input.getChannel()) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new MappedTree(buffer);
+        }
+    }
+
+    /**
+     * Legge un albero dal buffer specificato, che deve contenere un file scritto da
+     * {@link #write(FlatTree, File, boolean)} a partire dalla posizione {@code 0}.
+     * @param buffer Buffer contenente il file, in ordine big endian.
+     * @return Albero letto dal buffer.
+     * @throws IOException Se il buffer non contiene un albero valido.
+     */
+    public static MappedTree wrap(ByteBuffer buffer) throws IOException {
+        return new MappedTree(buffer);
+    }
+
+    /**
+     * Salva l'albero nel file specificato. Il file viene prima scritto accanto a quello di
+     * destinazione e poi rinominato, quindi un'interruzione non lascia mai un file incompleto.
+     * <p>
+     * Le soglie vengono salvate come {@code float} quando la conversione non perde precisione. Se
+     * {@code floatThresholds} è {@code true} vengono salvate come {@code float} in ogni caso: il file
+     * è più piccolo, ma gli esempi con valore molto vicino a una soglia possono ricevere una
+     * predizione diversa da quella del server.
+     * @param tree Albero da salvare.
+     * @param file File di destinazione.
+     * @param floatThresholds {@code true} per salvare le soglie come {@code float} anche con perdita di
+     *                        precisione.
+     * @throws IOException Se si verifica un errore di scrittura o se l'albero è troppo grande per il
+     * formato.
+     */
+    public static void write(FlatTree tree, File file, boolean floatThresholds) throws IOException {
+        int nodes = tree.size();
+        int attributeCount = tree.getAttributes().size();
+        if (attributeCount > Short.MAX_VALUE) {
+            throw new IOException("Troppi attributi: " + attributeCount);
+        }
+        boolean lossless = true;
+        int codeCount = 0;
+        int questionCount = 0;
+        for (int node = 0; node < nodes; node++) {
+            if (tree.isLeaf(node)) {
+                continue;
+            }
+            questionCount++;
+            if (tree.getChildCount(node) > 0xFFFF) {
+                throw new IOException("Troppi figli nel nodo " + node);
+            }
+            if (tree.isContinuous(node)) {
+                double threshold = tree.getThreshold(node);
+                lossless &= (double) (float) threshold == threshold;
+            } else {
+                codeCount += tree.getChildCount(node);
+            }
+        }
+        boolean floatThreshold = floatThresholds || lossless;
+        List<String> strings = new ArrayList<>(tree.getAttributes());
+        int[] dictionarySize = new int[attributeCount];
+        for (int attribute = 0; attribute < attributeCount; attribute++) {
+            String[] dictionary = tree.getDictionary(attribute);
+            dictionarySize[attribute] = dictionary.length;
+            Collections.addAll(strings, dictionary);
+        }
+        int firstQuestion = strings.size();
+        int stringCount = firstQuestion + questionCount;
+        boolean wide = Math.max(nodes, Math.max(codeCount, stringCount)) >= NARROW_LIMIT;
+        File temporary = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(temporary)))) {
+            byte[][] encoded = new byte[stringCount][];
+            int stringBytes = 0;
+            for (int i = 0; i < firstQuestion; i++) {
+                encoded[i] = strings.get(i).getBytes(UTF8);
+                stringBytes += encoded[i].length;
+            }
+            int question = firstQuestion;
+            for (int node = 0; node < nodes; node++) {
+                if (!tree.isLeaf(node)) {
+                    String text = tree.getQuestion(node);
+                    encoded[question] = (text != null ? text : "").getBytes(UTF8);
+                    stringBytes += encoded[question++].length;
+                }
+            }
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeShort((wide ? FLAG_WIDE_INDEX : 0) | (floatThreshold ? FLAG_FLOAT_THRESHOLD : 0));
+            out.writeInt(nodes);
+            out.writeInt(attributeCount);
+            out.writeInt(codeCount);
+            out.writeInt(stringCount);
+            out.writeInt(stringBytes);
+            out.writeInt(0);
+            for (int node = 0; node < nodes; node++) {
+                out.writeDouble(tree.getPrediction(node));
+            }
+            for (int node = 0; node < nodes; node++) {
+                double threshold = tree.isLeaf(node) ? Double.NaN : tree.getThreshold(node);
+                if (floatThreshold) {
+                    out.writeFloat((float) threshold);
+                } else {
+                    out.writeDouble(threshold);
+                }
+            }
+            for (int node = 0; node < nodes; node++) {
+                writeIndex(out, wide, tree.isLeaf(node) ? 0 : tree.getChild(node, 0));
+            }
+            int offset = 0;
+            for (int node = 0; node < nodes; node++) {
+                writeIndex(out, wide, offset);
+                if (!tree.isLeaf(node) && !tree.isContinuous(node)) {
+                    offset += tree.getChildCount(node);
+                }
+            }
+            question = firstQuestion;
+            for (int node = 0; node < nodes; node++) {
+                writeIndex(out, wide, tree.isLeaf(node) ? (wide ? -1 : NARROW_LIMIT) : question++);
+            }
+            for (int node = 0; node < nodes; node++) {
+                if (!tree.isLeaf(node) && !tree.isContinuous(node)) {
+                    int attribute = tree.getSplitAttribute(node);
+                    for (int i = 0; i < tree.getChildCount(node); i++) {
+                        writeIndex(out, wide, tree.encode(attribute, tree.getSplitValue(node, i)));
+                    }
+                }
+            }
+            for (int node = 0; node < nodes; node++) {
+                out.writeShort(tree.getSplitAttribute(node));
+            }
+            for (int node = 0; node < nodes; node++) {
+                out.writeShort(tree.getChildCount(node));
+            }
+            for (int size : dictionarySize) {
+                out.writeInt(size);
+            }
+            int position = 0;
+            for (byte[] bytes : encoded) {
+                out.writeInt(position);
+                position += bytes.length;
+            }
+            out.writeInt(position);
+            for (byte[] bytes : encoded) {
+                out.write(bytes);
+            }
+        } catch (IOException e) {
+            temporary.delete();
+            throw e;
+        }
+        if (!temporary.renameTo(file)) {
+            temporary.delete();
+            throw new IOException("Impossibile salvare il file " + file);
+        }
+    }
+
+    /**
+     * Scrive un indice a 16 o 32 bit.
+     * @param out Stream di destinazione.
+     * @param wide {@code true} per scrivere l'indice a 32 bit.
+     * @param value Indice da scrivere.
+     * @throws IOException Se si verifica un errore di scrittura.
+     */
+    private static void writeIndex(DataOutputStream out, boolean wide, int value) throws IOException {
+        if (wide) {
+            out.writeInt(value);
+        } else {
+            out.writeShort(value);
+        }
+    }
+
+    /**
+     * Legge un indice a 16 o 32 bit.
+     * @param position Posizione della sezione.
+     * @param i Posizione dell'indice nella sezione.
+     * @return Indice letto; per gli indici a 16 bit, senza segno.
+     */
+    private int index(int position, int i) {
+        return wide ? buffer.getInt(position + 4 * i) : buffer.getChar(position + 2 * i);
+    }
+
+    /**
+     * Legge una stringa dalla tabella delle stringhe.
+     * @param i Indice della stringa.
+     * @return Stringa letta.
+     */
+    private String getString(int i) {
+        int start = buffer.getInt(stringOffsetPosition + 4 * i);
+        int end = buffer.getInt(stringOffsetPosition + 4 * (i + 1));
+        byte[] bytes = new byte[end - start];
+        for (int j = 0; j < bytes.length; j++) {
+            bytes[j] = buffer.get(stringDataPosition + start + j);
+        }
+        return new String(bytes, UTF8);
+    }
+
+    @Override
+    public List<String> getAttributes() {
+        return attributes;
+    }
+
+    @Override
+    public int size() {
+        return nodes;
+    }
+
+    @Override
+    public boolean isLeaf(int node) {
+        return getChildCount(node) == 0;
+    }
+
+    @Override
+    public int getChildCount(int node) {
+        return buffer.getChar(childCountPosition + 2 * node);
+    }
+
+    @Override
+    public int getChild(int node, int child) {
+        return index(firstChildPosition, node) + child;
+    }
+
+    /**
+     * Restituisce l'indice dell'attributo di split del nodo.
+     * @param node Indice del nodo.
+     * @return Indice dell'attributo, {@code -1} per le foglie.
+     */
+    @Override
+    public int getSplitAttribute(int node) {
+        return buffer.getShort(splitAttributePosition + 2 * node);
+    }
+
+    /**
+     * Restituisce {@code true} se il nodo è uno split continuo.
+     * @param node Indice del nodo.
+     * @return {@code true} se il nodo ha una soglia.
+     */
+    @Override
+    public boolean isContinuous(int node) {
+        return !Double.isNaN(getThreshold(node));
+    }
+
+    /**
+     * Restituisce la soglia dello split continuo del nodo.
+     * @param node Indice del nodo.
+     * @return Soglia, {@link Double#NaN} per gli altri nodi.
+     */
+    @Override
+    public double getThreshold(int node) {
+        return floatThreshold ? buffer.getFloat(thresholdPosition + 4 * node)
+                : buffer.getDouble(thresholdPosition + 8 * node);
+    }
+
+    /**
+     * Restituisce il valore associato al figlio specificato di uno split discreto.
+     * @param node Indice del nodo.
+     * @param child Posizione del figlio, a partire da {@code 0}.
+     * @return Valore discreto dell'attributo di split.
+     */
+    @Override
+    public String getSplitValue(int node, int child) {
+        int code = index(splitCodePosition, index(valueOffsetPosition, node) + child);
+        return getString(dictionaryStart[getSplitAttribute(node)] + code);
+    }
+
+    @Override
+    public String getQuestion(int node) {
+        return isLeaf(node) ? null : getString(index(questionPosition, node));
+    }
+
+    @Override
+    public double getPrediction(int node) {
+        return buffer.getDouble(predictionPosition + 8 * node);
+    }
+
+    @Override
+    public int encode(int attribute, String value) {
+        Integer code = codes[attribute].get(value);
+        return code != null ? code : -1;
+    }
+
+    /**
+     * Sceglie il figlio del nodo nel quale ricade il valore specificato dell'attributo di split,
+     * con le stesse regole di {@link FlatTree#childFor(int, double)}.
+     * @param node Indice di un nodo di split.
+     * @param value Valore dell'attributo: il valore numerico per gli split continui, il codice
+     *              restituito da {@link #encode(int, String)} per gli split discreti.
+     * @return Indice del figlio, {@code -1} se il valore non corrisponde ad alcun figlio.
+     */
+    public int childFor(int node, double value) {
+        double split = getThreshold(node);
+        int first = index(firstChildPosition, node);
+        if (!Double.isNaN(split)) {
+            if (value <= split) {
+                return first;
+            }
+            return value > split ? first + 1 : -1;
+        }
+        int offset = index(valueOffsetPosition, node);
+        int count = getChildCount(node);
+        for (int i = 0; i < count; i++) {
+            if (index(splitCodePosition, offset + i) == value) {
+                return first + i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Calcola la predizione dell'albero per l'esempio specificato, leggendo i nodi direttamente dal
+     * buffer e senza allocare alcun oggetto.
+     * @param row Valori degli attributi indipendenti, codificati come in
+     *            {@link FlatTree#predict(double[])}.
+     * @return Valore di predizione, {@link Double#NaN} se un valore dell'esempio non corrisponde ad
+     * alcun ramo dell'albero.
+     */
+    public double predict(double[] row) {
+        return predict(row, 0);
+    }
+
+    @Override
+    public double predict(double[] data, int offset) {
+        int node = 0;
+        while (getChildCount(node) != 0) {
+            node = childFor(node, data[offset + getSplitAttribute(node)]);
+            if (node < 0) {
+                return Double.NaN;
+            }
+        }
+        return getPrediction(node);
+    }
+}
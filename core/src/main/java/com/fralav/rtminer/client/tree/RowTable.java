@@ -0,0 +1,148 @@
+package com.fralav.rtminer.client.tree;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * La classe rappresenta un insieme di esempi da predire, memorizzati riga per riga in un unico array
+ * di {@code double}: i valori dell'esempio {@code i} occupano le posizioni da {@code i * columns} a
+ * {@code (i + 1) * columns - 1}. I valori degli attributi discreti sono i codici restituiti da
+ * {@link FlatTree#encode(int, String)}.
+ */
+public class RowTable {
+
+    /**
+     * Numero di attributi di ogni esempio.
+     */
+    private final int columns;
+
+    /**
+     * Numero di esempi.
+     */
+    private final int rows;
+
+    /**
+     * Valori degli esempi, riga per riga.
+     */
+    private final double[] values;
+
+    /**
+     * Inizializza gli attributi d'istanza con quelli passati in input.
+     * @param columns Numero di attributi di ogni esempio.
+     * @param rows Numero di esempi.
+     * @param values Valori degli esempi, riga per riga; può essere più lungo del necessario.
+     * @throws IllegalArgumentException Se {@code values} non contiene tutti i valori.
+     */
+    public RowTable(int columns, int rows, double[] values) {
+        if (columns <= 0 || rows < 0 || (long) columns * rows > values.length) {
+            throw new IllegalArgumentException("Dimensioni della tabella non valide");
+        }
+        this.columns = columns;
+        this.rows = rows;
+        this.values = values;
+    }
+
+    /**
+     * Legge gli esempi da un file CSV, nel quale ogni riga contiene i valori degli attributi
+     * indipendenti separati da virgole, nello stesso ordine del training set. I valori degli
+     * attributi discreti vengono convertiti nei codici dell'albero; quelli degli attributi continui
+     * vengono letti in notazione decimale. I valori che non è possibile convertire diventano
+     * {@link Double#NaN} o {@code -1}, e la predizione del relativo esempio sarà {@link Double#NaN}.
+     * I valori non possono contenere virgole.
+     * @param reader Sorgente del file CSV.
+     * @param tree Albero del quale utilizzare i codici dei valori discreti.
+     * @param header {@code true} se la prima riga contiene i nomi degli attributi e va ignorata.
+     * @return Esempi letti.
+     * @throws IOException Se si verifica un errore di lettura o se una riga non contiene il numero
+     * corretto di valori.
+     */
+    public static RowTable readCsv(Reader reader, FlatTree tree, boolean header) throws IOException {
+        int columns = tree.getAttributes().size();
+        boolean[] discrete = new boolean[columns];
+        for (int i = 0; i < columns; i++) {
+            discrete[i] = tree.isDiscrete(i);
+        }
+        BufferedReader lines = new BufferedReader(reader);
+        double[] values = new double[columns * 1024];
+        int rows = 0;
+        int lineNumber = 0;
+        String line;
+        while ((line = lines.readLine()) != null) {
+            lineNumber++;
+            if ((header && lineNumber == 1) || line.trim().isEmpty()) {
+                continue;
+            }
+            if ((long) (rows + 1) * columns > values.length) {
+                if ((long) values.length * 2 > Integer.MAX_VALUE - 8) {
+                    throw new IOException("Troppi esempi nel file");
+                }
+                values = Arrays.copyOf(values, values.length * 2);
+            }
+            int offset = rows * columns;
+            int start = 0;
+            for (int column = 0; column < columns; column++) {
+                int end = line.indexOf(',', start);
+                if (end < 0) {
+                    end = line.length();
+                }
+                if (start > line.length() || (column == columns - 1 && end != line.length())) {
+                    throw new IOException("Riga " + lineNumber + ": attesi " + columns + " valori");
+                }
+                String value = line.substring(start, end).trim();
+                values[offset + column] = discrete[column] ? tree.encode(column, value) : parse(value);
+                start = end + 1;
+            }
+            rows++;
+        }
+        return new RowTable(columns, rows, values);
+    }
+
+    /**
+     * Restituisce il numero di attributi di ogni esempio.
+     * @return {@code columns}
+     */
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * Restituisce il numero di esempi.
+     * @return {@code rows}
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Restituisce i valori degli esempi, riga per riga.
+     * @return {@code values}
+     */
+    public double[] getValues() {
+        return values;
+    }
+
+    /**
+     * Restituisce il valore dell'attributo specificato di un esempio.
+     * @param row Indice dell'esempio.
+     * @param column Indice dell'attributo.
+     * @return Valore dell'attributo.
+     */
+    public double get(int row, int column) {
+        return values[row * columns + column];
+    }
+
+    /**
+     * Converte il valore di un attributo continuo.
+     * @param value Valore in notazione decimale.
+     * @return Valore convertito, {@link Double#NaN} se non è un numero.
+     */
+    private static double parse(String value) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package com.fralav.rtminer.client.tree;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * La classe conserva sul dispositivo gli alberi scaricati dal server, in modo che la fase di
+ * predizione possa avvenire anche quando il server non è raggiungibile. Ogni albero è identificato
+ * dal server dal quale è stato scaricato, dalla sua origine (tabella del database o file
+ * dell'archivio) e dal nome della tabella o del file, e viene salvato in due file: l'albero nel
+ * formato di {@link MappedTree} e un file di proprietà con l'identificativo e l'impronta ricevuta dal
+ * server. I metodi della classe accedono al disco, quindi non devono essere richiamati all'interno
+ * dell'{@code UI Thread}.
+ */
+public class TreeCache {
+
+    /**
+     * Origine degli alberi appresi da una tabella del database.
+     */
+    public static final int FROM_DB = 1;
+
+    /**
+     * Origine degli alberi letti da un file dell'archivio del server.
+     */
+    public static final int FROM_FILE = 2;
+
+    /**
+     * Estensione dei file degli alberi.
+     */
+    private static final String TREE_EXTENSION = ".rtmt";
+
+    /**
+     * Estensione dei file di proprietà.
+     */
+    private static final String INFO_EXTENSION = ".properties";
+
+    /**
+     * Cartella nella quale vengono salvati gli alberi.
+     */
+    private final File directory;
+
+    /**
+     * Inizializza gli attributi d'istanza con quelli passati in input.
+     * @param directory Cartella nella quale salvare gli alberi; viene creata al primo salvataggio.
+     */
+    public TreeCache(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Cerca l'albero salvato con l'identificativo specificato.
+     * @param server Server dal quale è stato scaricato l'albero, nella forma {@code ip:porta}.
+     * @param source Origine dell'albero, {@link #FROM_DB} o {@link #FROM_FILE}.
+     * @param name Nome della tabella o del file.
+     * @return Albero salvato, {@code null} se non è presente o non è leggibile.
+     */
+    public synchronized Entry find(String server, int source, String name) {
+        String key = key(server, source, name);
+        Entry entry = read(new File(directory, key + INFO_EXTENSION));
+        return entry != null && entry.getFile().isFile() ? entry : null;
+    }
+
+    /**
+     * Restituisce i nomi delle tabelle o dei file dei quali è stato salvato un albero.
+     * @param server Server dal quale sono stati scaricati gli alberi, nella forma {@code ip:porta}.
+     * @param source Origine degli alberi, {@link #FROM_DB} o {@link #FROM_FILE}.
+     * @return Nomi in ordine alfabetico, vuoto se non è stato salvato alcun albero.
+     */
+    public synchronized List<String> list(String server, int source) {
+        List<String> names = new ArrayList<>();
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return names;
+        }
+        for (File file : files) {
+            if (!file.getName().endsWith(INFO_EXTENSION)) {
+                continue;
+            }
+            Entry entry = read(file);
+            if (entry != null && entry.server.equals(server) && entry.source == source
+                    && entry.getFile().isFile()) {
+                names.add(entry.name);
+            }
+        }
+        Collections.sort(names);
+        return names;
+    }
+
+    /**
+     * Salva l'albero con l'identificativo specificato, sostituendo quello eventualmente già salvato.
+     * @param server Server dal quale è stato scaricato l'albero, nella forma {@code ip:porta}.
+     * @param source Origine dell'albero, {@link #FROM_DB} o {@link #FROM_FILE}.
+     * @param name Nome della tabella o del file.
+     * @param fingerprint Impronta ricevuta dal server, {@code null} se il server non la invia.
+     * @param tree Albero da salvare.
+     * @return Albero salvato.
+     * @throws IOException Se si verifica un errore di scrittura.
+     */
+    public synchronized Entry put(String server, int source, String name, String fingerprint,
+                                  FlatTree tree) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Impossibile creare la cartella " + directory);
+        }
+        String key = key(server, source, name);
+        Entry entry = new Entry(server, source, name, fingerprint,
+                new File(directory, key + TREE_EXTENSION));
+        MappedTree.write(tree, entry.getFile(), false);
+        Properties properties = new Properties();
+        properties.setProperty("server", server);
+        properties.setProperty("source", String.valueOf(source));
+        properties.setProperty("name", name);
+        if (fingerprint != null) {
+            properties.setProperty("fingerprint", fingerprint);
+        }
+        File info = new File(directory, key + INFO_EXTENSION);
+        File temporary = new File(directory, key + INFO_EXTENSION + ".tmp");
+        try (OutputStream out = new FileOutputStream(temporary)) {
+            properties.store(out, null);
+        }
+        if (!temporary.renameTo(info)) {
+            temporary.delete();
+            throw new IOException("Impossibile salvare il file " + info);
+        }
+        return entry;
+    }
+
+    /**
+     * Apre l'albero salvato, mappandolo in memoria.
+     * @param entry Albero salvato.
+     * @return Albero letto dal disco.
+     * @throws IOException Se il file non è leggibile o non contiene un albero valido.
+     */
+    public MappedTree open(Entry entry) throws IOException {
+        return MappedTree.open(entry.getFile());
+    }
+
+    /**
+     * Legge un file di proprietà.
+     * @param info File di proprietà.
+     * @return Albero salvato, {@code null} se il file non esiste o non è valido.
+     */
+    private Entry read(File info) {
+        if (!info.isFile()) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(info)) {
+            properties.load(in);
+            String name = info.getName();
+            String key = name.substring(0, name.length() - INFO_EXTENSION.length());
+            return new Entry(properties.getProperty("server", ""),
+                    Integer.parseInt(properties.getProperty("source", "0")),
+                    properties.getProperty("name", ""), properties.getProperty("fingerprint"),
+                    new File(directory, key + TREE_EXTENSION));
+        } catch (IOException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Calcola il nome dei file di un albero a partire dal suo identificativo, in modo che non
+     * contenga caratteri non ammessi nei nomi dei file.
+     * @param server Server dal quale è stato scaricato l'albero.
+     * @param source Origine dell'albero.
+     * @param name Nome della tabella o del file.
+     * @return Impronta SHA-1 dell'identificativo, in esadecimale.
+     */
+    private static String key(String server, int source, String name) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest((server + '\n' + source + '\n' + name)
+                    .getBytes(Charset.forName("UTF-8")));
+            StringBuilder key = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                key.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * La classe rappresenta un albero salvato sul dispositivo.
+     */
+    public static class Entry {
+
+        /**
+         * Server dal quale è stato scaricato l'albero, nella forma {@code ip:porta}.
+         */
+        private final String server;
+
+        /**
+         * Origine dell'albero.
+         */
+        private final int source;
+
+        /**
+         * Nome della tabella o del file.
+         */
+        private final String name;
+
+        /**
+         * Impronta ricevuta dal server, {@code null} se il server non la invia.
+         */
+        private final String fingerprint;
+
+        /**
+         * File dell'albero.
+         */
+        private final File file;
+
+        /**
+         * Inizializza gli attributi d'istanza con quelli passati in input.
+         * @param server Server dal quale è stato scaricato l'albero.
+         * @param source Origine dell'albero.
+         * @param name Nome della tabella o del file.
+         * @param fingerprint Impronta ricevuta dal server.
+         * @param file File dell'albero.
+         */
+        Entry(String server, int source, String name, String fingerprint, File file) {
+            this.server = server;
+            this.source = source;
+            this.name = name;
+            this.fingerprint = fingerprint;
+            this.file = file;
+        }
+
+        /**
+         * Restituisce il nome della tabella o del file.
+         * @return {@code name}
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Restituisce l'impronta ricevuta dal server.
+         * @return {@code fingerprint}, {@code null} se il server non la invia.
+         */
+        public String getFingerprint() {
+            return fingerprint;
+        }
+
+        /**
+         * Restituisce il file dell'albero.
+         * @return {@code file}
+         */
+        public File getFile() {
+            return file;
+        }
+    }
+}
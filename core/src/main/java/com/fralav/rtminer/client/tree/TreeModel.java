@@ -0,0 +1,109 @@
+package com.fralav.rtminer.client.tree;
+
+import java.util.List;
+
+/**
+ * L'interfaccia rappresenta un albero di regressione scaricato dal server e percorribile sul client,
+ * indipendentemente da come i suoi nodi sono memorizzati. I nodi sono numerati in ampiezza a partire
+ * dalla radice, che ha indice {@code 0}.
+ */
+public interface TreeModel {
+
+    /**
+     * Restituisce i nomi degli attributi indipendenti del training set.
+     * @return Nomi degli attributi.
+     */
+    List<String> getAttributes();
+
+    /**
+     * Restituisce il numero di nodi dell'albero.
+     * @return Numero di nodi.
+     */
+    int size();
+
+    /**
+     * Restituisce {@code true} se il nodo è una foglia.
+     * @param node Indice del nodo.
+     * @return {@code true} se il nodo non ha figli.
+     */
+    boolean isLeaf(int node);
+
+    /**
+     * Restituisce il numero di figli del nodo.
+     * @param node Indice del nodo.
+     * @return Numero di figli, {@code 0} per le foglie.
+     */
+    int getChildCount(int node);
+
+    /**
+     * Restituisce l'indice del figlio specificato del nodo.
+     * @param node Indice del nodo.
+     * @param child Posizione del figlio, a partire da {@code 0}.
+     * @return Indice del figlio.
+     */
+    int getChild(int node, int child);
+
+    /**
+     * Restituisce l'indice dell'attributo sul quale avviene lo split del nodo.
+     * @param node Indice del nodo.
+     * @return Indice dell'attributo, {@code -1} per le foglie.
+     */
+    int getSplitAttribute(int node);
+
+    /**
+     * Restituisce {@code true} se lo split del nodo è continuo.
+     * @param node Indice del nodo.
+     * @return {@code true} se lo split è continuo.
+     */
+    boolean isContinuous(int node);
+
+    /**
+     * Restituisce la soglia dello split continuo del nodo: il primo figlio raccoglie i valori minori
+     * o uguali alla soglia.
+     * @param node Indice del nodo.
+     * @return Soglia, {@link Double#NaN} per gli split discreti e per le foglie.
+     */
+    double getThreshold(int node);
+
+    /**
+     * Restituisce il valore dell'attributo associato al figlio specificato di uno split discreto.
+     * @param node Indice del nodo.
+     * @param child Posizione del figlio, a partire da {@code 0}.
+     * @return Valore dell'attributo.
+     */
+    String getSplitValue(int node, int child);
+
+    /**
+     * Restituisce la domanda da porre all'utente per il nodo.
+     * @param node Indice del nodo.
+     * @return Domanda, {@code null} per le foglie.
+     */
+    String getQuestion(int node);
+
+    /**
+     * Restituisce il valore di predizione del nodo.
+     * @param node Indice del nodo.
+     * @return Valore di predizione, {@link Double#NaN} per i nodi di split.
+     */
+    double getPrediction(int node);
+
+    /**
+     * Restituisce il codice del valore discreto specificato di un attributo, da utilizzare negli
+     * esempi passati a {@link #predict(double[], int)}.
+     * @param attribute Indice dell'attributo.
+     * @param value Valore discreto.
+     * @return Codice del valore, {@code -1} se il valore non compare in alcuno split dell'albero.
+     */
+    int encode(int attribute, String value);
+
+    /**
+     * Calcola la predizione dell'albero per l'esempio che inizia alla posizione specificata di un
+     * array contenente più esempi, uno dopo l'altro.
+     * @param data Valori degli esempi: i valori degli attributi discreti sono i codici restituiti da
+     *             {@link #encode(int, String)}.
+     * @param offset Posizione del primo valore dell'esempio.
+     * @return Valore di predizione, {@link Double#NaN} se un valore dell'esempio non corrisponde ad
+     * alcun ramo dell'albero.
+     */
+    double predict(double[] data, int offset);
+}
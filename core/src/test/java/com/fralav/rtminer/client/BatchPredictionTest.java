@@ -0,0 +1,284 @@
+package com.fralav.rtminer.client;
+
+import com.fralav.rtminer.client.protocol.FakeServer;
+import com.fralav.rtminer.client.protocol.Frame;
+import com.fralav.rtminer.client.protocol.Protocol;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifica la predizione a blocchi: il client concede un credito per ogni blocco mostrato, interrompe
+ * con un frame {@link Frame#CANCEL} una risposta che non riesce a leggere, non considera completata
+ * una parte il cui frame {@link Frame#END} indica un numero di esempi diverso e riunisce per posizione
+ * i blocchi ricevuti in qualsiasi ordine, anche da più server.
+ */
+public class BatchPredictionTest {
+
+    /**
+     * Ambiente del client.
+     */
+    private final TestPlatform platform = new TestPlatform();
+
+    /**
+     * Client verificato.
+     */
+    private final Client client = new Client(platform);
+
+    /**
+     * Server simulati.
+     */
+    private final List<FakeServer> servers = new ArrayList<>();
+
+    @After
+    public void close() throws Exception {
+        client.shutdown(5000);
+        for (FakeServer server : servers) {
+            server.close();
+        }
+    }
+
+    @Test
+    public void manyChunks_replenishCredits() throws Exception {
+        FakeServer server = start((task, args) -> {
+            double[] predictions = predict(args);
+            Object[][] stream = new Object[predictions.length + 1][];
+            for (int row = 0; row < predictions.length; row++) {
+                stream[row] = new Object[] {row, new double[] {predictions[row]}};
+            }
+            stream[predictions.length] = new Object[] {predictions.length};
+            return stream;
+        });
+        Recorder recorder = new Recorder(10);
+        assertTrue(platform.<Boolean>await(callback -> recorder.start(client, callback)));
+        assertEquals(10, recorder.chunks);
+        assertArrayEquals(expected(10), recorder.predictions, 0);
+
+        int id = server.getRequests().get(server.getRequests().size() - 1).getId();
+        List<Frame> credits = awaitFrames(server, Frame.CREDIT, 10);
+        for (Frame credit : credits) {
+            assertEquals(id, credit.getId());
+            assertEquals(1, credit.getValue(0));
+        }
+    }
+
+    @Test
+    public void unreadableChunk_cancelsStream() throws Exception {
+        FakeServer server = start((task, args) -> {
+            Object[][] stream = new Object[9][];
+            stream[0] = new Object[] {"non valido"};
+            for (int i = 1; i < 8; i++) {
+                stream[i] = new Object[] {i, new double[] {i}};
+            }
+            stream[8] = new Object[] {8};
+            return stream;
+        });
+        Recorder recorder = new Recorder(8);
+        assertFalse(platform.<Boolean>await(callback -> recorder.start(client, callback)));
+        assertEquals(0, recorder.chunks);
+        assertTrue(recorder.batch.isCancelled());
+
+        int id = server.getRequests().get(server.getRequests().size() - 1).getId();
+        List<Frame> cancels = server.getFrames(Frame.CANCEL);
+        assertEquals(1, cancels.size());
+        assertEquals(id, cancels.get(0).getId());
+        assertTrue(server.getFrames(Frame.CREDIT).isEmpty());
+    }
+
+    @Test
+    public void endCountMismatch_failsPrediction() throws Exception {
+        start((task, args) -> {
+            double[] predictions = predict(args);
+            return new Object[][] {{0, predictions}, {predictions.length - 1}};
+        });
+        Recorder recorder = new Recorder(3);
+        assertFalse(platform.<Boolean>await(callback -> recorder.start(client, callback)));
+        assertEquals(1, recorder.chunks);
+        assertArrayEquals(expected(3), recorder.predictions, 0);
+    }
+
+    @Test
+    public void outOfOrderChunks_areMergedByRow() throws Exception {
+        start((task, args) -> {
+            double[] predictions = predict(args);
+            return new Object[][] {
+                {4, Arrays.copyOfRange(predictions, 4, 6)},
+                {0, Arrays.copyOfRange(predictions, 0, 2)},
+                {2, Arrays.copyOfRange(predictions, 2, 4)},
+                {predictions.length}};
+        });
+        Recorder recorder = new Recorder(6);
+        assertTrue(platform.<Boolean>await(callback -> recorder.start(client, callback)));
+        assertEquals(3, recorder.chunks);
+        assertArrayEquals(expected(6), recorder.predictions, 0);
+    }
+
+    @Test
+    public void spreadPrediction_mergesRowsFromEveryServer() throws Exception {
+        FakeServer.Streamer reversed = (task, args) -> {
+            if (task != Protocol.TASK_PREDICT_BATCH) {
+                return null;
+            }
+            double[] predictions = predict(args);
+            int size = (Integer) args[2];
+            List<Object[]> stream = new ArrayList<>();
+            for (int first = (predictions.length - 1) / size * size; first >= 0; first -= size) {
+                int last = Math.min(predictions.length, first + size);
+                stream.add(new Object[] {first, Arrays.copyOfRange(predictions, first, last)});
+            }
+            stream.add(new Object[] {predictions.length});
+            return stream.toArray(new Object[0][]);
+        };
+        servers.add(new FakeServer(new SampleTreeServer(), reversed));
+        servers.add(new FakeServer(new SampleTreeServer(), reversed));
+        client.setServers(Arrays.asList(servers.get(0).getEndpoint(), servers.get(1).getEndpoint()));
+        assertTrue(platform.<Boolean>await(client::connect));
+        assertEquals(Client.OK, platform.<String>await(callback ->
+                client.learnTreeFromDb(SampleTreeServer.TABLE, callback)));
+
+        Recorder recorder = new Recorder(2048);
+        assertTrue(platform.<Boolean>await(callback -> recorder.start(client, callback)));
+        assertArrayEquals(expected(2048), recorder.predictions, 0);
+        for (FakeServer server : servers) {
+            assertEquals(1, server.count(Protocol.TASK_PREDICT_BATCH));
+            assertEquals(1, server.count(Protocol.TASK_LEARN_TREE_FROM_DB));
+        }
+    }
+
+    /**
+     * Avvia un server simulato che risponde a blocchi alle predizioni e vi connette il client.
+     * @param streamer Calcola i blocchi della risposta.
+     * @return Server avviato.
+     * @throws Exception Se non è possibile avviare il server o connettersi.
+     */
+    private FakeServer start(FakeServer.Streamer streamer) throws Exception {
+        FakeServer server = new FakeServer(new SampleTreeServer(), (task, args) ->
+                task == Protocol.TASK_PREDICT_BATCH ? streamer.stream(task, args) : null);
+        servers.add(server);
+        client.setServers(Arrays.asList(server.getEndpoint()));
+        assertTrue(platform.<Boolean>await(client::connect));
+        return server;
+    }
+
+    /**
+     * Calcola le predizioni degli esempi di una richiesta: la predizione di ogni esempio è il suo
+     * primo valore.
+     * @param args Argomenti della richiesta {@link Protocol#TASK_PREDICT_BATCH}.
+     * @return Predizioni degli esempi.
+     */
+    @SuppressWarnings("unchecked")
+    private static double[] predict(Object[] args) {
+        int columns = (Integer) args[0];
+        List<String> cells = (List<String>) args[1];
+        double[] predictions = new double[cells.size() / columns];
+        for (int row = 0; row < predictions.length; row++) {
+            predictions[row] = Double.parseDouble(cells.get(row * columns));
+        }
+        return predictions;
+    }
+
+    /**
+     * Restituisce le predizioni attese per gli esempi creati da {@link Recorder}.
+     * @param rows Numero di esempi.
+     * @return Predizioni attese, uguali alla posizione di ogni esempio.
+     */
+    private static double[] expected(int rows) {
+        double[] expected = new double[rows];
+        for (int row = 0; row < rows; row++) {
+            expected[row] = row;
+        }
+        return expected;
+    }
+
+    /**
+     * Attende che il server riceva il numero specificato di frame di controllo, che il client invia
+     * dopo aver consegnato i blocchi.
+     * @param server Server simulato.
+     * @param type Tipo dei frame.
+     * @param count Numero di frame attesi.
+     * @return Frame ricevuti.
+     * @throws InterruptedException Se il thread viene interrotto durante l'attesa.
+     */
+    private static List<Frame> awaitFrames(FakeServer server, int type, int count)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        List<Frame> frames = server.getFrames(type);
+        while (frames.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            frames = server.getFrames(type);
+        }
+        assertEquals(count, frames.size());
+        return frames;
+    }
+
+    /**
+     * La classe avvia una predizione a blocchi e ne raccoglie i risultati, all'interno del thread dei
+     * risultati della {@link TestPlatform}.
+     */
+    private static class Recorder implements BatchListener {
+
+        /**
+         * Esempi da predire: il primo valore è la posizione dell'esempio.
+         */
+        private final List<String[]> rows = new ArrayList<>();
+
+        /**
+         * Predizioni ricevute, {@code NaN} per gli esempi non ancora ricevuti.
+         */
+        private final double[] predictions;
+
+        /**
+         * Numero di blocchi ricevuti.
+         */
+        private int chunks;
+
+        /**
+         * Predizione in corso.
+         */
+        private BatchPrediction batch;
+
+        /**
+         * Riceve l'esito finale.
+         */
+        private Callback<Boolean> callback;
+
+        /**
+         * Crea gli esempi da predire.
+         * @param count Numero di esempi.
+         */
+        Recorder(int count) {
+            for (int row = 0; row < count; row++) {
+                rows.add(new String[] {String.valueOf(row), "rosso"});
+            }
+            predictions = new double[count];
+            Arrays.fill(predictions, Double.NaN);
+        }
+
+        /**
+         * Avvia la predizione.
+         * @param client Client che invia gli esempi.
+         * @param callback Riceve l'esito finale.
+         */
+        void start(Client client, Callback<Boolean> callback) {
+            this.callback = callback;
+            batch = client.predictBatch(rows, this);
+        }
+
+        @Override
+        public void onChunk(int firstRow, double[] values) {
+            chunks++;
+            System.arraycopy(values, 0, predictions, firstRow, values.length);
+        }
+
+        @Override
+        public void onComplete(boolean success) {
+            callback.onResult(success);
+        }
+    }
+}
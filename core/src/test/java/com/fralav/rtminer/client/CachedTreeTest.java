@@ -0,0 +1,131 @@
+package com.fralav.rtminer.client;
+
+import com.fralav.rtminer.client.protocol.FakeServer;
+import com.fralav.rtminer.client.protocol.Frame;
+import com.fralav.rtminer.client.protocol.Protocol;
+import com.fralav.rtminer.client.tree.MappedTree;
+import com.fralav.rtminer.client.tree.TreeCache;
+import com.fralav.rtminer.client.tree.TreeModel;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifica che il client invii al server l'impronta dell'albero salvato e, quando il server risponde
+ * che l'albero non è cambiato, utilizzi quello letto dal disco.
+ */
+public class CachedTreeTest {
+
+    /**
+     * Ambiente del client.
+     */
+    private final TestPlatform platform = new TestPlatform();
+
+    /**
+     * Client verificato.
+     */
+    private final Client client = new Client(platform);
+
+    /**
+     * Cartella degli alberi salvati.
+     */
+    private File directory;
+
+    /**
+     * Server simulato.
+     */
+    private FakeServer server;
+
+    @Before
+    public void connect() throws Exception {
+        directory = Files.createTempDirectory("rtminer").toFile();
+        server = new FakeServer(new SampleTreeServer());
+        client.setCacheDirectory(directory);
+        client.setServers(Collections.singletonList(server.getEndpoint()));
+        assertTrue(platform.<Boolean>await(client::connect));
+    }
+
+    @After
+    public void close() throws Exception {
+        client.shutdown(5000);
+        server.close();
+        delete(directory);
+    }
+
+    @Test
+    public void unchangedTree_isReadFromDisk() throws Exception {
+        learn();
+        TreeModel downloaded = platform.await(client::getTreeStructure);
+        assertNotNull(downloaded);
+        assertEquals(Collections.singletonList(SampleTreeServer.TABLE),
+                platform.<List<String>>await(callback -> client.getCachedTrees(TreeCache.FROM_DB, callback)));
+
+        learn();
+        TreeModel cached = platform.await(client::getTreeStructure);
+        assertTrue(cached instanceof MappedTree);
+        assertEquals(downloaded.size(), cached.size());
+        for (int node = 0; node < downloaded.size(); node++) {
+            assertEquals(downloaded.getPrediction(node), cached.getPrediction(node), 0);
+        }
+        for (String colore : new String[] {"rosso", "verde", "blu"}) {
+            for (double peso = 1; peso <= 2; peso += 0.5) {
+                assertEquals(downloaded.predict(new double[] {downloaded.encode(0, colore), peso}, 0),
+                        cached.predict(new double[] {cached.encode(0, colore), peso}, 0), 0);
+            }
+        }
+
+        List<Object[]> requests = new ArrayList<>();
+        for (Frame request : server.getRequests()) {
+            if (request.getTask() == Protocol.TASK_GET_TREE_STRUCTURE) {
+                requests.add(request.getValues());
+            }
+        }
+        assertEquals(2, requests.size());
+        assertEquals(0, requests.get(0).length);
+        assertArrayEquals(new Object[] {SampleTreeServer.FINGERPRINT}, requests.get(1));
+    }
+
+    @Test
+    public void cachedTree_isAvailableWithoutServer() throws Exception {
+        learn();
+        assertNotNull(platform.<TreeModel>await(client::getTreeStructure));
+        assertEquals(Collections.singletonList(SampleTreeServer.TABLE),
+                platform.<List<String>>await(callback -> client.getCachedTrees(TreeCache.FROM_DB, callback)));
+        server.close();
+        assertTrue(platform.<Boolean>await(callback ->
+                client.openCachedTree(TreeCache.FROM_DB, SampleTreeServer.TABLE, callback)));
+        assertTrue(platform.<TreeModel>await(client::getTreeStructure) instanceof MappedTree);
+    }
+
+    /**
+     * Apprende l'albero dalla tabella del server, scartando quello eventualmente già scaricato.
+     * @throws InterruptedException Se il thread viene interrotto durante l'attesa.
+     */
+    private void learn() throws InterruptedException {
+        assertEquals(Client.OK, platform.<String>await(callback ->
+                client.learnTreeFromDb(SampleTreeServer.TABLE, callback)));
+    }
+
+    /**
+     * Elimina ricorsivamente un file o una cartella.
+     * @param file File o cartella da eliminare.
+     */
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
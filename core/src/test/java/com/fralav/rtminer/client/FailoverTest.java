@@ -0,0 +1,139 @@
+package com.fralav.rtminer.client;
+
+import com.fralav.rtminer.client.protocol.FakeServer;
+import com.fralav.rtminer.client.protocol.Frame;
+import com.fralav.rtminer.client.protocol.Protocol;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifica che, quando il server si interrompe durante la sessione, il client ripeta su un altro
+ * server le richieste che ne hanno determinato lo stato prima di inviare la richiesta fallita, senza
+ * bloccare il thread di I/O in attesa delle risposte.
+ */
+public class FailoverTest {
+
+    /**
+     * Ambiente del client.
+     */
+    private final TestPlatform platform = new TestPlatform();
+
+    /**
+     * Client verificato.
+     */
+    private final Client client = new Client(platform);
+
+    /**
+     * Server simulati, equivalenti tra loro.
+     */
+    private final List<FakeServer> servers = new ArrayList<>();
+
+    /**
+     * Vale {@code true} se i server devono trattenere le richieste di apprendimento dell'albero.
+     */
+    private volatile boolean stall;
+
+    /**
+     * Raggiunge lo zero quando un server trattiene una richiesta di apprendimento.
+     */
+    private final CountDownLatch stalled = new CountDownLatch(1);
+
+    /**
+     * Permette ai server di rispondere alle richieste trattenute.
+     */
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @Before
+    public void connect() throws Exception {
+        servers.add(new FakeServer(stalling()));
+        servers.add(new FakeServer(stalling()));
+        client.setServers(Arrays.asList(servers.get(0).getEndpoint(), servers.get(1).getEndpoint()));
+        assertTrue(platform.<Boolean>await(client::connect));
+    }
+
+    @After
+    public void close() throws Exception {
+        release.countDown();
+        client.shutdown(5000);
+        for (FakeServer server : servers) {
+            server.close();
+        }
+    }
+
+    @Test
+    public void interruptedSession_isReplayedOnOtherServer() throws Exception {
+        assertEquals(Client.OK, platform.<String>await(callback ->
+                client.learnTreeFromDb(SampleTreeServer.TABLE, callback)));
+        FakeServer first = servers.get(0).count(Protocol.TASK_LEARN_TREE_FROM_DB) > 0
+                ? servers.get(0) : servers.get(1);
+        FakeServer second = first == servers.get(0) ? servers.get(1) : servers.get(0);
+        assertEquals(0, second.count(Protocol.TASK_LEARN_TREE_FROM_DB));
+        first.close();
+
+        PredictionStep step = platform.await(client::startPredictionMode);
+        assertNotNull(step);
+        assertFalse(step.isLeaf());
+        step = platform.await(callback -> client.answerPrediction(1, callback));
+        assertTrue(step.isLeaf());
+
+        List<Integer> tasks = new ArrayList<>();
+        for (Frame request : second.getRequests()) {
+            if (request.getTask() != Protocol.TASK_HELLO && request.getTask() != Protocol.TASK_PING) {
+                tasks.add(request.getTask());
+            }
+        }
+        assertEquals(Arrays.asList(Protocol.TASK_LEARN_TREE_FROM_DB, Protocol.TASK_PREDICT_TREE,
+                Protocol.TASK_PREDICT_ANSWER), tasks);
+        assertEquals(1, first.count(Protocol.TASK_LEARN_TREE_FROM_DB));
+    }
+
+    @Test
+    public void stalledReplay_doesNotBlockIoThread() throws Exception {
+        assertEquals(Client.OK, platform.<String>await(callback ->
+                client.learnTreeFromDb(SampleTreeServer.TABLE, callback)));
+        FakeServer first = servers.get(0).count(Protocol.TASK_LEARN_TREE_FROM_DB) > 0
+                ? servers.get(0) : servers.get(1);
+        stall = true;
+        first.close();
+
+        BlockingQueue<Object[]> steps = new ArrayBlockingQueue<>(1);
+        platform.post(() -> client.startPredictionMode(step -> steps.offer(new Object[] {step})));
+        assertTrue(stalled.await(10, TimeUnit.SECONDS));
+        platform.post(client::disconnect);
+        Object[] step = steps.poll(10, TimeUnit.SECONDS);
+        assertNotNull(step);
+        assertNull(step[0]);
+    }
+
+    /**
+     * Crea le risposte di un server che, quando {@code stall} vale {@code true}, trattiene le
+     * richieste di apprendimento dell'albero finché il test non lo permette.
+     * @return Risposte del server.
+     */
+    private FakeServer.Handler stalling() {
+        SampleTreeServer sample = new SampleTreeServer();
+        return (task, args) -> {
+            if (task == Protocol.TASK_LEARN_TREE_FROM_DB && stall) {
+                stalled.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return sample.answer(task, args);
+        };
+    }
+}
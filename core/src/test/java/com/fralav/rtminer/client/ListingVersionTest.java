@@ -0,0 +1,88 @@
+package com.fralav.rtminer.client;
+
+import com.fralav.rtminer.client.protocol.FakeServer;
+import com.fralav.rtminer.client.protocol.Protocol;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.LinkedList;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifica che il client non chieda più la versione delle liste di nomi a un server che rifiuta il
+ * task {@link Protocol#TASK_LISTING_VERSION}, ma continui a richiedere le liste per intero, e che
+ * invece continui a chiederla quando la versione non arriva per altri motivi.
+ */
+public class ListingVersionTest {
+
+    /**
+     * Ambiente del client.
+     */
+    private final TestPlatform platform = new TestPlatform();
+
+    /**
+     * Client verificato.
+     */
+    private final Client client = new Client(platform);
+
+    /**
+     * Server simulato.
+     */
+    private FakeServer server;
+
+    @After
+    public void close() throws Exception {
+        client.shutdown(5000);
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    public void unsupportedVersion_isRequestedOnce() throws Exception {
+        connect(new SampleTreeServer());
+        listTables();
+        assertEquals(1, server.count(Protocol.TASK_LISTING_VERSION));
+        assertEquals(3, server.count(Protocol.TASK_GET_TABLES_FROM_DB));
+    }
+
+    @Test
+    public void unreadableVersion_isRequestedAgain() throws Exception {
+        SampleTreeServer sample = new SampleTreeServer();
+        connect((task, args) -> task == Protocol.TASK_LISTING_VERSION
+                ? new Object[0] : sample.answer(task, args));
+        listTables();
+        assertEquals(3, server.count(Protocol.TASK_LISTING_VERSION));
+        assertEquals(3, server.count(Protocol.TASK_GET_TABLES_FROM_DB));
+    }
+
+    /**
+     * Avvia il server simulato e vi connette il client, con un tempo di validità delle liste nullo.
+     * @param handler Calcola le risposte del server.
+     * @throws Exception Se non è possibile avviare il server o connettersi.
+     */
+    private void connect(FakeServer.Handler handler) throws Exception {
+        server = new FakeServer(handler);
+        client.setListingTtl(0);
+        client.setServers(Collections.singletonList(server.getEndpoint()));
+        assertTrue(platform.<Boolean>await(client::connect));
+    }
+
+    /**
+     * Chiede tre volte la lista delle tabelle, attendendo ogni volta che la lista ricevuta sia salvata.
+     * @throws InterruptedException Se il thread viene interrotto durante l'attesa.
+     */
+    private void listTables() throws InterruptedException {
+        LinkedList<String> tables = platform.await(client::getTablesFromDb);
+        assertEquals(Collections.singletonList(SampleTreeServer.TABLE), tables);
+        for (int i = 0; i < 2; i++) {
+            assertEquals(tables, platform.<LinkedList<String>>await(client::getTablesFromDb));
+            // La risposta all'apprendimento segue quella della lista, che viene quindi salvata prima.
+            assertEquals(Client.OK, platform.<String>await(callback ->
+                    client.learnTreeFromDb(SampleTreeServer.TABLE, callback)));
+        }
+    }
+}
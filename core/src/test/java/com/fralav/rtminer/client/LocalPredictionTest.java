@@ -0,0 +1,114 @@
+package com.fralav.rtminer.client;
+
+import com.fralav.rtminer.client.protocol.FakeServer;
+import com.fralav.rtminer.client.protocol.Protocol;
+import com.fralav.rtminer.client.tree.TreeModel;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifica che la predizione sull'albero scaricato attraversi gli stessi passi della predizione
+ * interattiva eseguita dal server.
+ */
+public class LocalPredictionTest {
+
+    /**
+     * Ambiente del client.
+     */
+    private final TestPlatform platform = new TestPlatform();
+
+    /**
+     * Client verificato.
+     */
+    private final Client client = new Client(platform);
+
+    /**
+     * Server simulato.
+     */
+    private FakeServer server;
+
+    @Before
+    public void connect() throws Exception {
+        server = new FakeServer(new SampleTreeServer());
+        client.setServers(Collections.singletonList(server.getEndpoint()));
+        assertTrue(platform.<Boolean>await(client::connect));
+        assertEquals(Client.OK, platform.<String>await(callback ->
+                client.learnTreeFromDb(SampleTreeServer.TABLE, callback)));
+    }
+
+    @After
+    public void close() throws Exception {
+        client.shutdown(5000);
+        server.close();
+    }
+
+    @Test
+    public void localSteps_matchServerSteps() throws Exception {
+        TreeModel tree = platform.await(client::getTreeStructure);
+        assertNotNull(tree);
+        assertSame(tree, platform.<TreeModel>await(client::getTreeStructure));
+        assertEquals(1, server.count(Protocol.TASK_GET_TREE_STRUCTURE));
+        List<int[]> paths = new ArrayList<>();
+        collectPaths(tree, 0, new int[0], paths);
+        assertEquals(4, paths.size());
+        for (int[] path : paths) {
+            LocalPrediction local = new LocalPrediction(tree);
+            assertStep(platform.<PredictionStep>await(client::startPredictionMode), local.start());
+            for (int child : path) {
+                PredictionStep remote = platform.await(callback -> client.answerPrediction(child, callback));
+                assertStep(remote, local.answer(child));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void answer_rejectsMissingChild() throws Exception {
+        LocalPrediction local = new LocalPrediction(platform.<TreeModel>await(client::getTreeStructure));
+        local.start();
+        local.answer(3);
+    }
+
+    /**
+     * Raccoglie i percorsi dalla radice a ogni foglia.
+     * @param tree Albero da percorrere.
+     * @param node Nodo corrente.
+     * @param path Percorso del nodo corrente.
+     * @param paths Riceve i percorsi delle foglie.
+     */
+    private static void collectPaths(TreeModel tree, int node, int[] path, List<int[]> paths) {
+        if (tree.isLeaf(node)) {
+            paths.add(path);
+            return;
+        }
+        for (int i = 0; i < tree.getChildCount(node); i++) {
+            int[] child = Arrays.copyOf(path, path.length + 1);
+            child[path.length] = i;
+            collectPaths(tree, tree.getChild(node, i), child, paths);
+        }
+    }
+
+    /**
+     * Verifica che due passi della fase di predizione coincidano.
+     * @param expected Passo ricevuto dal server.
+     * @param actual Passo calcolato sul dispositivo.
+     */
+    private static void assertStep(PredictionStep expected, PredictionStep actual) {
+        assertNotNull(expected);
+        assertEquals(expected.isLeaf(), actual.isLeaf());
+        if (expected.isLeaf()) {
+            assertEquals(expected.getPrediction(), actual.getPrediction());
+        } else {
+            assertEquals(expected.getQuestion(), actual.getQuestion());
+            assertEquals(expected.getChildren(), actual.getChildren());
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.fralav.rtminer.client;
+
+import com.fralav.rtminer.client.protocol.FakeServer;
+import com.fralav.rtminer.client.protocol.Protocol;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifica le pagine delle liste di nomi: il filtro applicato sul dispositivo, che non distingue tra
+ * maiuscole e minuscole e applica la posizione dopo il filtro, e il ritorno alla lista completa
+ * quando il server non restituisce la pagina.
+ */
+public class NamePageTest {
+
+    /**
+     * Tabelle presenti nel database del server simulato.
+     */
+    private static final List<String> TABLES = Arrays.asList("Vendite", "clienti", "VENDITE_2020", "ordini");
+
+    /**
+     * Ambiente del client.
+     */
+    private final TestPlatform platform = new TestPlatform();
+
+    /**
+     * Client verificato.
+     */
+    private final Client client = new Client(platform);
+
+    /**
+     * Server simulato, {@code null} nei test che non utilizzano il client.
+     */
+    private FakeServer server;
+
+    @After
+    public void close() throws Exception {
+        client.shutdown(5000);
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    public void filter_ignoresCase() {
+        NamePage page = NamePage.filter(TABLES, "vEnD", 0, 10);
+        assertEquals(Arrays.asList("Vendite", "VENDITE_2020"), page.getNames());
+        assertEquals(2, page.getTotal());
+        assertEquals(0, page.getOffset());
+    }
+
+    @Test
+    public void filter_appliesOffsetAfterFiltering() {
+        NamePage page = NamePage.filter(TABLES, "i", 1, 2);
+        assertEquals(Arrays.asList("clienti", "VENDITE_2020"), page.getNames());
+        assertEquals(4, page.getTotal());
+        assertEquals(1, page.getOffset());
+
+        page = NamePage.filter(TABLES, "", 3, 10);
+        assertEquals(Collections.singletonList("ordini"), page.getNames());
+        assertEquals(4, page.getTotal());
+
+        page = NamePage.filter(TABLES, "vendite", 5, 10);
+        assertTrue(page.getNames().isEmpty());
+        assertEquals(2, page.getTotal());
+    }
+
+    @Test
+    public void serverPage_isUsedAsReceived() throws Exception {
+        connect((task, args) -> task == Protocol.TASK_LIST_PAGE
+                ? new Object[] {7, new LinkedList<>(Collections.singletonList("clienti"))} : answer(task));
+        NamePage page = platform.await(callback -> client.getTablesPage("cli", 3, 1, callback));
+        assertEquals(Collections.singletonList("clienti"), page.getNames());
+        assertEquals(7, page.getTotal());
+        assertEquals(3, page.getOffset());
+        assertEquals(0, server.count(Protocol.TASK_GET_TABLES_FROM_DB));
+    }
+
+    @Test
+    public void rejectedPage_fallsBackToFullListing() throws Exception {
+        connect((task, args) -> answer(task));
+        NamePage page = platform.await(callback -> client.getTablesPage("VEND", 0, 1, callback));
+        assertEquals(Collections.singletonList("Vendite"), page.getNames());
+        assertEquals(2, page.getTotal());
+
+        page = platform.await(callback -> client.getTablesPage("vend", 1, 1, callback));
+        assertEquals(Collections.singletonList("VENDITE_2020"), page.getNames());
+        assertEquals(1, server.count(Protocol.TASK_LIST_PAGE));
+        assertEquals(1, server.count(Protocol.TASK_GET_TABLES_FROM_DB));
+    }
+
+    @Test
+    public void unreadablePage_isRequestedAgain() throws Exception {
+        connect((task, args) -> task == Protocol.TASK_LIST_PAGE ? new Object[0] : answer(task));
+        for (int i = 0; i < 2; i++) {
+            NamePage page = platform.await(callback -> client.getTablesPage("", 0, 10, callback));
+            assertEquals(TABLES, page.getNames());
+        }
+        assertEquals(2, server.count(Protocol.TASK_LIST_PAGE));
+    }
+
+    @Test
+    public void emptyDatabase_givesEmptyPage() throws Exception {
+        connect((task, args) -> task == Protocol.TASK_GET_TABLES_FROM_DB
+                ? new Object[] {new LinkedList<>(Collections.singletonList(Client.NO_TABLES_FOUND))} : null);
+        NamePage page = platform.await(callback -> client.getTablesPage("", 0, 10, callback));
+        assertTrue(page.getNames().isEmpty());
+        assertEquals(0, page.getTotal());
+    }
+
+    /**
+     * Avvia il server simulato e vi connette il client.
+     * @param handler Calcola le risposte del server.
+     * @throws Exception Se non è possibile avviare il server o connettersi.
+     */
+    private void connect(FakeServer.Handler handler) throws Exception {
+        server = new FakeServer(handler);
+        client.setServers(Collections.singletonList(server.getEndpoint()));
+        assertTrue(platform.<Boolean>await(client::connect));
+    }
+
+    /**
+     * Calcola la risposta di un server che non supporta le pagine né la versione delle liste.
+     * @param task ID del task.
+     * @return Lista completa delle tabelle, {@code null} per gli altri task.
+     */
+    private static Object[] answer(int task) {
+        return task == Protocol.TASK_GET_TABLES_FROM_DB ? new Object[] {new LinkedList<>(TABLES)} : null;
+    }
+}
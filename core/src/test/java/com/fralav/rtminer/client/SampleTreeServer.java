@@ -0,0 +1,124 @@
+package com.fralav.rtminer.client;
+
+import com.fralav.rtminer.client.protocol.FakeServer;
+import com.fralav.rtminer.client.protocol.Protocol;
+import com.fralav.rtminer.client.tree.FlatTree;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * La classe calcola le risposte di un {@link FakeServer} che conosce un solo albero, appreso dalla
+ * tabella {@link #TABLE}: uno split discreto sull'attributo {@code colore} e, sotto il valore
+ * {@code rosso}, uno split continuo sull'attributo {@code peso}. Il server esegue sia la fase di
+ * predizione interattiva sia il trasferimento dell'intero albero, con la sua impronta. Lo stato della
+ * sessione è condiviso da tutte le connessioni, quindi il server deve servire un client alla volta.
+ */
+class SampleTreeServer implements FakeServer.Handler {
+
+    /**
+     * Nome dell'unica tabella.
+     */
+    static final String TABLE = "tabella";
+
+    /**
+     * Impronta dell'albero.
+     */
+    static final String FINGERPRINT = "colore-peso-1";
+
+    /**
+     * Albero percorso durante la fase di predizione interattiva.
+     */
+    private final FlatTree tree = tree();
+
+    /**
+     * Vale {@code true} dopo l'apprendimento dell'albero.
+     */
+    private boolean loaded;
+
+    /**
+     * Nodo corrente della fase di predizione, {@code -1} se non è in corso alcuna predizione.
+     */
+    private int node = -1;
+
+    /**
+     * Restituisce l'albero che il server trasferisce al client.
+     * @return Nuova copia dell'albero.
+     */
+    @SuppressWarnings("unchecked")
+    static FlatTree tree() {
+        Object[] structure = structure();
+        return FlatTree.fromPreorder((List<String>) structure[0], (int[]) structure[1], (int[]) structure[2],
+                (double[]) structure[3], (List<String>) structure[4], (double[]) structure[5],
+                (List<String>) structure[6]);
+    }
+
+    @Override
+    public synchronized Object[] answer(int task, Object[] args) {
+        switch (task) {
+            case Protocol.TASK_GET_TABLES_FROM_DB:
+                return new Object[] {new LinkedList<>(Arrays.asList(TABLE))};
+            case Protocol.TASK_LEARN_TREE_FROM_DB:
+                loaded = TABLE.equals(args[0]);
+                node = -1;
+                return new Object[] {loaded ? Client.OK : "tableNotFound"};
+            case Protocol.TASK_PREDICT_TREE:
+                if (!loaded) {
+                    return null;
+                }
+                node = 0;
+                return step();
+            case Protocol.TASK_PREDICT_ANSWER:
+                int child = (Integer) args[0];
+                if (node < 0 || child < 0 || child >= tree.getChildCount(node)) {
+                    return null;
+                }
+                node = tree.getChild(node, child);
+                return step();
+            case Protocol.TASK_GET_TREE_STRUCTURE:
+                if (!loaded) {
+                    return null;
+                }
+                if (args.length > 0 && FINGERPRINT.equals(args[0])) {
+                    return new Object[] {Protocol.NOT_MODIFIED};
+                }
+                Object[] structure = structure();
+                Object[] values = Arrays.copyOf(structure, structure.length + 1);
+                values[structure.length] = FINGERPRINT;
+                return values;
+            case Protocol.TASK_PING:
+            case Protocol.TASK_RESET_SESSION:
+                return new Object[0];
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Restituisce il passo della fase di predizione corrispondente al nodo corrente.
+     * @return Domanda e numero di figli oppure valore di predizione.
+     */
+    private Object[] step() {
+        if (tree.isLeaf(node)) {
+            double value = tree.getPrediction(node);
+            node = -1;
+            return new Object[] {Protocol.PREDICTION, value};
+        }
+        return new Object[] {Protocol.QUERY, tree.getQuestion(node), tree.getChildCount(node)};
+    }
+
+    /**
+     * Restituisce la visita in preordine dell'albero, nel formato della risposta al task
+     * {@link Protocol#TASK_GET_TREE_STRUCTURE}, senza l'impronta.
+     * @return Nuova copia dei valori della risposta.
+     */
+    static Object[] structure() {
+        return new Object[] {new LinkedList<>(Arrays.asList("colore", "peso")), new int[] {3, 2, 0, 0, 0, 0},
+                new int[] {0, 1, -1, -1, -1, -1},
+                new double[] {Double.NaN, 1.5, Double.NaN, Double.NaN, Double.NaN, Double.NaN},
+                new LinkedList<>(Arrays.asList("rosso", "verde", "blu")),
+                new double[] {Double.NaN, Double.NaN, 10, 20, 30, 40},
+                new LinkedList<>(Arrays.asList("0:rosso 1:verde 2:blu", "0:peso<=1.5 1:peso>1.5"))};
+    }
+}
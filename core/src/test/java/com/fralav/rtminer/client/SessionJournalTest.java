@@ -0,0 +1,128 @@
+package com.fralav.rtminer.client;
+
+import com.fralav.rtminer.client.protocol.Frame;
+import com.fralav.rtminer.client.protocol.Protocol;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifica quali richieste vengono registrate per ripristinare la sessione su un altro server.
+ */
+public class SessionJournalTest {
+
+    /**
+     * Oggetto verificato.
+     */
+    private final SessionJournal journal = new SessionJournal();
+
+    @Test
+    public void emptyJournal_hasNoSetup() {
+        assertNull(journal.getSetup());
+        assertTrue(journal.getEntries().isEmpty());
+        record(Protocol.TASK_PREDICT_ANSWER, 0);
+        assertNull(journal.getSetup());
+    }
+
+    @Test
+    public void learn_replacesPreviousEntries() {
+        learn("prima");
+        record(Protocol.TASK_PREDICT_TREE);
+        journal.record(Protocol.TASK_GET_TREE_FROM_FILE, new Object[] {"albero.dmp"},
+                response(Protocol.TASK_GET_TREE_FROM_FILE, Client.OK));
+        List<SessionJournal.Entry> entries = journal.getEntries();
+        assertEquals(1, entries.size());
+        assertSame(journal.getSetup(), entries.get(0));
+        assertEquals(Protocol.TASK_GET_TREE_FROM_FILE, entries.get(0).task);
+        assertArrayEquals(new Object[] {"albero.dmp"}, entries.get(0).args);
+    }
+
+    @Test
+    public void failedLearn_clearsEntries() {
+        learn("prima");
+        journal.record(Protocol.TASK_LEARN_TREE_FROM_DB, new Object[] {"seconda"},
+                response(Protocol.TASK_LEARN_TREE_FROM_DB, "tableNotFound"));
+        assertNull(journal.getSetup());
+        assertTrue(journal.getEntries().isEmpty());
+    }
+
+    @Test
+    public void predict_keepsSetupAndRestartsAnswers() {
+        learn("tabella");
+        record(Protocol.TASK_PREDICT_TREE);
+        record(Protocol.TASK_PREDICT_ANSWER, 1);
+        record(Protocol.TASK_PREDICT_ANSWER, 0);
+        assertTasks(Protocol.TASK_LEARN_TREE_FROM_DB, Protocol.TASK_PREDICT_TREE,
+                Protocol.TASK_PREDICT_ANSWER, Protocol.TASK_PREDICT_ANSWER);
+        assertArrayEquals(new Object[] {0}, journal.getEntries().get(3).args);
+
+        record(Protocol.TASK_PREDICT_TREE);
+        assertTasks(Protocol.TASK_LEARN_TREE_FROM_DB, Protocol.TASK_PREDICT_TREE);
+        assertArrayEquals(new Object[] {"tabella"}, journal.getSetup().args);
+    }
+
+    @Test
+    public void otherTasks_areNotRecorded() {
+        learn("tabella");
+        record(Protocol.TASK_GET_TABLES_FROM_DB);
+        record(Protocol.TASK_PING);
+        assertTasks(Protocol.TASK_LEARN_TREE_FROM_DB);
+        journal.clear();
+        assertTrue(journal.getEntries().isEmpty());
+    }
+
+    @Test
+    public void setup_acceptsOnlyOk() {
+        learn("tabella");
+        SessionJournal.Entry setup = journal.getSetup();
+        assertTrue(setup.accepts(response(Protocol.TASK_LEARN_TREE_FROM_DB, Client.OK)));
+        assertFalse(setup.accepts(response(Protocol.TASK_LEARN_TREE_FROM_DB, "tableNotFound")));
+        assertFalse(setup.accepts(response(Protocol.TASK_LEARN_TREE_FROM_DB)));
+        record(Protocol.TASK_PREDICT_TREE);
+        record(Protocol.TASK_PREDICT_ANSWER, 0);
+        assertTrue(journal.getEntries().get(2).accepts(response(Protocol.TASK_PREDICT_ANSWER)));
+    }
+
+    /**
+     * Registra l'apprendimento riuscito di un albero.
+     * @param table Nome della tabella.
+     */
+    private void learn(String table) {
+        journal.record(Protocol.TASK_LEARN_TREE_FROM_DB, new Object[] {table},
+                response(Protocol.TASK_LEARN_TREE_FROM_DB, Client.OK));
+    }
+
+    /**
+     * Registra una richiesta eseguita con successo, con una risposta senza valori.
+     * @param task ID del task.
+     * @param args Argomenti del task.
+     */
+    private void record(int task, Object... args) {
+        journal.record(task, args, response(task));
+    }
+
+    /**
+     * Verifica i task delle richieste registrate.
+     * @param tasks ID dei task attesi, nell'ordine di esecuzione.
+     */
+    private void assertTasks(int... tasks) {
+        List<SessionJournal.Entry> entries = journal.getEntries();
+        assertEquals(tasks.length, entries.size());
+        for (int i = 0; i < tasks.length; i++) {
+            assertEquals(tasks[i], entries.get(i).task);
+        }
+    }
+
+    /**
+     * Crea la risposta del server a una richiesta.
+     * @param task ID del task.
+     * @param values Valori della risposta.
+     * @return Frame di risposta.
+     */
+    private static Frame response(int task, Object... values) {
+        return new Frame(1, Frame.RESPONSE, task, values);
+    }
+}
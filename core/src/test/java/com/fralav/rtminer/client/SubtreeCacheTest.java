@@ -0,0 +1,76 @@
+package com.fralav.rtminer.client;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifica che la cache dei sottoalberi scarti quelli utilizzati meno di recente quando il numero
+ * complessivo di nodi supera il limite, e che non conservi un sottoalbero più grande del limite.
+ */
+public class SubtreeCacheTest {
+
+    @Test
+    public void overflow_evictsLeastRecentlyUsed() {
+        SubtreeCache cache = new SubtreeCache(10);
+        TreeBranch first = subtree(4, 0);
+        TreeBranch second = subtree(4, 1);
+        cache.put(first);
+        cache.put(second);
+        assertSame(first, cache.get(new int[] {0}));
+
+        TreeBranch third = subtree(3, 2);
+        cache.put(third);
+        assertSame(first, cache.get(new int[] {0}));
+        assertNull(cache.get(new int[] {1}));
+        assertSame(third, cache.get(new int[] {2}));
+    }
+
+    @Test
+    public void oversizeSubtree_isNotStored() {
+        SubtreeCache cache = new SubtreeCache(5);
+        TreeBranch small = subtree(5, 0);
+        cache.put(small);
+        cache.put(subtree(6, 1));
+        assertNull(cache.get(new int[] {1}));
+        assertSame(small, cache.get(new int[] {0}));
+    }
+
+    @Test
+    public void replacedSubtree_releasesItsNodes() {
+        SubtreeCache cache = new SubtreeCache(10);
+        cache.put(subtree(6, 0));
+        TreeBranch smaller = subtree(2, 0);
+        cache.put(smaller);
+        TreeBranch other = subtree(8, 1);
+        cache.put(other);
+        assertSame(smaller, cache.get(new int[] {0}));
+        assertSame(other, cache.get(new int[] {1}));
+    }
+
+    @Test
+    public void clear_discardsEverySubtree() {
+        SubtreeCache cache = new SubtreeCache(10);
+        cache.put(subtree(5, 0));
+        cache.clear();
+        assertNull(cache.get(new int[] {0}));
+        TreeBranch full = subtree(10, 1);
+        cache.put(full);
+        assertSame(full, cache.get(new int[] {1}));
+    }
+
+    /**
+     * Crea un sottoalbero formato da un nodo e dalle sue foglie.
+     * @param nodes Numero complessivo di nodi.
+     * @param child Posizione del nodo radice tra i figli della radice dell'albero.
+     * @return Sottoalbero creato.
+     */
+    private static TreeBranch subtree(int nodes, int child) {
+        int[] childCount = new int[nodes];
+        childCount[0] = nodes - 1;
+        return TreeBranch.fromPreorder(new int[] {child}, childCount,
+                Collections.nCopies(nodes, "x > 1.0"), Collections.nCopies(nodes, "1.0"));
+    }
+}
@@ -0,0 +1,101 @@
+package com.fralav.rtminer.client;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.fail;
+
+/**
+ * La classe simula l'ambiente del client nei test: il thread dei risultati è un unico thread
+ * dedicato, i messaggi vengono scartati e le operazioni asincrone possono essere attese dal test.
+ */
+class TestPlatform implements Platform {
+
+    /**
+     * Tempo massimo di attesa, in secondi, del risultato di un'operazione.
+     */
+    private static final long TIMEOUT = 10;
+
+    /**
+     * Thread dei risultati.
+     */
+    private final ExecutorService thread = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "TestPlatform");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Override
+    public void post(Runnable action) {
+        thread.execute(action);
+    }
+
+    @Override
+    public void logError(String message) {
+    }
+
+    @Override
+    public void logInfo(String message) {
+    }
+
+    /**
+     * Avvia l'operazione nel thread dei risultati e ne attende il primo risultato.
+     * @param operation Operazione da eseguire.
+     * @param <T> Tipo del risultato dell'operazione.
+     * @return Risultato dell'operazione.
+     * @throws InterruptedException Se il thread viene interrotto durante l'attesa.
+     */
+    <T> T await(Operation<T> operation) throws InterruptedException {
+        final BlockingQueue<Result<T>> results = new ArrayBlockingQueue<>(16);
+        post(() -> operation.start(result -> results.offer(new Result<>(result))));
+        Result<T> result = results.poll(TIMEOUT, TimeUnit.SECONDS);
+        if (result == null) {
+            fail("Nessun risultato entro " + TIMEOUT + " secondi");
+        }
+        return result.value;
+    }
+
+    /**
+     * Attende che tutte le azioni già accodate nel thread dei risultati siano state eseguite.
+     * @throws InterruptedException Se il thread viene interrotto durante l'attesa.
+     */
+    void drain() throws InterruptedException {
+        await((Operation<Void>) callback -> callback.onResult(null));
+    }
+
+    /**
+     * L'interfaccia rappresenta un'operazione asincrona del client.
+     * @param <T> Tipo del risultato dell'operazione.
+     */
+    interface Operation<T> {
+
+        /**
+         * Avvia l'operazione nel thread dei risultati.
+         * @param callback Riceve il risultato dell'operazione.
+         */
+        void start(Callback<T> callback);
+    }
+
+    /**
+     * La classe contiene un risultato, anche {@code null}, da consegnare al test.
+     * @param <T> Tipo del risultato.
+     */
+    private static class Result<T> {
+
+        /**
+         * Risultato dell'operazione.
+         */
+        private final T value;
+
+        /**
+         * Inizializza gli attributi d'istanza con quelli passati in input.
+         * @param value Risultato dell'operazione.
+         */
+        Result(T value) {
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.fralav.rtminer.client;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifica la ricostruzione dei sottoalberi dell'esplorazione dell'albero: un numero di figli
+ * negativo indica un nodo i cui figli non sono inclusi, e il sottoalbero estratto dall'albero sul
+ * dispositivo ha la stessa struttura di quello restituito dal server.
+ */
+public class TreeBranchTest {
+
+    @Test
+    public void negativeChildCount_leavesNodeCollapsed() {
+        TreeBranch root = TreeBranch.fromPreorder(new int[] {2}, new int[] {2, -3, 0},
+                Arrays.asList("", "x <= 1.0", "x > 1.0"), Arrays.asList("x?", "y?", "7.0"));
+        assertArrayEquals(new int[] {2}, root.getPath());
+        assertEquals(2, root.getChildCount());
+        assertEquals(2, root.getChildren().size());
+
+        TreeBranch collapsed = root.getChildren().get(0);
+        assertArrayEquals(new int[] {2, 0}, collapsed.getPath());
+        assertEquals("x <= 1.0", collapsed.getBranch());
+        assertEquals(3, collapsed.getChildCount());
+        assertFalse(collapsed.isLeaf());
+        assertNull(collapsed.getChildren());
+
+        TreeBranch leaf = root.getChildren().get(1);
+        assertArrayEquals(new int[] {2, 1}, leaf.getPath());
+        assertTrue(leaf.isLeaf());
+        assertEquals("7.0", leaf.getLabel());
+        assertEquals(Collections.<TreeBranch>emptyList(), leaf.getChildren());
+        assertEquals(3, root.size());
+    }
+
+    @Test
+    public void collapsedRoot_hasNoChildren() {
+        TreeBranch root = TreeBranch.fromPreorder(new int[0], new int[] {-4},
+                Collections.singletonList(""), Collections.singletonList("x?"));
+        assertEquals(4, root.getChildCount());
+        assertNull(root.getChildren());
+        assertEquals(1, root.size());
+    }
+
+    @Test
+    public void invalidPreorder_isRejected() {
+        assertInvalid(new int[] {2, 0}, "x?", "1.0");
+        assertInvalid(new int[] {0, 0}, "1.0", "2.0");
+        assertInvalid(new int[] {1, 0}, "x?");
+        assertInvalid(new int[0]);
+    }
+
+    @Test
+    public void fromModel_matchesServerPreorder() {
+        TreeBranch local = TreeBranch.fromModel(SampleTreeServer.tree(), new int[0], 1);
+        TreeBranch remote = TreeBranch.fromPreorder(new int[0], new int[] {3, -2, 0, 0},
+                Arrays.asList("", "colore = rosso", "colore = verde", "colore = blu"),
+                Arrays.asList("0:rosso 1:verde 2:blu", "0:peso<=1.5 1:peso>1.5", "30.0", "40.0"));
+        assertSameBranch(remote, local);
+
+        TreeBranch red = TreeBranch.fromModel(SampleTreeServer.tree(), new int[] {0}, 1);
+        assertSameBranch(TreeBranch.fromPreorder(new int[] {0}, new int[] {2, 0, 0},
+                Arrays.asList("", "peso <= 1.5", "peso > 1.5"),
+                Arrays.asList("0:peso<=1.5 1:peso>1.5", "10.0", "20.0")), red);
+        assertNull(TreeBranch.fromModel(SampleTreeServer.tree(), new int[] {3}, 1));
+    }
+
+    /**
+     * Verifica che una visita in preordine non valida venga rifiutata.
+     * @param childCount Numero di figli di ogni nodo.
+     * @param labels Descrizione di ogni nodo, con la stessa condizione vuota per tutti.
+     */
+    private static void assertInvalid(int[] childCount, String... labels) {
+        List<String> branches = Collections.nCopies(labels.length, "");
+        try {
+            TreeBranch.fromPreorder(new int[0], childCount, branches, Arrays.asList(labels));
+            fail("Visita non valida accettata: " + Arrays.toString(childCount));
+        } catch (IllegalArgumentException expected) {
+            // Visita rifiutata.
+        }
+    }
+
+    /**
+     * Verifica che due sottoalberi abbiano gli stessi nodi, con le stesse condizioni e descrizioni,
+     * e gli stessi figli inclusi.
+     * @param expected Sottoalbero atteso.
+     * @param actual Sottoalbero verificato.
+     */
+    private static void assertSameBranch(TreeBranch expected, TreeBranch actual) {
+        assertArrayEquals(expected.getPath(), actual.getPath());
+        assertEquals(expected.getBranch(), actual.getBranch());
+        assertEquals(expected.getLabel(), actual.getLabel());
+        assertEquals(expected.getChildCount(), actual.getChildCount());
+        if (expected.getChildren() == null) {
+            assertNull(actual.getChildren());
+            return;
+        }
+        assertEquals(expected.getChildren().size(), actual.getChildren().size());
+        for (int i = 0; i < expected.getChildren().size(); i++) {
+            assertSameBranch(expected.getChildren().get(i), actual.getChildren().get(i));
+        }
+    }
+}
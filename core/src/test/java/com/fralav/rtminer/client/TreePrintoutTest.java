@@ -0,0 +1,167 @@
+package com.fralav.rtminer.client;
+
+import com.fralav.rtminer.client.protocol.FakeServer;
+import com.fralav.rtminer.client.protocol.Frame;
+import com.fralav.rtminer.client.protocol.Protocol;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifica la stampa a blocchi dell'albero: le righe arrivano nell'ordine dell'albero anche quando i
+ * blocchi superano il credito iniziale, un server che non supporta la stampa a blocchi invia l'albero
+ * come un'unica stringa, suddivisa in righe sul dispositivo, e un blocco che non può essere letto
+ * interrompe la stampa.
+ */
+public class TreePrintoutTest {
+
+    /**
+     * Ambiente del client.
+     */
+    private final TestPlatform platform = new TestPlatform();
+
+    /**
+     * Client verificato.
+     */
+    private final Client client = new Client(platform);
+
+    /**
+     * Server simulato.
+     */
+    private FakeServer server;
+
+    @After
+    public void close() throws Exception {
+        client.shutdown(5000);
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    public void streamedLines_arriveInTreeOrder() throws Exception {
+        List<String> tree = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            tree.add("riga " + i);
+        }
+        connect((task, args) -> null, (task, args) -> {
+            if (task != Protocol.TASK_PRINT_TREE_STREAM) {
+                return null;
+            }
+            List<Object[]> stream = new ArrayList<>();
+            for (int first = 0; first < tree.size(); first += 3) {
+                stream.add(new Object[] {first, new ArrayList<>(tree.subList(first,
+                        Math.min(tree.size(), first + 3)))});
+            }
+            stream.add(new Object[] {tree.size()});
+            return stream.toArray(new Object[0][]);
+        });
+        Recorder recorder = new Recorder();
+        assertTrue(platform.<Boolean>await(callback -> recorder.start(client, callback)));
+        assertEquals(tree, recorder.lines);
+        List<Integer> expected = new ArrayList<>();
+        for (int first = 0; first < tree.size(); first += 3) {
+            expected.add(first);
+        }
+        assertEquals(expected, recorder.firstLines);
+        assertEquals(0, server.count(Protocol.TASK_PRINT_TREE));
+    }
+
+    @Test
+    public void unsupportedStream_splitsWholeTextIntoLines() throws Exception {
+        connect((task, args) -> task == Protocol.TASK_PRINT_TREE
+                ? new Object[] {"radice\r\n  sinistra\n  destra"} : null, null);
+        Recorder recorder = new Recorder();
+        assertTrue(platform.<Boolean>await(callback -> recorder.start(client, callback)));
+        assertEquals(Arrays.asList("radice", "  sinistra", "  destra"), recorder.lines);
+        assertEquals(Collections.singletonList(0), recorder.firstLines);
+        assertEquals(1, server.count(Protocol.TASK_PRINT_TREE_STREAM));
+        assertEquals(1, server.count(Protocol.TASK_PRINT_TREE));
+    }
+
+    @Test
+    public void unreadableChunk_cancelsPrintout() throws Exception {
+        connect((task, args) -> null, (task, args) -> {
+            Object[][] stream = new Object[8][];
+            stream[0] = new Object[] {0, new ArrayList<>(Collections.singletonList("radice"))};
+            stream[1] = new Object[] {"non valido"};
+            for (int i = 2; i < 7; i++) {
+                stream[i] = new Object[] {i, new ArrayList<>(Collections.singletonList("riga " + i))};
+            }
+            stream[7] = new Object[] {7};
+            return stream;
+        });
+        Recorder recorder = new Recorder();
+        assertFalse(platform.<Boolean>await(callback -> recorder.start(client, callback)));
+        assertEquals(1, server.getFrames(Frame.CANCEL).size());
+        assertTrue(recorder.printout.isCancelled());
+        assertEquals(0, server.count(Protocol.TASK_PRINT_TREE));
+    }
+
+    /**
+     * Avvia il server simulato e vi connette il client.
+     * @param handler Calcola le risposte del server.
+     * @param streamer Calcola le risposte a blocchi, {@code null} se il server non le supporta.
+     * @throws Exception Se non è possibile avviare il server o connettersi.
+     */
+    private void connect(FakeServer.Handler handler, FakeServer.Streamer streamer) throws Exception {
+        server = new FakeServer(handler, streamer);
+        client.setServers(Collections.singletonList(server.getEndpoint()));
+        assertTrue(platform.<Boolean>await(client::connect));
+    }
+
+    /**
+     * La classe avvia una stampa a blocchi e ne raccoglie le righe, all'interno del thread dei
+     * risultati della {@link TestPlatform}.
+     */
+    private static class Recorder implements PrintListener {
+
+        /**
+         * Righe ricevute, nell'ordine di arrivo.
+         */
+        private final List<String> lines = new ArrayList<>();
+
+        /**
+         * Indice della prima riga di ogni blocco ricevuto.
+         */
+        private final List<Integer> firstLines = new ArrayList<>();
+
+        /**
+         * Stampa in corso.
+         */
+        private TreePrintout printout;
+
+        /**
+         * Riceve l'esito finale.
+         */
+        private Callback<Boolean> callback;
+
+        /**
+         * Avvia la stampa.
+         * @param client Client che richiede l'albero.
+         * @param callback Riceve l'esito finale.
+         */
+        void start(Client client, Callback<Boolean> callback) {
+            this.callback = callback;
+            printout = client.printTreeStream(this);
+        }
+
+        @Override
+        public void onLines(int firstLine, List<String> chunk) {
+            firstLines.add(firstLine);
+            lines.addAll(chunk);
+        }
+
+        @Override
+        public void onComplete(boolean success) {
+            callback.onResult(success);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.fralav.rtminer.client.protocol;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.LinkedList;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifica la codifica degli interi e dei frame del codec binario.
+ */
+public class BinaryFrameCodecTest {
+
+    /**
+     * Interi ai limiti della lunghezza dei varint.
+     */
+    private static final int[] EDGES = {0, 1, 63, 64, 127, 128, 8191, 16383, 16384, 2097151, 2097152,
+            Integer.MAX_VALUE, -1, -64, -65, Integer.MIN_VALUE};
+
+    @Test
+    public void varint_roundTrip() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BinaryFrameCodec.MAX_VARINT_SIZE);
+        for (int value : EDGES) {
+            buffer.clear();
+            BinaryFrameCodec.putVarint(buffer, value);
+            assertEquals(BinaryFrameCodec.varintSize(value), buffer.position());
+            buffer.flip();
+            assertEquals(value, BinaryFrameCodec.getVarint(buffer));
+            assertFalse(buffer.hasRemaining());
+        }
+    }
+
+    @Test
+    public void varint_sizes() {
+        assertEquals(1, BinaryFrameCodec.varintSize(127));
+        assertEquals(2, BinaryFrameCodec.varintSize(128));
+        assertEquals(3, BinaryFrameCodec.varintSize(16384));
+        assertEquals(BinaryFrameCodec.MAX_VARINT_SIZE, BinaryFrameCodec.varintSize(-1));
+    }
+
+    @Test(expected = IOException.class)
+    public void varint_rejectsTooManyBytes() throws IOException {
+        byte[] bytes = new byte[BinaryFrameCodec.MAX_VARINT_SIZE + 1];
+        Arrays.fill(bytes, (byte) 0x80);
+        BinaryFrameCodec.getVarint(ByteBuffer.wrap(bytes));
+    }
+
+    @Test
+    public void zigzag_roundTrip() {
+        for (int value : EDGES) {
+            assertEquals(value, BinaryFrameCodec.unzigzag(BinaryFrameCodec.zigzag(value)));
+        }
+        assertEquals(0, BinaryFrameCodec.zigzag(0));
+        assertEquals(1, BinaryFrameCodec.zigzag(-1));
+        assertEquals(2, BinaryFrameCodec.zigzag(1));
+        assertEquals(1, BinaryFrameCodec.varintSize(BinaryFrameCodec.zigzag(-64)));
+    }
+
+    @Test
+    public void peekLength_waitsForWholeVarint() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8);
+        BinaryFrameCodec.putVarint(buffer, 300);
+        buffer.flip();
+        assertEquals(300, BinaryFrameCodec.peekLength(buffer, BinaryFrameCodec.MAX_FRAME_SIZE));
+        assertEquals(0, buffer.position());
+        buffer.limit(1);
+        assertEquals(-1, BinaryFrameCodec.peekLength(buffer, BinaryFrameCodec.MAX_FRAME_SIZE));
+    }
+
+    @Test
+    public void frame_roundTrip() throws IOException {
+        LinkedList<String> names = new LinkedList<>(Arrays.asList("tabella", "", "città"));
+        Frame sent = new Frame(300, Frame.RESPONSE, Protocol.TASK_GET_TREE_STRUCTURE, null, -5,
+                Integer.MIN_VALUE, "è", names, 2.5, new int[] {0, -1, 70000},
+                new double[] {Double.NaN, -0.0, 1e300});
+        Frame received = roundTrip(sent);
+        assertEquals(300, received.getId());
+        assertEquals(Frame.RESPONSE, received.getType());
+        assertEquals(Protocol.TASK_GET_TREE_STRUCTURE, received.getTask());
+        assertEquals(sent.size(), received.size());
+        assertNull(received.getValue(0));
+        assertEquals(-5, received.getValue(1));
+        assertEquals(Integer.MIN_VALUE, received.getValue(2));
+        assertEquals("è", received.getValue(3));
+        assertEquals(names, received.getValue(4));
+        assertEquals(2.5, (Double) received.getValue(5), 0);
+        assertArrayEquals(new int[] {0, -1, 70000}, (int[]) received.getValue(6));
+        assertArrayEquals(new double[] {Double.NaN, -0.0, 1e300}, (double[]) received.getValue(7), 0);
+    }
+
+    @Test(expected = IOException.class)
+    public void decode_rejectsTrailingBytes() throws IOException {
+        Frame ping = new Frame(1, Frame.REQUEST, Protocol.TASK_PING);
+        ByteBuffer encoded = new BinaryFrameEncoder(null).encode(ping);
+        int length = BinaryFrameCodec.getVarint(encoded);
+        ByteBuffer body = ByteBuffer.allocate(length + 1);
+        body.put(encoded.array(), encoded.arrayOffset() + encoded.position(), length).put((byte) 0).flip();
+        BinaryFrameCodec.decode(body);
+    }
+
+    /**
+     * Scrive il frame con il codec binario e lo rilegge da un altro codec.
+     * @param frame Frame da scrivere.
+     * @return Frame letto.
+     * @throws IOException Se il frame non può essere scritto o letto.
+     */
+    private static Frame roundTrip(Frame frame) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new BinaryFrameCodec(new ByteArrayInputStream(new byte[0]), out, new CodecStats(), null).write(frame);
+        return new BinaryFrameCodec(new ByteArrayInputStream(out.toByteArray()), new ByteArrayOutputStream(),
+                new CodecStats(), null).read();
+    }
+}
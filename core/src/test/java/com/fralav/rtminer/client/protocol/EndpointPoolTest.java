@@ -0,0 +1,113 @@
+package com.fralav.rtminer.client.protocol;
+
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.SocketTimeoutException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifica l'ordine nel quale vengono provati i server: prima quelli misurati, dal più veloce, poi
+ * quelli non misurati e infine quelli esclusi dopo un tentativo fallito.
+ */
+public class EndpointPoolTest {
+
+    /**
+     * Primo server dell'elenco.
+     */
+    private final ServerEndpoint first = new ServerEndpoint("10.0.0.1", 8080);
+
+    /**
+     * Secondo server dell'elenco.
+     */
+    private final ServerEndpoint second = new ServerEndpoint("10.0.0.2", 8080);
+
+    /**
+     * Terzo server dell'elenco.
+     */
+    private final ServerEndpoint third = new ServerEndpoint("10.0.0.3", 8080);
+
+    /**
+     * Quarto server, assente dall'elenco in alcuni test.
+     */
+    private final ServerEndpoint fourth = new ServerEndpoint("10.0.0.4", 8080);
+
+    /**
+     * Oggetto verificato.
+     */
+    private final EndpointPool pool = new EndpointPool(1000);
+
+    @Test
+    public void unmeasuredServers_keepListOrder() {
+        pool.setEndpoints(Arrays.asList(first, second, third));
+        assertEquals(Arrays.asList(first, second, third), pool.rank());
+    }
+
+    @Test
+    public void rank_ordersMeasuredUnmeasuredAndExcluded() {
+        pool.setEndpoints(Arrays.asList(first, second, third, fourth));
+        first.recordFailure();
+        second.recordSuccess(3000000);
+        fourth.recordSuccess(1000000);
+        assertEquals(Arrays.asList(fourth, second, third, first), pool.rank());
+        assertFalse(first.isAvailable());
+        assertEquals(1, first.getFailures());
+
+        first.recordSuccess(-1);
+        assertTrue(first.isAvailable());
+        assertEquals(Arrays.asList(fourth, second, first, third), pool.rank());
+    }
+
+    @Test
+    public void spare_skipsExcludedAndCurrentServers() {
+        pool.setEndpoints(Arrays.asList(first, second, third, fourth));
+        second.recordSuccess(2000000);
+        third.recordSuccess(1000000);
+        fourth.recordFailure();
+        assertEquals(Arrays.asList(third, second, first), pool.spare(null, 5));
+        assertEquals(Arrays.asList(second, first), pool.spare(third, 5));
+        assertEquals(Collections.singletonList(second), pool.spare(third, 1));
+    }
+
+    @Test
+    public void setEndpoints_keepsStateOfKnownServers() {
+        pool.setEndpoints(Arrays.asList(first, second));
+        second.recordSuccess(1000000);
+        first.recordFailure();
+        ServerEndpoint sameAsSecond = new ServerEndpoint("10.0.0.2", 8080);
+        pool.setEndpoints(Arrays.asList(third, sameAsSecond, first, sameAsSecond));
+        assertEquals(3, pool.getEndpoints().size());
+        assertSame(second, pool.getEndpoints().get(1));
+        assertTrue(pool.contains(sameAsSecond));
+        assertFalse(pool.contains(fourth));
+        assertEquals(Arrays.asList(second, third, first), pool.rank());
+    }
+
+    @Test
+    public void probeAll_connectsOnlyToExcludedServers() throws Exception {
+        try (ServerSocket up = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+             ServerSocket down = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            ServerEndpoint healthy = new ServerEndpoint("127.0.0.1", up.getLocalPort());
+            ServerEndpoint excluded = new ServerEndpoint("127.0.0.1", down.getLocalPort());
+            pool.setEndpoints(Arrays.asList(healthy, excluded));
+            healthy.recordSuccess(1000000);
+            excluded.recordFailure();
+            pool.probeAll();
+
+            assertEquals(0, excluded.getFailures());
+            assertTrue(excluded.getRttNanos() >= 0);
+            down.accept().close();
+            up.setSoTimeout(200);
+            try {
+                up.accept().close();
+                fail("Il server raggiungibile non deve ricevere connessioni");
+            } catch (SocketTimeoutException expected) {
+                // Nessuna connessione in attesa.
+            }
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package com.fralav.rtminer.client.protocol;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * La classe simula un server che utilizza il protocollo a frame, per i test del client: concorda la
+ * versione più recente del protocollo, il codec e la soglia di compressione proposti dal client, e
+ * risponde a ogni richiesta con i valori restituiti da un {@link Handler}, oppure a blocchi con quelli
+ * restituiti da uno {@link Streamer}. Ogni connessione viene servita da un proprio thread.
+ */
+public class FakeServer implements Closeable {
+
+    /**
+     * L'interfaccia calcola la risposta a una richiesta.
+     */
+    public interface Handler {
+
+        /**
+         * Calcola la risposta a una richiesta.
+         * @param task ID del task.
+         * @param args Argomenti della richiesta.
+         * @return Valori della risposta, {@code null} per rispondere con un frame {@link Frame#ERROR}.
+         */
+        Object[] answer(int task, Object[] args);
+    }
+
+    /**
+     * L'interfaccia calcola la risposta a blocchi a una richiesta. Come nei task a blocchi del
+     * protocollo, l'ultimo argomento della richiesta indica il numero di blocchi che il server può
+     * inviare prima di attendere un frame {@link Frame#CREDIT}.
+     */
+    public interface Streamer {
+
+        /**
+         * Calcola la risposta a blocchi a una richiesta.
+         * @param task ID del task.
+         * @param args Argomenti della richiesta.
+         * @return Valori dei frame {@link Frame#CHUNK}, nell'ordine di invio, seguiti da quelli del
+         * frame {@link Frame#END}; {@code null} se la risposta va calcolata dall'{@link Handler}.
+         */
+        Object[][] stream(int task, Object[] args);
+    }
+
+    /**
+     * Socket in ascolto.
+     */
+    private final ServerSocket server;
+
+    /**
+     * Calcola le risposte.
+     */
+    private final Handler handler;
+
+    /**
+     * Calcola le risposte a blocchi, {@code null} se il server risponde sempre con un unico frame.
+     */
+    private final Streamer streamer;
+
+    /**
+     * Connessioni aperte.
+     */
+    private final List<Socket> sockets = new ArrayList<>();
+
+    /**
+     * Frame ricevuti su tutte le connessioni, nell'ordine di arrivo.
+     */
+    private final List<Frame> received = new ArrayList<>();
+
+    /**
+     * Avvia il server su una porta libera dell'interfaccia di loopback.
+     * @param handler Calcola le risposte.
+     * @throws IOException Se non è possibile aprire il socket.
+     */
+    public FakeServer(Handler handler) throws IOException {
+        this(handler, null);
+    }
+
+    /**
+     * Avvia il server su una porta libera dell'interfaccia di loopback.
+     * @param handler Calcola le risposte.
+     * @param streamer Calcola le risposte a blocchi.
+     * @throws IOException Se non è possibile aprire il socket.
+     */
+    public FakeServer(Handler handler, Streamer streamer) throws IOException {
+        this.handler = handler;
+        this.streamer = streamer;
+        server = new ServerSocket(0, 16, InetAddress.getLoopbackAddress());
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                accept();
+            }
+        }, "FakeServer-" + server.getLocalPort());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Restituisce il server come destinazione del client.
+     * @return Indirizzo di loopback e porta del server.
+     */
+    public ServerEndpoint getEndpoint() {
+        return new ServerEndpoint("127.0.0.1", server.getLocalPort());
+    }
+
+    /**
+     * Restituisce le richieste ricevute.
+     * @return Copia delle richieste, nell'ordine di arrivo.
+     */
+    public synchronized List<Frame> getRequests() {
+        return getFrames(Frame.REQUEST);
+    }
+
+    /**
+     * Restituisce i frame del tipo specificato ricevuti, compresi quelli di controllo.
+     * @param type Tipo dei frame.
+     * @return Copia dei frame, nell'ordine di arrivo.
+     */
+    public synchronized List<Frame> getFrames(int type) {
+        List<Frame> frames = new ArrayList<>();
+        for (Frame frame : received) {
+            if (frame.getType() == type) {
+                frames.add(frame);
+            }
+        }
+        return frames;
+    }
+
+    /**
+     * Conta le richieste ricevute per il task specificato.
+     * @param task ID del task.
+     * @return Numero di richieste.
+     */
+    public synchronized int count(int task) {
+        int count = 0;
+        for (Frame request : getRequests()) {
+            if (request.getTask() == task) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Chiude il socket in ascolto e tutte le connessioni, come un server che si interrompe.
+     * @throws IOException Se non è possibile chiudere il socket in ascolto.
+     */
+    @Override
+    public void close() throws IOException {
+        server.close();
+        synchronized (this) {
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+        }
+    }
+
+    /**
+     * Accetta le connessioni finché il socket in ascolto non viene chiuso.
+     */
+    private void accept() {
+        while (!server.isClosed()) {
+            final Socket socket;
+            try {
+                socket = server.accept();
+                synchronized (this) {
+                    sockets.add(socket);
+                }
+            } catch (IOException e) {
+                return;
+            }
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try (Socket client = socket) {
+                        serve(client);
+                    } catch (IOException | ClassNotFoundException e) {
+                        // Il client o il test hanno chiuso la connessione.
+                    }
+                }
+            }, "FakeServer-" + socket.getPort());
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Concorda il protocollo con il client e ne esegue le richieste.
+     * @param socket Connessione con il client.
+     * @throws IOException Se la connessione viene chiusa.
+     * @throws ClassNotFoundException Se il client invia un oggetto sconosciuto durante la negoziazione.
+     */
+    private void serve(Socket socket) throws IOException, ClassNotFoundException {
+        CountingOutputStream output = new CountingOutputStream(socket.getOutputStream());
+        CountingInputStream input = new CountingInputStream(socket.getInputStream());
+        ObjectOutputStream out = new ObjectOutputStream(output);
+        out.flush();
+        ObjectInputStream in = new ObjectInputStream(input);
+        if (!Integer.valueOf(Protocol.TASK_HELLO).equals(in.readObject())) {
+            return;
+        }
+        out.writeObject(Protocol.PROTOCOL_VERSION);
+        out.flush();
+        Object version = in.readObject();
+        out.writeObject(version);
+        out.flush();
+        int threshold = (Integer) in.readObject();
+        out.writeObject(threshold);
+        out.flush();
+        int codec = (Integer) in.readObject();
+        out.writeObject(codec);
+        out.flush();
+        CodecStats stats = new CodecStats();
+        FrameCodec frames = codec == Protocol.CODEC_BINARY
+                ? new BinaryFrameCodec(input, output, stats,
+                        threshold >= 0 ? new FrameCompression(threshold, stats) : null)
+                : new ObjectFrameCodec(in, out, input, output, stats,
+                        new ConnectionOptions(0).createStreamGovernor());
+        Deque<Frame> pending = new ArrayDeque<>();
+        while (true) {
+            Frame request = pending.isEmpty() ? read(frames) : pending.remove();
+            if (request.getType() != Frame.REQUEST) {
+                continue;
+            }
+            Object[][] stream = streamer != null
+                    ? streamer.stream(request.getTask(), request.getValues()) : null;
+            if (stream != null) {
+                stream(frames, request, stream, pending);
+                continue;
+            }
+            Object[] values = handler.answer(request.getTask(), request.getValues());
+            frames.write(values != null
+                    ? new Frame(request.getId(), Frame.RESPONSE, request.getTask(), values)
+                    : new Frame(request.getId(), Frame.ERROR, request.getTask(),
+                            "Task " + request.getTask() + " non supportato"));
+        }
+    }
+
+    /**
+     * Invia la risposta a blocchi a una richiesta, senza superare il credito concesso dal client: le
+     * richieste ricevute mentre il server attende un frame {@link Frame#CREDIT} vengono eseguite al
+     * termine, e un frame {@link Frame#CANCEL} interrompe l'invio.
+     * @param frames Codec della connessione.
+     * @param request Richiesta alla quale rispondere.
+     * @param stream Valori dei blocchi, seguiti da quelli del frame {@link Frame#END}.
+     * @param pending Richieste da eseguire al termine.
+     * @throws IOException Se la connessione viene chiusa.
+     */
+    private void stream(FrameCodec frames, Frame request, Object[][] stream, Deque<Frame> pending)
+            throws IOException {
+        Object[] args = request.getValues();
+        int credits = ((Number) args[args.length - 1]).intValue();
+        boolean cancelled = false;
+        for (int i = 0; i < stream.length - 1 && !cancelled; i++) {
+            while (credits == 0 && !cancelled) {
+                Frame control = read(frames);
+                if (control.getType() == Frame.REQUEST) {
+                    pending.add(control);
+                } else if (control.getId() == request.getId() && control.getType() == Frame.CREDIT) {
+                    credits += ((Number) control.getValue(0)).intValue();
+                } else if (control.getId() == request.getId() && control.getType() == Frame.CANCEL) {
+                    cancelled = true;
+                }
+            }
+            if (!cancelled) {
+                frames.write(new Frame(request.getId(), Frame.CHUNK, request.getTask(), stream[i]));
+                credits--;
+            }
+        }
+        frames.write(new Frame(request.getId(), Frame.END, request.getTask(), stream[stream.length - 1]));
+    }
+
+    /**
+     * Legge il frame successivo e lo registra tra quelli ricevuti.
+     * @param frames Codec della connessione.
+     * @return Frame ricevuto.
+     * @throws IOException Se la connessione viene chiusa.
+     */
+    private Frame read(FrameCodec frames) throws IOException {
+        Frame frame = frames.read();
+        synchronized (this) {
+            received.add(frame);
+        }
+        return frame;
+    }
+}
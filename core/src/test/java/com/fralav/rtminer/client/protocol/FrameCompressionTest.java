@@ -0,0 +1,118 @@
+package com.fralav.rtminer.client.protocol;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.LinkedList;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifica la compressione dei frame del codec binario e il bit che la segnala nella lunghezza che
+ * precede ogni frame.
+ */
+public class FrameCompressionTest {
+
+    /**
+     * Soglia di compressione utilizzata dai test.
+     */
+    private static final int THRESHOLD = 64;
+
+    @Test
+    public void header_carriesCompressionBit() {
+        assertEquals(21, FrameCompression.header(10, true));
+        assertEquals(20, FrameCompression.header(10, false));
+        assertEquals(FrameCompression.MAX_HEADER,
+                FrameCompression.header(BinaryFrameCodec.MAX_FRAME_SIZE, true));
+    }
+
+    @Test
+    public void compress_skipsFramesBelowThreshold() {
+        FrameCompression compression = new FrameCompression(THRESHOLD, new CodecStats());
+        assertNull(compression.compress(new byte[THRESHOLD - 1], 0, THRESHOLD - 1));
+    }
+
+    @Test
+    public void compress_skipsIncompressibleFrames() {
+        byte[] body = new byte[4096];
+        new Random(1).nextBytes(body);
+        assertNull(new FrameCompression(THRESHOLD, new CodecStats()).compress(body, 0, body.length));
+    }
+
+    @Test
+    public void compress_roundTrip() throws IOException {
+        byte[] body = new byte[8192];
+        for (int i = 0; i < body.length; i++) {
+            body[i] = (byte) ('a' + i % 7);
+        }
+        ByteBuffer frame = new FrameCompression(THRESHOLD, new CodecStats()).compress(body, 0, body.length);
+        assertNotNull(frame);
+        int header = BinaryFrameCodec.getVarint(frame);
+        assertEquals(1, header & 1);
+        assertEquals(frame.remaining(), header >>> 1);
+        assertTrue(frame.remaining() < body.length / 4);
+        ByteBuffer copy = ByteBuffer.allocate(frame.remaining());
+        copy.put(frame).flip();
+        ByteBuffer inflated = new FrameCompression(THRESHOLD, new CodecStats()).decompress(copy);
+        byte[] restored = new byte[inflated.remaining()];
+        inflated.get(restored);
+        assertArrayEquals(body, restored);
+    }
+
+    @Test(expected = IOException.class)
+    public void decompress_rejectsInvalidBody() throws IOException {
+        ByteBuffer body = ByteBuffer.allocate(8);
+        BinaryFrameCodec.putVarint(body, 100);
+        body.put(new byte[] {1, 2, 3}).flip();
+        new FrameCompression(THRESHOLD, new CodecStats()).decompress(body);
+    }
+
+    @Test
+    public void codec_compressesOnlyLargeRepetitiveFrames() throws IOException {
+        LinkedList<String> names = new LinkedList<>();
+        for (int i = 0; i < 500; i++) {
+            names.add("tabella_" + (i % 10));
+        }
+        Frame large = new Frame(1, Frame.RESPONSE, Protocol.TASK_GET_TABLES_FROM_DB, names);
+        Frame small = new Frame(2, Frame.REQUEST, Protocol.TASK_PING);
+        byte[] plain = write(null, large);
+        byte[] compressed = write(new FrameCompression(THRESHOLD, new CodecStats()), large);
+        assertEquals(1, BinaryFrameCodec.getVarint(ByteBuffer.wrap(compressed)) & 1);
+        assertTrue(compressed.length < plain.length / 4);
+        assertEquals(0, BinaryFrameCodec.getVarint(ByteBuffer.wrap(
+                write(new FrameCompression(THRESHOLD, new CodecStats()), small))) & 1);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryFrameCodec writer = new BinaryFrameCodec(new ByteArrayInputStream(new byte[0]), out,
+                new CodecStats(), new FrameCompression(THRESHOLD, new CodecStats()));
+        writer.write(large);
+        writer.write(small);
+        writer.write(large);
+        BinaryFrameCodec reader = new BinaryFrameCodec(new ByteArrayInputStream(out.toByteArray()),
+                new ByteArrayOutputStream(), new CodecStats(),
+                new FrameCompression(THRESHOLD, new CodecStats()));
+        assertEquals(names, reader.read().getValue(0));
+        assertEquals(Protocol.TASK_PING, reader.read().getTask());
+        Frame last = reader.read();
+        assertEquals(1, last.getId());
+        assertEquals(names, last.getValue(0));
+    }
+
+    /**
+     * Scrive un frame con il codec binario.
+     * @param compression Compressione concordata, {@code null} se non è concordata.
+     * @param frame Frame da scrivere.
+     * @return Byte scritti, compresa la lunghezza che precede il frame.
+     * @throws IOException Se il frame non può essere scritto.
+     */
+    private static byte[] write(FrameCompression compression, Frame frame) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new BinaryFrameCodec(new ByteArrayInputStream(new byte[0]), out, new CodecStats(), compression)
+                .write(frame);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,95 @@
+package com.fralav.rtminer.client.protocol;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifica gli intervalli della distribuzione dei tempi: i loro estremi, l'errore relativo dei
+ * percentili stimati e l'ultimo intervallo, che raccoglie tutti i tempi più grandi.
+ */
+public class LatencyHistogramTest {
+
+    /**
+     * Numero di nanosecondi in un microsecondo.
+     */
+    private static final long MICROS = 1000;
+
+    @Test
+    public void smallTimes_haveOneBucketEach() {
+        for (int micros = 0; micros < 8; micros++) {
+            assertEquals(micros, LatencyHistogram.bucket(micros));
+            assertEquals(micros, LatencyHistogram.upperBound(micros));
+        }
+        assertEquals(8, LatencyHistogram.bucket(8));
+        assertEquals(15, LatencyHistogram.bucket(15));
+        assertEquals(16, LatencyHistogram.bucket(16));
+        assertEquals(16, LatencyHistogram.bucket(17));
+        assertEquals(17, LatencyHistogram.upperBound(16));
+        assertEquals(17, LatencyHistogram.bucket(18));
+    }
+
+    @Test
+    public void buckets_areContiguous() {
+        for (int i = 0; i < LatencyHistogram.BUCKETS - 1; i++) {
+            long upper = LatencyHistogram.upperBound(i);
+            assertEquals(i, LatencyHistogram.bucket(upper));
+            assertEquals(i + 1, LatencyHistogram.bucket(upper + 1));
+        }
+    }
+
+    @Test
+    public void upperBound_isWithinRelativeError() {
+        long bounded = LatencyHistogram.upperBound(LatencyHistogram.BUCKETS - 2);
+        for (long micros = 8; micros <= bounded; micros = micros * 3 / 2 + 1) {
+            long upper = LatencyHistogram.upperBound(LatencyHistogram.bucket(micros));
+            assertTrue(upper >= micros);
+            assertTrue("Tempo " + micros, upper - micros < micros / 8.0);
+        }
+    }
+
+    @Test
+    public void overflowBucket_reportsMaximum() {
+        int last = LatencyHistogram.BUCKETS - 1;
+        assertEquals(last, LatencyHistogram.bucket(1L << 32));
+        assertEquals(last, LatencyHistogram.bucket(Long.MAX_VALUE / MICROS));
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.upperBound(last));
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        long hours = 3 * 3600 * 1000L;
+        histogram.record(hours * 1000 * MICROS);
+        assertEquals(hours, histogram.getPercentileMillis(50), 0);
+        assertEquals(hours, histogram.getMaxMillis(), 0);
+    }
+
+    @Test
+    public void percentile_returnsBucketUpperBound() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentileMillis(50), 0);
+        for (int i = 0; i < 90; i++) {
+            histogram.record(1000 * MICROS);
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.record(50000 * MICROS);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(1.023, histogram.getPercentileMillis(0), 1e-9);
+        assertEquals(1.023, histogram.getPercentileMillis(50), 1e-9);
+        assertEquals(1.023, histogram.getPercentileMillis(90), 1e-9);
+        assertEquals(50, histogram.getPercentileMillis(91), 1e-9);
+        assertEquals(50, histogram.getPercentileMillis(100), 1e-9);
+        assertEquals(50, histogram.getPercentileMillis(150), 1e-9);
+        assertEquals(5.9, histogram.getMeanMillis(), 1e-9);
+        assertEquals(590, histogram.getTotalMillis(), 1e-9);
+    }
+
+    @Test
+    public void subMicrosecondTimes_fallInFirstBucket() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(999);
+        histogram.record(-5 * MICROS);
+        assertEquals(2, histogram.getCount());
+        assertEquals(0, histogram.getPercentileMillis(100), 0);
+        assertEquals(0, histogram.getMaxMillis(), 0);
+    }
+}
@@ -0,0 +1,135 @@
+package com.fralav.rtminer.client.protocol;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.LinkedList;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifica che la connessione a un server che non conosce il task {@link Protocol#TASK_HELLO} venga
+ * ristabilita con il protocollo originale.
+ */
+public class LegacyConnectionTest {
+
+    /**
+     * Tabelle restituite dal server.
+     */
+    private static final LinkedList<String> TABLES =
+            new LinkedList<>(Arrays.asList("tabella_00", "tabella_01"));
+
+    /**
+     * Socket del server simulato.
+     */
+    private ServerSocket server;
+
+    @After
+    public void closeServer() throws IOException {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    public void serverClosingOnHello_fallsBackToLegacy() throws Exception {
+        startLegacyServer(false);
+        assertLegacy(Connection.open("127.0.0.1", server.getLocalPort(), new ConnectionOptions(2000), true));
+    }
+
+    @Test
+    public void serverIgnoringHello_fallsBackToLegacy() throws Exception {
+        startLegacyServer(true);
+        assertLegacy(Connection.open("127.0.0.1", server.getLocalPort(), new ConnectionOptions(2000), true));
+    }
+
+    @Test
+    public void nioTransport_fallsBackToLegacy() throws Exception {
+        startLegacyServer(false);
+        ConnectionOptions options = new ConnectionOptions(2000);
+        options.setNioTransport(true);
+        assertLegacy(Connection.open("127.0.0.1", server.getLocalPort(), options, true));
+    }
+
+    /**
+     * Verifica che la connessione utilizzi il protocollo originale, che esegua un task di quel
+     * protocollo e che rifiuti i task successivi senza chiudersi.
+     * @param connection Connessione da verificare.
+     * @throws IOException Se il task non viene eseguito.
+     */
+    private static void assertLegacy(Connection connection) throws IOException {
+        try {
+            assertTrue(connection instanceof LegacyConnection);
+            assertEquals(Protocol.PROTOCOL_LEGACY, connection.getProtocolVersion());
+            final Frame[] response = new Frame[1];
+            connection.call(Protocol.TASK_GET_TABLES_FROM_DB, new Object[0], new ResponseHandler() {
+                @Override
+                public void onResponse(Frame frame) {
+                    response[0] = frame;
+                }
+
+                @Override
+                public void onError(IOException e) {
+                    fail(String.valueOf(e));
+                }
+            });
+            assertEquals(TABLES, response[0].getValue(0));
+            try {
+                connection.call(Protocol.TASK_PING, new Object[0], null);
+                fail("Il protocollo originale non prevede il task " + Protocol.TASK_PING);
+            } catch (IOException expected) {
+                assertTrue(connection.isOpen());
+            }
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * Avvia un server che utilizza il protocollo originale: alla prima connessione riceve il task
+     * {@link Protocol#TASK_HELLO} e chiude la connessione oppure non risponde, alla seconda restituisce
+     * la lista delle tabelle.
+     * @param silent {@code true} se il server non risponde al task {@link Protocol#TASK_HELLO}.
+     * @throws IOException Se non è possibile aprire il socket del server.
+     */
+    private void startLegacyServer(final boolean silent) throws IOException {
+        server = new ServerSocket(0, 2, InetAddress.getLoopbackAddress());
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try (Socket hello = server.accept()) {
+                    ObjectOutputStream out = new ObjectOutputStream(hello.getOutputStream());
+                    out.flush();
+                    ObjectInputStream in = new ObjectInputStream(hello.getInputStream());
+                    assertEquals(Protocol.TASK_HELLO, in.readObject());
+                    if (silent) {
+                        in.readObject();
+                    }
+                } catch (IOException | ClassNotFoundException e) {
+                    // Il client ha chiuso la connessione dopo il tempo massimo di attesa.
+                }
+                try (Socket legacy = server.accept()) {
+                    ObjectOutputStream out = new ObjectOutputStream(legacy.getOutputStream());
+                    out.flush();
+                    ObjectInputStream in = new ObjectInputStream(legacy.getInputStream());
+                    if (Integer.valueOf(Protocol.TASK_GET_TABLES_FROM_DB).equals(in.readObject())) {
+                        out.writeObject(TABLES);
+                        out.flush();
+                    }
+                    in.readObject();
+                } catch (IOException | ClassNotFoundException e) {
+                    // Il client ha chiuso la connessione.
+                }
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+    }
+}
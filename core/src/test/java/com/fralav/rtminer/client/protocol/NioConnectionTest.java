@@ -0,0 +1,134 @@
+package com.fralav.rtminer.client.protocol;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.LinkedList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifica che il trasporto NIO consegni le stesse risposte del trasporto bloccante, anche quando le
+ * richieste vengono inviate una dopo l'altra senza attendere le risposte.
+ */
+public class NioConnectionTest {
+
+    /**
+     * Numero di nomi della lista restituita dal server, sufficiente a superare il buffer di lettura.
+     */
+    private static final int NAMES = 20000;
+
+    /**
+     * Server simulato.
+     */
+    private static FakeServer server;
+
+    @BeforeClass
+    public static void startServer() throws IOException {
+        final LinkedList<String> names = new LinkedList<>();
+        for (int i = 0; i < NAMES; i++) {
+            names.add("tabella_" + i);
+        }
+        server = new FakeServer(new FakeServer.Handler() {
+            @Override
+            public Object[] answer(int task, Object[] args) {
+                if (task == Protocol.TASK_GET_TABLES_FROM_DB) {
+                    return new Object[] {names};
+                }
+                return task == Protocol.TASK_PING ? new Object[] {args[0]} : null;
+            }
+        });
+    }
+
+    @AfterClass
+    public static void stopServer() throws IOException {
+        server.close();
+    }
+
+    @Test
+    public void blocking_binary() throws Exception {
+        assertResponses(options(false, Protocol.CODEC_BINARY, FrameCompression.DEFAULT_THRESHOLD), false);
+    }
+
+    @Test
+    public void blocking_java() throws Exception {
+        assertResponses(options(false, Protocol.CODEC_JAVA, -1), false);
+    }
+
+    @Test
+    public void nio_binary() throws Exception {
+        assertResponses(options(true, Protocol.CODEC_BINARY, -1), true);
+    }
+
+    @Test
+    public void nio_compressed() throws Exception {
+        assertResponses(options(true, Protocol.CODEC_BINARY, FrameCompression.DEFAULT_THRESHOLD), true);
+    }
+
+    /**
+     * Crea le opzioni di una connessione.
+     * @param nio {@code true} per il trasporto NIO.
+     * @param codec Codec proposto al server.
+     * @param threshold Soglia di compressione proposta al server.
+     * @return Opzioni della connessione.
+     */
+    private static ConnectionOptions options(boolean nio, int codec, int threshold) {
+        ConnectionOptions options = new ConnectionOptions(2000);
+        options.setNioTransport(nio);
+        options.setCodec(codec);
+        options.setCompressionThreshold(threshold);
+        return options;
+    }
+
+    /**
+     * Invia più richieste senza attendere le risposte e verifica che ognuna riceva la propria.
+     * @param options Opzioni della connessione.
+     * @param nio {@code true} se la connessione deve utilizzare il trasporto NIO.
+     * @throws Exception Se la connessione non riesce o le risposte non arrivano.
+     */
+    private static void assertResponses(ConnectionOptions options, boolean nio) throws Exception {
+        Connection connection = Connection.open("127.0.0.1", server.getEndpoint().getPort(), options, true);
+        try {
+            assertEquals(nio, connection instanceof NioConnection);
+            assertEquals(Protocol.PROTOCOL_VERSION, connection.getProtocolVersion());
+            int calls = 20;
+            final CountDownLatch done = new CountDownLatch(calls);
+            final String[] errors = new String[1];
+            for (int i = 0; i < calls; i++) {
+                final int sequence = i;
+                final boolean listing = i % 2 == 0;
+                Object[] args = listing ? new Object[0] : new Object[] {i};
+                connection.call(listing ? Protocol.TASK_GET_TABLES_FROM_DB : Protocol.TASK_PING, args,
+                        new ResponseHandler() {
+                            @Override
+                            public void onResponse(Frame response) {
+                                try {
+                                    Object value = response.getValue(0);
+                                    if (listing ? ((LinkedList<?>) value).size() != NAMES
+                                            : !Integer.valueOf(sequence).equals(value)) {
+                                        errors[0] = "Risposta errata alla richiesta " + sequence;
+                                    }
+                                } catch (IOException e) {
+                                    errors[0] = String.valueOf(e);
+                                }
+                                done.countDown();
+                            }
+
+                            @Override
+                            public void onError(IOException e) {
+                                errors[0] = String.valueOf(e);
+                                done.countDown();
+                            }
+                        });
+            }
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            assertNull(errors[0]);
+        } finally {
+            connection.close();
+        }
+    }
+}
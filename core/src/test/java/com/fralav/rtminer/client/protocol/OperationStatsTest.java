@@ -0,0 +1,103 @@
+package com.fralav.rtminer.client.protocol;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifica i tempi registrati per ogni task: il tempo fino al primo frame viene registrato una sola
+ * volta per richiesta, anche quando la risposta arriva a blocchi, e gli errori vengono contati senza
+ * registrare un tempo totale.
+ */
+public class OperationStatsTest {
+
+    @Test
+    public void response_recordsFirstFrameAndTotal() throws IOException {
+        OperationStats stats = new OperationStats(new CodecStats());
+        Recorder recorder = new Recorder();
+        ResponseHandler tracked = stats.track(Protocol.TASK_PING, recorder);
+        assertFalse(tracked instanceof StreamHandler);
+        tracked.onResponse(new Frame(1, Frame.RESPONSE, Protocol.TASK_PING, 7));
+
+        assertEquals(1, recorder.responses);
+        assertEquals(1, stats.getFirstFrameLatency(Protocol.TASK_PING).getCount());
+        assertEquals(1, stats.getTotalLatency(Protocol.TASK_PING).getCount());
+        assertEquals(0, stats.getErrors(Protocol.TASK_PING));
+    }
+
+    @Test
+    public void stream_recordsFirstChunkOnce() throws IOException {
+        OperationStats stats = new OperationStats(new CodecStats());
+        ChunkRecorder recorder = new ChunkRecorder();
+        ResponseHandler tracked = stats.track(Protocol.TASK_PREDICT_BATCH, recorder);
+        assertTrue(tracked instanceof StreamHandler);
+        for (int i = 0; i < 3; i++) {
+            ((StreamHandler) tracked).onChunk(new Frame(1, Frame.CHUNK, Protocol.TASK_PREDICT_BATCH, i));
+        }
+        tracked.onResponse(new Frame(1, Frame.END, Protocol.TASK_PREDICT_BATCH, 3));
+
+        assertEquals(3, recorder.chunks);
+        assertEquals(1, recorder.responses);
+        assertEquals(1, stats.getFirstFrameLatency(Protocol.TASK_PREDICT_BATCH).getCount());
+        assertEquals(1, stats.getTotalLatency(Protocol.TASK_PREDICT_BATCH).getCount());
+    }
+
+    @Test
+    public void error_isCountedWithoutTotal() {
+        OperationStats stats = new OperationStats(new CodecStats());
+        Recorder recorder = new Recorder();
+        stats.track(Protocol.TASK_PRINT_TREE, recorder).onError(new IOException("chiusa"));
+
+        assertEquals(1, recorder.errors);
+        assertEquals(1, stats.getErrors(Protocol.TASK_PRINT_TREE));
+        assertEquals(0, stats.getFirstFrameLatency(Protocol.TASK_PRINT_TREE).getCount());
+        assertEquals(0, stats.getTotalLatency(Protocol.TASK_PRINT_TREE).getCount());
+    }
+
+    @Test
+    public void description_listsTasksInOrder() {
+        OperationStats stats = new OperationStats(new CodecStats());
+        stats.track(Protocol.TASK_PING, new Recorder());
+        stats.track(Protocol.TASK_GET_TABLES_FROM_DB, new Recorder());
+        stats.recordConnect(2000 * 1000);
+        assertEquals(Arrays.asList(Protocol.TASK_GET_TABLES_FROM_DB, Protocol.TASK_PING), stats.getTasks());
+        assertEquals(1, stats.getConnectLatency().getCount());
+
+        String description = stats.toString();
+        assertTrue(description.startsWith("connessione: 1,"));
+        assertTrue(description.indexOf("tabelle: 0") < description.indexOf("ping: 0"));
+    }
+
+    /**
+     * La classe conta le risposte e gli errori ricevuti.
+     */
+    private static class Recorder implements ResponseHandler {
+        int responses;
+        int errors;
+
+        @Override
+        public void onResponse(Frame response) {
+            responses++;
+        }
+
+        @Override
+        public void onError(IOException e) {
+            errors++;
+        }
+    }
+
+    /**
+     * La classe conta anche i blocchi ricevuti.
+     */
+    private static class ChunkRecorder extends Recorder implements StreamHandler {
+        int chunks;
+
+        @Override
+        public void onChunk(Frame chunk) {
+            chunks++;
+        }
+    }
+}
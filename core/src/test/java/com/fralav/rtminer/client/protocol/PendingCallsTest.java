@@ -0,0 +1,132 @@
+package com.fralav.rtminer.client.protocol;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifica la consegna dei frame ricevuti al chiamante della richiesta con lo stesso ID, in qualsiasi
+ * ordine arrivino, e la terminazione delle richieste ancora in attesa.
+ */
+public class PendingCallsTest {
+
+    /**
+     * Oggetto verificato.
+     */
+    private final PendingCalls calls = new PendingCalls();
+
+    @Test
+    public void responses_reachCallerById() throws IOException {
+        Recorder[] recorders = new Recorder[3];
+        int[] ids = new int[recorders.length];
+        for (int i = 0; i < recorders.length; i++) {
+            recorders[i] = new Recorder();
+            ids[i] = calls.register(recorders[i]);
+        }
+        assertEquals(3, new HashSet<>(Arrays.asList(ids[0], ids[1], ids[2])).size());
+        for (int i = recorders.length - 1; i >= 0; i--) {
+            calls.dispatch(new Frame(ids[i], Frame.RESPONSE, Protocol.TASK_PING, i));
+        }
+        for (int i = 0; i < recorders.length; i++) {
+            assertEquals(1, recorders[i].responses.size());
+            assertEquals(i, recorders[i].responses.get(0).getValue(0));
+        }
+
+        calls.dispatch(new Frame(ids[0], Frame.RESPONSE, Protocol.TASK_PING, 9));
+        assertEquals(1, recorders[0].responses.size());
+        assertFalse(calls.remove(ids[0]));
+    }
+
+    @Test
+    public void error_isDeliveredAsRejection() {
+        Recorder recorder = new Recorder();
+        int id = calls.register(recorder);
+        calls.dispatch(new Frame(id, Frame.ERROR, Protocol.TASK_LIST_PAGE, "Task non supportato"));
+        assertTrue(recorder.responses.isEmpty());
+        assertEquals(1, recorder.errors.size());
+        assertTrue(recorder.errors.get(0) instanceof TaskRejectedException);
+        assertEquals("Task non supportato", recorder.errors.get(0).getMessage());
+    }
+
+    @Test
+    public void chunks_keepCallPending() {
+        ChunkRecorder stream = new ChunkRecorder();
+        Recorder plain = new Recorder();
+        int streamId = calls.register(stream);
+        int plainId = calls.register(plain);
+        calls.dispatch(new Frame(streamId, Frame.CHUNK, Protocol.TASK_PREDICT_BATCH, 0));
+        calls.dispatch(new Frame(plainId, Frame.CHUNK, Protocol.TASK_PREDICT_BATCH, 0));
+        calls.dispatch(new Frame(streamId, Frame.CHUNK, Protocol.TASK_PREDICT_BATCH, 1));
+        assertEquals(2, stream.chunks.size());
+        assertTrue(stream.responses.isEmpty());
+
+        calls.dispatch(new Frame(streamId, Frame.END, Protocol.TASK_PREDICT_BATCH, 2));
+        assertEquals(1, stream.responses.size());
+        assertFalse(calls.remove(streamId));
+        assertTrue(plain.responses.isEmpty());
+        assertTrue(calls.remove(plainId));
+    }
+
+    @Test
+    public void unknownId_isIgnored() {
+        Recorder recorder = new Recorder();
+        int id = calls.register(recorder);
+        calls.dispatch(new Frame(id + 1, Frame.RESPONSE, Protocol.TASK_PING));
+        calls.dispatch(new Frame(id + 1, Frame.CHUNK, Protocol.TASK_PING));
+        assertTrue(recorder.responses.isEmpty());
+        assertTrue(calls.remove(id));
+    }
+
+    @Test
+    public void failAll_endsEveryPendingCall() {
+        Recorder first = new Recorder();
+        Recorder second = new Recorder();
+        int firstId = calls.register(first);
+        calls.register(second);
+        assertTrue(calls.remove(firstId));
+        IOException error = new IOException("Connessione chiusa");
+        calls.failAll(error);
+        assertTrue(first.errors.isEmpty());
+        assertEquals(1, second.errors.size());
+        assertSame(error, second.errors.get(0));
+
+        calls.failAll(error);
+        assertEquals(1, second.errors.size());
+    }
+
+    /**
+     * La classe raccoglie le risposte e gli errori ricevuti.
+     */
+    private static class Recorder implements ResponseHandler {
+        final List<Frame> responses = new ArrayList<>();
+        final List<IOException> errors = new ArrayList<>();
+
+        @Override
+        public void onResponse(Frame response) {
+            responses.add(response);
+        }
+
+        @Override
+        public void onError(IOException e) {
+            errors.add(e);
+        }
+    }
+
+    /**
+     * La classe raccoglie anche i blocchi ricevuti.
+     */
+    private static class ChunkRecorder extends Recorder implements StreamHandler {
+        final List<Frame> chunks = new ArrayList<>();
+
+        @Override
+        public void onChunk(Frame chunk) {
+            chunks.add(chunk);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.fralav.rtminer.client.protocol;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifica il riutilizzo della connessione "calda": una connessione inattiva da poco viene restituita
+ * senza contattare il server, una inattiva da più dell'intervallo di verifica viene riutilizzata solo
+ * dopo la risposta al task {@link Protocol#TASK_PING}, e l'azzeramento della sessione mantiene aperta
+ * la connessione se il server lo conferma.
+ */
+public class SessionManagerTest {
+
+    /**
+     * Intervallo di verifica, in millisecondi, utilizzato al posto di
+     * {@link SessionManager#HEALTH_CHECK_INTERVAL} nei test che attendono l'inattività.
+     */
+    private static final long SHORT_INTERVAL = 50;
+
+    /**
+     * Server simulato.
+     */
+    private FakeServer server;
+
+    /**
+     * Oggetto verificato.
+     */
+    private SessionManager sessions;
+
+    @After
+    public void close() throws IOException {
+        if (sessions != null) {
+            sessions.close();
+        }
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    public void recentConnection_isReusedWithoutPing() throws IOException {
+        EndpointPool pool = start(true, SessionManager.HEALTH_CHECK_INTERVAL);
+        Connection first = sessions.acquire(pool);
+        Connection second = sessions.acquire(pool);
+        assertSame(first, second);
+        assertEquals(1, sessions.getStats().getConnects());
+        assertEquals(1, sessions.getStats().getReuses());
+        assertEquals(0, sessions.getStats().getHealthChecks());
+        assertEquals(0, server.count(Protocol.TASK_PING));
+    }
+
+    @Test
+    public void idleConnection_isPingedBeforeReuse() throws Exception {
+        EndpointPool pool = start(true, SHORT_INTERVAL);
+        Connection first = sessions.acquire(pool);
+        Thread.sleep(2 * SHORT_INTERVAL);
+        assertSame(first, sessions.acquire(pool));
+        assertEquals(1, server.count(Protocol.TASK_PING));
+        assertEquals(1, sessions.getStats().getHealthChecks());
+        assertEquals(0, sessions.getStats().getHealthCheckFailures());
+        assertTrue(sessions.getEndpoint().getRttNanos() > 0);
+
+        assertSame(first, sessions.acquire(pool));
+        assertEquals(1, server.count(Protocol.TASK_PING));
+    }
+
+    @Test
+    public void rejectedPing_stillProvesConnection() throws Exception {
+        EndpointPool pool = start(false, SHORT_INTERVAL);
+        Connection first = sessions.acquire(pool);
+        Thread.sleep(2 * SHORT_INTERVAL);
+        assertSame(first, sessions.acquire(pool));
+        assertEquals(1, server.count(Protocol.TASK_PING));
+        assertEquals(0, sessions.getStats().getHealthCheckFailures());
+        assertEquals(1, sessions.getStats().getConnects());
+    }
+
+    @Test
+    public void closedConnection_isReplaced() throws IOException {
+        EndpointPool pool = start(true, SessionManager.HEALTH_CHECK_INTERVAL);
+        Connection first = sessions.acquire(pool);
+        first.close();
+        Connection second = sessions.acquire(pool);
+        assertNotSame(first, second);
+        assertTrue(second.isOpen());
+        assertEquals(2, sessions.getStats().getConnects());
+        assertEquals(0, sessions.getStats().getReuses());
+    }
+
+    @Test
+    public void confirmedReset_keepsConnection() throws IOException {
+        EndpointPool pool = start(true, SessionManager.HEALTH_CHECK_INTERVAL);
+        Connection first = sessions.acquire(pool);
+        sessions.reset();
+        assertEquals(1, server.count(Protocol.TASK_RESET_SESSION));
+        assertEquals(1, sessions.getStats().getResets());
+        assertSame(first, sessions.current());
+        assertSame(first, sessions.acquire(pool));
+    }
+
+    @Test
+    public void rejectedReset_closesConnection() throws IOException {
+        EndpointPool pool = start(false, SessionManager.HEALTH_CHECK_INTERVAL);
+        Connection first = sessions.acquire(pool);
+        sessions.reset();
+        assertEquals(1, server.count(Protocol.TASK_RESET_SESSION));
+        assertEquals(0, sessions.getStats().getResets());
+        assertFalse(first.isOpen());
+        assertNull(sessions.current());
+        assertNotSame(first, sessions.acquire(pool));
+        assertEquals(2, sessions.getStats().getConnects());
+    }
+
+    /**
+     * Avvia il server simulato e crea l'oggetto verificato.
+     * @param control {@code true} se il server risponde ai task {@link Protocol#TASK_PING} e
+     * {@link Protocol#TASK_RESET_SESSION}, {@code false} se li rifiuta con un frame di errore.
+     * @param healthCheckInterval Tempo di inattività oltre il quale la connessione viene verificata.
+     * @return Server ai quali connettersi.
+     * @throws IOException Se non è possibile avviare il server.
+     */
+    private EndpointPool start(final boolean control, long healthCheckInterval) throws IOException {
+        server = new FakeServer(new FakeServer.Handler() {
+            @Override
+            public Object[] answer(int task, Object[] args) {
+                return control && (task == Protocol.TASK_PING || task == Protocol.TASK_RESET_SESSION)
+                        ? new Object[0] : null;
+            }
+        });
+        sessions = new SessionManager(new ConnectionOptions(2000), healthCheckInterval);
+        EndpointPool pool = new EndpointPool(1000);
+        pool.setEndpoints(Collections.singletonList(server.getEndpoint()));
+        return pool;
+    }
+}
@@ -0,0 +1,164 @@
+package com.fralav.rtminer.client.protocol;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifica gli azzeramenti degli stream della serializzazione Java: lo stream di output del client
+ * viene azzerato dopo {@link StreamGovernor#DEFAULT_MAX_MESSAGES} messaggi o
+ * {@link StreamGovernor#DEFAULT_MAX_BYTES} byte, e dopo gli stessi limiti in lettura il client chiede
+ * al server, una sola volta, di azzerare il proprio.
+ */
+public class StreamGovernorTest {
+
+    @Test
+    public void write_resetsAfterMaxMessages() throws Exception {
+        StreamGovernor governor = defaultGovernor();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        String shared = "tabella";
+        for (int i = 1; i < StreamGovernor.DEFAULT_MAX_MESSAGES; i++) {
+            out.writeObject(shared);
+            governor.afterWrite(out, shared, 1);
+        }
+        assertEquals(0, governor.getLocalResets());
+        assertEquals(StreamGovernor.DEFAULT_MAX_MESSAGES - 1, governor.getRetainedHandles());
+
+        out.writeObject(shared);
+        governor.afterWrite(out, shared, 1);
+        out.writeObject(shared);
+        out.flush();
+        assertEquals(1, governor.getLocalResets());
+        assertEquals(0, governor.getRetainedHandles());
+        assertEquals(0, governor.getRetainedBytes());
+
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        Object first = in.readObject();
+        for (int i = 1; i < StreamGovernor.DEFAULT_MAX_MESSAGES; i++) {
+            assertSame(first, in.readObject());
+        }
+        Object afterReset = in.readObject();
+        assertEquals(first, afterReset);
+        assertNotSame(first, afterReset);
+    }
+
+    @Test
+    public void write_resetsAfterMaxBytes() throws IOException {
+        StreamGovernor governor = defaultGovernor();
+        ObjectOutputStream out = new ObjectOutputStream(new ByteArrayOutputStream());
+        governor.afterWrite(out, "a", StreamGovernor.DEFAULT_MAX_BYTES - 1);
+        assertEquals(0, governor.getLocalResets());
+        assertEquals(StreamGovernor.DEFAULT_MAX_BYTES - 1, governor.getRetainedBytes());
+        governor.afterWrite(out, "b", 1);
+        assertEquals(1, governor.getLocalResets());
+        assertEquals(0, governor.getRetainedBytes());
+    }
+
+    @Test
+    public void read_requestsPeerResetOnce() {
+        StreamGovernor governor = defaultGovernor();
+        for (int i = 1; i < StreamGovernor.DEFAULT_MAX_MESSAGES; i++) {
+            governor.afterRead("riga", 1);
+        }
+        assertFalse(governor.shouldResetPeer());
+        governor.afterRead("riga", 1);
+        assertTrue(governor.shouldResetPeer());
+        governor.afterRead("riga", 1);
+        assertFalse(governor.shouldResetPeer());
+
+        governor.onPeerReset();
+        assertEquals(1, governor.getPeerResets());
+        assertEquals(0, governor.getRetainedHandles());
+        assertFalse(governor.shouldResetPeer());
+        governor.afterRead("albero", StreamGovernor.DEFAULT_MAX_BYTES);
+        assertTrue(governor.shouldResetPeer());
+    }
+
+    @Test
+    public void unsupportedPeer_isNotAskedAgain() {
+        StreamGovernor governor = defaultGovernor();
+        governor.afterRead("albero", StreamGovernor.DEFAULT_MAX_BYTES);
+        assertTrue(governor.shouldResetPeer());
+        governor.onPeerResetUnsupported();
+        governor.afterRead("albero", StreamGovernor.DEFAULT_MAX_BYTES);
+        assertFalse(governor.shouldResetPeer());
+        assertEquals(0, governor.getPeerResets());
+    }
+
+    @Test
+    public void countHandles_includesElements() {
+        assertEquals(0, StreamGovernor.countHandles(null));
+        assertEquals(1, StreamGovernor.countHandles("tabella"));
+        assertEquals(5, StreamGovernor.countHandles(new Object[] {1, Arrays.asList("a", "b")}));
+        assertEquals(3, StreamGovernor.countHandles(Collections.singletonMap("chiave", "valore")));
+    }
+
+    @Test
+    public void framedConnection_sendsResetStreamTask() throws Exception {
+        FakeServer server = new FakeServer(new FakeServer.Handler() {
+            @Override
+            public Object[] answer(int task, Object[] args) {
+                if (task == Protocol.TASK_RESET_STREAM) {
+                    return new Object[0];
+                }
+                return task == Protocol.TASK_PING ? new Object[] {args[0]} : null;
+            }
+        });
+        ConnectionOptions options = new ConnectionOptions(2000);
+        options.setCodec(Protocol.CODEC_JAVA);
+        Connection connection = Connection.open("127.0.0.1", server.getEndpoint().getPort(), options, true);
+        try {
+            int calls = StreamGovernor.DEFAULT_MAX_MESSAGES;
+            final CountDownLatch done = new CountDownLatch(calls);
+            final AtomicReference<IOException> error = new AtomicReference<>();
+            for (int i = 0; i < calls; i++) {
+                connection.call(Protocol.TASK_PING, new Object[] {i}, new ResponseHandler() {
+                    @Override
+                    public void onResponse(Frame response) {
+                        done.countDown();
+                    }
+
+                    @Override
+                    public void onError(IOException e) {
+                        error.set(e);
+                        done.countDown();
+                    }
+                });
+            }
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            assertNull(error.get());
+
+            StreamGovernor governor = connection.getStreamGovernor();
+            long deadline = System.currentTimeMillis() + 10000;
+            while (governor.getPeerResets() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, governor.getPeerResets());
+            assertEquals(1, server.count(Protocol.TASK_RESET_STREAM));
+            assertEquals(1, governor.getLocalResets());
+        } finally {
+            connection.close();
+            server.close();
+        }
+    }
+
+    /**
+     * Crea un oggetto con i limiti predefiniti delle connessioni.
+     * @return Oggetto creato.
+     */
+    private static StreamGovernor defaultGovernor() {
+        return new ConnectionOptions(0).createStreamGovernor();
+    }
+}
@@ -0,0 +1,77 @@
+package com.fralav.rtminer.client.tree;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifica che l'elaborazione a blocchi, anche su più thread, restituisca le stesse predizioni
+ * della valutazione sequenziale degli esempi.
+ */
+public class BatchScorerTest {
+
+    /**
+     * Numero di attributi degli alberi casuali.
+     */
+    private static final int ATTRIBUTES = 6;
+
+    /**
+     * Numero di esempi, sufficiente a dividere la tabella in più blocchi.
+     */
+    private static final int ROWS = 5000;
+
+    @Test
+    public void randomTrees_scoreLikeSequentialPredict() throws InterruptedException {
+        for (int parallelism = 1; parallelism <= 4; parallelism += 3) {
+            try (BatchScorer scorer = new BatchScorer(parallelism)) {
+                assertEquals(parallelism, scorer.getParallelism());
+                for (long seed = 1; seed <= 10; seed++) {
+                    FlatTree tree = TestTrees.random(seed, ATTRIBUTES, 8).toFlatTree();
+                    double[] values = TestTrees.encode(tree, TestTrees.examples(seed, ATTRIBUTES, ROWS));
+                    RowTable table = new RowTable(ATTRIBUTES, ROWS, values);
+                    double[] expected = new double[ROWS];
+                    for (int row = 0; row < ROWS; row++) {
+                        expected[row] = tree.predict(values, row * ATTRIBUTES);
+                    }
+                    BatchScorer.Result result = scorer.score(tree, table);
+                    assertEquals(ROWS, result.getRows());
+                    assertArrayEquals(expected, result.getPredictions(), 0);
+                    assertArrayEquals(expected,
+                            scorer.score(CompiledTree.compile(tree), table).getPredictions(), 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void widerTable_ignoresExtraColumns() throws InterruptedException {
+        FlatTree tree = TestTrees.random(7, ATTRIBUTES, 8).toFlatTree();
+        double[] values = TestTrees.encode(tree, TestTrees.examples(7, ATTRIBUTES, ROWS));
+        int columns = ATTRIBUTES + 2;
+        double[] wide = new double[columns * ROWS];
+        double[] expected = new double[ROWS];
+        for (int row = 0; row < ROWS; row++) {
+            System.arraycopy(values, row * ATTRIBUTES, wide, row * columns, ATTRIBUTES);
+            wide[row * columns + ATTRIBUTES] = Double.NaN;
+            expected[row] = tree.predict(values, row * ATTRIBUTES);
+        }
+        double[] predictions = new double[ROWS + 1];
+        predictions[ROWS] = 42;
+        try (BatchScorer scorer = new BatchScorer(3)) {
+            RowTable table = new RowTable(columns, ROWS, wide);
+            double[] actual = scorer.score(tree, table, predictions).getPredictions();
+            assertSame(predictions, actual);
+            for (int row = 0; row < ROWS; row++) {
+                assertEquals(expected[row], actual[row], 0);
+            }
+            assertEquals(42, actual[ROWS], 0);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void narrowerTable_isRejected() throws InterruptedException {
+        try (BatchScorer scorer = new BatchScorer(2)) {
+            scorer.score(TestTrees.mixed(), new RowTable(1, 1, new double[1]));
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.fralav.rtminer.client.tree;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifica che la valutazione per colonne, livello per livello, restituisca le stesse predizioni
+ * della visita dei nodi di {@link FlatTree}, sia quando suddivide gli esempi tra i figli sia quando li
+ * valuta uno alla volta.
+ */
+public class ColumnarScorerTest {
+
+    /**
+     * Numero di attributi degli alberi casuali.
+     */
+    private static final int ATTRIBUTES = 6;
+
+    @Test
+    public void randomTrees_scoreLikeFlatTree() {
+        for (long seed = 1; seed <= 30; seed++) {
+            FlatTree tree = TestTrees.random(seed, ATTRIBUTES, 8).toFlatTree();
+            ColumnarScorer scorer = new ColumnarScorer(tree);
+            for (int rows : new int[] {0, 10, 3000}) {
+                double[] values = TestTrees.encode(tree, TestTrees.examples(seed, ATTRIBUTES, rows));
+                ColumnTable table = ColumnTable.fromRows(new RowTable(ATTRIBUTES, rows, values));
+                double[] predictions = scorer.score(table);
+                assertEquals(rows, predictions.length);
+                for (int row = 0; row < rows; row++) {
+                    assertEquals(tree.predict(values, row * ATTRIBUTES), predictions[row], 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void unmatchedValues_predictNaN() {
+        FlatTree tree = TestTrees.mixed();
+        int rows = 400;
+        double[] colore = new double[rows];
+        double[] peso = new double[rows];
+        double[] expected = new double[rows];
+        for (int row = 0; row < rows; row++) {
+            colore[row] = row % 4 == 3 ? -1 : tree.encode(0, "rosso");
+            peso[row] = row % 5 == 0 ? Double.NaN : row % 3;
+            boolean unmatched = colore[row] < 0 || Double.isNaN(peso[row]);
+            expected[row] = unmatched ? Double.NaN : peso[row] <= 1.5 ? 10 : 20;
+        }
+        ColumnTable table = new ColumnTable(new double[][] {colore, peso}, rows);
+        assertArrayEquals(expected, new ColumnarScorer(tree).score(table), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void narrowerTable_isRejected() {
+        new ColumnarScorer(TestTrees.mixed()).score(new ColumnTable(new double[][] {new double[1]}, 1));
+    }
+}
@@ -0,0 +1,49 @@
+package com.fralav.rtminer.client.tree;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifica che l'albero compilato in nodi specializzati restituisca le stesse predizioni
+ * dell'albero a array da cui è stato compilato.
+ */
+public class CompiledTreeTest {
+
+    /**
+     * Numero di attributi degli alberi casuali.
+     */
+    private static final int ATTRIBUTES = 6;
+
+    @Test
+    public void randomTrees_predictLikeFlatTree() {
+        for (long seed = 1; seed <= 50; seed++) {
+            FlatTree flat = TestTrees.random(seed, ATTRIBUTES, 8).toFlatTree();
+            CompiledTree compiled = CompiledTree.compile(flat);
+            assertEquals(ATTRIBUTES, compiled.getAttributeCount());
+            double[] values = TestTrees.encode(flat, TestTrees.examples(seed, ATTRIBUTES, 500));
+            for (int offset = 0; offset < values.length; offset += ATTRIBUTES) {
+                double expected = flat.predict(values, offset);
+                assertEquals(expected, compiled.predict(values, offset), 0);
+                assertEquals(expected, compiled.predict(Arrays.copyOfRange(values, offset,
+                        offset + ATTRIBUTES)), 0);
+            }
+        }
+    }
+
+    @Test
+    public void mixedTree_predictsEveryBranch() {
+        FlatTree flat = TestTrees.mixed();
+        CompiledTree compiled = CompiledTree.compile(flat);
+        double rosso = flat.encode(0, "rosso");
+        double[][] rows = {{rosso, 1.5}, {rosso, 1.6}, {flat.encode(0, "verde"), 0},
+                {flat.encode(0, "blu"), 0}, {-1, 0}, {rosso, Double.NaN}};
+        double[] expected = {10, 20, 30, 40, Double.NaN, Double.NaN};
+        for (int row = 0; row < rows.length; row++) {
+            assertEquals(expected[row], compiled.predict(rows[row]), 0);
+            assertEquals(expected[row], flat.predict(rows[row]), 0);
+        }
+    }
+}
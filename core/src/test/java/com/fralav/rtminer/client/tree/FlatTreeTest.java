@@ -0,0 +1,231 @@
+package com.fralav.rtminer.client.tree;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifica che l'albero memorizzato come array primitivi, con i nodi numerati in ampiezza, abbia la
+ * stessa struttura e le stesse predizioni della visita ricorsiva dei nodi con la quale il client
+ * percorreva l'albero prima di {@link FlatTree}.
+ */
+public class FlatTreeTest {
+
+    /**
+     * Numero di attributi degli alberi casuali.
+     */
+    private static final int ATTRIBUTES = 6;
+
+    @Test
+    public void randomTrees_predictLikeRecursiveWalk() {
+        for (long seed = 1; seed <= 50; seed++) {
+            TestTrees.Preorder preorder = TestTrees.random(seed, ATTRIBUTES, 8);
+            FlatTree flat = preorder.toFlatTree();
+            Node root = Node.read(preorder, new int[3]);
+            Object[][] examples = TestTrees.examples(seed, ATTRIBUTES, 500);
+            double[] values = TestTrees.encode(flat, examples);
+            for (int row = 0; row < examples.length; row++) {
+                double expected = root.predict(examples[row]);
+                assertEquals(expected, flat.predict(examples[row]), 0);
+                assertEquals(expected, flat.predict(values, row * ATTRIBUTES), 0);
+                assertEquals(expected, flat.predict(Arrays.copyOfRange(values, row * ATTRIBUTES,
+                        (row + 1) * ATTRIBUTES)), 0);
+            }
+        }
+    }
+
+    @Test
+    public void randomTrees_keepStructure() {
+        for (long seed = 1; seed <= 50; seed++) {
+            TestTrees.Preorder preorder = TestTrees.random(seed, ATTRIBUTES, 8);
+            FlatTree flat = preorder.toFlatTree();
+            Node root = Node.read(preorder, new int[3]);
+            assertEquals(root.size(), flat.size());
+            assertNode(root, flat, 0);
+        }
+    }
+
+    @Test
+    public void encode_distinguishesDiscreteAttributes() {
+        FlatTree tree = TestTrees.mixed();
+        assertTrue(tree.isDiscrete(0));
+        assertFalse(tree.isDiscrete(1));
+        assertEquals(-1, tree.encode(0, "giallo"));
+        assertEquals(tree.getChild(0, 2), tree.childFor(0, tree.encode(0, "blu")));
+        assertEquals(-1, tree.childFor(0, -1));
+    }
+
+    @Test
+    public void singleLeaf_predictsItsValue() {
+        FlatTree tree = FlatTree.fromPreorder(Collections.singletonList("x"), new int[] {0}, new int[] {-1},
+                new double[] {Double.NaN}, Collections.<String>emptyList(), new double[] {7},
+                Collections.<String>emptyList());
+        assertTrue(tree.isLeaf(0));
+        assertEquals(7, tree.predict(new double[] {Double.NaN}), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void fromPreorder_rejectsMissingChildren() {
+        FlatTree.fromPreorder(Collections.singletonList("x"), new int[] {2, 0}, new int[] {0, -1},
+                new double[] {5, Double.NaN}, Collections.<String>emptyList(), new double[] {Double.NaN, 1},
+                Collections.singletonList("x <= 5?"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void fromPreorder_rejectsMissingQuestions() {
+        FlatTree.fromPreorder(Collections.singletonList("x"), new int[] {2, 0, 0}, new int[] {0, -1, -1},
+                new double[] {5, Double.NaN, Double.NaN}, Collections.<String>emptyList(),
+                new double[] {Double.NaN, 1, 2}, Collections.<String>emptyList());
+    }
+
+    /**
+     * Verifica che il nodo dell'albero a array coincida con il nodo della visita ricorsiva, insieme
+     * ai rispettivi sottoalberi.
+     * @param expected Nodo della visita ricorsiva.
+     * @param flat Albero a array.
+     * @param node Indice del nodo nell'albero a array.
+     */
+    private static void assertNode(Node expected, FlatTree flat, int node) {
+        assertEquals(expected.children.length, flat.getChildCount(node));
+        if (expected.children.length == 0) {
+            assertTrue(flat.isLeaf(node));
+            assertEquals(expected.prediction, flat.getPrediction(node), 0);
+            return;
+        }
+        assertEquals(expected.splitAttribute, flat.getSplitAttribute(node));
+        assertEquals(expected.question, flat.getQuestion(node));
+        assertEquals(!Double.isNaN(expected.threshold), flat.isContinuous(node));
+        if (flat.isContinuous(node)) {
+            assertEquals(expected.threshold, flat.getThreshold(node), 0);
+        }
+        for (int i = 0; i < expected.children.length; i++) {
+            if (!flat.isContinuous(node)) {
+                assertEquals(expected.splitValues[i], flat.getSplitValue(node, i));
+            }
+            assertNode(expected.children[i], flat, flat.getChild(node, i));
+        }
+    }
+
+    /**
+     * La classe rappresenta un nodo dell'albero come oggetto collegato ai propri figli, come avveniva
+     * prima di {@link FlatTree}, e calcola la predizione con una visita ricorsiva.
+     */
+    private static final class Node {
+
+        /**
+         * Indice dell'attributo di split, {@code -1} per le foglie.
+         */
+        private final int splitAttribute;
+
+        /**
+         * Soglia dello split continuo, {@code NaN} per gli altri nodi.
+         */
+        private final double threshold;
+
+        /**
+         * Valori associati ai figli dello split discreto.
+         */
+        private final String[] splitValues;
+
+        /**
+         * Domanda del nodo di split.
+         */
+        private final String question;
+
+        /**
+         * Figli del nodo.
+         */
+        private final Node[] children;
+
+        /**
+         * Valore di predizione della foglia.
+         */
+        private final double prediction;
+
+        /**
+         * Inizializza gli attributi d'istanza con quelli passati in input.
+         * @param splitAttribute Indice dell'attributo di split.
+         * @param threshold Soglia dello split continuo.
+         * @param splitValues Valori associati ai figli dello split discreto.
+         * @param question Domanda del nodo di split.
+         * @param children Figli del nodo.
+         * @param prediction Valore di predizione della foglia.
+         */
+        private Node(int splitAttribute, double threshold, String[] splitValues, String question,
+                     Node[] children, double prediction) {
+            this.splitAttribute = splitAttribute;
+            this.threshold = threshold;
+            this.splitValues = splitValues;
+            this.question = question;
+            this.children = children;
+            this.prediction = prediction;
+        }
+
+        /**
+         * Legge ricorsivamente dalla visita in preordine il nodo indicato da {@code cursor}.
+         * @param preorder Visita in preordine.
+         * @param cursor Posizione del nodo, della domanda e del primo valore di split successivi.
+         * @return Nodo letto, con il suo sottoalbero.
+         */
+        static Node read(TestTrees.Preorder preorder, int[] cursor) {
+            int node = cursor[0]++;
+            int count = preorder.childCount.get(node);
+            if (count == 0) {
+                return new Node(-1, Double.NaN, new String[0], null, new Node[0],
+                        preorder.prediction.get(node));
+            }
+            double threshold = preorder.threshold.get(node);
+            String question = preorder.questions.get(cursor[1]++);
+            String[] values = new String[0];
+            if (Double.isNaN(threshold)) {
+                values = preorder.splitValues.subList(cursor[2], cursor[2] + count).toArray(values);
+                cursor[2] += count;
+            }
+            Node[] children = new Node[count];
+            for (int i = 0; i < count; i++) {
+                children[i] = read(preorder, cursor);
+            }
+            return new Node(preorder.splitAttribute.get(node), threshold, values, question, children,
+                    Double.NaN);
+        }
+
+        /**
+         * Conta i nodi del sottoalbero, compreso il nodo stesso.
+         * @return Numero di nodi.
+         */
+        int size() {
+            int size = 1;
+            for (Node child : children) {
+                size += child.size();
+            }
+            return size;
+        }
+
+        /**
+         * Calcola la predizione dell'esempio percorrendo ricorsivamente i nodi.
+         * @param example Valori dell'esempio, continui come {@link Number} e discreti come stringhe.
+         * @return Valore di predizione, {@code NaN} se un valore non corrisponde ad alcun ramo.
+         */
+        double predict(Object[] example) {
+            if (children.length == 0) {
+                return prediction;
+            }
+            Object value = example[splitAttribute];
+            if (!Double.isNaN(threshold)) {
+                if (!(value instanceof Number)) {
+                    return Double.NaN;
+                }
+                return children[((Number) value).doubleValue() <= threshold ? 0 : 1].predict(example);
+            }
+            for (int i = 0; i < children.length; i++) {
+                if (splitValues[i].equals(String.valueOf(value))) {
+                    return children[i].predict(example);
+                }
+            }
+            return Double.NaN;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.fralav.rtminer.client.tree;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifica che l'albero salvato su file e letto con {@link MappedTree} abbia la stessa struttura e
+ * le stesse predizioni dell'albero a array, con indici a 16 e a 32 bit e con soglie {@code float}.
+ */
+public class MappedTreeTest {
+
+    /**
+     * Numero di attributi degli alberi casuali.
+     */
+    private static final int ATTRIBUTES = 6;
+
+    /**
+     * Posizione dei flag nell'intestazione del file.
+     */
+    private static final int FLAGS_POSITION = 6;
+
+    /**
+     * File in cui viene salvato l'albero.
+     */
+    private File file;
+
+    @Before
+    public void createFile() throws IOException {
+        file = File.createTempFile("rtminer", ".rtmt");
+    }
+
+    @After
+    public void deleteFile() {
+        file.delete();
+    }
+
+    @Test
+    public void randomTrees_narrowIndices_matchFlatTree() throws IOException {
+        for (long seed = 1; seed <= 30; seed++) {
+            FlatTree flat = TestTrees.random(seed, ATTRIBUTES, 8).toFlatTree();
+            MappedTree.write(flat, file, false);
+            assertEquals(0, flags() & 1);
+            MappedTree mapped = MappedTree.open(file);
+            assertSameTree(flat, mapped);
+            assertSamePredictions(flat, mapped, seed);
+        }
+    }
+
+    @Test
+    public void randomTrees_floatThresholds_matchRoundedFlatTree() throws IOException {
+        for (long seed = 1; seed <= 30; seed++) {
+            TestTrees.Preorder preorder = TestTrees.random(seed, ATTRIBUTES, 8);
+            FlatTree flat = preorder.toFlatTree();
+            MappedTree.write(flat, file, false);
+            long doubleSize = file.length();
+            MappedTree.write(flat, file, true);
+            assertEquals(2, flags() & 2);
+            assertTrue(file.length() < doubleSize || flat.size() == 1);
+            for (int i = 0; i < preorder.threshold.size(); i++) {
+                preorder.threshold.set(i, (double) preorder.threshold.get(i).floatValue());
+            }
+            FlatTree rounded = preorder.toFlatTree();
+            MappedTree mapped = MappedTree.open(file);
+            assertSameTree(rounded, mapped);
+            assertSamePredictions(rounded, mapped, seed);
+        }
+    }
+
+    @Test
+    public void wideTree_usesWideIndices() throws IOException {
+        TestTrees.Preorder preorder = new TestTrees.Preorder();
+        preorder.attributes.add("codice");
+        int leaves = 0xFFFF;
+        addNode(preorder, leaves, 0, Double.NaN);
+        preorder.questions.add("codice?");
+        for (int i = 0; i < leaves; i++) {
+            preorder.splitValues.add("c" + i);
+            addNode(preorder, 0, -1, i);
+        }
+        FlatTree flat = preorder.toFlatTree();
+        MappedTree.write(flat, file, false);
+        assertEquals(1, flags() & 1);
+        MappedTree mapped = MappedTree.wrap(ByteBuffer.wrap(Files.readAllBytes(file.toPath())));
+        assertSameTree(flat, mapped);
+        for (int i = 0; i < leaves; i += 997) {
+            double[] row = {mapped.encode(0, "c" + i)};
+            assertEquals(i, mapped.predict(row, 0), 0);
+        }
+        assertEquals(leaves - 1, mapped.predict(new double[] {mapped.encode(0, "c" + (leaves - 1))}), 0);
+        assertEquals(-1, mapped.encode(0, "sconosciuto"));
+    }
+
+    @Test(expected = IOException.class)
+    public void wrap_rejectsWrongMagic() throws IOException {
+        MappedTree.write(TestTrees.singleSplit(), file, false);
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        bytes[0] ^= 1;
+        MappedTree.wrap(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Legge i flag dall'intestazione del file.
+     * @return Flag del file.
+     * @throws IOException Se si verifica un errore di lettura.
+     */
+    private int flags() throws IOException {
+        return ByteBuffer.wrap(Files.readAllBytes(file.toPath())).getShort(FLAGS_POSITION);
+    }
+
+    /**
+     * Aggiunge un nodo alla visita in preordine.
+     * @param preorder Visita in preordine.
+     * @param children Numero di figli del nodo.
+     * @param attribute Indice dell'attributo di split, {@code -1} per le foglie.
+     * @param prediction Valore di predizione della foglia.
+     */
+    private static void addNode(TestTrees.Preorder preorder, int children, int attribute, double prediction) {
+        preorder.childCount.add(children);
+        preorder.splitAttribute.add(attribute);
+        preorder.threshold.add(Double.NaN);
+        preorder.prediction.add(children == 0 ? prediction : Double.NaN);
+    }
+
+    /**
+     * Verifica che i due alberi abbiano gli stessi attributi e gli stessi nodi, numerati allo stesso
+     * modo.
+     * @param expected Albero di riferimento.
+     * @param actual Albero letto dal file.
+     */
+    private static void assertSameTree(TreeModel expected, TreeModel actual) {
+        assertEquals(expected.getAttributes(), actual.getAttributes());
+        assertEquals(expected.size(), actual.size());
+        for (int node = 0; node < expected.size(); node++) {
+            assertEquals(expected.isLeaf(node), actual.isLeaf(node));
+            assertEquals(expected.getChildCount(node), actual.getChildCount(node));
+            if (expected.isLeaf(node)) {
+                assertEquals(expected.getPrediction(node), actual.getPrediction(node), 0);
+                continue;
+            }
+            assertEquals(expected.getSplitAttribute(node), actual.getSplitAttribute(node));
+            assertEquals(expected.getQuestion(node), actual.getQuestion(node));
+            assertEquals(expected.isContinuous(node), actual.isContinuous(node));
+            if (expected.isContinuous(node)) {
+                assertEquals(expected.getThreshold(node), actual.getThreshold(node), 0);
+            }
+            for (int child = 0; child < expected.getChildCount(node); child++) {
+                assertEquals(expected.getChild(node, child), actual.getChild(node, child));
+                if (!expected.isContinuous(node)) {
+                    String value = expected.getSplitValue(node, child);
+                    assertEquals(value, actual.getSplitValue(node, child));
+                    int attribute = expected.getSplitAttribute(node);
+                    assertEquals(expected.encode(attribute, value), actual.encode(attribute, value));
+                }
+            }
+        }
+    }
+
+    /**
+     * Verifica che i due alberi restituiscano le stesse predizioni sugli esempi casuali.
+     * @param expected Albero di riferimento.
+     * @param actual Albero letto dal file.
+     * @param seed Seme degli esempi casuali.
+     */
+    private static void assertSamePredictions(FlatTree expected, MappedTree actual, long seed) {
+        double[] values = TestTrees.encode(expected, TestTrees.examples(seed, ATTRIBUTES, 500));
+        for (int offset = 0; offset < values.length; offset += ATTRIBUTES) {
+            assertEquals(expected.predict(values, offset), actual.predict(values, offset), 0);
+        }
+    }
+}
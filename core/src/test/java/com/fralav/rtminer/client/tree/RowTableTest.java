@@ -0,0 +1,72 @@
+package com.fralav.rtminer.client.tree;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifica la lettura degli esempi da CSV e la predizione degli esempi con valori non convertibili.
+ */
+public class RowTableTest {
+
+    @Test
+    public void readCsv_convertsValues() throws IOException {
+        FlatTree tree = TestTrees.mixed();
+        RowTable table = RowTable.readCsv(new StringReader("colore,peso\nverde, 2.5\n\nblu,0\n"), tree, true);
+        assertEquals(2, table.getRows());
+        assertEquals(2, table.getColumns());
+        assertEquals(tree.encode(0, "verde"), table.get(0, 0), 0);
+        assertEquals(2.5, table.get(0, 1), 0);
+        assertEquals(tree.encode(0, "blu"), table.get(1, 0), 0);
+    }
+
+    @Test(expected = IOException.class)
+    public void readCsv_rejectsWrongColumnCount() throws IOException {
+        RowTable.readCsv(new StringReader("rosso,1,2\n"), TestTrees.mixed(), false);
+    }
+
+    @Test
+    public void unparsableContinuousValue_predictsNaN() throws Exception {
+        FlatTree tree = TestTrees.singleSplit();
+        RowTable table = RowTable.readCsv(new StringReader("abc\n3\n7\n"), tree, false);
+        assertTrue(Double.isNaN(table.get(0, 0)));
+        double[] expected = {Double.NaN, 1, 2};
+
+        double[] values = table.getValues();
+        for (int row = 0; row < expected.length; row++) {
+            assertEquals(expected[row], tree.predict(values, row), 0);
+        }
+        CompiledTree compiled = CompiledTree.compile(tree);
+        for (int row = 0; row < expected.length; row++) {
+            assertEquals(expected[row], compiled.predict(values, row), 0);
+        }
+        File file = File.createTempFile("rtminer", ".rtmt");
+        try {
+            MappedTree.write(tree, file, false);
+            MappedTree mapped = MappedTree.open(file);
+            for (int row = 0; row < expected.length; row++) {
+                assertEquals(expected[row], mapped.predict(values, row), 0);
+            }
+        } finally {
+            file.delete();
+        }
+        try (BatchScorer scorer = new BatchScorer(2)) {
+            assertArrayEquals(expected, scorer.score(tree, table).getPredictions(), 0);
+            assertArrayEquals(expected, scorer.score(compiled, table).getPredictions(), 0);
+        }
+    }
+
+    @Test
+    public void unknownDiscreteValue_predictsNaN() throws IOException {
+        FlatTree tree = TestTrees.mixed();
+        RowTable table = RowTable.readCsv(new StringReader("giallo,1\nrosso,1\nrosso,2\n"), tree, false);
+        assertEquals(-1, table.get(0, 0), 0);
+        assertTrue(Double.isNaN(tree.predict(table.getValues(), 0)));
+        assertEquals(10, tree.predict(table.getValues(), 2), 0);
+        assertEquals(20, tree.predict(table.getValues(), 4), 0);
+    }
+}
@@ -0,0 +1,195 @@
+package com.fralav.rtminer.client.tree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * La classe costruisce gli alberi di regressione e gli esempi utilizzati dai test del package: alcuni
+ * piccoli alberi sempre uguali e alberi casuali che dipendono solo dal seme. Negli alberi casuali gli
+ * attributi con indice pari sono continui, quelli con indice dispari discreti.
+ */
+final class TestTrees {
+
+    /**
+     * Non istanziabile.
+     */
+    private TestTrees() {
+    }
+
+    /**
+     * Costruisce un albero con un solo split continuo sull'unico attributo: gli esempi con valore
+     * minore o uguale a {@code 5} ricevono la predizione {@code 1}, gli altri {@code 2}.
+     * @return Albero costruito.
+     */
+    static FlatTree singleSplit() {
+        return FlatTree.fromPreorder(Collections.singletonList("x"), new int[] {2, 0, 0},
+                new int[] {0, -1, -1}, new double[] {5, Double.NaN, Double.NaN},
+                Collections.<String>emptyList(), new double[] {Double.NaN, 1, 2},
+                Collections.singletonList("x <= 5?"));
+    }
+
+    /**
+     * Costruisce un albero con uno split discreto sull'attributo {@code colore} e, sotto il valore
+     * {@code rosso}, uno split continuo sull'attributo {@code peso}.
+     * @return Albero costruito.
+     */
+    static FlatTree mixed() {
+        return FlatTree.fromPreorder(Arrays.asList("colore", "peso"), new int[] {3, 2, 0, 0, 0, 0},
+                new int[] {0, 1, -1, -1, -1, -1},
+                new double[] {Double.NaN, 1.5, Double.NaN, Double.NaN, Double.NaN, Double.NaN},
+                Arrays.asList("rosso", "verde", "blu"),
+                new double[] {Double.NaN, Double.NaN, 10, 20, 30, 40},
+                Arrays.asList("colore?", "peso <= 1.5?"));
+    }
+
+    /**
+     * Costruisce un albero casuale, con split continui sulle soglie {@code 0.0}, {@code 0.1}, ...,
+     * {@code 10.0} e split discreti con due, tre o quattro dei valori {@code v0}, ..., {@code v5}.
+     * @param seed Seme dei valori casuali.
+     * @param attributes Numero di attributi, almeno {@code 2}.
+     * @param depth Numero massimo di livelli di split.
+     * @return Visita in preordine dell'albero.
+     */
+    static Preorder random(long seed, int attributes, int depth) {
+        Preorder tree = new Preorder();
+        for (int i = 0; i < attributes; i++) {
+            tree.attributes.add("a" + i);
+        }
+        tree.visit(new Random(seed), depth);
+        return tree;
+    }
+
+    /**
+     * Genera esempi casuali per un albero casuale: i valori continui cadono spesso esattamente su una
+     * soglia, mentre il valore discreto {@code v6} non compare in alcuno split.
+     * @param seed Seme dei valori casuali.
+     * @param attributes Numero di attributi.
+     * @param rows Numero di esempi.
+     * @return Esempi, con i valori continui come {@link Double} e quelli discreti come {@link String}.
+     */
+    static Object[][] examples(long seed, int attributes, int rows) {
+        Random random = new Random(seed);
+        Object[][] examples = new Object[rows][attributes];
+        for (Object[] example : examples) {
+            for (int i = 0; i < attributes; i++) {
+                example[i] = i % 2 == 0 ? (Object) (random.nextInt(101) / 10.0) : "v" + random.nextInt(7);
+            }
+        }
+        return examples;
+    }
+
+    /**
+     * Codifica gli esempi uno dopo l'altro, come richiesto da {@link FlatTree#predict(double[], int)}.
+     * @param tree Albero che codifica i valori discreti.
+     * @param examples Esempi generati da {@link #examples(long, int, int)}.
+     * @return Valori codificati degli esempi.
+     */
+    static double[] encode(FlatTree tree, Object[][] examples) {
+        int attributes = tree.getAttributes().size();
+        double[] values = new double[examples.length * attributes];
+        for (int row = 0; row < examples.length; row++) {
+            for (int i = 0; i < attributes; i++) {
+                Object value = examples[row][i];
+                values[row * attributes + i] = value instanceof Double ? (Double) value
+                        : tree.isDiscrete(i) ? tree.encode(i, (String) value) : -1;
+            }
+        }
+        return values;
+    }
+
+    /**
+     * La classe contiene la visita in preordine di un albero, nel formato della risposta al task
+     * {@code TASK_GET_TREE_STRUCTURE}.
+     */
+    static final class Preorder {
+
+        /**
+         * Nomi degli attributi indipendenti.
+         */
+        final List<String> attributes = new ArrayList<>();
+
+        /**
+         * Numero di figli di ogni nodo.
+         */
+        final List<Integer> childCount = new ArrayList<>();
+
+        /**
+         * Indice dell'attributo di split di ogni nodo, {@code -1} per le foglie.
+         */
+        final List<Integer> splitAttribute = new ArrayList<>();
+
+        /**
+         * Soglia degli split continui, {@code NaN} per gli altri nodi.
+         */
+        final List<Double> threshold = new ArrayList<>();
+
+        /**
+         * Valori associati ai figli degli split discreti.
+         */
+        final List<String> splitValues = new ArrayList<>();
+
+        /**
+         * Valore di predizione delle foglie, {@code NaN} per gli altri nodi.
+         */
+        final List<Double> prediction = new ArrayList<>();
+
+        /**
+         * Domanda di ogni nodo di split.
+         */
+        final List<String> questions = new ArrayList<>();
+
+        /**
+         * Costruisce l'albero a partire dalla visita.
+         * @return Albero costruito.
+         */
+        FlatTree toFlatTree() {
+            int[] counts = new int[childCount.size()];
+            int[] splits = new int[counts.length];
+            double[] thresholds = new double[counts.length];
+            double[] predictions = new double[counts.length];
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = childCount.get(i);
+                splits[i] = splitAttribute.get(i);
+                thresholds[i] = threshold.get(i);
+                predictions[i] = prediction.get(i);
+            }
+            return FlatTree.fromPreorder(attributes, counts, splits, thresholds, splitValues, predictions,
+                    questions);
+        }
+
+        /**
+         * Aggiunge alla visita un nodo casuale e il suo sottoalbero.
+         * @param random Generatore dei valori casuali.
+         * @param depth Numero massimo di livelli di split sotto il nodo, compreso il nodo stesso.
+         */
+        private void visit(Random random, int depth) {
+            if (depth == 0 || random.nextInt(5) == 0) {
+                childCount.add(0);
+                splitAttribute.add(-1);
+                threshold.add(Double.NaN);
+                prediction.add(random.nextInt(100000) / 100.0);
+                return;
+            }
+            int attribute = random.nextInt(attributes.size());
+            int children = attribute % 2 == 0 ? 2 : 2 + random.nextInt(3);
+            childCount.add(children);
+            splitAttribute.add(attribute);
+            prediction.add(Double.NaN);
+            questions.add("q" + questions.size());
+            if (attribute % 2 == 0) {
+                threshold.add(random.nextInt(101) / 10.0);
+            } else {
+                threshold.add(Double.NaN);
+                List<String> values = new ArrayList<>(Arrays.asList("v0", "v1", "v2", "v3", "v4", "v5"));
+                Collections.shuffle(values, random);
+                splitValues.addAll(values.subList(0, children));
+            }
+            for (int i = 0; i < children; i++) {
+                visit(random, depth - 1);
+            }
+        }
+    }
+}
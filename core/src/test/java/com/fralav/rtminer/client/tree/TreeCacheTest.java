@@ -0,0 +1,124 @@
+package com.fralav.rtminer.client.tree;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifica il salvataggio degli alberi sul dispositivo: ricerca per server, origine e nome, elenco
+ * degli alberi salvati e lettura del file mappato in memoria.
+ */
+public class TreeCacheTest {
+
+    /**
+     * Server dal quale vengono scaricati gli alberi.
+     */
+    private static final String SERVER = "10.0.0.1:8080";
+
+    /**
+     * Cartella degli alberi salvati.
+     */
+    private File directory;
+
+    /**
+     * Oggetto verificato.
+     */
+    private TreeCache cache;
+
+    @Before
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("rtminer").toFile();
+        cache = new TreeCache(new File(directory, "alberi"));
+    }
+
+    @After
+    public void deleteDirectory() {
+        delete(directory);
+    }
+
+    @Test
+    public void emptyCache_findsNothing() {
+        assertNull(cache.find(SERVER, TreeCache.FROM_DB, "tabella"));
+        assertEquals(Collections.<String>emptyList(), cache.list(SERVER, TreeCache.FROM_DB));
+    }
+
+    @Test
+    public void put_storesTreeAndFingerprint() throws IOException {
+        FlatTree tree = TestTrees.mixed();
+        TreeCache.Entry stored = cache.put(SERVER, TreeCache.FROM_DB, "tabella", "impronta", tree);
+        TreeCache.Entry found = cache.find(SERVER, TreeCache.FROM_DB, "tabella");
+        assertNotNull(found);
+        assertEquals("tabella", found.getName());
+        assertEquals("impronta", found.getFingerprint());
+        assertEquals(stored.getFile(), found.getFile());
+        MappedTree mapped = cache.open(found);
+        assertEquals(tree.size(), mapped.size());
+        for (String colore : Arrays.asList("rosso", "verde", "blu")) {
+            double[] row = {mapped.encode(0, colore), 2};
+            assertEquals(tree.predict(new double[] {tree.encode(0, colore), 2}), mapped.predict(row, 0), 0);
+        }
+    }
+
+    @Test
+    public void put_replacesPreviousTree() throws IOException {
+        cache.put(SERVER, TreeCache.FROM_DB, "tabella", "vecchia", TestTrees.mixed());
+        cache.put(SERVER, TreeCache.FROM_DB, "tabella", null, TestTrees.singleSplit());
+        TreeCache.Entry found = cache.find(SERVER, TreeCache.FROM_DB, "tabella");
+        assertNull(found.getFingerprint());
+        assertEquals(Collections.singletonList("x"), cache.open(found).getAttributes());
+        assertEquals(Collections.singletonList("tabella"), cache.list(SERVER, TreeCache.FROM_DB));
+    }
+
+    @Test
+    public void list_separatesServersAndSources() throws IOException {
+        cache.put(SERVER, TreeCache.FROM_DB, "zeta", null, TestTrees.mixed());
+        cache.put(SERVER, TreeCache.FROM_DB, "alfa", null, TestTrees.mixed());
+        cache.put(SERVER, TreeCache.FROM_FILE, "alfa.csv", null, TestTrees.mixed());
+        cache.put("10.0.0.2:8080", TreeCache.FROM_DB, "beta", null, TestTrees.mixed());
+        assertEquals(Arrays.asList("alfa", "zeta"), cache.list(SERVER, TreeCache.FROM_DB));
+        assertEquals(Collections.singletonList("alfa.csv"), cache.list(SERVER, TreeCache.FROM_FILE));
+        assertNull(cache.find(SERVER, TreeCache.FROM_FILE, "alfa"));
+        assertNull(cache.find("10.0.0.2:8080", TreeCache.FROM_DB, "alfa"));
+    }
+
+    @Test
+    public void missingTreeFile_isIgnored() throws IOException {
+        TreeCache.Entry stored = cache.put(SERVER, TreeCache.FROM_DB, "tabella", null, TestTrees.mixed());
+        assertTrue(stored.getFile().delete());
+        assertNull(cache.find(SERVER, TreeCache.FROM_DB, "tabella"));
+        assertEquals(Collections.<String>emptyList(), cache.list(SERVER, TreeCache.FROM_DB));
+    }
+
+    @Test(expected = IOException.class)
+    public void corruptedTreeFile_failsToOpen() throws IOException {
+        TreeCache.Entry stored = cache.put(SERVER, TreeCache.FROM_DB, "tabella", null, TestTrees.mixed());
+        try (OutputStream out = new FileOutputStream(stored.getFile())) {
+            out.write(new byte[] {1, 2, 3});
+        }
+        cache.open(cache.find(SERVER, TreeCache.FROM_DB, "tabella"));
+    }
+
+    /**
+     * Elimina ricorsivamente un file o una cartella.
+     * @param file File o cartella da eliminare.
+     */
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,414 @@
+package com.fralav.rtminer.loadtest;
+
+import com.fralav.rtminer.client.protocol.Protocol;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * La classe raccoglie le opzioni del generatore di carico: il server da contattare, il numero di
+ * sessioni concorrenti, la durata della prova, i flussi da ripetere e le opzioni delle connessioni.
+ * Le opzioni vengono lette dagli argomenti della riga di comando, nella forma {@code --nome valore}.
+ */
+public class LoadOptions {
+
+    /**
+     * Flusso che apprende un albero e ne richiede la rappresentazione testuale, come
+     * {@code PrintActivity}.
+     */
+    public static final String WORKFLOW_PRINT = "print";
+
+    /**
+     * Flusso che apprende un albero e ne percorre la fase di predizione scegliendo i figli a caso, come
+     * {@code PredictActivity}.
+     */
+    public static final String WORKFLOW_PREDICT = "predict";
+
+    /**
+     * Indirizzo IP del server.
+     */
+    private String host = "127.0.0.1";
+
+    /**
+     * Porta del server.
+     */
+    private int port = 8080;
+
+    /**
+     * Numero di sessioni concorrenti, ognuna con la propria connessione.
+     */
+    private int sessions = 10;
+
+    /**
+     * Durata della prova, in secondi.
+     */
+    private long durationSeconds = 60;
+
+    /**
+     * Tempo entro il quale vengono avviate tutte le sessioni, in secondi.
+     */
+    private long rampUpSeconds;
+
+    /**
+     * Pausa tra due richieste della stessa sessione, in millisecondi, che simula il tempo di lettura
+     * dell'utente.
+     */
+    private long thinkMillis;
+
+    /**
+     * Tempo massimo di attesa di una risposta, in millisecondi.
+     */
+    private long requestTimeoutMillis = 30000;
+
+    /**
+     * Intervallo tra due resoconti intermedi, in secondi.
+     */
+    private long reportSeconds = 10;
+
+    /**
+     * Seme dei valori casuali: a parità di seme, ogni sessione esegue la stessa sequenza di scelte.
+     */
+    private long seed = 42;
+
+    /**
+     * Flussi ripetuti dalle sessioni, scelti a caso a ogni ripetizione.
+     */
+    private List<String> workflows = Collections.unmodifiableList(
+            Arrays.asList(WORKFLOW_PRINT, WORKFLOW_PREDICT));
+
+    /**
+     * {@code true} se gli alberi vengono letti dai file dell'archivio anziché appresi dalle tabelle.
+     */
+    private boolean files;
+
+    /**
+     * {@code true} se le connessioni utilizzano il protocollo originale, senza negoziare la versione.
+     */
+    private boolean legacy;
+
+    /**
+     * Codec proposto al server.
+     */
+    private int codec = Protocol.CODEC_BINARY;
+
+    /**
+     * {@code true} se le connessioni utilizzano il trasporto NIO.
+     */
+    private boolean nio;
+
+    /**
+     * Soglia di compressione proposta al server, negativa per non comprimere; {@code null} per il
+     * valore predefinito del client.
+     */
+    private Integer compressionThreshold;
+
+    /**
+     * Numero massimo di messaggi tra due azzeramenti degli stream della serializzazione Java;
+     * {@code 0} per il valore predefinito del client.
+     */
+    private int streamResetMessages;
+
+    /**
+     * Numero massimo di byte tra due azzeramenti degli stream della serializzazione Java; {@code 0}
+     * per il valore predefinito del client.
+     */
+    private long streamResetBytes;
+
+    /**
+     * Legge le opzioni dagli argomenti della riga di comando.
+     * @param args Argomenti, nella forma {@code --nome valore}.
+     * @return Opzioni lette.
+     * @throws IllegalArgumentException Se un'opzione non esiste o ha un valore non valido.
+     */
+    public static LoadOptions parse(String[] args) {
+        LoadOptions options = new LoadOptions();
+        for (int i = 0; i < args.length; i++) {
+            String name = args[i];
+            switch (name) {
+                case "--files":
+                    options.files = true;
+                    continue;
+                case "--legacy":
+                    options.legacy = true;
+                    continue;
+                case "--nio":
+                    options.nio = true;
+                    continue;
+                default:
+                    break;
+            }
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Valore mancante per " + name);
+            }
+            String value = args[++i];
+            try {
+                switch (name) {
+                    case "--host":
+                        options.host = value;
+                        break;
+                    case "--port":
+                        options.port = check(name, Integer.parseInt(value), 1, 65535);
+                        break;
+                    case "--sessions":
+                        options.sessions = check(name, Integer.parseInt(value), 1, 100000);
+                        break;
+                    case "--duration":
+                        options.durationSeconds = check(name, Long.parseLong(value), 1);
+                        break;
+                    case "--ramp-up":
+                        options.rampUpSeconds = check(name, Long.parseLong(value), 0);
+                        break;
+                    case "--think":
+                        options.thinkMillis = check(name, Long.parseLong(value), 0);
+                        break;
+                    case "--timeout":
+                        options.requestTimeoutMillis = check(name, Long.parseLong(value), 1);
+                        break;
+                    case "--report":
+                        options.reportSeconds = check(name, Long.parseLong(value), 1);
+                        break;
+                    case "--seed":
+                        options.seed = Long.parseLong(value);
+                        break;
+                    case "--workflows":
+                        options.workflows = parseWorkflows(value);
+                        break;
+                    case "--codec":
+                        options.codec = parseCodec(value);
+                        break;
+                    case "--compression":
+                        options.compressionThreshold = Integer.parseInt(value);
+                        break;
+                    case "--stream-reset-messages":
+                        options.streamResetMessages = check(name, Integer.parseInt(value), 1, Integer.MAX_VALUE);
+                        break;
+                    case "--stream-reset-bytes":
+                        options.streamResetBytes = check(name, Long.parseLong(value), 1);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Opzione sconosciuta: " + name);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Valore non valido per " + name + ": " + value);
+            }
+        }
+        return options;
+    }
+
+    /**
+     * Restituisce l'indirizzo IP del server.
+     * @return {@code host}
+     */
+    public String getHost() {
+        return host;
+    }
+
+    /**
+     * Restituisce la porta del server.
+     * @return {@code port}
+     */
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * Restituisce il numero di sessioni concorrenti.
+     * @return {@code sessions}
+     */
+    public int getSessions() {
+        return sessions;
+    }
+
+    /**
+     * Restituisce la durata della prova, in secondi.
+     * @return {@code durationSeconds}
+     */
+    public long getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    /**
+     * Restituisce il tempo entro il quale vengono avviate tutte le sessioni, in secondi.
+     * @return {@code rampUpSeconds}
+     */
+    public long getRampUpSeconds() {
+        return rampUpSeconds;
+    }
+
+    /**
+     * Restituisce la pausa tra due richieste della stessa sessione, in millisecondi.
+     * @return {@code thinkMillis}
+     */
+    public long getThinkMillis() {
+        return thinkMillis;
+    }
+
+    /**
+     * Restituisce il tempo massimo di attesa di una risposta, in millisecondi.
+     * @return {@code requestTimeoutMillis}
+     */
+    public long getRequestTimeoutMillis() {
+        return requestTimeoutMillis;
+    }
+
+    /**
+     * Restituisce l'intervallo tra due resoconti intermedi, in secondi.
+     * @return {@code reportSeconds}
+     */
+    public long getReportSeconds() {
+        return reportSeconds;
+    }
+
+    /**
+     * Restituisce il seme dei valori casuali.
+     * @return {@code seed}
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Restituisce i flussi ripetuti dalle sessioni.
+     * @return {@code workflows}
+     */
+    public List<String> getWorkflows() {
+        return workflows;
+    }
+
+    /**
+     * Restituisce {@code true} se gli alberi vengono letti dai file dell'archivio.
+     * @return {@code files}
+     */
+    public boolean isFiles() {
+        return files;
+    }
+
+    /**
+     * Restituisce {@code true} se le connessioni utilizzano il protocollo originale.
+     * @return {@code legacy}
+     */
+    public boolean isLegacy() {
+        return legacy;
+    }
+
+    /**
+     * Restituisce il codec proposto al server.
+     * @return {@code codec}
+     */
+    public int getCodec() {
+        return codec;
+    }
+
+    /**
+     * Restituisce {@code true} se le connessioni utilizzano il trasporto NIO.
+     * @return {@code nio}
+     */
+    public boolean isNio() {
+        return nio;
+    }
+
+    /**
+     * Restituisce la soglia di compressione proposta al server.
+     * @return {@code compressionThreshold}, {@code null} per il valore predefinito del client.
+     */
+    public Integer getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    /**
+     * Restituisce il numero massimo di messaggi tra due azzeramenti degli stream.
+     * @return {@code streamResetMessages}, {@code 0} per il valore predefinito del client.
+     */
+    public int getStreamResetMessages() {
+        return streamResetMessages;
+    }
+
+    /**
+     * Restituisce il numero massimo di byte tra due azzeramenti degli stream.
+     * @return {@code streamResetBytes}, {@code 0} per il valore predefinito del client.
+     */
+    public long getStreamResetBytes() {
+        return streamResetBytes;
+    }
+
+    /**
+     * Restituisce una descrizione delle opzioni, riportata all'avvio della prova.
+     * @return Descrizione delle opzioni.
+     */
+    @Override
+    public String toString() {
+        return host + ":" + port + ", " + sessions + " sessioni per " + durationSeconds + " s (avvio in "
+                + rampUpSeconds + " s), flussi " + workflows + " da " + (files ? "file" : "tabelle")
+                + ", pausa " + thinkMillis + " ms, "
+                + (legacy ? "protocollo originale" : "codec " + (codec == Protocol.CODEC_BINARY ? "binario" : "Java")
+                + (nio ? " su NIO" : ""));
+    }
+
+    /**
+     * Legge l'elenco dei flussi, separati da virgole.
+     * @param value Elenco dei flussi.
+     * @return Flussi letti.
+     * @throws IllegalArgumentException Se un flusso non esiste o l'elenco è vuoto.
+     */
+    private static List<String> parseWorkflows(String value) {
+        List<String> workflows = new ArrayList<>();
+        for (String workflow : value.split(",")) {
+            String name = workflow.trim();
+            if (!name.equals(WORKFLOW_PRINT) && !name.equals(WORKFLOW_PREDICT)) {
+                throw new IllegalArgumentException("Flusso sconosciuto: " + name);
+            }
+            workflows.add(name);
+        }
+        return Collections.unmodifiableList(workflows);
+    }
+
+    /**
+     * Legge il nome del codec.
+     * @param value {@code java} oppure {@code binary}.
+     * @return Costante {@code CODEC_*} di {@link Protocol}.
+     * @throws IllegalArgumentException Se il codec non esiste.
+     */
+    private static int parseCodec(String value) {
+        switch (value) {
+            case "java":
+                return Protocol.CODEC_JAVA;
+            case "binary":
+                return Protocol.CODEC_BINARY;
+            default:
+                throw new IllegalArgumentException("Codec sconosciuto: " + value);
+        }
+    }
+
+    /**
+     * Verifica che il valore di un'opzione rientri nei limiti.
+     * @param name Nome dell'opzione.
+     * @param value Valore.
+     * @param min Valore minimo.
+     * @param max Valore massimo.
+     * @return {@code value}
+     * @throws IllegalArgumentException Se il valore non rientra nei limiti.
+     */
+    private static int check(String name, int value, int min, int max) {
+        if (value < min || value > max) {
+            throw new IllegalArgumentException("Valore non valido per " + name + ": " + value);
+        }
+        return value;
+    }
+
+    /**
+     * Verifica che il valore di un'opzione non sia inferiore al minimo.
+     * @param name Nome dell'opzione.
+     * @param value Valore.
+     * @param min Valore minimo.
+     * @return {@code value}
+     * @throws IllegalArgumentException Se il valore è inferiore al minimo.
+     */
+    private static long check(String name, long value, long min) {
+        if (value < min) {
+            throw new IllegalArgumentException("Valore non valido per " + name + ": " + value);
+        }
+        return value;
+    }
+}
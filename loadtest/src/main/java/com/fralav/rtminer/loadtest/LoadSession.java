@@ -0,0 +1,246 @@
+package com.fralav.rtminer.loadtest;
+
+import com.fralav.rtminer.client.protocol.Connection;
+import com.fralav.rtminer.client.protocol.ConnectionOptions;
+import com.fralav.rtminer.client.protocol.Frame;
+import com.fralav.rtminer.client.protocol.Protocol;
+import com.fralav.rtminer.client.protocol.ResponseHandler;
+import com.fralav.rtminer.client.protocol.StreamGovernor;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * La classe simula un utente dell'app: con una propria connessione ripete, fino alla fine della
+ * prova, le richieste che {@code TablesActivity} e le schermate successive inviano al server. Ogni
+ * ripetizione chiede la lista delle tabelle o dei file, ne sceglie uno a caso, apprende o legge
+ * l'albero e poi ne richiede la stampa oppure ne percorre la fase di predizione scegliendo i figli a
+ * caso; al termine, se il protocollo lo permette, azzera la sessione come fanno le schermate alla
+ * chiusura. Se la connessione si interrompe, la sessione la ristabilisce e prosegue.
+ */
+class LoadSession implements Runnable {
+
+    /**
+     * Risposta del server ai task eseguiti con successo.
+     */
+    private static final String OK = "ok";
+
+    /**
+     * Attesa prima di ristabilire una connessione interrotta, in millisecondi.
+     */
+    private static final long RECONNECT_DELAY = 1000;
+
+    /**
+     * Prova alla quale appartiene la sessione.
+     */
+    private final LoadTest test;
+
+    /**
+     * Opzioni della prova.
+     */
+    private final LoadOptions options;
+
+    /**
+     * Opzioni delle connessioni, condivise da tutte le sessioni.
+     */
+    private final ConnectionOptions connectionOptions;
+
+    /**
+     * Generatore delle scelte della sessione.
+     */
+    private final Random random;
+
+    /**
+     * Istante, in nanosecondi, in cui la sessione deve terminare.
+     */
+    private final long deadline;
+
+    /**
+     * Connessione corrente, {@code null} se non è stabilita.
+     */
+    private volatile Connection connection;
+
+    /**
+     * Inizializza gli attributi d'istanza con quelli passati in input.
+     * @param test Prova alla quale appartiene la sessione.
+     * @param connectionOptions Opzioni delle connessioni.
+     * @param number Numero progressivo della sessione, che insieme al seme determina le scelte.
+     * @param deadline Istante, in nanosecondi, in cui la sessione deve terminare.
+     */
+    LoadSession(LoadTest test, ConnectionOptions connectionOptions, int number, long deadline) {
+        this.test = test;
+        this.options = test.getOptions();
+        this.connectionOptions = connectionOptions;
+        this.random = new Random(options.getSeed() * 31 + number);
+        this.deadline = deadline;
+    }
+
+    /**
+     * Restituisce i contatori degli stream della connessione corrente.
+     * @return Contatori degli stream, {@code null} se la connessione non è stabilita o non utilizza
+     * la serializzazione Java.
+     */
+    StreamGovernor getStreamGovernor() {
+        Connection current = connection;
+        return current != null ? current.getStreamGovernor() : null;
+    }
+
+    /**
+     * Ripete i flussi fino alla fine della prova, ristabilendo la connessione quando si interrompe.
+     */
+    @Override
+    public void run() {
+        test.onSessionStarted();
+        try {
+            while (System.nanoTime() < deadline) {
+                try {
+                    if (connection == null) {
+                        long start = System.nanoTime();
+                        connection = Connection.open(options.getHost(), options.getPort(),
+                                connectionOptions, !options.isLegacy());
+                        test.onConnected(System.nanoTime() - start);
+                    }
+                    long start = System.nanoTime();
+                    boolean completed = runWorkflow();
+                    test.onWorkflow(completed, System.nanoTime() - start);
+                } catch (IOException e) {
+                    test.onFailure(e);
+                    close();
+                    pause(RECONNECT_DELAY);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            close();
+            test.onSessionFinished();
+        }
+    }
+
+    /**
+     * Esegue un flusso completo.
+     * @return {@code true} se il flusso è stato completato, {@code false} se il server ha rifiutato
+     * la tabella o il file scelto.
+     * @throws IOException Se si verifica un errore di comunicazione o la risposta non arriva in tempo.
+     * @throws InterruptedException Se il thread viene interrotto.
+     */
+    @SuppressWarnings("unchecked")
+    private boolean runWorkflow() throws IOException, InterruptedException {
+        boolean files = options.isFiles();
+        List<String> names = (List<String>) call(files ? Protocol.TASK_GET_FILES_FROM_ARCHIVE
+                : Protocol.TASK_GET_TABLES_FROM_DB).getValue(0);
+        if (names.isEmpty()) {
+            return false;
+        }
+        String name = names.get(random.nextInt(names.size()));
+        Object answer = call(files ? Protocol.TASK_GET_TREE_FROM_FILE : Protocol.TASK_LEARN_TREE_FROM_DB,
+                name).getValue(0);
+        if (!OK.equals(answer)) {
+            return false;
+        }
+        List<String> workflows = options.getWorkflows();
+        if (workflows.get(random.nextInt(workflows.size())).equals(LoadOptions.WORKFLOW_PRINT)) {
+            call(Protocol.TASK_PRINT_TREE);
+        } else {
+            Frame step = call(Protocol.TASK_PREDICT_TREE);
+            while (Protocol.QUERY.equals(String.valueOf(step.getValue(0)))) {
+                int children = Integer.parseInt(step.getValue(2).toString());
+                step = call(Protocol.TASK_PREDICT_ANSWER, random.nextInt(children));
+            }
+            if (!Protocol.PREDICTION.equals(String.valueOf(step.getValue(0)))) {
+                throw new IOException("Risposta inattesa dal server: " + step.getValue(0));
+            }
+        }
+        if (connection.getProtocolVersion() >= Protocol.PROTOCOL_FRAMED) {
+            call(Protocol.TASK_RESET_SESSION);
+        }
+        return true;
+    }
+
+    /**
+     * Attende la pausa dell'utente, invia la richiesta e ne attende la risposta, registrandone i tempi
+     * nei contatori condivisi.
+     * @param task ID del task.
+     * @param args Argomenti del task.
+     * @return Risposta del server.
+     * @throws IOException Se si verifica un errore o la risposta non arriva in tempo.
+     * @throws InterruptedException Se il thread viene interrotto.
+     */
+    private Frame call(int task, Object... args) throws IOException, InterruptedException {
+        pause(options.getThinkMillis());
+        Reply reply = new Reply();
+        connection.call(task, args, connectionOptions.getOperationStats().track(task, reply));
+        if (!reply.latch.await(options.getRequestTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+            throw new IOException("Nessuna risposta al task " + task + " entro "
+                    + options.getRequestTimeoutMillis() + " ms");
+        }
+        if (reply.error != null) {
+            throw reply.error;
+        }
+        return reply.response;
+    }
+
+    /**
+     * Attende il tempo specificato, senza superare la fine della prova.
+     * @param millis Tempo di attesa, in millisecondi.
+     * @throws InterruptedException Se il thread viene interrotto.
+     */
+    private void pause(long millis) throws InterruptedException {
+        long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+        long wait = Math.min(millis, remaining);
+        if (wait > 0) {
+            Thread.sleep(wait);
+        }
+    }
+
+    /**
+     * Chiude la connessione corrente, ignorando eventuali errori.
+     */
+    private void close() {
+        Connection current = connection;
+        connection = null;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException ignored) {
+                // La connessione è già chiusa.
+            }
+        }
+    }
+
+    /**
+     * La classe attende la risposta a una singola richiesta.
+     */
+    private static class Reply implements ResponseHandler {
+
+        /**
+         * Viene decrementato alla ricezione della risposta.
+         */
+        private final CountDownLatch latch = new CountDownLatch(1);
+
+        /**
+         * Risposta ricevuta.
+         */
+        private volatile Frame response;
+
+        /**
+         * Errore ricevuto, {@code null} se la richiesta ha avuto successo.
+         */
+        private volatile IOException error;
+
+        @Override
+        public void onResponse(Frame response) {
+            this.response = response;
+            latch.countDown();
+        }
+
+        @Override
+        public void onError(IOException e) {
+            error = e;
+            latch.countDown();
+        }
+    }
+}
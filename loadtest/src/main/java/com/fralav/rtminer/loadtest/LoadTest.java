@@ -0,0 +1,330 @@
+package com.fralav.rtminer.loadtest;
+
+import com.fralav.rtminer.client.protocol.ConnectionOptions;
+import com.fralav.rtminer.client.protocol.LatencyHistogram;
+import com.fralav.rtminer.client.protocol.OperationStats;
+import com.fralav.rtminer.client.protocol.StreamGovernor;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * La classe implementa un generatore di carico per il server: avvia il numero di sessioni concorrenti
+ * indicato dalle opzioni, ognuna delle quali ripete i flussi dell'app tramite {@link LoadSession}, e
+ * a intervalli regolari riporta il numero di flussi e di richieste al secondo, i percentili dei tempi,
+ * gli errori e la memoria occupata per sessione. La memoria comprende gli oggetti trattenuti dagli
+ * stream della serializzazione Java, che il server trattiene in modo speculare: se crescono durante
+ * una prova lunga, gli stream non vengono azzerati.
+ * <p>
+ * Il generatore può essere avviato dalla riga di comando, ad esempio con
+ * {@code gradlew :loadtest:run --args="--host 10.0.0.5 --port 8080 --sessions 50 --duration 3600"}.
+ */
+public class LoadTest {
+
+    /**
+     * Opzioni della prova.
+     */
+    private final LoadOptions options;
+
+    /**
+     * Opzioni delle connessioni, condivise da tutte le sessioni, che raccolgono i tempi e i byte di
+     * ogni task.
+     */
+    private final ConnectionOptions connectionOptions;
+
+    /**
+     * Sessioni della prova.
+     */
+    private final List<LoadSession> sessions = new ArrayList<>();
+
+    /**
+     * Tempi dei flussi completati.
+     */
+    private final LatencyHistogram workflowLatency = new LatencyHistogram();
+
+    /**
+     * Numero di sessioni in corso.
+     */
+    private final AtomicInteger active = new AtomicInteger();
+
+    /**
+     * Numero di sessioni avviate, comprese quelle terminate.
+     */
+    private final AtomicInteger started = new AtomicInteger();
+
+    /**
+     * Numero di flussi completati.
+     */
+    private final AtomicLong completed = new AtomicLong();
+
+    /**
+     * Numero di flussi interrotti perché il server ha rifiutato la tabella o il file scelto.
+     */
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * Numero di flussi interrotti da un errore di comunicazione.
+     */
+    private final AtomicLong failures = new AtomicLong();
+
+    /**
+     * Messaggio dell'ultimo errore di comunicazione.
+     */
+    private volatile String lastFailure;
+
+    /**
+     * Inizializza gli attributi d'istanza a partire dalle opzioni della prova.
+     * @param options Opzioni della prova.
+     */
+    public LoadTest(LoadOptions options) {
+        this.options = options;
+        this.connectionOptions = new ConnectionOptions((int) Math.min(options.getRequestTimeoutMillis(),
+                Integer.MAX_VALUE));
+        connectionOptions.setCodec(options.getCodec());
+        connectionOptions.setNioTransport(options.isNio());
+        if (options.getCompressionThreshold() != null) {
+            connectionOptions.setCompressionThreshold(options.getCompressionThreshold());
+        }
+        if (options.getStreamResetMessages() > 0 || options.getStreamResetBytes() > 0) {
+            connectionOptions.setStreamReset(options.getStreamResetMessages() > 0
+                            ? options.getStreamResetMessages() : connectionOptions.getStreamResetMessages(),
+                    options.getStreamResetBytes() > 0
+                            ? options.getStreamResetBytes() : connectionOptions.getStreamResetBytes());
+        }
+    }
+
+    /**
+     * Esegue la prova con le opzioni specificate dalla riga di comando. Il processo termina con
+     * codice {@code 1} se nessun flusso è stato completato.
+     * @param args Opzioni della prova, descritte da {@link LoadOptions#parse(String[])}.
+     * @throws InterruptedException Se il thread viene interrotto.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        LoadOptions options;
+        try {
+            options = LoadOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+            return;
+        }
+        LoadTest test = new LoadTest(options);
+        test.run(System.out);
+        System.exit(test.completed.get() > 0 ? 0 : 1);
+    }
+
+    /**
+     * Esegue la prova: avvia le sessioni distribuendone l'avvio nel tempo indicato dalle opzioni,
+     * riporta i risultati intermedi e, quando tutte le sessioni sono terminate, il resoconto finale.
+     * @param out Stream sul quale scrivere i resoconti.
+     * @throws InterruptedException Se il thread viene interrotto.
+     */
+    public void run(PrintStream out) throws InterruptedException {
+        out.println("Prova di carico: " + options);
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.SECONDS.toNanos(options.getDurationSeconds());
+        long rampUp = TimeUnit.SECONDS.toNanos(options.getRampUpSeconds());
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < options.getSessions(); i++) {
+            LoadSession session = new LoadSession(this, connectionOptions, i, deadline);
+            synchronized (sessions) {
+                sessions.add(session);
+            }
+            Thread thread = new Thread(session, "LoadSession-" + i);
+            thread.setDaemon(true);
+            threads.add(thread);
+        }
+        long reportInterval = TimeUnit.SECONDS.toNanos(options.getReportSeconds());
+        long nextReport = start + reportInterval;
+        Snapshot first = new Snapshot(start);
+        Snapshot previous = first;
+        int launched = 0;
+        while (true) {
+            long now = System.nanoTime();
+            while (launched < threads.size()
+                    && (rampUp == 0 || now - start >= rampUp * launched / threads.size())) {
+                threads.get(launched++).start();
+            }
+            if (launched == threads.size() && active.get() == 0 && now >= deadline) {
+                break;
+            }
+            if (now >= nextReport) {
+                Snapshot current = new Snapshot(now);
+                out.println(current.describe(previous, start));
+                previous = current;
+                nextReport += reportInterval;
+            }
+            Thread.sleep(100);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        out.println(report(first));
+    }
+
+    /**
+     * Restituisce le opzioni della prova.
+     * @return {@code options}
+     */
+    LoadOptions getOptions() {
+        return options;
+    }
+
+    /**
+     * Registra l'avvio di una sessione.
+     */
+    void onSessionStarted() {
+        started.incrementAndGet();
+        active.incrementAndGet();
+    }
+
+    /**
+     * Registra il termine di una sessione.
+     */
+    void onSessionFinished() {
+        active.decrementAndGet();
+    }
+
+    /**
+     * Registra una nuova connessione.
+     * @param nanos Tempo, in nanosecondi, impiegato per stabilire la connessione.
+     */
+    void onConnected(long nanos) {
+        connectionOptions.getOperationStats().recordConnect(nanos);
+    }
+
+    /**
+     * Registra il termine di un flusso.
+     * @param success {@code true} se il flusso è stato completato, {@code false} se il server ha
+     *                rifiutato la tabella o il file scelto.
+     * @param nanos Durata del flusso, in nanosecondi.
+     */
+    void onWorkflow(boolean success, long nanos) {
+        if (success) {
+            completed.incrementAndGet();
+            workflowLatency.record(nanos);
+        } else {
+            rejected.incrementAndGet();
+        }
+    }
+
+    /**
+     * Registra un flusso interrotto da un errore di comunicazione.
+     * @param e Errore che ha interrotto il flusso.
+     */
+    void onFailure(IOException e) {
+        failures.incrementAndGet();
+        lastFailure = String.valueOf(e);
+    }
+
+    /**
+     * Restituisce il resoconto finale della prova.
+     * @param first Stato all'inizio della prova.
+     * @return Resoconto finale.
+     */
+    private String report(Snapshot first) {
+        Snapshot end = new Snapshot(System.nanoTime());
+        StringBuilder builder = new StringBuilder();
+        builder.append("Resoconto finale").append(System.lineSeparator());
+        builder.append(end.describe(first, first.time)).append(System.lineSeparator());
+        builder.append(String.format(Locale.ROOT,
+                "flussi completati: p50 %.1f ms, p90 %.1f ms, p99 %.1f ms, max %.1f ms%n",
+                workflowLatency.getPercentileMillis(50), workflowLatency.getPercentileMillis(90),
+                workflowLatency.getPercentileMillis(99), workflowLatency.getMaxMillis()));
+        builder.append(connectionOptions.getOperationStats());
+        if (lastFailure != null) {
+            builder.append("ultimo errore: ").append(lastFailure).append(System.lineSeparator());
+        }
+        return builder.toString().trim();
+    }
+
+    /**
+     * La classe raccoglie lo stato della prova in un istante, in modo da calcolare le velocità
+     * rispetto allo stato precedente.
+     */
+    private class Snapshot {
+
+        /**
+         * Istante, in nanosecondi.
+         */
+        private final long time;
+
+        /**
+         * Numero di flussi completati.
+         */
+        private final long workflows;
+
+        /**
+         * Numero di richieste con risposta, con successo o con errore.
+         */
+        private final long requests;
+
+        /**
+         * Numero di richieste concluse con un errore.
+         */
+        private final long errors;
+
+        /**
+         * Inizializza lo stato leggendo i contatori correnti.
+         * @param time Istante, in nanosecondi.
+         */
+        Snapshot(long time) {
+            this.time = time;
+            this.workflows = completed.get();
+            OperationStats stats = connectionOptions.getOperationStats();
+            long requests = 0;
+            long errors = 0;
+            for (int task : stats.getTasks()) {
+                requests += stats.getTotalLatency(task).getCount();
+                errors += stats.getErrors(task);
+            }
+            this.requests = requests;
+            this.errors = errors;
+        }
+
+        /**
+         * Descrive lo stato della prova e le velocità rispetto allo stato precedente.
+         * @param previous Stato precedente.
+         * @param start Istante di inizio della prova, in nanosecondi.
+         * @return Descrizione dello stato.
+         */
+        String describe(Snapshot previous, long start) {
+            double seconds = Math.max(time - previous.time, 1) / 1e9;
+            long handles = 0;
+            long bytes = 0;
+            long maxBytes = 0;
+            int governed = 0;
+            synchronized (sessions) {
+                for (LoadSession session : sessions) {
+                    StreamGovernor governor = session.getStreamGovernor();
+                    if (governor != null) {
+                        governed++;
+                        handles += governor.getRetainedHandles();
+                        bytes += governor.getRetainedBytes();
+                        maxBytes = Math.max(maxBytes, governor.getRetainedBytes());
+                    }
+                }
+            }
+            Runtime runtime = Runtime.getRuntime();
+            long heap = runtime.totalMemory() - runtime.freeMemory();
+            int running = Math.max(started.get(), 1);
+            return String.format(Locale.ROOT,
+                    "[%5d s] sessioni %d, flussi %d (%.1f/s), richieste %d (%.1f/s), errori %d (%.2f%%), "
+                            + "rifiutati %d, interrotti %d, heap %.1f MB (%.1f KB/sessione), "
+                            + "stream trattenuti %.0f oggetti e %.1f KB/sessione (max %.1f KB)",
+                    TimeUnit.NANOSECONDS.toSeconds(time - start), active.get(), workflows,
+                    (workflows - previous.workflows) / seconds, requests,
+                    (requests - previous.requests) / seconds, errors,
+                    requests == 0 ? 0 : errors * 100.0 / requests, rejected.get(), failures.get(),
+                    heap / 1048576.0, heap / 1024.0 / running,
+                    governed == 0 ? 0 : (double) handles / governed,
+                    governed == 0 ? 0 : bytes / 1024.0 / governed, maxBytes / 1024.0);
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package com.fralav.rtminer.client.protocol;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+
+/**
+ * La classe implementa il lato server di una connessione, utilizzando gli stessi codec del client:
+ * riconosce se il client chiede la versione del protocollo oppure utilizza il protocollo originale,
+ * concorda la versione, la soglia di compressione e il codec, e poi legge e scrive frame oppure, con
+ * il protocollo originale, oggetti. Si trova nel package del protocollo per poter accedere ai codec,
+ * che non fanno parte dell'interfaccia pubblica del client. I metodi non sono sincronizzati: ogni
+ * connessione deve essere servita da un unico thread.
+ */
+public class ServerConnection implements Closeable {
+
+    /**
+     * Socket connesso al client.
+     */
+    private final Socket socket;
+
+    /**
+     * Conta i byte scritti verso il client.
+     */
+    private final CountingOutputStream output;
+
+    /**
+     * Conta i byte letti dal client.
+     */
+    private final CountingInputStream input;
+
+    /**
+     * Oggetto di output stream.
+     */
+    private final ObjectOutputStream out;
+
+    /**
+     * Oggetto di input stream.
+     */
+    private final ObjectInputStream in;
+
+    /**
+     * Contatori dei codec della connessione.
+     */
+    private final CodecStats stats = new CodecStats();
+
+    /**
+     * Codec concordato con il client, {@code null} con il protocollo originale.
+     */
+    private FrameCodec codec;
+
+    /**
+     * Versione del protocollo concordata con il client.
+     */
+    private int version = Protocol.PROTOCOL_LEGACY;
+
+    /**
+     * Primo oggetto inviato da un client che utilizza il protocollo originale, restituito dalla prima
+     * chiamata a {@link #readObject()}; {@code null} se è già stato letto.
+     */
+    private Object first;
+
+    /**
+     * Inizializza gli attributi d'istanza con quelli passati in input e crea gli stream della
+     * serializzazione Java, utilizzati almeno fino alla fine della negoziazione.
+     * @param socket Socket connesso al client.
+     * @param in Stream dal quale leggere i byte inviati dal client.
+     * @param out Stream sul quale scrivere i byte destinati al client, ad esempio limitato in banda.
+     * @throws IOException Se non è possibile creare gli stream.
+     */
+    public ServerConnection(Socket socket, InputStream in, OutputStream out) throws IOException {
+        this.socket = socket;
+        this.output = new CountingOutputStream(out);
+        this.input = new CountingInputStream(in);
+        this.out = new ObjectOutputStream(output);
+        this.out.flush();
+        this.in = new ObjectInputStream(input);
+    }
+
+    /**
+     * Legge il primo oggetto inviato dal client: se è il task {@link Protocol#TASK_HELLO}, concorda
+     * la versione del protocollo e, a seconda della versione, la soglia di compressione e il codec;
+     * altrimenti il client utilizza il protocollo originale e l'oggetto verrà restituito da
+     * {@link #readObject()}.
+     * @param maxVersion Versione più recente supportata dal server: se è
+     *                   {@link Protocol#PROTOCOL_LEGACY}, il server si comporta come il server
+     *                   originale e chiude la connessione alla richiesta della versione.
+     * @param binary {@code true} se il server accetta il codec binario.
+     * @param compressionThreshold Soglia di compressione del server, negativa per non comprimere.
+     * @throws IOException Se si verifica un errore di comunicazione, se il client invia valori non
+     * validi o se il server non supporta la negoziazione.
+     */
+    public void handshake(int maxVersion, boolean binary, int compressionThreshold) throws IOException {
+        Object hello = readRaw();
+        if (!Integer.valueOf(Protocol.TASK_HELLO).equals(hello)) {
+            first = hello;
+            return;
+        }
+        if (maxVersion < Protocol.PROTOCOL_FRAMED) {
+            throw new IOException("Negoziazione non supportata");
+        }
+        writeRaw(maxVersion);
+        Object chosen = readRaw();
+        if (!(chosen instanceof Integer) || (Integer) chosen < Protocol.PROTOCOL_FRAMED
+                || (Integer) chosen > maxVersion) {
+            throw new IOException("Versione non valida: " + chosen);
+        }
+        version = (Integer) chosen;
+        writeRaw(version);
+        int threshold = -1;
+        if (version >= Protocol.PROTOCOL_COMPRESSION) {
+            Object proposed = readRaw();
+            if (!(proposed instanceof Integer)) {
+                throw new IOException("Soglia di compressione non valida: " + proposed);
+            }
+            threshold = (Integer) proposed < 0 || compressionThreshold < 0
+                    ? -1 : Math.max((Integer) proposed, compressionThreshold);
+            writeRaw(threshold);
+        }
+        int chosenCodec = Protocol.CODEC_JAVA;
+        if (version >= Protocol.PROTOCOL_CODEC) {
+            Object preferred = readRaw();
+            chosenCodec = binary && Integer.valueOf(Protocol.CODEC_BINARY).equals(preferred)
+                    ? Protocol.CODEC_BINARY : Protocol.CODEC_JAVA;
+            writeRaw(chosenCodec);
+        }
+        if (chosenCodec == Protocol.CODEC_BINARY) {
+            FrameCompression compression = threshold >= 0 ? new FrameCompression(threshold, stats) : null;
+            codec = new BinaryFrameCodec(input, output, stats, compression);
+        } else {
+            codec = new ObjectFrameCodec(in, out, input, output, stats, new StreamGovernor(
+                    StreamGovernor.DEFAULT_MAX_MESSAGES, StreamGovernor.DEFAULT_MAX_BYTES));
+        }
+    }
+
+    /**
+     * Restituisce la versione del protocollo concordata con il client.
+     * @return {@code version}
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Restituisce il codec concordato con il client.
+     * @return Una delle costanti {@code CODEC_*} di {@link Protocol}.
+     */
+    public int getCodec() {
+        return codec != null ? codec.getId() : Protocol.CODEC_JAVA;
+    }
+
+    /**
+     * Restituisce {@code true} se il client utilizza il protocollo a frame.
+     * @return {@code true} se la versione concordata è almeno {@link Protocol#PROTOCOL_FRAMED}.
+     */
+    public boolean isFramed() {
+        return codec != null;
+    }
+
+    /**
+     * Legge il frame successivo inviato dal client. Disponibile solo con il protocollo a frame.
+     * @return Frame ricevuto.
+     * @throws IOException Se si verifica un errore di comunicazione.
+     */
+    public Frame readFrame() throws IOException {
+        return codec.read();
+    }
+
+    /**
+     * Scrive un frame. Disponibile solo con il protocollo a frame.
+     * @param frame Frame da inviare.
+     * @throws IOException Se si verifica un errore di comunicazione.
+     */
+    public void writeFrame(Frame frame) throws IOException {
+        codec.write(frame);
+    }
+
+    /**
+     * Azzera lo stream di output della serializzazione Java, come richiesto dal task
+     * {@link Protocol#TASK_RESET_STREAM}: il marcatore precede il frame scritto subito dopo.
+     * @throws IOException Se si verifica un errore di comunicazione.
+     */
+    public void resetStream() throws IOException {
+        if (codec == null || codec.getId() == Protocol.CODEC_JAVA) {
+            out.reset();
+        }
+    }
+
+    /**
+     * Legge l'oggetto successivo inviato da un client che utilizza il protocollo originale.
+     * @return Oggetto ricevuto.
+     * @throws IOException Se si verifica un errore di comunicazione.
+     */
+    public Object readObject() throws IOException {
+        if (first != null) {
+            Object value = first;
+            first = null;
+            return value;
+        }
+        return readRaw();
+    }
+
+    /**
+     * Scrive un oggetto destinato a un client che utilizza il protocollo originale.
+     * @param value Oggetto da inviare.
+     * @throws IOException Se si verifica un errore di comunicazione.
+     */
+    public void writeObject(Object value) throws IOException {
+        writeRaw(value);
+    }
+
+    /**
+     * Restituisce i contatori dei codec della connessione.
+     * @return {@code stats}
+     */
+    public CodecStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Restituisce il numero di byte scritti verso il client.
+     * @return Numero di byte scritti.
+     */
+    public long getBytesWritten() {
+        return output.getCount();
+    }
+
+    /**
+     * Restituisce il numero di byte letti dal client.
+     * @return Numero di byte letti.
+     */
+    public long getBytesRead() {
+        return input.getCount();
+    }
+
+    /**
+     * Chiude il socket, e quindi la connessione con il client.
+     * @throws IOException Se si verifica un errore durante la chiusura.
+     */
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    /**
+     * Legge un oggetto tramite la serializzazione Java.
+     * @return Oggetto ricevuto.
+     * @throws IOException Se si verifica un errore di comunicazione.
+     */
+    private Object readRaw() throws IOException {
+        try {
+            return in.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e.getMessage());
+        }
+    }
+
+    /**
+     * Scrive un oggetto tramite la serializzazione Java.
+     * @param value Oggetto da inviare.
+     * @throws IOException Se si verifica un errore di comunicazione.
+     */
+    private void writeRaw(Object value) throws IOException {
+        out.writeObject(value);
+        out.flush();
+    }
+}
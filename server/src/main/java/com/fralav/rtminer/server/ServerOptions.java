@@ -0,0 +1,393 @@
+package com.fralav.rtminer.server;
+
+import com.fralav.rtminer.client.protocol.Protocol;
+
+/**
+ * La classe raccoglie le opzioni del server sostitutivo: i dati sintetici serviti, le versioni del
+ * protocollo supportate e i disturbi di rete da simulare. Le opzioni vengono lette dagli argomenti
+ * della riga di comando, nella forma {@code --nome valore}; quelle non specificate mantengono il
+ * valore predefinito, che corrisponde a un server veloce e affidabile.
+ */
+public class ServerOptions {
+
+    /**
+     * Porta sulla quale il server resta in ascolto, {@code 0} per una porta libera qualsiasi.
+     */
+    private int port = 8080;
+
+    /**
+     * Seme dei valori casuali: a parità di seme, il server produce gli stessi alberi e gli stessi
+     * disturbi.
+     */
+    private long seed = 42;
+
+    /**
+     * Numero di tabelle del database simulato, ovvero anche numero di file dell'archivio.
+     */
+    private int tables = 20;
+
+    /**
+     * Numero di livelli di split degli alberi.
+     */
+    private int depth = 6;
+
+    /**
+     * Numero di figli degli split discreti, almeno {@code 2}.
+     */
+    private int fanOut = 3;
+
+    /**
+     * Versione più recente del protocollo supportata: con {@link Protocol#PROTOCOL_LEGACY} il server
+     * si comporta come il server originale.
+     */
+    private int maxVersion = Protocol.PROTOCOL_VERSION;
+
+    /**
+     * {@code true} se il server accetta il codec binario.
+     */
+    private boolean binary = true;
+
+    /**
+     * Soglia di compressione del server, negativa per non comprimere.
+     */
+    private int compressionThreshold = 1024;
+
+    /**
+     * Ritardo aggiunto a ogni risposta, in millisecondi.
+     */
+    private long latencyMillis;
+
+    /**
+     * Variazione massima casuale del ritardo, in millisecondi.
+     */
+    private long jitterMillis;
+
+    /**
+     * Banda massima verso ogni client, in byte al secondo; {@code 0} per non limitarla.
+     */
+    private long bytesPerSecond;
+
+    /**
+     * Probabilità che il server chiuda la connessione anziché rispondere a una richiesta.
+     */
+    private double dropRate;
+
+    /**
+     * Numero di risposte dopo le quali il server chiude ogni connessione; {@code 0} per non chiuderla.
+     */
+    private int dropAfter;
+
+    /**
+     * Legge le opzioni dagli argomenti della riga di comando.
+     * @param args Argomenti, nella forma {@code --nome valore}.
+     * @return Opzioni lette.
+     * @throws IllegalArgumentException Se un'opzione non esiste o ha un valore non valido.
+     */
+    public static ServerOptions parse(String[] args) {
+        ServerOptions options = new ServerOptions();
+        for (int i = 0; i < args.length; i++) {
+            String name = args[i];
+            if (name.equals("--no-binary")) {
+                options.binary = false;
+                continue;
+            }
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Valore mancante per " + name);
+            }
+            String value = args[++i];
+            try {
+                switch (name) {
+                    case "--port":
+                        options.setPort(Integer.parseInt(value));
+                        break;
+                    case "--seed":
+                        options.setSeed(Long.parseLong(value));
+                        break;
+                    case "--tables":
+                        options.setTables(Integer.parseInt(value));
+                        break;
+                    case "--depth":
+                        options.setDepth(Integer.parseInt(value));
+                        break;
+                    case "--fan-out":
+                        options.setFanOut(Integer.parseInt(value));
+                        break;
+                    case "--version":
+                        options.setMaxVersion(Integer.parseInt(value));
+                        break;
+                    case "--compression":
+                        options.setCompressionThreshold(Integer.parseInt(value));
+                        break;
+                    case "--latency":
+                        options.setLatency(Long.parseLong(value), options.jitterMillis);
+                        break;
+                    case "--jitter":
+                        options.setLatency(options.latencyMillis, Long.parseLong(value));
+                        break;
+                    case "--bandwidth":
+                        options.setBytesPerSecond(Long.parseLong(value));
+                        break;
+                    case "--drop-rate":
+                        options.setDrops(Double.parseDouble(value), options.dropAfter);
+                        break;
+                    case "--drop-after":
+                        options.setDrops(options.dropRate, Integer.parseInt(value));
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Opzione sconosciuta: " + name);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Valore non valido per " + name + ": " + value);
+            }
+        }
+        return options;
+    }
+
+    /**
+     * Restituisce la porta sulla quale il server resta in ascolto.
+     * @return {@code port}
+     */
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * Imposta la porta sulla quale il server resta in ascolto.
+     * @param port Porta, {@code 0} per una porta libera qualsiasi.
+     * @throws IllegalArgumentException Se la porta non è valida.
+     */
+    public void setPort(int port) {
+        if (port < 0 || port > 65535) {
+            throw new IllegalArgumentException("Porta non valida: " + port);
+        }
+        this.port = port;
+    }
+
+    /**
+     * Restituisce il seme dei valori casuali.
+     * @return {@code seed}
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Imposta il seme dei valori casuali.
+     * @param seed Seme.
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Restituisce il numero di tabelle del database simulato.
+     * @return {@code tables}
+     */
+    public int getTables() {
+        return tables;
+    }
+
+    /**
+     * Imposta il numero di tabelle del database simulato, ovvero anche il numero di file dell'archivio.
+     * @param tables Numero di tabelle.
+     * @throws IllegalArgumentException Se il numero è negativo.
+     */
+    public void setTables(int tables) {
+        if (tables < 0) {
+            throw new IllegalArgumentException("Numero di tabelle non valido: " + tables);
+        }
+        this.tables = tables;
+    }
+
+    /**
+     * Restituisce il numero di livelli di split degli alberi.
+     * @return {@code depth}
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Imposta il numero di livelli di split degli alberi.
+     * @param depth Numero di livelli, da {@code 0} a {@code 24}.
+     * @throws IllegalArgumentException Se il numero non è valido.
+     */
+    public void setDepth(int depth) {
+        if (depth < 0 || depth > 24) {
+            throw new IllegalArgumentException("Profondità non valida: " + depth);
+        }
+        this.depth = depth;
+    }
+
+    /**
+     * Restituisce il numero di figli degli split discreti.
+     * @return {@code fanOut}
+     */
+    public int getFanOut() {
+        return fanOut;
+    }
+
+    /**
+     * Imposta il numero di figli degli split discreti.
+     * @param fanOut Numero di figli, almeno {@code 2}.
+     * @throws IllegalArgumentException Se il numero non è valido.
+     */
+    public void setFanOut(int fanOut) {
+        if (fanOut < 2) {
+            throw new IllegalArgumentException("Numero di figli non valido: " + fanOut);
+        }
+        this.fanOut = fanOut;
+    }
+
+    /**
+     * Restituisce la versione più recente del protocollo supportata.
+     * @return {@code maxVersion}
+     */
+    public int getMaxVersion() {
+        return maxVersion;
+    }
+
+    /**
+     * Imposta la versione più recente del protocollo supportata.
+     * @param maxVersion Versione, da {@link Protocol#PROTOCOL_LEGACY} a
+     *                   {@link Protocol#PROTOCOL_VERSION}.
+     * @throws IllegalArgumentException Se la versione non è valida.
+     */
+    public void setMaxVersion(int maxVersion) {
+        if (maxVersion < Protocol.PROTOCOL_LEGACY || maxVersion > Protocol.PROTOCOL_VERSION) {
+            throw new IllegalArgumentException("Versione non valida: " + maxVersion);
+        }
+        this.maxVersion = maxVersion;
+    }
+
+    /**
+     * Restituisce {@code true} se il server accetta il codec binario.
+     * @return {@code binary}
+     */
+    public boolean isBinary() {
+        return binary;
+    }
+
+    /**
+     * Imposta se il server accetta il codec binario.
+     * @param binary {@code true} per accettare il codec binario.
+     */
+    public void setBinary(boolean binary) {
+        this.binary = binary;
+    }
+
+    /**
+     * Restituisce la soglia di compressione del server.
+     * @return {@code compressionThreshold}
+     */
+    public int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    /**
+     * Imposta la soglia di compressione del server.
+     * @param compressionThreshold Dimensione minima in byte dei frame da comprimere, negativa per non
+     *                             comprimere.
+     */
+    public void setCompressionThreshold(int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    /**
+     * Restituisce il ritardo aggiunto a ogni risposta.
+     * @return {@code latencyMillis}
+     */
+    public long getLatencyMillis() {
+        return latencyMillis;
+    }
+
+    /**
+     * Restituisce la variazione massima casuale del ritardo.
+     * @return {@code jitterMillis}
+     */
+    public long getJitterMillis() {
+        return jitterMillis;
+    }
+
+    /**
+     * Imposta il ritardo aggiunto a ogni risposta: il ritardo effettivo è scelto a caso tra
+     * {@code latencyMillis - jitterMillis} e {@code latencyMillis + jitterMillis}, senza scendere
+     * sotto lo zero.
+     * @param latencyMillis Ritardo medio, in millisecondi.
+     * @param jitterMillis Variazione massima, in millisecondi.
+     * @throws IllegalArgumentException Se un valore è negativo.
+     */
+    public void setLatency(long latencyMillis, long jitterMillis) {
+        if (latencyMillis < 0 || jitterMillis < 0) {
+            throw new IllegalArgumentException("Ritardo non valido");
+        }
+        this.latencyMillis = latencyMillis;
+        this.jitterMillis = jitterMillis;
+    }
+
+    /**
+     * Restituisce la banda massima verso ogni client.
+     * @return {@code bytesPerSecond}
+     */
+    public long getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    /**
+     * Imposta la banda massima verso ogni client.
+     * @param bytesPerSecond Byte al secondo, {@code 0} per non limitarla.
+     * @throws IllegalArgumentException Se il valore è negativo.
+     */
+    public void setBytesPerSecond(long bytesPerSecond) {
+        if (bytesPerSecond < 0) {
+            throw new IllegalArgumentException("Banda non valida: " + bytesPerSecond);
+        }
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    /**
+     * Restituisce la probabilità che il server chiuda la connessione anziché rispondere.
+     * @return {@code dropRate}
+     */
+    public double getDropRate() {
+        return dropRate;
+    }
+
+    /**
+     * Restituisce il numero di risposte dopo le quali il server chiude ogni connessione.
+     * @return {@code dropAfter}
+     */
+    public int getDropAfter() {
+        return dropAfter;
+    }
+
+    /**
+     * Imposta le chiusure simulate delle connessioni.
+     * @param dropRate Probabilità, da {@code 0} a {@code 1}, che il server chiuda la connessione
+     *                 anziché rispondere a una richiesta.
+     * @param dropAfter Numero di risposte dopo le quali il server chiude ogni connessione, {@code 0}
+     *                  per non chiuderla.
+     * @throws IllegalArgumentException Se un valore non è valido.
+     */
+    public void setDrops(double dropRate, int dropAfter) {
+        if (!(dropRate >= 0 && dropRate <= 1) || dropAfter < 0) {
+            throw new IllegalArgumentException("Chiusure non valide");
+        }
+        this.dropRate = dropRate;
+        this.dropAfter = dropAfter;
+    }
+
+    /**
+     * Restituisce una descrizione delle opzioni, riportata all'avvio del server.
+     * @return Descrizione delle opzioni.
+     */
+    @Override
+    public String toString() {
+        return "porta " + port + ", seme " + seed + ", " + tables + " tabelle, alberi " + fanOut + "x"
+                + depth + ", versione " + maxVersion + (binary ? "" : " senza codec binario")
+                + ", compressione " + (compressionThreshold < 0 ? "disattivata" : compressionThreshold + " B")
+                + ", ritardo " + latencyMillis + "+/-" + jitterMillis + " ms, banda "
+                + (bytesPerSecond == 0 ? "illimitata" : bytesPerSecond + " B/s")
+                + ", chiusure " + dropRate + (dropAfter == 0 ? "" : " e dopo " + dropAfter + " risposte");
+    }
+}
@@ -0,0 +1,622 @@
+package com.fralav.rtminer.server;
+
+import com.fralav.rtminer.client.protocol.Frame;
+import com.fralav.rtminer.client.protocol.Protocol;
+import com.fralav.rtminer.client.protocol.ServerConnection;
+import com.fralav.rtminer.client.tree.FlatTree;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.Random;
+
+/**
+ * La classe serve un singolo client, dalla connessione fino alla sua chiusura, come
+ * farebbe il server reale: esegue i task del protocollo originale, dal task
+ * {@link Protocol#TASK_GET_TABLES_FROM_DB} al task {@link Protocol#TASK_PREDICT_ANSWER}, e tutti
+ * i task del protocollo a frame, compresi quelli che restituiscono il risultato a blocchi. Agli altri
+ * task risponde con un frame {@link Frame#ERROR}, come un server che non li conosce. Prima di ogni
+ * risposta e di ogni blocco vengono applicati il ritardo e le chiusure simulate previsti dalle
+ * opzioni.
+ */
+class Session implements Runnable {
+
+    /**
+     * Risposta ai task eseguiti con successo.
+     */
+    private static final String OK = "ok";
+
+    /**
+     * Risposta all'apprendimento da una tabella non valida.
+     */
+    private static final String DATA_ERROR = "dataError";
+
+    /**
+     * Risposta all'apprendimento da una tabella che non esiste.
+     */
+    private static final String TABLE_NOT_FOUND = "tableNotFound";
+
+    /**
+     * Risposta alla lettura di un file che non esiste.
+     */
+    private static final String FILE_NOT_FOUND = "fileNotFound";
+
+    /**
+     * Connessione con il client.
+     */
+    private final ServerConnection connection;
+
+    /**
+     * Tabelle, file e alberi serviti.
+     */
+    private final SyntheticCatalog catalog;
+
+    /**
+     * Opzioni del server.
+     */
+    private final ServerOptions options;
+
+    /**
+     * Generatore dei ritardi e delle chiusure simulate.
+     */
+    private final Random random;
+
+    /**
+     * Albero caricato, {@code null} se il client non ne ha ancora scelto uno.
+     */
+    private SyntheticTree tree;
+
+    /**
+     * Nodo corrente della fase di predizione, {@code -1} se non è in corso alcuna predizione.
+     */
+    private int node = -1;
+
+    /**
+     * Numero di risposte inviate al client.
+     */
+    private int responses;
+
+    /**
+     * Richieste ricevute mentre un task a blocchi attendeva un frame {@link Frame#CREDIT}, da eseguire
+     * al suo termine nell'ordine di arrivo.
+     */
+    private final Queue<Frame> pending = new ArrayDeque<>();
+
+    /**
+     * Inizializza gli attributi d'istanza con quelli passati in input.
+     * @param connection Connessione con il client.
+     * @param catalog Tabelle, file e alberi serviti.
+     * @param options Opzioni del server.
+     * @param number Numero progressivo della connessione, che insieme al seme determina i disturbi.
+     */
+    Session(ServerConnection connection, SyntheticCatalog catalog, ServerOptions options, int number) {
+        this.connection = connection;
+        this.catalog = catalog;
+        this.options = options;
+        this.random = new Random(options.getSeed() * 31 + number);
+    }
+
+    /**
+     * Concorda il protocollo con il client e ne esegue le richieste, finché il client non chiude la
+     * connessione o il server non simula una chiusura.
+     */
+    @Override
+    public void run() {
+        try (ServerConnection client = connection) {
+            client.handshake(options.getMaxVersion(), options.isBinary(), options.getCompressionThreshold());
+            if (client.isFramed()) {
+                serveFrames();
+            } else {
+                serveObjects();
+            }
+        } catch (IOException | RuntimeException ignored) {
+            // Il client ha chiuso la connessione, ha inviato dati non validi oppure il server ha
+            // simulato una chiusura.
+        }
+    }
+
+    /**
+     * Esegue le richieste di un client che utilizza il protocollo a frame. I task
+     * {@link Protocol#TASK_PREDICT_BATCH} e {@link Protocol#TASK_PRINT_TREE_STREAM} restituiscono il
+     * risultato a blocchi; i frame di controllo che non riguardano un task a blocchi in corso vengono
+     * ignorati.
+     * @throws IOException Se si verifica un errore di comunicazione o una chiusura simulata.
+     */
+    private void serveFrames() throws IOException {
+        while (true) {
+            Frame request = pending.isEmpty() ? connection.readFrame() : pending.remove();
+            if (request.getType() != Frame.REQUEST) {
+                continue;
+            }
+            Frame response;
+            try {
+                int task = request.getTask();
+                Object[] args = request.getValues();
+                if (task == Protocol.TASK_PREDICT_BATCH) {
+                    response = stream(request, predictBatch(args), intArgument(args, 2),
+                            intArgument(args, 3));
+                } else if (task == Protocol.TASK_PRINT_TREE_STREAM) {
+                    response = stream(request, printLines(), intArgument(args, 0), intArgument(args, 1));
+                } else {
+                    response = new Frame(request.getId(), Frame.RESPONSE, task, execute(task, args));
+                }
+            } catch (TaskException e) {
+                response = new Frame(request.getId(), Frame.ERROR, request.getTask(), e.getMessage());
+            }
+            disturb();
+            connection.writeFrame(response);
+        }
+    }
+
+    /**
+     * Invia al client il risultato di un task a blocchi con frame {@link Frame#CHUNK}, ognuno
+     * contenente l'indice del primo elemento del blocco e gli elementi, senza superare il numero di
+     * blocchi concesso dal client: esaurito il credito, attende un frame {@link Frame#CREDIT} della
+     * stessa richiesta, mentre le altre richieste ricevute nel frattempo vengono eseguite al termine.
+     * Un frame {@link Frame#CANCEL} interrompe l'invio.
+     * @param request Richiesta del task.
+     * @param items Elementi del risultato, un array {@code double[]} oppure una {@code List<String>}.
+     * @param size Numero massimo di elementi per blocco.
+     * @param credits Numero di blocchi che possono essere inviati prima di attendere un credito.
+     * @return Frame {@link Frame#END} che chiude il risultato, con il numero di elementi.
+     * @throws TaskException Se il numero di elementi per blocco o il credito non sono validi.
+     * @throws IOException Se si verifica un errore di comunicazione o una chiusura simulata.
+     */
+    private Frame stream(Frame request, Object items, int size, int credits)
+            throws TaskException, IOException {
+        if (size <= 0 || credits <= 0) {
+            throw new TaskException("Dimensione dei blocchi o credito non validi");
+        }
+        int total = items instanceof double[] ? ((double[]) items).length : ((List<?>) items).size();
+        boolean cancelled = false;
+        for (int first = 0; first < total && !cancelled; first += size) {
+            while (credits == 0 && !cancelled) {
+                Frame control = connection.readFrame();
+                if (control.getType() == Frame.REQUEST) {
+                    pending.add(control);
+                } else if (control.getId() == request.getId() && control.getType() == Frame.CREDIT) {
+                    credits += ((Number) control.getValues()[0]).intValue();
+                } else if (control.getId() == request.getId() && control.getType() == Frame.CANCEL) {
+                    cancelled = true;
+                }
+            }
+            if (!cancelled) {
+                int last = Math.min(total, first + size);
+                Object chunk = items instanceof double[] ? Arrays.copyOfRange((double[]) items, first, last)
+                        : new ArrayList<>(((List<?>) items).subList(first, last));
+                disturb();
+                connection.writeFrame(new Frame(request.getId(), Frame.CHUNK, request.getTask(), first,
+                        chunk));
+                credits--;
+            }
+        }
+        return new Frame(request.getId(), Frame.END, request.getTask(), total);
+    }
+
+    /**
+     * Esegue le richieste di un client che utilizza il protocollo originale: il client invia l'ID del
+     * task seguito dall'eventuale argomento, tranne durante la fase di predizione, nella quale invia
+     * solo il figlio scelto dall'utente. I valori della risposta vengono inviati uno dopo l'altro; in
+     * caso di errore viene inviato il solo messaggio.
+     * @throws IOException Se si verifica un errore di comunicazione o una chiusura simulata.
+     */
+    private void serveObjects() throws IOException {
+        while (true) {
+            Object received = connection.readObject();
+            int task;
+            Object[] args;
+            if (node >= 0) {
+                task = Protocol.TASK_PREDICT_ANSWER;
+                args = new Object[] {received};
+            } else if (received instanceof Integer) {
+                task = (Integer) received;
+                args = task == Protocol.TASK_LEARN_TREE_FROM_DB || task == Protocol.TASK_GET_TREE_FROM_FILE
+                        ? new Object[] {connection.readObject()} : new Object[0];
+            } else {
+                throw new IOException("Task non valido: " + received);
+            }
+            Object[] values;
+            try {
+                if (task > Protocol.TASK_PREDICT_ANSWER) {
+                    throw new TaskException("Task " + task + " non supportato dal protocollo originale");
+                }
+                values = execute(task, args);
+            } catch (TaskException e) {
+                values = new Object[] {e.getMessage()};
+            }
+            disturb();
+            for (Object value : values) {
+                connection.writeObject(value);
+            }
+        }
+    }
+
+    /**
+     * Esegue un task.
+     * @param task ID del task.
+     * @param args Argomenti del task.
+     * @return Valori della risposta.
+     * @throws TaskException Se il task non è supportato o non può essere eseguito.
+     * @throws IOException Se non è possibile azzerare lo stream di output.
+     */
+    private Object[] execute(int task, Object[] args) throws TaskException, IOException {
+        switch (task) {
+            case Protocol.TASK_GET_TABLES_FROM_DB:
+                return new Object[] {catalog.getTables()};
+            case Protocol.TASK_GET_FILES_FROM_ARCHIVE:
+                return new Object[] {catalog.getFiles()};
+            case Protocol.TASK_LEARN_TREE_FROM_DB:
+                return new Object[] {learn(String.valueOf(argument(args, 0)))};
+            case Protocol.TASK_GET_TREE_FROM_FILE:
+                return new Object[] {load(String.valueOf(argument(args, 0)))};
+            case Protocol.TASK_PRINT_TREE:
+                return new Object[] {loadedTree().getText()};
+            case Protocol.TASK_PREDICT_TREE:
+                loadedTree();
+                node = 0;
+                return step();
+            case Protocol.TASK_PREDICT_ANSWER:
+                return answer(argument(args, 0));
+            case Protocol.TASK_PING:
+                return new Object[0];
+            case Protocol.TASK_RESET_SESSION:
+                tree = null;
+                node = -1;
+                return new Object[0];
+            case Protocol.TASK_GET_TREE_STRUCTURE:
+                return structure(args.length > 0 ? args[0] : null);
+            case Protocol.TASK_LISTING_VERSION:
+                return new Object[] {Integer.toHexString(listing(intArgument(args, 0)).hashCode())};
+            case Protocol.TASK_LIST_PAGE:
+                return page(listing(intArgument(args, 0)), String.valueOf(argument(args, 1)),
+                        intArgument(args, 2), intArgument(args, 3));
+            case Protocol.TASK_GET_SUBTREE:
+                return subtree(argument(args, 0), intArgument(args, 1));
+            case Protocol.TASK_RESET_STREAM:
+                connection.resetStream();
+                return new Object[0];
+            default:
+                throw new TaskException("Task " + task + " non supportato");
+        }
+    }
+
+    /**
+     * Apprende l'albero dalla tabella specificata.
+     * @param table Nome della tabella.
+     * @return {@code ok}, {@code dataError} oppure {@code tableNotFound}.
+     */
+    private String learn(String table) {
+        if (!catalog.hasTable(table)) {
+            return TABLE_NOT_FOUND;
+        }
+        if (table.equals(SyntheticCatalog.CORRUPTED_TABLE)) {
+            return DATA_ERROR;
+        }
+        tree = catalog.getTree(table);
+        node = -1;
+        return OK;
+    }
+
+    /**
+     * Carica l'albero dal file specificato.
+     * @param file Nome del file.
+     * @return {@code ok} oppure {@code fileNotFound}.
+     */
+    private String load(String file) {
+        if (!catalog.hasFile(file)) {
+            return FILE_NOT_FOUND;
+        }
+        tree = catalog.getTree(file);
+        node = -1;
+        return OK;
+    }
+
+    /**
+     * Prosegue la fase di predizione con il figlio scelto dall'utente.
+     * @param child Posizione del figlio scelto.
+     * @return Passo successivo della fase di predizione.
+     * @throws TaskException Se non è in corso alcuna predizione o il figlio non è valido.
+     */
+    private Object[] answer(Object child) throws TaskException {
+        if (node < 0) {
+            throw new TaskException("Nessuna predizione in corso");
+        }
+        FlatTree flat = tree.getTree();
+        int position;
+        try {
+            position = Integer.parseInt(String.valueOf(child).trim());
+        } catch (NumberFormatException e) {
+            throw new TaskException("Risposta non valida: " + child);
+        }
+        if (position < 0 || position >= flat.getChildCount(node)) {
+            throw new TaskException("Risposta non valida: " + child);
+        }
+        node = flat.getChild(node, position);
+        return step();
+    }
+
+    /**
+     * Restituisce il passo della fase di predizione corrispondente al nodo corrente: la domanda e il
+     * numero di figli se il nodo è uno split, altrimenti il valore di predizione, che conclude la fase.
+     * @return Valori del passo di predizione.
+     */
+    private Object[] step() {
+        FlatTree flat = tree.getTree();
+        if (flat.isLeaf(node)) {
+            double prediction = flat.getPrediction(node);
+            node = -1;
+            return new Object[] {Protocol.PREDICTION, prediction};
+        }
+        return new Object[] {Protocol.QUERY, flat.getQuestion(node), flat.getChildCount(node)};
+    }
+
+    /**
+     * Restituisce la lista di nomi restituita dal task specificato.
+     * @param task {@link Protocol#TASK_GET_TABLES_FROM_DB} o {@link Protocol#TASK_GET_FILES_FROM_ARCHIVE}.
+     * @return Nomi delle tabelle o dei file.
+     * @throws TaskException Se il task non restituisce una lista di nomi.
+     */
+    private List<String> listing(int task) throws TaskException {
+        if (task == Protocol.TASK_GET_TABLES_FROM_DB) {
+            return catalog.getTables();
+        } else if (task == Protocol.TASK_GET_FILES_FROM_ARCHIVE) {
+            return catalog.getFiles();
+        }
+        throw new TaskException("Il task " + task + " non restituisce una lista di nomi");
+    }
+
+    /**
+     * Restituisce una pagina dei nomi che contengono la sottostringa specificata, senza distinzione
+     * tra maiuscole e minuscole.
+     * @param names Lista completa dei nomi.
+     * @param filter Sottostringa che i nomi devono contenere, vuota per tutti i nomi.
+     * @param offset Posizione del primo nome della pagina nella lista filtrata.
+     * @param limit Numero massimo di nomi della pagina.
+     * @return Numero complessivo di nomi filtrati e nomi della pagina.
+     * @throws TaskException Se la posizione o il numero di nomi non sono validi.
+     */
+    private static Object[] page(List<String> names, String filter, int offset, int limit)
+            throws TaskException {
+        if (offset < 0 || limit < 0) {
+            throw new TaskException("Pagina non valida");
+        }
+        String needle = filter.toLowerCase(Locale.ROOT);
+        List<String> matching = new ArrayList<>();
+        for (String name : names) {
+            if (name.toLowerCase(Locale.ROOT).contains(needle)) {
+                matching.add(name);
+            }
+        }
+        int from = Math.min(offset, matching.size());
+        int to = (int) Math.min(matching.size(), (long) from + limit);
+        return new Object[] {matching.size(), new ArrayList<>(matching.subList(from, to))};
+    }
+
+    /**
+     * Calcola la predizione dell'albero caricato per gli esempi della richiesta
+     * {@link Protocol#TASK_PREDICT_BATCH}. I valori degli attributi discreti vengono convertiti con
+     * {@link FlatTree#encode(int, String)}, quelli continui che non sono numeri diventano {@code NaN}.
+     * @param args Argomenti della richiesta.
+     * @return Predizione di ogni esempio.
+     * @throws TaskException Se non è stato caricato alcun albero o gli esempi non sono validi.
+     */
+    private double[] predictBatch(Object[] args) throws TaskException {
+        FlatTree flat = loadedTree().getTree();
+        int attributes = flat.getAttributes().size();
+        int columns = intArgument(args, 0);
+        Object cells = argument(args, 1);
+        if (columns != attributes || !(cells instanceof List) || ((List<?>) cells).size() % attributes != 0) {
+            throw new TaskException("Gli esempi devono avere " + attributes + " valori");
+        }
+        List<?> list = (List<?>) cells;
+        double[] values = new double[list.size()];
+        int index = 0;
+        for (Object cell : list) {
+            int column = index % attributes;
+            String value = String.valueOf(cell).trim();
+            if (flat.isDiscrete(column)) {
+                values[index] = flat.encode(column, value);
+            } else {
+                try {
+                    values[index] = Double.parseDouble(value);
+                } catch (NumberFormatException e) {
+                    values[index] = Double.NaN;
+                }
+            }
+            index++;
+        }
+        double[] predictions = new double[values.length / attributes];
+        for (int row = 0; row < predictions.length; row++) {
+            predictions[row] = flat.predict(values, row * attributes);
+        }
+        return predictions;
+    }
+
+    /**
+     * Restituisce le righe della rappresentazione testuale dell'albero caricato, inviate dal task
+     * {@link Protocol#TASK_PRINT_TREE_STREAM}.
+     * @return Righe della rappresentazione testuale.
+     * @throws TaskException Se non è stato caricato alcun albero.
+     */
+    private List<String> printLines() throws TaskException {
+        return Arrays.asList(loadedTree().getText().split("\n"));
+    }
+
+    /**
+     * Restituisce il sottoalbero dell'albero caricato che ha come radice il nodo indicato dal
+     * percorso, limitato al numero di livelli specificato, nel formato della risposta al task
+     * {@link Protocol#TASK_GET_SUBTREE}.
+     * @param path Percorso del nodo radice ({@code int[]}).
+     * @param depth Numero di livelli da includere sotto il nodo.
+     * @return Numero di figli, condizione e descrizione di ogni nodo, in preordine.
+     * @throws TaskException Se non è stato caricato alcun albero o il percorso non è valido.
+     */
+    private Object[] subtree(Object path, int depth) throws TaskException {
+        FlatTree flat = loadedTree().getTree();
+        if (!(path instanceof int[]) || depth < 1) {
+            throw new TaskException("Sottoalbero non valido");
+        }
+        int root = 0;
+        for (int child : (int[]) path) {
+            if (child < 0 || child >= flat.getChildCount(root)) {
+                throw new TaskException("Percorso non valido: " + Arrays.toString((int[]) path));
+            }
+            root = flat.getChild(root, child);
+        }
+        List<Integer> childCount = new ArrayList<>();
+        List<String> branches = new ArrayList<>();
+        List<String> labels = new ArrayList<>();
+        describe(flat, root, "", depth, childCount, branches, labels);
+        int[] counts = new int[childCount.size()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = childCount.get(i);
+        }
+        return new Object[] {counts, branches, labels};
+    }
+
+    /**
+     * Aggiunge alla visita in preordine un nodo e i suoi figli fino al numero di livelli specificato,
+     * con le stesse condizioni e descrizioni che il client ricava da un albero già scaricato.
+     * @param flat Albero caricato.
+     * @param node Indice del nodo.
+     * @param branch Condizione che porta dal padre al nodo.
+     * @param depth Numero di livelli da includere sotto il nodo.
+     * @param childCount Numero di figli di ogni nodo, cambiato di segno se i figli non sono inclusi.
+     * @param branches Condizione che porta dal padre a ogni nodo.
+     * @param labels Descrizione di ogni nodo.
+     */
+    private static void describe(FlatTree flat, int node, String branch, int depth, List<Integer> childCount,
+                                 List<String> branches, List<String> labels) {
+        int count = flat.getChildCount(node);
+        branches.add(branch);
+        if (count == 0) {
+            childCount.add(0);
+            labels.add(String.valueOf(flat.getPrediction(node)));
+            return;
+        }
+        childCount.add(depth > 0 ? count : -count);
+        labels.add(flat.getQuestion(node));
+        if (depth == 0) {
+            return;
+        }
+        String attribute = flat.getAttributes().get(flat.getSplitAttribute(node));
+        for (int i = 0; i < count; i++) {
+            String condition = flat.isContinuous(node)
+                    ? attribute + (i == 0 ? " <= " : " > ") + flat.getThreshold(node)
+                    : attribute + " = " + flat.getSplitValue(node, i);
+            describe(flat, flat.getChild(node, i), condition, depth - 1, childCount, branches, labels);
+        }
+    }
+
+    /**
+     * Restituisce la struttura dell'albero caricato, oppure {@link Protocol#NOT_MODIFIED} se coincide
+     * con quella salvata sul dispositivo.
+     * @param fingerprint Impronta dell'albero salvato sul dispositivo, {@code null} se assente.
+     * @return Valori della risposta.
+     * @throws TaskException Se non è stato caricato alcun albero.
+     */
+    private Object[] structure(Object fingerprint) throws TaskException {
+        SyntheticTree loaded = loadedTree();
+        if (loaded.getFingerprint().equals(fingerprint)) {
+            return new Object[] {Protocol.NOT_MODIFIED};
+        }
+        Object[] structure = loaded.getStructure();
+        Object[] values = new Object[structure.length + 1];
+        System.arraycopy(structure, 0, values, 0, structure.length);
+        values[structure.length] = loaded.getFingerprint();
+        return values;
+    }
+
+    /**
+     * Restituisce l'albero caricato.
+     * @return {@code tree}
+     * @throws TaskException Se non è stato caricato alcun albero.
+     */
+    private SyntheticTree loadedTree() throws TaskException {
+        if (tree == null) {
+            throw new TaskException("Nessun albero caricato");
+        }
+        return tree;
+    }
+
+    /**
+     * Restituisce l'argomento specificato della richiesta.
+     * @param args Argomenti della richiesta.
+     * @param index Posizione dell'argomento.
+     * @return Argomento.
+     * @throws TaskException Se la richiesta non contiene l'argomento.
+     */
+    private static Object argument(Object[] args, int index) throws TaskException {
+        if (index >= args.length) {
+            throw new TaskException("Argomento mancante");
+        }
+        return args[index];
+    }
+
+    /**
+     * Restituisce l'argomento intero specificato della richiesta.
+     * @param args Argomenti della richiesta.
+     * @param index Posizione dell'argomento.
+     * @return Argomento.
+     * @throws TaskException Se la richiesta non contiene l'argomento o non è un numero.
+     */
+    private static int intArgument(Object[] args, int index) throws TaskException {
+        Object value = argument(args, index);
+        if (!(value instanceof Number)) {
+            throw new TaskException("Argomento non numerico: " + value);
+        }
+        return ((Number) value).intValue();
+    }
+
+    /**
+     * Applica i disturbi previsti dalle opzioni prima di una risposta: chiude la connessione se è
+     * stato raggiunto il numero massimo di risposte o, a caso, con la probabilità prevista;
+     * altrimenti attende il ritardo previsto.
+     * @throws IOException Se la connessione viene chiusa.
+     */
+    private void disturb() throws IOException {
+        if ((options.getDropAfter() > 0 && responses >= options.getDropAfter())
+                || (options.getDropRate() > 0 && random.nextDouble() < options.getDropRate())) {
+            connection.close();
+            throw new IOException("Chiusura simulata dopo " + responses + " risposte");
+        }
+        responses++;
+        long delay = options.getLatencyMillis();
+        if (options.getJitterMillis() > 0) {
+            delay += (long) ((random.nextDouble() * 2 - 1) * options.getJitterMillis());
+        }
+        if (delay <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    /**
+     * L'eccezione segnala un task che non può essere eseguito: il messaggio viene inviato al client.
+     */
+    private static class TaskException extends Exception {
+
+        /**
+         * Versione della classe serializzabile.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Inizializza l'eccezione con il messaggio specificato.
+         * @param message Messaggio da inviare al client.
+         */
+        TaskException(String message) {
+            super(message);
+        }
+    }
+}
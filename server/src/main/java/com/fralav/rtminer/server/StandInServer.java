@@ -0,0 +1,142 @@
+package com.fralav.rtminer.server;
+
+import com.fralav.rtminer.client.protocol.ServerConnection;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+/**
+ * La classe implementa un server sostitutivo del server reale, che non richiede il database: parla lo
+ * stesso protocollo, serve tabelle e alberi sintetici di dimensione configurabile e può simulare
+ * ritardi, banda limitata e chiusure delle connessioni, in modo da misurare i tempi del client e
+ * verificarne il comportamento in caso di guasti su una qualsiasi macchina. A parità di opzioni, il
+ * server produce sempre gli stessi dati e gli stessi disturbi. Ogni connessione viene servita da un
+ * thread dedicato.
+ * <p>
+ * Il server può essere avviato dalla riga di comando, ad esempio con
+ * {@code gradlew :server:run --args="--port 8080 --depth 10 --latency 50"}, oppure all'interno di un
+ * altro programma, tramite {@link #start()}.
+ */
+public class StandInServer implements Closeable {
+
+    /**
+     * Socket che accetta le connessioni.
+     */
+    private final ServerSocket server;
+
+    /**
+     * Opzioni del server.
+     */
+    private final ServerOptions options;
+
+    /**
+     * Tabelle, file e alberi serviti.
+     */
+    private final SyntheticCatalog catalog;
+
+    /**
+     * Numero di connessioni accettate.
+     */
+    private int connections;
+
+    /**
+     * Crea il socket sulla porta indicata dalle opzioni. Il server non accetta connessioni finché non
+     * viene chiamato {@link #run()} o {@link #start()}.
+     * @param options Opzioni del server.
+     * @throws IOException Se non è possibile creare il socket.
+     */
+    public StandInServer(ServerOptions options) throws IOException {
+        this.options = options;
+        this.catalog = new SyntheticCatalog(options);
+        this.server = new ServerSocket(options.getPort());
+    }
+
+    /**
+     * Avvia il server con le opzioni specificate dalla riga di comando e accetta le connessioni finché
+     * il processo non viene terminato.
+     * @param args Opzioni del server, descritte da {@link ServerOptions#parse(String[])}.
+     * @throws IOException Se non è possibile creare il socket.
+     */
+    public static void main(String[] args) throws IOException {
+        ServerOptions options;
+        try {
+            options = ServerOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+            return;
+        }
+        try (StandInServer server = new StandInServer(options)) {
+            System.out.println("Server sostitutivo in ascolto: " + options);
+            server.run();
+        }
+    }
+
+    /**
+     * Restituisce la porta sulla quale il server è in ascolto.
+     * @return Porta del server.
+     */
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * Accetta le connessioni in un thread separato, che termina alla chiusura del server.
+     */
+    public void start() {
+        Thread acceptor = new Thread(this::run, "StandInServer-Accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Accetta le connessioni nel thread chiamante, finché il server non viene chiuso.
+     */
+    public void run() {
+        while (!server.isClosed()) {
+            try {
+                Socket socket = server.accept();
+                int number = ++connections;
+                Thread worker = new Thread(() -> serve(socket, number), "StandInServer-" + number);
+                worker.setDaemon(true);
+                worker.start();
+            } catch (IOException ignored) {
+                // Il socket è stato chiuso.
+            }
+        }
+    }
+
+    /**
+     * Corpo del thread che serve una connessione: crea gli stream, eventualmente limitati in banda, e
+     * affida la connessione a una nuova {@link Session}.
+     * @param socket Socket connesso al client.
+     * @param number Numero progressivo della connessione.
+     */
+    private void serve(Socket socket, int number) {
+        try {
+            socket.setTcpNoDelay(true);
+            ServerConnection connection = new ServerConnection(socket, socket.getInputStream(),
+                    ThrottledOutputStream.wrap(socket.getOutputStream(), options.getBytesPerSecond()));
+            new Session(connection, catalog, options, number).run();
+        } catch (IOException e) {
+            // Il client si è disconnesso prima di inviare l'intestazione dello stream.
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // Il socket è già chiuso.
+            }
+        }
+    }
+
+    /**
+     * Chiude il socket, e quindi il server. Le connessioni già stabilite terminano quando il client le
+     * chiude.
+     * @throws IOException Se si verifica un errore durante la chiusura.
+     */
+    @Override
+    public void close() throws IOException {
+        server.close();
+    }
+}
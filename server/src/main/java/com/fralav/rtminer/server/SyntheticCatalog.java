@@ -0,0 +1,104 @@
+package com.fralav.rtminer.server;
+
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * La classe simula il database e l'archivio del server reale: le tabelle si chiamano
+ * {@code tabella_00}, {@code tabella_01}, ... e i file {@code albero_00.dmp}, {@code albero_01.dmp},
+ * ... A queste si aggiunge la tabella {@link #CORRUPTED_TABLE}, dalla quale non è possibile apprendere
+ * alcun albero. L'albero di ogni tabella e di ogni file dipende solo dal nome e dal seme, viene
+ * costruito alla prima richiesta e poi condiviso tra tutte le connessioni.
+ */
+class SyntheticCatalog {
+
+    /**
+     * Nome della tabella che simula un training set non valido: il server risponde con
+     * {@code dataError}.
+     */
+    static final String CORRUPTED_TABLE = "tabella_corrotta";
+
+    /**
+     * Nomi delle tabelle.
+     */
+    private final List<String> tables;
+
+    /**
+     * Nomi dei file.
+     */
+    private final List<String> files;
+
+    /**
+     * Alberi già costruiti, indicizzati per nome della tabella o del file.
+     */
+    private final Map<String, SyntheticTree> trees = new ConcurrentHashMap<>();
+
+    /**
+     * Opzioni del server.
+     */
+    private final ServerOptions options;
+
+    /**
+     * Inizializza gli attributi d'istanza a partire dalle opzioni del server.
+     * @param options Opzioni del server.
+     */
+    SyntheticCatalog(ServerOptions options) {
+        this.options = options;
+        List<String> tables = new LinkedList<>();
+        List<String> files = new LinkedList<>();
+        for (int i = 0; i < options.getTables(); i++) {
+            tables.add(String.format("tabella_%02d", i));
+            files.add(String.format("albero_%02d.dmp", i));
+        }
+        tables.add(CORRUPTED_TABLE);
+        this.tables = Collections.unmodifiableList(tables);
+        this.files = Collections.unmodifiableList(files);
+    }
+
+    /**
+     * Restituisce una copia della lista delle tabelle, da inviare al client.
+     * @return Nomi delle tabelle.
+     */
+    LinkedList<String> getTables() {
+        return new LinkedList<>(tables);
+    }
+
+    /**
+     * Restituisce una copia della lista dei file, da inviare al client.
+     * @return Nomi dei file.
+     */
+    LinkedList<String> getFiles() {
+        return new LinkedList<>(files);
+    }
+
+    /**
+     * Restituisce {@code true} se la tabella esiste.
+     * @param table Nome della tabella.
+     * @return {@code true} se la tabella esiste.
+     */
+    boolean hasTable(String table) {
+        return tables.contains(table);
+    }
+
+    /**
+     * Restituisce {@code true} se il file esiste.
+     * @param file Nome del file.
+     * @return {@code true} se il file esiste.
+     */
+    boolean hasFile(String file) {
+        return files.contains(file);
+    }
+
+    /**
+     * Restituisce l'albero della tabella o del file specificato, costruendolo alla prima richiesta.
+     * @param name Nome della tabella o del file, che deve esistere.
+     * @return Albero.
+     */
+    SyntheticTree getTree(String name) {
+        return trees.computeIfAbsent(name, key -> new SyntheticTree(options.getFanOut(),
+                options.getDepth(), options.getSeed() * 31 + key.hashCode()));
+    }
+}
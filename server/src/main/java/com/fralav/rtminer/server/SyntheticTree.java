@@ -0,0 +1,214 @@
+package com.fralav.rtminer.server;
+
+import com.fralav.rtminer.client.tree.FlatTree;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * La classe rappresenta un albero di regressione sintetico, completo e di forma prefissata: il nodo di
+ * ogni livello esegue lo split sull'attributo con lo stesso indice, continuo con due figli sui livelli
+ * pari, discreto con i valori {@code v0}, {@code v1}, ... sui livelli dispari. Se gli split discreti
+ * hanno due figli, tutti gli split sono continui. Le soglie e i valori di predizione sono casuali, ma
+ * dipendono solo dal seme. L'albero viene conservato sia come visita in preordine, inviata dal task
+ * {@code TASK_GET_TREE_STRUCTURE}, sia come {@link FlatTree}, percorso durante la fase di predizione.
+ */
+class SyntheticTree {
+
+    /**
+     * Nomi degli attributi indipendenti.
+     */
+    private final List<String> attributes = new ArrayList<>();
+
+    /**
+     * Numero di figli di ogni nodo, nell'ordine della visita in preordine.
+     */
+    private final List<Integer> childCount = new ArrayList<>();
+
+    /**
+     * Indice dell'attributo di split di ogni nodo, {@code -1} per le foglie.
+     */
+    private final List<Integer> splitAttribute = new ArrayList<>();
+
+    /**
+     * Soglia degli split continui, {@code NaN} per gli altri nodi.
+     */
+    private final List<Double> threshold = new ArrayList<>();
+
+    /**
+     * Valori associati ai figli degli split discreti.
+     */
+    private final List<String> splitValues = new ArrayList<>();
+
+    /**
+     * Valore di predizione delle foglie, {@code NaN} per gli altri nodi.
+     */
+    private final List<Double> prediction = new ArrayList<>();
+
+    /**
+     * Domanda di ogni nodo di split.
+     */
+    private final List<String> questions = new ArrayList<>();
+
+    /**
+     * Rappresentazione testuale dell'albero, inviata dal task {@code TASK_PRINT_TREE}.
+     */
+    private final StringBuilder text = new StringBuilder();
+
+    /**
+     * Numero di figli degli split discreti.
+     */
+    private final int fanOut;
+
+    /**
+     * Generatore dei valori casuali.
+     */
+    private final Random random;
+
+    /**
+     * Albero percorso durante la fase di predizione.
+     */
+    private final FlatTree tree;
+
+    /**
+     * Impronta dell'albero.
+     */
+    private final String fingerprint;
+
+    /**
+     * Costruisce l'albero.
+     * @param fanOut Numero di figli degli split discreti, almeno {@code 2}.
+     * @param depth Numero di livelli di split, ovvero numero di attributi.
+     * @param seed Seme dei valori casuali.
+     */
+    SyntheticTree(int fanOut, int depth, long seed) {
+        this.fanOut = fanOut;
+        this.random = new Random(seed);
+        for (int i = 0; i < depth; i++) {
+            attributes.add("a" + i);
+        }
+        visit(0, "");
+        tree = FlatTree.fromPreorder(attributes, toInts(childCount), toInts(splitAttribute),
+                toDoubles(threshold), splitValues, toDoubles(prediction), questions);
+        fingerprint = Long.toHexString(seed) + "-" + fanOut + "x" + depth;
+    }
+
+    /**
+     * Restituisce l'albero percorso durante la fase di predizione.
+     * @return {@code tree}
+     */
+    FlatTree getTree() {
+        return tree;
+    }
+
+    /**
+     * Restituisce l'impronta dell'albero, che dipende solo dal seme e dalla forma.
+     * @return {@code fingerprint}
+     */
+    String getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Restituisce la rappresentazione testuale dell'albero, un nodo per riga.
+     * @return Rappresentazione testuale.
+     */
+    String getText() {
+        return text.toString();
+    }
+
+    /**
+     * Restituisce la visita in preordine dell'albero, nel formato della risposta al task
+     * {@code TASK_GET_TREE_STRUCTURE}, senza l'impronta.
+     * @return Valori della risposta.
+     */
+    Object[] getStructure() {
+        return new Object[] {new ArrayList<>(attributes), toInts(childCount), toInts(splitAttribute),
+                toDoubles(threshold), new ArrayList<>(splitValues), toDoubles(prediction),
+                new ArrayList<>(questions)};
+    }
+
+    /**
+     * Aggiunge alla visita il nodo del livello specificato e il suo sottoalbero. I valori di split del
+     * nodo vengono aggiunti prima di visitare i figli, poiché devono essere contigui.
+     * @param level Livello del nodo, {@code 0} per la radice.
+     * @param indent Rientro della riga del nodo nella rappresentazione testuale.
+     */
+    private void visit(int level, String indent) {
+        if (level == attributes.size()) {
+            double value = Math.round(random.nextDouble() * 10000) / 100.0;
+            childCount.add(0);
+            splitAttribute.add(-1);
+            threshold.add(Double.NaN);
+            prediction.add(value);
+            text.append(indent).append("LEAF: ").append(value).append('\n');
+            return;
+        }
+        String attribute = attributes.get(level);
+        boolean continuous = fanOut == 2 || level % 2 == 0;
+        int children = continuous ? 2 : fanOut;
+        StringBuilder question = new StringBuilder();
+        String[] conditions = new String[children];
+        childCount.add(children);
+        splitAttribute.add(level);
+        prediction.add(Double.NaN);
+        if (continuous) {
+            double split = Math.round(random.nextDouble() * 1000) / 1000.0;
+            threshold.add(split);
+            conditions[0] = attribute + "<=" + format(split);
+            conditions[1] = attribute + ">" + format(split);
+        } else {
+            threshold.add(Double.NaN);
+            for (int i = 0; i < children; i++) {
+                splitValues.add("v" + i);
+                conditions[i] = attribute + "=v" + i;
+            }
+        }
+        for (int i = 0; i < children; i++) {
+            question.append(i).append(':').append(conditions[i]).append('\n');
+        }
+        questions.add(question.toString());
+        text.append(indent).append("SPLIT: ").append(attribute).append('\n');
+        for (int i = 0; i < children; i++) {
+            text.append(indent).append("  [").append(conditions[i]).append("]\n");
+            visit(level + 1, indent + "    ");
+        }
+    }
+
+    /**
+     * Formatta una soglia indipendentemente dalla lingua del sistema.
+     * @param value Soglia.
+     * @return Soglia con tre cifre decimali.
+     */
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    /**
+     * Converte una lista di interi in un array.
+     * @param list Lista di interi.
+     * @return Array con gli stessi valori.
+     */
+    private static int[] toInts(List<Integer> list) {
+        int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+
+    /**
+     * Converte una lista di numeri reali in un array.
+     * @param list Lista di numeri reali.
+     * @return Array con gli stessi valori.
+     */
+    private static double[] toDoubles(List<Double> list) {
+        double[] array = new double[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+}
@@ -0,0 +1,86 @@
+package com.fralav.rtminer.server;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+
+/**
+ * La classe limita la banda di uno stream di output: i byte vengono scritti a blocchi e, dopo ogni
+ * blocco, la scrittura attende il tempo necessario a non superare il numero di byte al secondo
+ * prefissato. Il tempo trascorso senza scrivere non accumula credito, quindi anche la prima risposta
+ * dopo una pausa subisce il limite.
+ */
+class ThrottledOutputStream extends FilterOutputStream {
+
+    /**
+     * Dimensione massima di un blocco, in byte.
+     */
+    private static final int BLOCK = 1024;
+
+    /**
+     * Banda massima, in byte al secondo.
+     */
+    private final long bytesPerSecond;
+
+    /**
+     * Istante, in nanosecondi, in cui termina la trasmissione simulata dei byte già scritti.
+     */
+    private long busyUntil;
+
+    /**
+     * Inizializza gli attributi d'istanza con quelli passati in input.
+     * @param out Stream da limitare.
+     * @param bytesPerSecond Banda massima, in byte al secondo.
+     */
+    ThrottledOutputStream(OutputStream out, long bytesPerSecond) {
+        super(out);
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    /**
+     * Restituisce lo stream specificato, limitato alla banda indicata.
+     * @param out Stream da limitare.
+     * @param bytesPerSecond Banda massima, in byte al secondo; {@code 0} per non limitarla.
+     * @return Stream limitato, oppure {@code out} se la banda non è limitata.
+     */
+    static OutputStream wrap(OutputStream out, long bytesPerSecond) {
+        return bytesPerSecond > 0 ? new ThrottledOutputStream(out, bytesPerSecond) : out;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            int block = Math.min(len, BLOCK);
+            out.write(b, off, block);
+            pace(block);
+            off += block;
+            len -= block;
+        }
+    }
+
+    /**
+     * Attende il tempo di trasmissione dei byte appena scritti.
+     * @param bytes Numero di byte scritti.
+     * @throws InterruptedIOException Se il thread viene interrotto durante l'attesa.
+     */
+    private void pace(int bytes) throws InterruptedIOException {
+        long now = System.nanoTime();
+        busyUntil = Math.max(busyUntil, now) + bytes * 1_000_000_000L / bytesPerSecond;
+        long wait = busyUntil - now;
+        if (wait <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(wait / 1_000_000L, (int) (wait % 1_000_000L));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+}